@@ -0,0 +1,276 @@
+package com.wirecat.core_capture;
+
+import com.wirecat.core_capture.decode.Protocols;
+import com.wirecat.core_capture.model.Conversation;
+import com.wirecat.core_capture.pipeline.CapturePipeline;
+import com.wirecat.core_capture.service.CaptureService;
+import com.wirecat.core_capture.stats.HeavyHitters;
+import com.wirecat.core_capture.stats.RateStats;
+import com.wirecat.core_capture.stats.TrafficStats;
+import com.wirecat.core_capture.store.PacketStore;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Headless capture or file analysis for sensor boxes: the same pipeline as the
+ * UI, but it loads no JavaFX class, so it runs with JavaFX left off the class
+ * path (the README shows how to launch it that way). Writes the frames to
+ * rotating pcap files, one CSV record per conversation as it ends and a
+ * statistics report at the end, and prints throughput every few seconds.
+ * Stops at the end of the file, after the packet count or duration, or on
+ * Ctrl-C, finishing the outputs either way.
+ * <pre>
+ * WireCatCli -i eth0 -f "tcp port 443" -w /var/wirecat --flows flows.csv --stats stats.txt
+ * WireCatCli -r capture.pcapng --flows flows.csv
+ * </pre>
+ */
+public class WireCatCli {
+    private static final String USAGE = """
+            usage: WireCatCli (-i INTERFACE | -r FILE) [options]
+              -i, --interface NAME   capture live on NAME
+              -r, --read FILE        analyze a pcap or pcapng file instead
+              -f, --filter BPF       capture filter
+              -c, --count N          stop after N packets (live)
+              -d, --duration SEC     stop after SEC seconds
+              -w, --write DIR        write every frame to rotating pcap files in DIR
+                  --rotate-mb N      new file after N MB (default 100, 0 = no limit)
+                  --rotate-sec N     new file after N seconds (default 0 = no limit)
+                  --ring N           keep the newest N files (default 0 = all)
+                  --flows FILE       one CSV line per conversation as it ends
+                  --stats FILE       statistics report at the end
+                  --interval SEC     throughput line every SEC seconds (default 5, 0 = off)
+                  --store-mb N       memory for retained frames (default 16)
+            """;
+
+    private String iface;
+    private File file;
+    private String filter = "";
+    private int count;
+    private long durationSeconds;
+    private Path writeDir;
+    private int rotateMb = 100;
+    private int rotateSeconds;
+    private int ringFiles;
+    private Path flowsFile;
+    private Path statsFile;
+    private int intervalSeconds = 5;
+    private int storeMb = 16;
+
+    private final CaptureService svc = new CaptureService();
+    private final AtomicBoolean finished = new AtomicBoolean();
+    private volatile boolean failed;
+    private PrintWriter flows;
+    private long flowRecords;
+
+    public static void main(String[] args) {
+        if (args.length == 0 || args[0].equals("-h") || args[0].equals("--help")) {
+            System.out.print(USAGE);
+            return;
+        }
+        WireCatCli cli = new WireCatCli();
+        try {
+            cli.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.print(USAGE);
+            System.exit(2);
+        }
+        try {
+            System.exit(cli.run());
+        } catch (IOException e) {
+            System.err.println("❌ " + e.getMessage());
+            System.exit(1);
+        } catch (InterruptedException e) {
+            System.exit(130);
+        } catch (UnsatisfiedLinkError e) {   // live capture without libpcap installed
+            System.err.println("❌ libpcap not available: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    private void parse(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String opt = args[i];
+            if (i + 1 >= args.length) throw new IllegalArgumentException("Missing value for " + opt);
+            String value = args[++i];
+            switch (opt) {
+                case "-i", "--interface" -> iface = value;
+                case "-r", "--read" -> file = new File(value);
+                case "-f", "--filter" -> filter = value;
+                case "-c", "--count" -> count = number(opt, value);
+                case "-d", "--duration" -> durationSeconds = number(opt, value);
+                case "-w", "--write" -> writeDir = Path.of(value);
+                case "--rotate-mb" -> rotateMb = number(opt, value);
+                case "--rotate-sec" -> rotateSeconds = number(opt, value);
+                case "--ring" -> ringFiles = number(opt, value);
+                case "--flows" -> flowsFile = Path.of(value);
+                case "--stats" -> statsFile = Path.of(value);
+                case "--interval" -> intervalSeconds = number(opt, value);
+                case "--store-mb" -> storeMb = Math.max(1, number(opt, value));
+                default -> throw new IllegalArgumentException("Unknown option " + opt);
+            }
+        }
+        if ((iface == null) == (file == null)) throw new IllegalArgumentException("Give one of -i or -r");
+        if (file != null && count > 0) throw new IllegalArgumentException("-c only applies to live capture (-i)");
+    }
+
+    private static int number(String opt, String value) {
+        try {
+            int n = Integer.parseInt(value);
+            if (n < 0) throw new NumberFormatException();
+            return n;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not a count for " + opt + ": " + value);
+        }
+    }
+
+    private int run() throws IOException, InterruptedException {
+        svc.onStatus(msg -> {
+            if (msg.startsWith("❌")) failed = true;
+            System.err.println(msg);
+        });
+        svc.setQueueForUi(false);
+        svc.setStoreBudget(storeMb, false, PacketStore.OverflowPolicy.DROP_OLDEST);
+        if (writeDir != null) {
+            Files.createDirectories(writeDir);
+            svc.setWriteThrough(writeDir, rotateMb, rotateSeconds, ringFiles);
+        }
+        if (flowsFile != null) {
+            flows = new PrintWriter(Files.newBufferedWriter(flowsFile, StandardCharsets.UTF_8));
+            flows.println("first_ms,last_ms,proto,src,src_port,dst,dst_port,packets,bytes,reply_packets,reply_bytes");
+            svc.setOnFlowEnd(this::writeFlow);
+        }
+        // Ctrl-C stops the capture and still closes the files
+        Thread hook = new Thread(() -> {
+            svc.stopCapture();
+            try {
+                svc.awaitCapture(10_000);
+            } catch (InterruptedException ignored) { }
+            finish();
+        }, "WireCat-Shutdown");
+        Runtime.getRuntime().addShutdownHook(hook);
+
+        if (file != null) svc.openFile(file, filter);
+        else svc.startCapture(iface, filter, count);
+
+        long started = System.nanoTime();
+        long deadline = durationSeconds > 0 ? started + durationSeconds * 1_000_000_000L : Long.MAX_VALUE;
+        long nextReport = started + intervalSeconds * 1_000_000_000L;
+        long lastPackets = 0, lastBytes = 0, lastReport = started;
+        while (!svc.awaitCapture(100)) {
+            long now = System.nanoTime();
+            if (now >= deadline) svc.stopCapture();
+            // Nobody shows the conversation table, so only let go of the change queue
+            svc.conversations().drain(c -> { }, c -> { });
+            if (intervalSeconds > 0 && now >= nextReport) {
+                TrafficStats stats = svc.trafficStats();
+                long packets = stats.packets(), bytes = stats.bytes();
+                report(now - started, packets, (packets - lastPackets) * 1e9 / (now - lastReport),
+                        (bytes - lastBytes) * 8e9 / (now - lastReport));
+                lastPackets = packets;
+                lastBytes = bytes;
+                lastReport = now;
+                nextReport = now + intervalSeconds * 1_000_000_000L;
+            }
+        }
+        finish();
+        try {
+            Runtime.getRuntime().removeShutdownHook(hook);
+        } catch (IllegalStateException ignored) { }   // already shutting down
+        return failed ? 1 : 0;
+    }
+
+    // e.g. "  15 s  1,204,331 pkts  80.2k pkt/s  512.6 Mb/s  dropped 0  backlog 12/65,536  flows 3,112"
+    private void report(long elapsedNanos, long packets, double pps, double bps) {
+        CapturePipeline p = svc.pipeline();
+        System.out.printf("%4d s  %,d pkts  %.1fk pkt/s  %.1f Mb/s  dropped %,d  backlog %,d/%,d  flows %,d%n",
+                elapsedNanos / 1_000_000_000L, packets, pps / 1000, bps / 1e6,
+                p == null ? 0 : p.dropped(), p == null ? 0 : p.backlog(), p == null ? 0 : p.ringSize(),
+                svc.conversations().size());
+    }
+
+    // Called from the conversation workers
+    private synchronized void writeFlow(Conversation c) {
+        flows.printf("%d,%d,%s,%s,%d,%s,%d,%d,%d,%d,%d%n",
+                c.getFirstTimestamp(), c.getLastTimestamp(), c.getProto(),
+                c.getSrcIP(), c.getSrcPort(), c.getDstIP(), c.getDstPort(),
+                c.getPacketCount(), c.getTotalBytes(), c.getReplyPackets(), c.getReplyBytes());
+        flowRecords++;
+    }
+
+    // Once, from the main thread or the shutdown hook, after the capture has stopped
+    private void finish() {
+        if (!finished.compareAndSet(false, true)) return;
+        if (flows != null) {
+            synchronized (this) {
+                flows.close();
+                System.err.printf("🗨 %,d flow records written to %s%n", flowRecords, flowsFile);
+            }
+        }
+        if (statsFile != null) {
+            try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(statsFile, StandardCharsets.UTF_8))) {
+                writeStats(out);
+                System.err.println("📊 Statistics written to " + statsFile);
+            } catch (IOException e) {
+                System.err.println("❌ Statistics not written: " + e.getMessage());
+                failed = true;
+            }
+        }
+    }
+
+    private void writeStats(PrintWriter out) {
+        TrafficStats stats = svc.trafficStats();
+        long packets = stats.packets();
+        out.printf("packets %,d%nbytes %,d%nconversations %,d%n", packets, stats.bytes(), svc.conversations().size());
+        CapturePipeline p = svc.pipeline();
+        if (p != null) out.printf("dropped %,d%n", p.dropped());
+
+        out.println();
+        out.println("Protocols");
+        for (int id = 0; id < Protocols.COUNT; id++) {
+            long n = stats.protocolPackets(id);
+            if (n > 0) out.printf("  %-14s %,14d  %5.1f%%%n", Protocols.name(id), n, 100.0 * n / Math.max(1, packets));
+        }
+
+        RateStats rates = stats.rates();
+        RateStats.Window w = rates.window(RateStats.MAX_WINDOW, rates.latestSecond());
+        if (w.packets() > 0) writeWindow(out, w);
+        writeHitters(out);
+
+        String rules = svc.detection().summary();
+        if (!rules.isEmpty()) {
+            out.println();
+            out.println("Detection: " + rules);
+        }
+        out.println();
+        out.println("Pipeline: " + svc.pipelineSummary());
+    }
+
+    private static void writeWindow(PrintWriter out, RateStats.Window w) {
+        out.println();
+        out.printf("Last %d s of capture time%n", w.seconds());
+        out.printf("  %.1f pkt/s, %.1f Mb/s%n", w.packetsPerSecond(), w.bitsPerSecond() / 1e6);
+        out.printf("  in %,d pkts, out %,d pkts, other %,d pkts%n", w.directionPackets(RateStats.DIR_IN),
+                w.directionPackets(RateStats.DIR_OUT), w.directionPackets(RateStats.DIR_OTHER));
+        out.printf("  frame size p50 %d, p99 %d bytes; gap p50 %d, p99 %d us%n",
+                w.frameSizePercentile(0.5), w.frameSizePercentile(0.99),
+                w.interArrivalPercentileMicros(0.5), w.interArrivalPercentileMicros(0.99));
+    }
+
+    private void writeHitters(PrintWriter out) {
+        HeavyHitters hitters = svc.heavyHitters();
+        for (HeavyHitters.Dimension d : HeavyHitters.Dimension.values()) {
+            out.println();
+            out.println("Top " + d.name().toLowerCase() + " by bytes");
+            for (HeavyHitters.Talker t : hitters.top(d, HeavyHitters.Metric.BYTES, 10, 0, hitters.latestSecond())) {
+                out.printf("  %-48s %,14d bytes %,10d pkts%n", t.label(), t.bytes(), t.packets());
+            }
+        }
+    }
+}
@@ -0,0 +1,780 @@
+package com.wirecat.core_capture.bpf;
+
+import com.wirecat.core_capture.decode.FrameDecoder;
+
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static com.wirecat.core_capture.bpf.BpfProgram.*;
+
+/**
+ * Compiles capture-filter expressions in tcpdump's pcap-filter syntax to
+ * classic BPF for one link type. The expression is parsed into a small tree
+ * of tests, then each node is generated with a true and a false label, so
+ * {@code and}/{@code or}/{@code not} become jump targets rather than code.
+ * <p>
+ * Supported: {@code host}, {@code net} (CIDR, partial dotted or {@code mask}),
+ * {@code port}, {@code portrange} with {@code src}/{@code dst} and protocol
+ * qualifiers; {@code ip ip6 arp tcp udp sctp icmp icmp6}; {@code ip proto},
+ * {@code ip6 proto}, {@code ether host/src/dst/proto}, {@code broadcast},
+ * {@code multicast}; {@code less}, {@code greater}, {@code len} and
+ * {@code proto[offset:size] & mask} comparisons with the usual named
+ * constants; bare values repeating the previous qualifiers, as in
+ * {@code host a or b}. Not supported: host names, VLAN/MPLS offset shifting
+ * and IPv6 extension headers (the transport header is assumed to follow the
+ * fixed header). Link types: Ethernet, Linux cooked, raw IP and BSD loopback.
+ */
+final class BpfCompiler {
+    static final int SNAPLEN = 262144;   // what libpcap's compiler returns for "accept"
+
+    private static final int ETHERTYPE_IP = 0x0800, ETHERTYPE_ARP = 0x0806, ETHERTYPE_IPV6 = 0x86DD;
+    private static final int PROTO_ICMP = 1, PROTO_TCP = 6, PROTO_UDP = 17, PROTO_ICMPV6 = 58, PROTO_SCTP = 132;
+    private static final int IP6_HEADER = 40;
+
+    // Direction qualifiers
+    private static final int SRC_OR_DST = 0, SRC = 1, DST = 2, SRC_AND_DST = 3;
+
+    private static final List<String> PROTOS = List.of("ether", "ip", "ip6", "arp", "tcp", "udp", "sctp", "icmp", "icmp6");
+    private static final List<String> TYPES = List.of("host", "net", "port", "portrange");
+
+    private static final Map<String, Integer> CONSTANTS = Map.ofEntries(
+            Map.entry("tcpflags", 13), Map.entry("icmptype", 0), Map.entry("icmpcode", 1),
+            Map.entry("icmp6type", 0), Map.entry("icmp6code", 1),
+            Map.entry("tcp-fin", 0x01), Map.entry("tcp-syn", 0x02), Map.entry("tcp-rst", 0x04),
+            Map.entry("tcp-push", 0x08), Map.entry("tcp-ack", 0x10), Map.entry("tcp-urg", 0x20),
+            Map.entry("tcp-ece", 0x40), Map.entry("tcp-cwr", 0x80),
+            Map.entry("icmp-echoreply", 0), Map.entry("icmp-unreach", 3), Map.entry("icmp-sourcequench", 4),
+            Map.entry("icmp-redirect", 5), Map.entry("icmp-echo", 8), Map.entry("icmp-routeradvert", 9),
+            Map.entry("icmp-routersolicit", 10), Map.entry("icmp-timxceed", 11), Map.entry("icmp-paramprob", 12),
+            Map.entry("icmp-tstamp", 13), Map.entry("icmp-tstampreply", 14), Map.entry("icmp-ireq", 15),
+            Map.entry("icmp-ireqreply", 16), Map.entry("icmp-maskreq", 17), Map.entry("icmp-maskreply", 18));
+
+    private static final Map<String, Integer> SERVICES = Map.ofEntries(
+            Map.entry("ftp-data", 20), Map.entry("ftp", 21), Map.entry("ssh", 22), Map.entry("telnet", 23),
+            Map.entry("smtp", 25), Map.entry("domain", 53), Map.entry("bootps", 67), Map.entry("bootpc", 68),
+            Map.entry("http", 80), Map.entry("pop3", 110), Map.entry("ntp", 123), Map.entry("imap", 143),
+            Map.entry("snmp", 161), Map.entry("ldap", 389), Map.entry("https", 443), Map.entry("syslog", 514));
+
+    private final String text;
+    private final int linkType;
+    private final int l3;          // offset of the network header
+    private int pos;
+    private String token;          // current token, lower-cased; null at end
+    private int tokenStart;
+    private int valueStart;        // start of the last value read by word()
+
+    // Qualifiers of the last primitive, repeated for bare values
+    private String lastProto;
+    private int lastDir = SRC_OR_DST;
+    private String lastType = "host";
+
+    private BpfCompiler(String text, int linkType) {
+        this.text = text;
+        this.linkType = linkType;
+        this.l3 = switch (linkType) {
+            case FrameDecoder.LINKTYPE_ETHERNET -> 14;
+            case FrameDecoder.LINKTYPE_LINUX_SLL -> 16;
+            case FrameDecoder.LINKTYPE_NULL -> 4;
+            case FrameDecoder.LINKTYPE_RAW -> 0;
+            default -> throw new IllegalArgumentException("Unsupported link type " + linkType);
+        };
+        advance();
+    }
+
+    // Blank compiles to "accept everything". Throws IllegalArgumentException with the error position.
+    static BpfProgram compile(String expression, int linkType) {
+        String text = expression == null ? "" : expression.trim();
+        BpfCompiler c = new BpfCompiler(text, linkType);
+        // A lone RET, so BpfFilter.matchesAll recognizes it
+        if (text.isEmpty()) return new BpfProgram(new int[] {RET | K}, new int[1], new int[1], new int[] {SNAPLEN});
+        Node root = c.orExpr();
+        if (c.token != null) throw c.error("unexpected '" + c.token + "'");
+        Emitter e = new Emitter();
+        int accept = e.label(), reject = e.label();
+        root.gen(e, accept, reject);
+        e.place(accept);
+        e.emit(RET | K, SNAPLEN);
+        e.place(reject);
+        e.emit(RET | K, 0);
+        return e.finish();
+    }
+
+    // --- Parser
+
+    private Node orExpr() {
+        Node n = andExpr();
+        while (accept("or") || accept("||")) n = or(n, andExpr());
+        return n;
+    }
+
+    private Node andExpr() {
+        Node n = unary();
+        while (accept("and") || accept("&&")) n = and(n, unary());
+        return n;
+    }
+
+    private Node unary() {
+        if (accept("not") || accept("!")) return not(unary());
+        if (accept("(")) {
+            Node n = orExpr();
+            expect(")");
+            return n;
+        }
+        return primitive();
+    }
+
+    private Node primitive() {
+        if (token == null) throw error("expected a filter primitive");
+        String w = token;
+        if (w.equals("len") || PROTOS.contains(w) && "[".equals(peek())) return relation();
+        switch (w) {
+            case "less", "greater" -> {
+                advance();
+                int n = (int) number(word());
+                return w.equals("less") ? test(LD | W | LEN, 0, JGT, n).negate() : test(LD | W | LEN, 0, JGE, n);
+            }
+            case "broadcast", "multicast" -> {
+                return etherCast(w);
+            }
+            default -> { }
+        }
+
+        String proto = null, type = null;
+        int dir = -1;
+        if (PROTOS.contains(w)) {
+            proto = w;
+            advance();
+        }
+        if ("src".equals(token) || "dst".equals(token)) {
+            dir = token.equals("src") ? SRC : DST;
+            advance();
+            String next = peek();
+            if (("or".equals(token) || "and".equals(token)) && ("src".equals(next) || "dst".equals(next))) {
+                dir = token.equals("or") ? SRC_OR_DST : SRC_AND_DST;
+                advance();
+                advance();
+            }
+        }
+        if (token != null && TYPES.contains(token)) {
+            type = token;
+            advance();
+        }
+
+        if (proto != null && dir < 0 && type == null) {
+            if (accept("proto")) return protoNumber(proto);
+            if ("ether".equals(proto) && ("broadcast".equals(token) || "multicast".equals(token))) {
+                return etherCast(token);
+            }
+            return protocol(proto);
+        }
+        if (proto == null && dir < 0 && type == null) {
+            // A bare value repeats the previous primitive's qualifiers
+            if (!looksLikeValue(w)) throw error("unknown keyword '" + w + "'");
+            proto = lastProto;
+            dir = lastDir;
+            type = lastType;
+        }
+        if (dir < 0) dir = SRC_OR_DST;
+        if (type == null) type = "host";
+        lastProto = proto;
+        lastDir = dir;
+        lastType = type;
+        return qualified(proto, dir, type, word());
+    }
+
+    private Node qualified(String proto, int dir, String type, String id) {
+        if ("ether".equals(proto)) {
+            if (!type.equals("host")) throw valueError("'ether' cannot qualify " + type);
+            requireEthernet();
+            long mac = mac(id);
+            return dir(dir, macTest(6, mac), macTest(0, mac));
+        }
+        switch (type) {
+            case "host" -> {
+                if (proto != null && !List.of("ip", "ip6", "arp").contains(proto)) {
+                    throw valueError("'" + proto + "' cannot qualify host");
+                }
+                return id.indexOf(':') >= 0 ? ip6Net(proto, dir, ipv6(id), 128) : ipNet(proto, dir, ipv4(id), 32);
+            }
+            case "net" -> {
+                if (proto != null && !List.of("ip", "ip6", "arp").contains(proto)) {
+                    throw valueError("'" + proto + "' cannot qualify net");
+                }
+                return net(proto, dir, id);
+            }
+            default -> {
+                if (proto != null && List.of("ether", "arp", "icmp", "icmp6").contains(proto)) {
+                    throw valueError("'" + proto + "' cannot qualify " + type);
+                }
+                int lo, hi;
+                if (type.equals("port")) {
+                    lo = hi = port(id);
+                } else {
+                    int dash = id.indexOf('-');
+                    if (dash <= 0) throw valueError("expected a port range, got '" + id + "'");
+                    lo = port(id.substring(0, dash));
+                    hi = port(id.substring(dash + 1));
+                    if (lo > hi) { int t = lo; lo = hi; hi = t; }
+                }
+                return ports(proto, dir, lo, hi);
+            }
+        }
+    }
+
+    private Node net(String proto, int dir, String id) {
+        int slash = id.indexOf('/');
+        String addr = slash < 0 ? id : id.substring(0, slash);
+        if (addr.indexOf(':') >= 0) {
+            int bits = slash < 0 ? 128 : prefix(id.substring(slash + 1), 128);
+            return ip6Net(proto, dir, ipv6(addr), bits);
+        }
+        if (slash >= 0) return ipNet(proto, dir, ipv4(addr), prefix(id.substring(slash + 1), 32));
+        if (accept("mask")) {
+            int mask = ipv4(word());
+            if (mask != 0 && Integer.numberOfTrailingZeros(mask) + Integer.bitCount(mask) != 32) {
+                throw valueError("non-contiguous netmask");
+            }
+            return ipNet(proto, dir, ipv4(addr), Integer.bitCount(mask));
+        }
+        // "net 10.1" means 10.1.0.0/16, as in pcap-filter
+        String[] parts = addr.split("\\.", -1);
+        if (parts.length > 4) throw valueError("bad network '" + id + "'");
+        String full = addr + ".0".repeat(4 - parts.length);
+        return ipNet(proto, dir, ipv4(full), 8 * parts.length);
+    }
+
+    private Node ipNet(String proto, int dir, int addr, int bits) {
+        int mask = bits == 0 ? 0 : -1 << (32 - bits);
+        if ((addr & ~mask) != 0) throw valueError("non-network bits set in address");
+        if ("ip6".equals(proto)) throw valueError("IPv4 address with 'ip6'");
+        Node ip = and(etherType(ETHERTYPE_IP),
+                dir(dir, field(LD | W | ABS, l3 + 12, mask, addr), field(LD | W | ABS, l3 + 16, mask, addr)));
+        if ("ip".equals(proto) || !hasArp()) {
+            if ("arp".equals(proto)) throw valueError("'arp' needs an Ethernet or cooked link");
+            return ip;
+        }
+        // ARP over Ethernet: sender and target protocol addresses
+        Node arp = and(etherType(ETHERTYPE_ARP),
+                dir(dir, field(LD | W | ABS, l3 + 14, mask, addr), field(LD | W | ABS, l3 + 24, mask, addr)));
+        return "arp".equals(proto) ? arp : or(ip, arp);
+    }
+
+    private Node ip6Net(String proto, int dir, int[] addr, int bits) {
+        if (proto != null && !proto.equals("ip6")) throw valueError("IPv6 address with '" + proto + "'");
+        Node src = TRUE, dst = TRUE;
+        for (int i = 0; i < 4; i++) {
+            int wordBits = Math.max(0, Math.min(32, bits - 32 * i));
+            if (wordBits == 0) break;
+            int mask = wordBits == 32 ? -1 : -1 << (32 - wordBits);
+            if ((addr[i] & ~mask) != 0) throw valueError("non-network bits set in address");
+            // Compare the low word first: it differs most often between hosts
+            src = and(field(LD | W | ABS, l3 + 8 + 4 * i, mask, addr[i]), src);
+            dst = and(field(LD | W | ABS, l3 + 24 + 4 * i, mask, addr[i]), dst);
+        }
+        return and(etherType(ETHERTYPE_IPV6), dir(dir, src, dst));
+    }
+
+    private Node ports(String proto, int dir, int lo, int hi) {
+        int[] protos = switch (proto == null ? "" : proto) {
+            case "tcp" -> new int[] {PROTO_TCP};
+            case "udp" -> new int[] {PROTO_UDP};
+            case "sctp" -> new int[] {PROTO_SCTP};
+            default -> new int[] {PROTO_TCP, PROTO_UDP, PROTO_SCTP};
+        };
+        Node v4 = FALSE, v6 = FALSE;
+        if (!"ip6".equals(proto)) {
+            // IPv4: first fragment only; the header length comes from the IHL nibble
+            Node srcPort = range(LD | H | IND, l3, lo, hi), dstPort = range(LD | H | IND, l3 + 2, lo, hi);
+            v4 = and(etherType(ETHERTYPE_IP), and(anyProto(l3 + 9, protos),
+                    and(firstFragment(), dir(dir, srcPort, dstPort))));
+        }
+        if (!"ip".equals(proto)) {
+            Node srcPort = range(LD | H | ABS, l3 + IP6_HEADER, lo, hi);
+            Node dstPort = range(LD | H | ABS, l3 + IP6_HEADER + 2, lo, hi);
+            v6 = and(etherType(ETHERTYPE_IPV6), and(anyProto(l3 + 6, protos), dir(dir, srcPort, dstPort)));
+        }
+        return or(v4, v6);
+    }
+
+    private Node range(int load, int off, int lo, int hi) {
+        if (lo == hi) return test(load, off, JEQ, lo);
+        return and(test(load, off, JGE, lo), test(load, off, JGT, hi).negate());
+    }
+
+    private Node anyProto(int off, int[] protos) {
+        Node n = FALSE;
+        for (int p : protos) n = or(n, test(LD | B | ABS, off, JEQ, p));
+        return n;
+    }
+
+    private Node firstFragment() {
+        return test(LD | H | ABS, l3 + 6, JSET, 0x1FFF).negate();
+    }
+
+    private Node protocol(String proto) {
+        return switch (proto) {
+            case "ip" -> etherType(ETHERTYPE_IP);
+            case "ip6" -> etherType(ETHERTYPE_IPV6);
+            case "arp" -> etherType(ETHERTYPE_ARP);
+            case "tcp" -> or(ip4Proto(PROTO_TCP), ip6Proto(PROTO_TCP));
+            case "udp" -> or(ip4Proto(PROTO_UDP), ip6Proto(PROTO_UDP));
+            case "sctp" -> or(ip4Proto(PROTO_SCTP), ip6Proto(PROTO_SCTP));
+            case "icmp" -> ip4Proto(PROTO_ICMP);
+            case "icmp6" -> ip6Proto(PROTO_ICMPV6);
+            default -> throw error("'ether' needs host, src, dst or proto");
+        };
+    }
+
+    private Node protoNumber(String proto) {
+        String w = word();
+        String name = w.startsWith("\\") ? w.substring(1) : w;
+        int n = switch (name) {
+            case "icmp" -> PROTO_ICMP;
+            case "igmp" -> 2;
+            case "tcp" -> PROTO_TCP;
+            case "udp" -> PROTO_UDP;
+            case "icmp6" -> PROTO_ICMPV6;
+            case "sctp" -> PROTO_SCTP;
+            case "ip" -> proto.equals("ether") ? ETHERTYPE_IP : 4;
+            case "ip6" -> proto.equals("ether") ? ETHERTYPE_IPV6 : 41;
+            case "arp" -> ETHERTYPE_ARP;
+            default -> (int) number(name);
+        };
+        return switch (proto) {
+            case "ether" -> etherType(n);
+            case "ip" -> ip4Proto(n);
+            case "ip6" -> ip6Proto(n);
+            default -> throw error("'" + proto + "' cannot be followed by proto");
+        };
+    }
+
+    private Node ip4Proto(int p) {
+        return and(etherType(ETHERTYPE_IP), test(LD | B | ABS, l3 + 9, JEQ, p));
+    }
+
+    private Node ip6Proto(int p) {
+        return and(etherType(ETHERTYPE_IPV6), test(LD | B | ABS, l3 + 6, JEQ, p));
+    }
+
+    private Node etherCast(String which) {
+        requireEthernet();
+        advance();
+        if (which.equals("multicast")) return test(LD | B | ABS, 0, JSET, 1);
+        return macTest(0, 0xFFFF_FFFF_FFFFL);
+    }
+
+    // proto[off(:size)] (& mask)? relop value, or len relop value
+    private Node relation() {
+        String proto = token;
+        advance();
+        if (proto.equals("len")) {
+            int op = relop();
+            return compare(test(LD | W | LEN, 0, 0, 0), op, constant());
+        }
+        expect("[");
+        String at = word();
+        int size = 1;
+        int colon = at.indexOf(':');
+        if (colon >= 0) {
+            size = (int) constantOf(at.substring(colon + 1));
+            at = at.substring(0, colon);
+        } else if (accept(":")) {
+            size = (int) constant();
+        }
+        int off = (int) constantOf(at);
+        expect("]");
+        int load = switch (size) {
+            case 1 -> LD | B;
+            case 2 -> LD | H;
+            case 4 -> LD | W;
+            default -> throw error("size must be 1, 2 or 4");
+        };
+        int mask = -1;
+        if (accept("&")) mask = (int) constant();
+        int op = relop();
+        long value = constant();
+
+        Node guard;
+        int ld = load | ABS, base;
+        switch (proto) {
+            case "ether" -> { guard = TRUE; base = 0; }
+            case "ip" -> { guard = etherType(ETHERTYPE_IP); base = l3; }
+            case "ip6" -> { guard = etherType(ETHERTYPE_IPV6); base = l3; }
+            case "arp" -> { guard = etherType(ETHERTYPE_ARP); base = l3; }
+            case "icmp6" -> { guard = ip6Proto(PROTO_ICMPV6); base = l3 + IP6_HEADER; }
+            default -> {
+                // Transport headers over IPv4, after the variable-length IP header
+                int p = switch (proto) {
+                    case "tcp" -> PROTO_TCP;
+                    case "udp" -> PROTO_UDP;
+                    case "sctp" -> PROTO_SCTP;
+                    default -> PROTO_ICMP;
+                };
+                guard = and(ip4Proto(p), firstFragment());
+                ld = load | IND;
+                base = l3;
+            }
+        }
+        if (proto.equals("ether")) requireEthernet();
+        Test t = new Test(ld, base + off, ld == (load | IND) ? l3 : -1, mask, 0, 0, false);
+        return and(guard, compare(t, op, value));
+    }
+
+    // Relational operators, encoded as the jump to use and whether to swap its targets
+    private static final int OP_EQ = 0, OP_NE = 1, OP_GT = 2, OP_GE = 3, OP_LT = 4, OP_LE = 5;
+
+    private int relop() {
+        if (accept("=") || accept("==")) return OP_EQ;
+        if (accept("!=")) return OP_NE;
+        if (accept(">")) return OP_GT;
+        if (accept(">=")) return OP_GE;
+        if (accept("<")) return OP_LT;
+        if (accept("<=")) return OP_LE;
+        throw error("expected a comparison");
+    }
+
+    private static Node compare(Test load, int op, long value) {
+        int k = (int) value;
+        return switch (op) {
+            case OP_EQ -> load.jump(JEQ, k, false);
+            case OP_NE -> load.jump(JEQ, k, true);
+            case OP_GT -> load.jump(JGT, k, false);
+            case OP_GE -> load.jump(JGE, k, false);
+            case OP_LT -> load.jump(JGE, k, true);
+            default -> load.jump(JGT, k, true);
+        };
+    }
+
+    // A number, a named constant, or a parenthesized '|' of them, as in (tcp-syn|tcp-fin)
+    private long constant() {
+        if (accept("(")) {
+            long v = constant();
+            while (accept("|")) v |= constant();
+            expect(")");
+            return v;
+        }
+        long v = constantOf(word());
+        while (accept("|")) v |= constantOf(word());
+        return v;
+    }
+
+    private long constantOf(String w) {
+        Integer named = CONSTANTS.get(w);
+        return named != null ? named : number(w);
+    }
+
+    private Node dir(int dir, Node src, Node dst) {
+        return switch (dir) {
+            case SRC -> src;
+            case DST -> dst;
+            case SRC_AND_DST -> and(src, dst);
+            default -> or(src, dst);
+        };
+    }
+
+    private Node etherType(int type) {
+        return switch (linkType) {
+            case FrameDecoder.LINKTYPE_ETHERNET -> test(LD | H | ABS, 12, JEQ, type);
+            case FrameDecoder.LINKTYPE_LINUX_SLL -> test(LD | H | ABS, 14, JEQ, type);
+            // BSD loopback: the address family, in the capturing host's byte order
+            case FrameDecoder.LINKTYPE_NULL -> switch (type) {
+                case ETHERTYPE_IP -> family(2);
+                case ETHERTYPE_IPV6 -> or(family(24), or(family(28), family(30)));
+                default -> FALSE;
+            };
+            default -> switch (type) {
+                case ETHERTYPE_IP -> field(LD | B | ABS, 0, 0xF0, 0x40);
+                case ETHERTYPE_IPV6 -> field(LD | B | ABS, 0, 0xF0, 0x60);
+                default -> FALSE;
+            };
+        };
+    }
+
+    private Node family(int af) {
+        return or(test(LD | W | ABS, 0, JEQ, af), test(LD | W | ABS, 0, JEQ, Integer.reverseBytes(af)));
+    }
+
+    private boolean hasArp() {
+        return linkType == FrameDecoder.LINKTYPE_ETHERNET || linkType == FrameDecoder.LINKTYPE_LINUX_SLL;
+    }
+
+    private void requireEthernet() {
+        if (linkType != FrameDecoder.LINKTYPE_ETHERNET) throw error("Ethernet fields need an Ethernet link");
+    }
+
+    private Node macTest(int off, long mac) {
+        return and(test(LD | W | ABS, off + 2, JEQ, (int) mac), test(LD | H | ABS, off, JEQ, (int) (mac >>> 32)));
+    }
+
+    private Test test(int load, int off, int jump, int k) {
+        return new Test(load, off, (load & 0xe0) == IND ? l3 : -1, -1, jump, k, false);
+    }
+
+    private Node field(int load, int off, int mask, int value) {
+        if (mask == 0) return TRUE;
+        return new Test(load, off, -1, mask, JEQ, value, false);
+    }
+
+    // --- Values
+
+    private int ipv4(String s) {
+        String[] parts = s.split("\\.", -1);
+        if (parts.length != 4) throw valueError("bad IPv4 address '" + s + "'");
+        int v = 0;
+        for (String p : parts) {
+            int b;
+            try {
+                b = Integer.parseInt(p);
+            } catch (NumberFormatException e) {
+                throw valueError("bad IPv4 address '" + s + "' (host names are not resolved)");
+            }
+            if (b < 0 || b > 255) throw valueError("bad IPv4 address '" + s + "'");
+            v = v << 8 | b;
+        }
+        return v;
+    }
+
+    private int[] ipv6(String s) {
+        // Literal parsing only: the character check keeps InetAddress from ever doing a lookup
+        if (!s.chars().allMatch(c -> Character.digit(c, 16) >= 0 || c == ':' || c == '.')) {
+            throw valueError("bad IPv6 address '" + s + "'");
+        }
+        byte[] b;
+        try {
+            InetAddress a = InetAddress.getByName(s);
+            if (!(a instanceof Inet6Address)) throw new UnknownHostException(s);
+            b = a.getAddress();
+        } catch (UnknownHostException e) {
+            throw valueError("bad IPv6 address '" + s + "'");
+        }
+        int[] words = new int[4];
+        for (int i = 0; i < 16; i++) words[i / 4] = words[i / 4] << 8 | (b[i] & 0xFF);
+        return words;
+    }
+
+    private long mac(String s) {
+        String[] parts = s.split("[:\\-.]", -1);
+        if (parts.length != 6) throw valueError("bad MAC address '" + s + "'");
+        long v = 0;
+        for (String p : parts) {
+            if (p.isEmpty() || p.length() > 2) throw valueError("bad MAC address '" + s + "'");
+            try {
+                v = v << 8 | Integer.parseInt(p, 16);
+            } catch (NumberFormatException e) {
+                throw valueError("bad MAC address '" + s + "'");
+            }
+        }
+        return v;
+    }
+
+    private int prefix(String s, int max) {
+        try {
+            int bits = Integer.parseInt(s);
+            if (bits >= 0 && bits <= max) return bits;
+        } catch (NumberFormatException ignored) { }
+        throw valueError("bad prefix length '/" + s + "'");
+    }
+
+    private int port(String s) {
+        Integer named = SERVICES.get(s);
+        if (named != null) return named;
+        try {
+            int p = Integer.parseInt(s);
+            if (p >= 0 && p <= 65535) return p;
+        } catch (NumberFormatException ignored) { }
+        throw valueError("bad port '" + s + "'");
+    }
+
+    // Decimal, 0x hex or leading-zero octal, as in C; up to 32 bits unsigned
+    private long number(String s) {
+        try {
+            long v;
+            if (s.startsWith("0x")) v = Long.parseLong(s.substring(2), 16);
+            else if (s.length() > 1 && s.startsWith("0")) v = Long.parseLong(s.substring(1), 8);
+            else v = Long.parseLong(s);
+            if (v >= 0 && v <= 0xFFFF_FFFFL) return v;
+        } catch (NumberFormatException ignored) { }
+        throw valueError("expected a number, got '" + s + "'");
+    }
+
+    private static boolean looksLikeValue(String w) {
+        return Character.isDigit(w.charAt(0)) || w.indexOf(':') >= 0 || w.indexOf('.') >= 0;
+    }
+
+    // --- Tokens: words ([a-z0-9_.:/\-]+, lower-cased) and operator symbols
+
+    private String word() {
+        if (token == null || !isWordChar(token.charAt(0))) throw error("expected a value");
+        String w = token;
+        valueStart = tokenStart;
+        advance();
+        return w;
+    }
+
+    private boolean accept(String t) {
+        if (t.equals(token)) {
+            advance();
+            return true;
+        }
+        return false;
+    }
+
+    private void expect(String t) {
+        if (!accept(t)) throw error("expected '" + t + "'");
+    }
+
+    // The token after the current one, without consuming anything
+    private String peek() {
+        int savedPos = pos, savedStart = tokenStart;
+        String saved = token;
+        advance();
+        String next = token;
+        pos = savedPos;
+        tokenStart = savedStart;
+        token = saved;
+        return next;
+    }
+
+    private void advance() {
+        while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) pos++;
+        tokenStart = pos;
+        if (pos >= text.length()) {
+            token = null;
+            return;
+        }
+        char c = text.charAt(pos);
+        if (isWordChar(c)) {
+            int end = pos;
+            while (end < text.length() && isWordChar(text.charAt(end))) end++;
+            token = text.substring(pos, end).toLowerCase();
+            pos = end;
+            return;
+        }
+        String two = pos + 1 < text.length() ? text.substring(pos, pos + 2) : "";
+        if (two.equals("==") || two.equals("!=") || two.equals("<=") || two.equals(">=")
+                || two.equals("&&") || two.equals("||")) {
+            token = two;
+            pos += 2;
+        } else if ("!<>=&|()[]".indexOf(c) >= 0) {
+            token = String.valueOf(c);
+            pos++;
+        } else {
+            throw error("unexpected character '" + c + "'");
+        }
+    }
+
+    private static boolean isWordChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '.' || c == ':' || c == '/' || c == '_' || c == '-' || c == '\\';
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(message + " at position " + (tokenStart + 1));
+    }
+
+    private IllegalArgumentException valueError(String message) {
+        return new IllegalArgumentException(message + " at position " + (valueStart + 1));
+    }
+
+    // --- Tree and code generation
+
+    private interface Node {
+        // Emits code that continues at label t when the node holds and at f otherwise
+        void gen(Emitter e, int t, int f);
+    }
+
+    private static final Node TRUE = (e, t, f) -> e.jumpAlways(t);
+    private static final Node FALSE = (e, t, f) -> e.jumpAlways(f);
+
+    private static Node and(Node a, Node b) {
+        if (a == FALSE || b == FALSE) return FALSE;
+        if (a == TRUE) return b;
+        if (b == TRUE) return a;
+        return (e, t, f) -> {
+            int next = e.label();
+            a.gen(e, next, f);
+            e.place(next);
+            b.gen(e, t, f);
+        };
+    }
+
+    private static Node or(Node a, Node b) {
+        if (a == TRUE || b == TRUE) return TRUE;
+        if (a == FALSE) return b;
+        if (b == FALSE) return a;
+        return (e, t, f) -> {
+            int next = e.label();
+            a.gen(e, t, next);
+            e.place(next);
+            b.gen(e, t, f);
+        };
+    }
+
+    private static Node not(Node a) {
+        if (a == TRUE) return FALSE;
+        if (a == FALSE) return TRUE;
+        if (a instanceof Test test) return test.negate();
+        return (e, t, f) -> a.gen(e, f, t);
+    }
+
+    // A load (absolute, indexed past the IPv4 header whose first byte is at msh, or the length),
+    // an optional AND and one conditional jump, its targets swapped to negate it
+    private record Test(int load, int off, int msh, int mask, int jump, int k, boolean swap) implements Node {
+        Test jump(int jump, int k, boolean swap) { return new Test(load, off, msh, mask, jump, k, swap); }
+
+        Test negate() { return new Test(load, off, msh, mask, jump, k, !swap); }
+
+        @Override public void gen(Emitter e, int t, int f) {
+            if (msh >= 0) e.emit(LDX | B | MSH, msh);
+            e.emit(load, off);
+            if (mask != -1) e.emit(ALU | AND | K, mask);
+            e.jump(JMP | jump | K, k, swap ? f : t, swap ? t : f);
+        }
+    }
+
+    // Instructions with jump targets as labels, resolved to offsets in finish()
+    private static final class Emitter {
+        private final List<int[]> insns = new ArrayList<>();   // {code, jt label, jf label, k}
+        private int[] labels = new int[16];
+        private int labelCount;
+
+        int label() {
+            if (labelCount == labels.length) labels = Arrays.copyOf(labels, labelCount * 2);
+            labels[labelCount] = -1;
+            return labelCount++;
+        }
+
+        void place(int label) { labels[label] = insns.size(); }
+
+        void emit(int code, int k) { insns.add(new int[] {code, -1, -1, k}); }
+
+        void jump(int code, int k, int t, int f) { insns.add(new int[] {code, t, f, k}); }
+
+        void jumpAlways(int target) { insns.add(new int[] {JMP | JA, target, -1, 0}); }
+
+        BpfProgram finish() {
+            int n = insns.size();
+            int[] code = new int[n], jt = new int[n], jf = new int[n], k = new int[n];
+            for (int pc = 0; pc < n; pc++) {
+                int[] in = insns.get(pc);
+                code[pc] = in[0];
+                k[pc] = in[3];
+                if ((in[0] & 0x07) != JMP) continue;
+                if (in[0] == (JMP | JA)) {
+                    k[pc] = labels[in[1]] - pc - 1;
+                } else {
+                    jt[pc] = labels[in[1]] - pc - 1;
+                    jf[pc] = labels[in[2]] - pc - 1;
+                    if (jt[pc] > 255 || jf[pc] > 255) {
+                        throw new IllegalArgumentException("Filter too long: a branch spans more than 255 instructions");
+                    }
+                }
+            }
+            return new BpfProgram(code, jt, jf, k);
+        }
+    }
+}
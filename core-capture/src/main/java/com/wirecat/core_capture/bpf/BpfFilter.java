@@ -0,0 +1,68 @@
+package com.wirecat.core_capture.bpf;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A capture filter string ("tcp port 443 and not net 10.0.0.0/8") compiled
+ * to classic BPF in Java, so the same filter that libpcap applies to a live
+ * interface can be applied to frames read from a file or held in the packet
+ * store. Link-layer offsets depend on the link type, so a filter is compiled
+ * for one.
+ * <p>
+ * Evaluation is tiered: the first packets run on the interpreter, and once a
+ * filter has seen {@link #JIT_THRESHOLD} packets it switches to a closure
+ * chain built by {@link BpfJit}, which pays off only for filters that stay in
+ * use. Safe to share between threads; the tier switch is a benign race.
+ */
+public final class BpfFilter {
+    static final int JIT_THRESHOLD = 1000;
+
+    private final String expression;
+    private final int linkType;
+    private final BpfProgram program;
+    private int calls;
+    private volatile BpfJit.Step jitted;
+
+    private BpfFilter(String expression, int linkType, BpfProgram program) {
+        this.expression = expression;
+        this.linkType = linkType;
+        this.program = program;
+    }
+
+    // Blank means "match everything". Throws IllegalArgumentException with the position of the first error.
+    public static BpfFilter compile(String expression, int linkType) {
+        String text = expression == null ? "" : expression.trim();
+        return new BpfFilter(text, linkType, BpfCompiler.compile(text, linkType));
+    }
+
+    // Wraps a raw program, e.g. one loaded with BpfProgram.of
+    public static BpfFilter of(BpfProgram program, int linkType) {
+        return new BpfFilter("", linkType, program);
+    }
+
+    // Drops every frame, for link types a filter cannot be compiled for
+    public static BpfFilter rejectAll(int linkType) {
+        int[] ret = {BpfProgram.RET | BpfProgram.K};
+        return new BpfFilter("", linkType, new BpfProgram(ret, new int[1], new int[1], new int[1]));
+    }
+
+    public String expression() { return expression; }
+    public int linkType()      { return linkType; }
+    public BpfProgram program() { return program; }
+    public boolean matchesAll() {
+        return program.length() == 1 && program.code(0) == (BpfProgram.RET | BpfProgram.K) && program.k(0) != 0;
+    }
+
+    public boolean matches(byte[] frame, int off, int len) {
+        return matches(ByteBuffer.wrap(frame), off, len);
+    }
+
+    public boolean matches(ByteBuffer frame, int off, int len) {
+        BpfJit.Step step = jitted;
+        if (step != null) return step.run(frame, off, len, 0, 0) != 0;
+        if (++calls == JIT_THRESHOLD) jitted = BpfJit.compile(program);
+        return program.run(frame, off, len) != 0;
+    }
+
+    @Override public String toString() { return expression; }
+}
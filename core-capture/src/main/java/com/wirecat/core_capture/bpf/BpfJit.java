@@ -0,0 +1,179 @@
+package com.wirecat.core_capture.bpf;
+
+import java.nio.ByteBuffer;
+
+import static com.wirecat.core_capture.bpf.BpfProgram.*;
+
+/**
+ * Second tier for hot filters: turns a validated {@link BpfProgram} into a
+ * chain of closures, one per instruction (or per load-and-branch pair), each
+ * holding its constant and its successors directly. Decoding the opcode,
+ * indexing the k/jt/jf arrays and the interpreter's dispatch switch all
+ * happen once here instead of once per instruction per packet.
+ * <p>
+ * Because jumps only go forward, the chain is built from the last
+ * instruction to the first and every successor already exists. Programs that
+ * use scratch memory, or are long enough that the call depth would matter,
+ * stay on the interpreter.
+ */
+final class BpfJit {
+    static final int MAX_INSNS = 512;
+
+    @FunctionalInterface
+    interface Step {
+        int run(ByteBuffer p, int off, int len, int a, int x);
+    }
+
+    private BpfJit() { }
+
+    // Null if the program is not eligible
+    static Step compile(BpfProgram program) {
+        int n = program.length();
+        if (program.usesScratch() || n > MAX_INSNS) return null;
+        Step[] steps = new Step[n];
+        for (int pc = n - 1; pc >= 0; pc--) {
+            Step fused = fused(program, pc, steps);
+            steps[pc] = fused != null ? fused : step(program, pc, pc + 1 < n ? steps[pc + 1] : null, steps);
+        }
+        return steps[0];
+    }
+
+    // "ld[h|b] [k]; (and #m;) jxx #v" is most of what filters compile to: one closure instead of two or three.
+    // The later instructions keep their own steps, since other jumps may land on them.
+    private static Step fused(BpfProgram program, int pc, Step[] steps) {
+        int code = program.code(pc);
+        if (code != (LD | W | ABS) && code != (LD | H | ABS) && code != (LD | B | ABS)) return null;
+        int j = pc + 1;
+        int mask = -1;
+        if (program.code(j) == (ALU | AND | K)) mask = program.k(j++);
+        int jump = program.code(j);
+        if ((jump & 0x07) != JMP || (jump & X) != 0 || (jump & 0xf0) == JA) return null;
+        final int k = program.k(pc), m = mask, v = program.k(j);
+        final int size = code == (LD | W | ABS) ? 4 : code == (LD | H | ABS) ? 2 : 1;
+        final Step t = steps[j + 1 + program.jt(j)], f = steps[j + 1 + program.jf(j)];
+        return switch (jump & 0xf0) {
+            case JEQ -> (p, off, len, a, x) -> {
+                if (outside(k, size, len)) return 0;
+                int r = load(p, off + k, size) & m;
+                return (r == v ? t : f).run(p, off, len, r, x);
+            };
+            case JGT -> (p, off, len, a, x) -> {
+                if (outside(k, size, len)) return 0;
+                int r = load(p, off + k, size) & m;
+                return (Integer.compareUnsigned(r, v) > 0 ? t : f).run(p, off, len, r, x);
+            };
+            case JGE -> (p, off, len, a, x) -> {
+                if (outside(k, size, len)) return 0;
+                int r = load(p, off + k, size) & m;
+                return (Integer.compareUnsigned(r, v) >= 0 ? t : f).run(p, off, len, r, x);
+            };
+            default -> (p, off, len, a, x) -> {   // JSET
+                if (outside(k, size, len)) return 0;
+                int r = load(p, off + k, size) & m;
+                return ((r & v) != 0 ? t : f).run(p, off, len, r, x);
+            };
+        };
+    }
+
+    private static int load(ByteBuffer p, int i, int size) {
+        return size == 2 ? half(p, i) : size == 1 ? p.get(i) & 0xFF : word(p, i);
+    }
+
+    private static Step step(BpfProgram program, int pc, Step next, Step[] steps) {
+        final int k = program.k(pc);
+        final int code = program.code(pc);
+        switch (code) {
+            case LD | W | ABS:
+                return (p, off, len, a, x) -> outside(k, 4, len) ? 0 : next.run(p, off, len, word(p, off + k), x);
+            case LD | H | ABS:
+                return (p, off, len, a, x) -> outside(k, 2, len) ? 0 : next.run(p, off, len, half(p, off + k), x);
+            case LD | B | ABS:
+                return (p, off, len, a, x) -> outside(k, 1, len) ? 0 : next.run(p, off, len, p.get(off + k) & 0xFF, x);
+            case LD | W | IND:
+                return (p, off, len, a, x) -> outside(x, k, 4, len) ? 0 : next.run(p, off, len, word(p, off + x + k), x);
+            case LD | H | IND:
+                return (p, off, len, a, x) -> outside(x, k, 2, len) ? 0 : next.run(p, off, len, half(p, off + x + k), x);
+            case LD | B | IND:
+                return (p, off, len, a, x) -> outside(x, k, 1, len) ? 0
+                        : next.run(p, off, len, p.get(off + x + k) & 0xFF, x);
+            case LD | W | LEN:
+                return (p, off, len, a, x) -> next.run(p, off, len, len, x);
+            case LD | IMM:
+                return (p, off, len, a, x) -> next.run(p, off, len, k, x);
+            case LDX | IMM:
+                return (p, off, len, a, x) -> next.run(p, off, len, a, k);
+            case LDX | W | LEN:
+                return (p, off, len, a, x) -> next.run(p, off, len, a, len);
+            case LDX | B | MSH:
+                return (p, off, len, a, x) -> outside(k, 1, len) ? 0
+                        : next.run(p, off, len, a, (p.get(off + k) & 0x0F) << 2);
+            case ALU | ADD | K:
+                return (p, off, len, a, x) -> next.run(p, off, len, a + k, x);
+            case ALU | SUB | K:
+                return (p, off, len, a, x) -> next.run(p, off, len, a - k, x);
+            case ALU | MUL | K:
+                return (p, off, len, a, x) -> next.run(p, off, len, a * k, x);
+            case ALU | DIV | K:
+                return (p, off, len, a, x) -> next.run(p, off, len, Integer.divideUnsigned(a, k), x);
+            case ALU | MOD | K:
+                return (p, off, len, a, x) -> next.run(p, off, len, Integer.remainderUnsigned(a, k), x);
+            case ALU | AND | K:
+                return (p, off, len, a, x) -> next.run(p, off, len, a & k, x);
+            case ALU | OR | K:
+                return (p, off, len, a, x) -> next.run(p, off, len, a | k, x);
+            case ALU | XOR | K:
+                return (p, off, len, a, x) -> next.run(p, off, len, a ^ k, x);
+            case ALU | LSH | K:
+                return (p, off, len, a, x) -> next.run(p, off, len, k >= 32 ? 0 : a << k, x);
+            case ALU | RSH | K:
+                return (p, off, len, a, x) -> next.run(p, off, len, k >= 32 ? 0 : a >>> k, x);
+            case ALU | ADD | X:
+                return (p, off, len, a, x) -> next.run(p, off, len, a + x, x);
+            case ALU | SUB | X:
+                return (p, off, len, a, x) -> next.run(p, off, len, a - x, x);
+            case ALU | MUL | X:
+                return (p, off, len, a, x) -> next.run(p, off, len, a * x, x);
+            case ALU | DIV | X:
+                return (p, off, len, a, x) -> x == 0 ? 0 : next.run(p, off, len, Integer.divideUnsigned(a, x), x);
+            case ALU | MOD | X:
+                return (p, off, len, a, x) -> x == 0 ? 0 : next.run(p, off, len, Integer.remainderUnsigned(a, x), x);
+            case ALU | AND | X:
+                return (p, off, len, a, x) -> next.run(p, off, len, a & x, x);
+            case ALU | OR | X:
+                return (p, off, len, a, x) -> next.run(p, off, len, a | x, x);
+            case ALU | XOR | X:
+                return (p, off, len, a, x) -> next.run(p, off, len, a ^ x, x);
+            case ALU | LSH | X:
+                return (p, off, len, a, x) -> next.run(p, off, len, Integer.compareUnsigned(x, 32) >= 0 ? 0 : a << x, x);
+            case ALU | RSH | X:
+                return (p, off, len, a, x) -> next.run(p, off, len, Integer.compareUnsigned(x, 32) >= 0 ? 0 : a >>> x, x);
+            case ALU | NEG:
+                return (p, off, len, a, x) -> next.run(p, off, len, -a, x);
+            case MISC | TAX:
+                return (p, off, len, a, x) -> next.run(p, off, len, a, a);
+            case MISC | TXA:
+                return (p, off, len, a, x) -> next.run(p, off, len, x, x);
+            case RET | K:
+                return (p, off, len, a, x) -> k;
+            case RET | A:
+                return (p, off, len, a, x) -> a;
+            case JMP | JA:
+                return steps[pc + 1 + k];
+            default:
+                break;
+        }
+        // Conditional jumps
+        Step t = steps[pc + 1 + program.jt(pc)];
+        Step f = steps[pc + 1 + program.jf(pc)];
+        return switch (code) {
+            case JMP | JEQ | K -> (p, off, len, a, x) -> (a == k ? t : f).run(p, off, len, a, x);
+            case JMP | JGT | K -> (p, off, len, a, x) -> (Integer.compareUnsigned(a, k) > 0 ? t : f).run(p, off, len, a, x);
+            case JMP | JGE | K -> (p, off, len, a, x) -> (Integer.compareUnsigned(a, k) >= 0 ? t : f).run(p, off, len, a, x);
+            case JMP | JSET | K -> (p, off, len, a, x) -> ((a & k) != 0 ? t : f).run(p, off, len, a, x);
+            case JMP | JEQ | X -> (p, off, len, a, x) -> (a == x ? t : f).run(p, off, len, a, x);
+            case JMP | JGT | X -> (p, off, len, a, x) -> (Integer.compareUnsigned(a, x) > 0 ? t : f).run(p, off, len, a, x);
+            case JMP | JGE | X -> (p, off, len, a, x) -> (Integer.compareUnsigned(a, x) >= 0 ? t : f).run(p, off, len, a, x);
+            default -> (p, off, len, a, x) -> ((a & x) != 0 ? t : f).run(p, off, len, a, x);   // JSET X
+        };
+    }
+}
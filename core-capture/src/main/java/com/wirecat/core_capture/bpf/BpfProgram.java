@@ -0,0 +1,297 @@
+package com.wirecat.core_capture.bpf;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Classic BPF program, the instruction set libpcap compiles capture filters
+ * to, run in Java over frames from a file, the packet store or a byte array.
+ * Programs are validated once on construction the way the kernel does
+ * (forward jumps only, in-range scratch slots, no division by a zero
+ * constant, ends in RET), so the interpreter needs no per-step checks beyond
+ * packet bounds. A load past the end of the frame rejects the packet, as in
+ * the kernel.
+ * <p>
+ * Immutable and thread-safe; {@link #run} returns the number of bytes to
+ * keep, 0 meaning "drop".
+ */
+public final class BpfProgram {
+    // Opcode fields, as in pcap/bpf.h
+    static final int LD = 0x00, LDX = 0x01, ST = 0x02, STX = 0x03, ALU = 0x04, JMP = 0x05, RET = 0x06, MISC = 0x07;
+    static final int W = 0x00, H = 0x08, B = 0x10;
+    static final int IMM = 0x00, ABS = 0x20, IND = 0x40, MEM = 0x60, LEN = 0x80, MSH = 0xa0;
+    static final int ADD = 0x00, SUB = 0x10, MUL = 0x20, DIV = 0x30, OR = 0x40, AND = 0x50,
+            LSH = 0x60, RSH = 0x70, NEG = 0x80, MOD = 0x90, XOR = 0xa0;
+    static final int JA = 0x00, JEQ = 0x10, JGT = 0x20, JGE = 0x30, JSET = 0x40;
+    static final int K = 0x00, X = 0x08, A = 0x10;
+    static final int TAX = 0x00, TXA = 0x80;
+
+    static final int MEMWORDS = 16;
+    static final int MAX_INSNS = 4096;
+
+    private final int[] code;
+    private final int[] jt;
+    private final int[] jf;
+    private final int[] k;
+    private final boolean usesScratch;
+
+    BpfProgram(int[] code, int[] jt, int[] jf, int[] k) {
+        this.code = code;
+        this.jt = jt;
+        this.jf = jf;
+        this.k = k;
+        this.usesScratch = validate();
+    }
+
+    // Loads raw instructions as printed by "tcpdump -dd": {code, jt, jf, k} per row
+    public static BpfProgram of(int[][] insns) {
+        int n = insns.length;
+        int[] code = new int[n], jt = new int[n], jf = new int[n], k = new int[n];
+        for (int i = 0; i < n; i++) {
+            if (insns[i].length != 4) throw new IllegalArgumentException("Instruction " + i + " needs 4 fields");
+            code[i] = insns[i][0];
+            jt[i] = insns[i][1];
+            jf[i] = insns[i][2];
+            k[i] = insns[i][3];
+        }
+        return new BpfProgram(code, jt, jf, k);
+    }
+
+    public int length() { return code.length; }
+
+    // Scratch memory (ST/STX, LD/LDX MEM) keeps a program on the interpreter
+    boolean usesScratch() { return usesScratch; }
+
+    int code(int pc) { return code[pc]; }
+    int jt(int pc)   { return jt[pc]; }
+    int jf(int pc)   { return jf[pc]; }
+    int k(int pc)    { return k[pc]; }
+
+    private boolean validate() {
+        int n = code.length;
+        if (n == 0 || n > MAX_INSNS) throw new IllegalArgumentException("BPF program length " + n + " out of range");
+        boolean scratch = false;
+        for (int pc = 0; pc < n; pc++) {
+            int c = code[pc];
+            int kk = k[pc];
+            if (jt[pc] < 0 || jt[pc] > 255 || jf[pc] < 0 || jf[pc] > 255) throw invalid(pc, "jump offset");
+            switch (c & 0x07) {
+                case LD, LDX -> {
+                    int mode = c & 0xe0;
+                    if (mode == MEM) {
+                        if (Integer.compareUnsigned(kk, MEMWORDS) >= 0) throw invalid(pc, "scratch slot");
+                        scratch = true;
+                    }
+                    if (!validLoad(c)) throw invalid(pc, "opcode");
+                }
+                case ST, STX -> {
+                    if (c != ST && c != STX) throw invalid(pc, "opcode");
+                    if (Integer.compareUnsigned(kk, MEMWORDS) >= 0) throw invalid(pc, "scratch slot");
+                    scratch = true;
+                }
+                case ALU -> {
+                    int op = c & 0xf0;
+                    if (op > XOR || (c & ~0xf8) != ALU || op == NEG && c != (ALU | NEG)) throw invalid(pc, "opcode");
+                    if ((op == DIV || op == MOD) && (c & X) == 0 && kk == 0) throw invalid(pc, "division by zero");
+                }
+                case JMP -> {
+                    int op = c & 0xf0;
+                    if (op > JSET || (c & ~0xf8) != JMP) throw invalid(pc, "opcode");
+                    if (op == JA) {
+                        if (Integer.compareUnsigned(kk, n - pc - 1) >= 0) throw invalid(pc, "jump target");
+                    } else if (pc + 1 + jt[pc] >= n || pc + 1 + jf[pc] >= n) {
+                        throw invalid(pc, "jump target");
+                    }
+                }
+                case RET -> {
+                    if (c != (RET | K) && c != (RET | A)) throw invalid(pc, "opcode");
+                }
+                default -> {
+                    if (c != (MISC | TAX) && c != (MISC | TXA)) throw invalid(pc, "opcode");
+                }
+            }
+        }
+        if ((code[n - 1] & 0x07) != RET) throw new IllegalArgumentException("BPF program does not end in RET");
+        return scratch;
+    }
+
+    private static boolean validLoad(int c) {
+        return switch (c) {
+            case LD | W | ABS, LD | H | ABS, LD | B | ABS, LD | W | IND, LD | H | IND, LD | B | IND,
+                    LD | W | LEN, LD | IMM, LD | MEM,
+                    LDX | IMM, LDX | MEM, LDX | W | LEN, LDX | B | MSH -> true;
+            default -> false;
+        };
+    }
+
+    private static IllegalArgumentException invalid(int pc, String what) {
+        return new IllegalArgumentException("Invalid BPF " + what + " at instruction " + pc);
+    }
+
+    public boolean matches(byte[] frame, int off, int len) {
+        return run(ByteBuffer.wrap(frame), off, len) != 0;
+    }
+
+    public boolean matches(ByteBuffer frame, int off, int len) {
+        return run(frame, off, len) != 0;
+    }
+
+    // Interprets the program over frame[off, off + len); returns the snap length, 0 to drop
+    public int run(ByteBuffer p, int off, int len) {
+        int a = 0, x = 0;
+        int[] mem = usesScratch ? new int[MEMWORDS] : null;
+        final int[] code = this.code, k = this.k;
+        int pc = 0;
+        while (true) {
+            int kk = k[pc];
+            switch (code[pc]) {
+                case LD | W | ABS -> {
+                    if (outside(kk, 4, len)) return 0;
+                    a = word(p, off + kk);
+                }
+                case LD | H | ABS -> {
+                    if (outside(kk, 2, len)) return 0;
+                    a = half(p, off + kk);
+                }
+                case LD | B | ABS -> {
+                    if (outside(kk, 1, len)) return 0;
+                    a = p.get(off + kk) & 0xFF;
+                }
+                case LD | W | IND -> {
+                    int i = x + kk;
+                    if (outside(x, kk, 4, len)) return 0;
+                    a = word(p, off + i);
+                }
+                case LD | H | IND -> {
+                    int i = x + kk;
+                    if (outside(x, kk, 2, len)) return 0;
+                    a = half(p, off + i);
+                }
+                case LD | B | IND -> {
+                    int i = x + kk;
+                    if (outside(x, kk, 1, len)) return 0;
+                    a = p.get(off + i) & 0xFF;
+                }
+                case LD | W | LEN -> a = len;
+                case LD | IMM -> a = kk;
+                case LD | MEM -> a = mem[kk];
+                case LDX | IMM -> x = kk;
+                case LDX | MEM -> x = mem[kk];
+                case LDX | W | LEN -> x = len;
+                case LDX | B | MSH -> {
+                    if (outside(kk, 1, len)) return 0;
+                    x = (p.get(off + kk) & 0x0F) << 2;
+                }
+                case ST -> mem[kk] = a;
+                case STX -> mem[kk] = x;
+                case ALU | ADD | K -> a += kk;
+                case ALU | SUB | K -> a -= kk;
+                case ALU | MUL | K -> a *= kk;
+                case ALU | DIV | K -> a = Integer.divideUnsigned(a, kk);
+                case ALU | MOD | K -> a = Integer.remainderUnsigned(a, kk);
+                case ALU | AND | K -> a &= kk;
+                case ALU | OR | K -> a |= kk;
+                case ALU | XOR | K -> a ^= kk;
+                case ALU | LSH | K -> a = kk >= 32 ? 0 : a << kk;
+                case ALU | RSH | K -> a = kk >= 32 ? 0 : a >>> kk;
+                case ALU | ADD | X -> a += x;
+                case ALU | SUB | X -> a -= x;
+                case ALU | MUL | X -> a *= x;
+                case ALU | DIV | X -> {
+                    if (x == 0) return 0;
+                    a = Integer.divideUnsigned(a, x);
+                }
+                case ALU | MOD | X -> {
+                    if (x == 0) return 0;
+                    a = Integer.remainderUnsigned(a, x);
+                }
+                case ALU | AND | X -> a &= x;
+                case ALU | OR | X -> a |= x;
+                case ALU | XOR | X -> a ^= x;
+                case ALU | LSH | X -> a = Integer.compareUnsigned(x, 32) >= 0 ? 0 : a << x;
+                case ALU | RSH | X -> a = Integer.compareUnsigned(x, 32) >= 0 ? 0 : a >>> x;
+                case ALU | NEG -> a = -a;
+                case JMP | JA -> pc += kk;
+                case JMP | JEQ | K -> pc += a == kk ? jt[pc] : jf[pc];
+                case JMP | JGT | K -> pc += Integer.compareUnsigned(a, kk) > 0 ? jt[pc] : jf[pc];
+                case JMP | JGE | K -> pc += Integer.compareUnsigned(a, kk) >= 0 ? jt[pc] : jf[pc];
+                case JMP | JSET | K -> pc += (a & kk) != 0 ? jt[pc] : jf[pc];
+                case JMP | JEQ | X -> pc += a == x ? jt[pc] : jf[pc];
+                case JMP | JGT | X -> pc += Integer.compareUnsigned(a, x) > 0 ? jt[pc] : jf[pc];
+                case JMP | JGE | X -> pc += Integer.compareUnsigned(a, x) >= 0 ? jt[pc] : jf[pc];
+                case JMP | JSET | X -> pc += (a & x) != 0 ? jt[pc] : jf[pc];
+                case RET | K -> { return kk; }
+                case RET | A -> { return a; }
+                case MISC | TAX -> x = a;
+                default -> a = x;   // MISC | TXA; anything else was rejected by validate()
+            }
+            pc++;
+        }
+    }
+
+    // True if [k, k + size) is not inside the frame; k is unsigned
+    static boolean outside(int k, int size, int len) {
+        return Integer.toUnsignedLong(k) + size > len;
+    }
+
+    static boolean outside(int x, int k, int size, int len) {
+        return Integer.toUnsignedLong(x) + Integer.toUnsignedLong(k) + size > len;
+    }
+
+    // Network byte order regardless of the buffer's own order
+    static int word(ByteBuffer p, int i) {
+        int v = p.getInt(i);
+        return p.order() == ByteOrder.BIG_ENDIAN ? v : Integer.reverseBytes(v);
+    }
+
+    static int half(ByteBuffer p, int i) {
+        short v = p.getShort(i);
+        return (p.order() == ByteOrder.BIG_ENDIAN ? v : Short.reverseBytes(v)) & 0xFFFF;
+    }
+
+    // tcpdump -d style listing, e.g. "(002) jeq      #0x800           jt 3    jf 5"
+    @Override public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int pc = 0; pc < code.length; pc++) {
+            sb.append(String.format("(%03d) %s%n", pc, disassemble(pc)));
+        }
+        return sb.toString();
+    }
+
+    private String disassemble(int pc) {
+        int c = code[pc], kk = k[pc];
+        String target = (c & 0x07) == JMP && (c & 0xf0) != JA
+                ? String.format("jt %-4d jf %d", pc + 1 + jt[pc], pc + 1 + jf[pc]) : "";
+        String op, arg;
+        switch (c) {
+            case LD | W | ABS -> { op = "ld"; arg = "[" + kk + "]"; }
+            case LD | H | ABS -> { op = "ldh"; arg = "[" + kk + "]"; }
+            case LD | B | ABS -> { op = "ldb"; arg = "[" + kk + "]"; }
+            case LD | W | IND -> { op = "ld"; arg = "[x + " + kk + "]"; }
+            case LD | H | IND -> { op = "ldh"; arg = "[x + " + kk + "]"; }
+            case LD | B | IND -> { op = "ldb"; arg = "[x + " + kk + "]"; }
+            case LD | W | LEN -> { op = "ld"; arg = "#pktlen"; }
+            case LD | IMM -> { op = "ld"; arg = "#0x" + Integer.toHexString(kk); }
+            case LD | MEM -> { op = "ld"; arg = "M[" + kk + "]"; }
+            case LDX | IMM -> { op = "ldx"; arg = "#0x" + Integer.toHexString(kk); }
+            case LDX | MEM -> { op = "ldx"; arg = "M[" + kk + "]"; }
+            case LDX | W | LEN -> { op = "ldx"; arg = "#pktlen"; }
+            case LDX | B | MSH -> { op = "ldxb"; arg = "4*([" + kk + "]&0xf)"; }
+            case ST -> { op = "st"; arg = "M[" + kk + "]"; }
+            case STX -> { op = "stx"; arg = "M[" + kk + "]"; }
+            case RET | K -> { op = "ret"; arg = "#" + kk; }
+            case RET | A -> { op = "ret"; arg = "a"; }
+            case MISC | TAX -> { op = "tax"; arg = ""; }
+            case MISC | TXA -> { op = "txa"; arg = ""; }
+            case JMP | JA -> { op = "ja"; arg = String.valueOf(pc + 1 + kk); }
+            default -> {
+                String[] names = (c & 0x07) == JMP
+                        ? new String[] {"ja", "jeq", "jgt", "jge", "jset"}
+                        : new String[] {"add", "sub", "mul", "div", "or", "and", "lsh", "rsh", "neg", "mod", "xor"};
+                op = names[(c & 0xf0) >>> 4];
+                arg = c == (ALU | NEG) ? "" : (c & X) != 0 ? "x" : "#0x" + Integer.toHexString(kk);
+            }
+        }
+        return String.format("%-8s %-16s %s", op, arg, target).stripTrailing();
+    }
+}
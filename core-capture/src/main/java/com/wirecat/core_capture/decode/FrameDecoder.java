@@ -0,0 +1,540 @@
+package com.wirecat.core_capture.decode;
+
+import com.wirecat.core_capture.detect.Signatures;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Flyweight decoder that reads Ethernet/VLAN/ARP/IPv4/IPv6/TCP/UDP/ICMP header
+ * fields straight out of a captured frame by offset. One instance is reused
+ * for every frame on the capture thread: decoding only records offsets and a
+ * handful of primitives, and strings are built by the format helpers only when
+ * somebody asks for them.
+ */
+public final class FrameDecoder {
+    // pcap link types
+    public static final int LINKTYPE_NULL      = 0;
+    public static final int LINKTYPE_ETHERNET  = 1;
+    public static final int LINKTYPE_RAW       = 101;
+    public static final int LINKTYPE_LINUX_SLL = 113;
+
+    // EtherTypes
+    public static final int ETHERTYPE_IPV4 = 0x0800;
+    public static final int ETHERTYPE_ARP  = 0x0806;
+    public static final int ETHERTYPE_VLAN = 0x8100;
+    public static final int ETHERTYPE_IPV6 = 0x86DD;
+    public static final int ETHERTYPE_QINQ = 0x88A8;
+
+    // IP protocol numbers
+    public static final int IPPROTO_ICMP   = 1;
+    public static final int IPPROTO_TCP    = 6;
+    public static final int IPPROTO_UDP    = 17;
+    public static final int IPPROTO_ICMPV6 = 58;
+
+    // TCP flag bits
+    public static final int TCP_FIN = 0x01;
+    public static final int TCP_SYN = 0x02;
+    public static final int TCP_RST = 0x04;
+    public static final int TCP_PSH = 0x08;
+    public static final int TCP_ACK = 0x10;
+    public static final int TCP_URG = 0x20;
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final byte[] GET = {'G', 'E', 'T'};
+    private static final byte[] POST = {'P', 'O', 'S', 'T'};
+
+    // Backing store: exactly one of array/buffer is set
+    private byte[] array;
+    private ByteBuffer buffer;
+    private int base;
+    private int length;
+    private int linkType;
+    private long tags;
+    private boolean tagsMatched;
+
+    private boolean ethernet;
+    private int etherType;
+    private int vlanId;
+    private int l3Offset;
+    private int ipVersion;
+    private int ipProtocol;
+    private int ttl;
+    private int srcAddrOffset;
+    private int dstAddrOffset;
+    private int addrLength;
+    private int l4Offset;
+    private int srcPort;
+    private int dstPort;
+    private int tcpFlags;
+    private long tcpSeq;
+    private long tcpAck;
+    private int tcpWindow;
+    private int icmpType;
+    private int icmpCode;
+    private int payloadOffset;
+    private int payloadLength;
+    private int protocolId;
+
+    public boolean decode(byte[] frame) {
+        return decode(frame, 0, frame.length, LINKTYPE_ETHERNET);
+    }
+
+    public boolean decode(byte[] frame, int offset, int len, int linkType) {
+        this.array = frame;
+        this.buffer = null;
+        return parse(offset, len, linkType);
+    }
+
+    public boolean decode(ByteBuffer frame, int offset, int len, int linkType) {
+        if (frame.hasArray()) {
+            this.array = frame.array();
+            this.buffer = null;
+            offset += frame.arrayOffset();
+        } else {
+            this.array = null;
+            this.buffer = frame;
+        }
+        return parse(offset, len, linkType);
+    }
+
+    // Returns a detached decoder with the same field offsets over a copy of the frame,
+    // for callers that keep the decoded view after the capture buffer is reused.
+    public FrameDecoder detach(byte[] frameCopy) {
+        FrameDecoder d = new FrameDecoder();
+        d.array = frameCopy;
+        d.base = 0;
+        d.length = length;
+        d.linkType = linkType;
+        d.ethernet = ethernet;
+        d.etherType = etherType;
+        d.vlanId = vlanId;
+        d.l3Offset = l3Offset;
+        d.ipVersion = ipVersion;
+        d.ipProtocol = ipProtocol;
+        d.ttl = ttl;
+        d.srcAddrOffset = srcAddrOffset;
+        d.dstAddrOffset = dstAddrOffset;
+        d.addrLength = addrLength;
+        d.l4Offset = l4Offset;
+        d.srcPort = srcPort;
+        d.dstPort = dstPort;
+        d.tcpFlags = tcpFlags;
+        d.tcpSeq = tcpSeq;
+        d.tcpAck = tcpAck;
+        d.tcpWindow = tcpWindow;
+        d.icmpType = icmpType;
+        d.icmpCode = icmpCode;
+        d.payloadOffset = payloadOffset;
+        d.payloadLength = payloadLength;
+        d.protocolId = protocolId;
+        d.tags = tags;
+        d.tagsMatched = tagsMatched;
+        return d;
+    }
+
+    private boolean parse(int offset, int len, int linkType) {
+        this.base = offset;
+        this.length = len;
+        this.linkType = linkType;
+        ethernet = false;
+        etherType = -1;
+        vlanId = -1;
+        l3Offset = -1;
+        ipVersion = 0;
+        ipProtocol = -1;
+        ttl = 0;
+        srcAddrOffset = dstAddrOffset = -1;
+        addrLength = 0;
+        l4Offset = -1;
+        srcPort = dstPort = -1;
+        tcpFlags = 0;
+        tcpSeq = tcpAck = 0;
+        tcpWindow = 0;
+        icmpType = icmpCode = -1;
+        payloadOffset = len;
+        payloadLength = 0;
+        protocolId = Protocols.NA;
+        tagsMatched = false;
+
+        int end = len;
+        int off;
+        switch (linkType) {
+            case LINKTYPE_ETHERNET -> {
+                if (len < 14) return false;
+                ethernet = true;
+                etherType = u16(12);
+                off = 14;
+                while ((etherType == ETHERTYPE_VLAN || etherType == ETHERTYPE_QINQ || etherType == 0x9100)
+                        && off + 4 <= len) {
+                    if (vlanId < 0) vlanId = u16(off) & 0x0FFF;
+                    etherType = u16(off + 2);
+                    off += 4;
+                }
+            }
+            case LINKTYPE_LINUX_SLL -> {
+                if (len < 16) return false;
+                etherType = u16(14);
+                off = 16;
+            }
+            case LINKTYPE_NULL -> {
+                if (len < 4) return false;
+                // Address family is in host byte order; accept either
+                int family = u8(0) != 0 ? u8(0) : u8(3);
+                etherType = family == 2 ? ETHERTYPE_IPV4
+                        : (family == 24 || family == 28 || family == 30) ? ETHERTYPE_IPV6 : -1;
+                off = 4;
+            }
+            default -> {
+                if (len < 1) return false;
+                int v = u8(0) >>> 4;
+                etherType = v == 4 ? ETHERTYPE_IPV4 : v == 6 ? ETHERTYPE_IPV6 : -1;
+                off = 0;
+            }
+        }
+
+        switch (etherType) {
+            case ETHERTYPE_ARP -> parseArp(off);
+            case ETHERTYPE_IPV4 -> parseIpV4(off, end);
+            case ETHERTYPE_IPV6 -> parseIpV6(off, end);
+            default -> { }
+        }
+        return true;
+    }
+
+    private void parseArp(int off) {
+        if (off + 8 > length) return;
+        int hlen = u8(off + 4);
+        int plen = u8(off + 5);
+        if (off + 8 + 2 * hlen + 2 * plen > length) return;
+        l3Offset = off;
+        addrLength = plen;
+        srcAddrOffset = off + 8 + hlen;
+        dstAddrOffset = off + 8 + 2 * hlen + plen;
+        protocolId = Protocols.ARP;
+    }
+
+    private void parseIpV4(int off, int end) {
+        if (off + 20 > end || (u8(off) >>> 4) != 4) return;
+        int ihl = (u8(off) & 0x0F) * 4;
+        if (ihl < 20 || off + ihl > end) return;
+        l3Offset = off;
+        ipVersion = 4;
+        ipProtocol = u8(off + 9);
+        ttl = u8(off + 8);
+        addrLength = 4;
+        srcAddrOffset = off + 12;
+        dstAddrOffset = off + 16;
+        // Trailing Ethernet padding is not part of the datagram
+        int totalLength = u16(off + 2);
+        if (totalLength >= ihl && off + totalLength < end) end = off + totalLength;
+        boolean firstFragment = (u16(off + 6) & 0x1FFF) == 0;
+        protocolId = Protocols.OTHER_IP + ipProtocol;
+        if (firstFragment) parseTransport(off + ihl, end, false);
+    }
+
+    private void parseIpV6(int off, int end) {
+        if (off + 40 > end || (u8(off) >>> 4) != 6) return;
+        l3Offset = off;
+        ipVersion = 6;
+        ttl = u8(off + 7);
+        addrLength = 16;
+        srcAddrOffset = off + 8;
+        dstAddrOffset = off + 24;
+        int payloadLen = u16(off + 4);
+        if (payloadLen > 0 && off + 40 + payloadLen < end) end = off + 40 + payloadLen;
+
+        int next = u8(off + 6);
+        int pos = off + 40;
+        // Walk extension headers until a transport header shows up
+        for (int guard = 0; guard < 8 && pos + 8 <= end; guard++) {
+            if (next == 0 || next == 43 || next == 60) {
+                int n = u8(pos);
+                pos += (u8(pos + 1) + 1) * 8;
+                next = n;
+            } else if (next == 44) {
+                int n = u8(pos);
+                if ((u16(pos + 2) >>> 3) != 0) {
+                    ipProtocol = n;
+                    protocolId = Protocols.OTHER_IP + n;
+                    return;
+                }
+                pos += 8;
+                next = n;
+            } else if (next == 51) {
+                int n = u8(pos);
+                pos += (u8(pos + 1) + 2) * 4;
+                next = n;
+            } else {
+                break;
+            }
+        }
+        ipProtocol = next;
+        protocolId = Protocols.OTHER_IP + next;
+        if (pos <= end) parseTransport(pos, end, true);
+    }
+
+    private void parseTransport(int off, int end, boolean v6) {
+        switch (ipProtocol) {
+            case IPPROTO_TCP -> {
+                if (off + 20 > end) return;
+                int dataOffset = (u8(off + 12) >>> 4) * 4;
+                if (dataOffset < 20 || off + dataOffset > end) return;
+                l4Offset = off;
+                srcPort = u16(off);
+                dstPort = u16(off + 2);
+                tcpSeq = u32(off + 4);
+                tcpAck = u32(off + 8);
+                tcpFlags = ((u8(off + 12) & 0x01) << 8) | u8(off + 13);
+                tcpWindow = u16(off + 14);
+                payloadOffset = off + dataOffset;
+                payloadLength = end - payloadOffset;
+                if (srcPort == 80 || dstPort == 80 || payloadStartsWith(GET) || payloadStartsWith(POST)) {
+                    protocolId = Protocols.HTTP;
+                } else if (srcPort == 443 || dstPort == 443) {
+                    protocolId = Protocols.HTTPS;
+                } else {
+                    protocolId = v6 ? Protocols.TCPV6 : Protocols.TCP;
+                }
+            }
+            case IPPROTO_UDP -> {
+                if (off + 8 > end) return;
+                l4Offset = off;
+                srcPort = u16(off);
+                dstPort = u16(off + 2);
+                payloadOffset = off + 8;
+                payloadLength = end - payloadOffset;
+                protocolId = v6 ? Protocols.UDPV6 : Protocols.UDP;
+            }
+            case IPPROTO_ICMP, IPPROTO_ICMPV6 -> {
+                if (off + 4 > end) return;
+                if ((ipProtocol == IPPROTO_ICMPV6) != v6) return;
+                l4Offset = off;
+                icmpType = u8(off);
+                icmpCode = u8(off + 1);
+                payloadOffset = off + 4;
+                payloadLength = end - payloadOffset;
+                protocolId = v6 ? Protocols.ICMPV6 : Protocols.ICMPV4;
+            }
+            default -> {
+                payloadOffset = off;
+                payloadLength = end - off;
+            }
+        }
+    }
+
+    // --- Raw accessors, relative to the start of the frame
+
+    public int u8(int off) {
+        return array != null ? array[base + off] & 0xFF : buffer.get(base + off) & 0xFF;
+    }
+
+    public int u16(int off) {
+        return (u8(off) << 8) | u8(off + 1);
+    }
+
+    public long u32(int off) {
+        return ((long) u16(off) << 16) | u16(off + 2);
+    }
+
+    public boolean payloadStartsWith(byte[] prefix) {
+        if (payloadLength < prefix.length) return false;
+        for (int i = 0; i < prefix.length; i++) {
+            if (u8(payloadOffset + i) != (prefix[i] & 0xFF)) return false;
+        }
+        return true;
+    }
+
+    // Signature tags of the payload (see Signatures), matched on first use and kept
+    // until the next decode; detach() carries them over
+    public long payloadTags() {
+        if (!tagsMatched) {
+            tags = Signatures.DEFAULT.match(this);
+            tagsMatched = true;
+        }
+        return tags;
+    }
+
+    // Backing array for bulk scans; frame offsets are relative to arrayOffset()
+    public boolean hasArray()  { return array != null; }
+    public byte[] array()      { return array; }
+    public int arrayOffset()   { return base; }
+
+    // Copies len payload bytes starting at payload position 'from' into dst
+    public void copyPayload(int from, byte[] dst, int dstOff, int len) {
+        int start = payloadOffset + from;
+        if (array != null) {
+            System.arraycopy(array, base + start, dst, dstOff, len);
+        } else {
+            buffer.get(base + start, dst, dstOff, len);
+        }
+    }
+
+    // --- Decoded fields
+
+    public int length()         { return length; }
+    public int linkType()       { return linkType; }
+    public boolean isEthernet() { return ethernet; }
+    public int etherType()      { return etherType; }
+    public int vlanId()         { return vlanId; }
+    public int l3Offset()       { return l3Offset; }
+    public int ipVersion()      { return ipVersion; }
+    public int ipProtocol()     { return ipProtocol; }
+    public int ttl()            { return ttl; }
+    public int addrLength()     { return addrLength; }
+    public int srcAddrOffset()  { return srcAddrOffset; }
+    public int dstAddrOffset()  { return dstAddrOffset; }
+    public int l4Offset()       { return l4Offset; }
+    public int srcPort()        { return srcPort; }
+    public int dstPort()        { return dstPort; }
+    public int tcpFlags()       { return tcpFlags; }
+    public long tcpSeq()        { return tcpSeq; }
+    public long tcpAck()        { return tcpAck; }
+    public int tcpWindow()      { return tcpWindow; }
+    public int icmpType()       { return icmpType; }
+    public int icmpCode()       { return icmpCode; }
+    public int payloadOffset()  { return payloadOffset; }
+    public int payloadLength()  { return payloadLength; }
+    public int protocolId()     { return protocolId; }
+
+    public boolean isTcp()      { return ipProtocol == IPPROTO_TCP && l4Offset >= 0; }
+    public boolean isUdp()      { return ipProtocol == IPPROTO_UDP && l4Offset >= 0; }
+    public boolean isArp()      { return protocolId == Protocols.ARP; }
+    public boolean hasAddresses() { return srcAddrOffset >= 0; }
+    public boolean hasFlag(int flag) { return (tcpFlags & flag) != 0; }
+
+    // IPv4 (or ARP-over-IPv4) addresses as unsigned ints; 0 when not applicable
+    public int srcIpV4() { return addrLength == 4 ? (int) u32(srcAddrOffset) : 0; }
+    public int dstIpV4() { return addrLength == 4 ? (int) u32(dstAddrOffset) : 0; }
+
+    // Address at the given offset as a 128-bit value (hi, lo); 4-byte addresses in
+    // their IPv4-mapped IPv6 form, so both families share one key space
+    public long addrHi(int addrOff) {
+        if (addrLength == 4) return 0;
+        long v = 0;
+        for (int i = 0; i < Math.min(addrLength, 8); i++) v = v << 8 | u8(addrOff + i);
+        return v;
+    }
+
+    public long addrLo(int addrOff) {
+        if (addrLength == 4) return 0xFFFF_0000_0000L | u32(addrOff);
+        long v = 0;
+        for (int i = 8; i < Math.min(addrLength, 16); i++) v = v << 8 | u8(addrOff + i);
+        return v;
+    }
+
+    // MAC addresses as 48-bit values; -1 when the frame has no Ethernet header
+    public long srcMac() { return ethernet ? macAt(6) : -1; }
+    public long dstMac() { return ethernet ? macAt(0) : -1; }
+
+    private long macAt(int off) {
+        return (long) u16(off) << 32 | u32(off + 2);
+    }
+
+    public static String formatMac(long mac) {
+        if (mac < 0) return "—";
+        char[] out = new char[17];
+        for (int i = 0, p = 0; i < 6; i++) {
+            int b = (int) (mac >>> (40 - 8 * i)) & 0xFF;
+            if (i > 0) out[p++] = ':';
+            out[p++] = HEX[b >>> 4];
+            out[p++] = HEX[b & 0x0F];
+        }
+        return new String(out);
+    }
+
+    // Direction-independent hash of the 5-tuple (A→B and B→A collide on purpose),
+    // used to shard flow state across workers; 0 for frames without addresses
+    public int flowHash() {
+        if (srcAddrOffset < 0) return 0;
+        int a = endpointHash(srcAddrOffset, srcPort);
+        int b = endpointHash(dstAddrOffset, dstPort);
+        return mix((a + b) * 31 + (a ^ b) + ipProtocol);
+    }
+
+    private int endpointHash(int addrOff, int port) {
+        int h = port;
+        for (int i = 0; i + 4 <= addrLength; i += 4) h = h * 0x01000193 ^ (int) u32(addrOff + i);
+        return mix(h);
+    }
+
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        return h ^ (h >>> 16);
+    }
+
+    // --- String materializers (allocate; call only for display)
+
+    public String srcMacString() { return formatMac(srcMac()); }
+    public String dstMacString() { return formatMac(dstMac()); }
+    public String srcAddressString() { return formatAddress(srcAddrOffset); }
+    public String dstAddressString() { return formatAddress(dstAddrOffset); }
+
+    // First line of the TCP payload, used for the HTTP request/status summary
+    public String payloadFirstLine() {
+        if (payloadLength <= 0) return null;
+        int n = 0;
+        while (n < payloadLength && n < 512) {
+            int b = u8(payloadOffset + n);
+            if (b == '\r' || b == '\n') break;
+            n++;
+        }
+        byte[] line = new byte[n];
+        for (int i = 0; i < n; i++) line[i] = (byte) u8(payloadOffset + i);
+        return new String(line, StandardCharsets.UTF_8).trim();
+    }
+
+    private String formatAddress(int off) {
+        if (off < 0) return "—";
+        if (addrLength == 4) {
+            return u8(off) + "." + u8(off + 1) + "." + u8(off + 2) + "." + u8(off + 3);
+        }
+        if (addrLength == 16) return formatIpV6(off);
+        return "—";
+    }
+
+    private String formatIpV6(int off) {
+        int[] groups = new int[8];
+        for (int i = 0; i < 8; i++) groups[i] = u16(off + i * 2);
+        return formatIpV6(groups);
+    }
+
+    // An address in the 128-bit form of addrHi/addrLo; IPv4-mapped values print as IPv4
+    public static String formatAddress(long hi, long lo) {
+        if (hi == 0 && (lo >>> 32) == 0xFFFF) {
+            return (lo >>> 24 & 0xFF) + "." + (lo >>> 16 & 0xFF) + "." + (lo >>> 8 & 0xFF) + "." + (lo & 0xFF);
+        }
+        int[] groups = new int[8];
+        for (int i = 0; i < 4; i++) {
+            groups[i] = (int) (hi >>> (48 - 16 * i)) & 0xFFFF;
+            groups[4 + i] = (int) (lo >>> (48 - 16 * i)) & 0xFFFF;
+        }
+        return formatIpV6(groups);
+    }
+
+    // RFC 5952 text form: lowercase, longest run of zero groups collapsed to "::"
+    private static String formatIpV6(int[] groups) {
+        int bestStart = -1, bestLen = 0;
+        for (int i = 0; i < 8; ) {
+            if (groups[i] != 0) { i++; continue; }
+            int j = i;
+            while (j < 8 && groups[j] == 0) j++;
+            if (j - i > bestLen && j - i > 1) { bestStart = i; bestLen = j - i; }
+            i = j;
+        }
+        StringBuilder sb = new StringBuilder(39);
+        for (int i = 0; i < 8; i++) {
+            if (i == bestStart) {
+                sb.append("::");
+                i += bestLen - 1;
+                continue;
+            }
+            if (sb.length() > 0 && sb.charAt(sb.length() - 1) != ':') sb.append(':');
+            sb.append(Integer.toHexString(groups[i]));
+        }
+        return sb.toString();
+    }
+}
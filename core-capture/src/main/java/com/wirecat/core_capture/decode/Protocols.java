@@ -0,0 +1,66 @@
+package com.wirecat.core_capture.decode;
+
+/**
+ * Small integer ids for the protocol labels shown in the UI, so decoded
+ * packets can carry a protocol without holding a String.
+ */
+public final class Protocols {
+    public static final int NA     = 0;
+    public static final int ARP    = 1;
+    public static final int TCP    = 2;
+    public static final int UDP    = 3;
+    public static final int ICMPV4 = 4;
+    public static final int TCPV6  = 5;
+    public static final int UDPV6  = 6;
+    public static final int ICMPV6 = 7;
+    public static final int HTTP   = 8;
+    public static final int HTTPS  = 9;
+
+    // Any other IP protocol is reported as OTHER_IP + its protocol number
+    public static final int OTHER_IP = 16;
+    public static final int COUNT = OTHER_IP + 256;
+
+    private static final String[] NAMES = new String[COUNT];
+
+    static {
+        NAMES[NA] = "N/A";
+        NAMES[ARP] = "ARP";
+        NAMES[TCP] = "TCP";
+        NAMES[UDP] = "UDP";
+        NAMES[ICMPV4] = "ICMPv4";
+        NAMES[TCPV6] = "TCPv6";
+        NAMES[UDPV6] = "UDPv6";
+        NAMES[ICMPV6] = "ICMPv6";
+        NAMES[HTTP] = "HTTP";
+        NAMES[HTTPS] = "HTTPS";
+        for (int p = 0; p < 256; p++) NAMES[OTHER_IP + p] = "IP-" + p;
+        NAMES[OTHER_IP]       = "HOPOPT";
+        NAMES[OTHER_IP + 2]   = "IGMP";
+        NAMES[OTHER_IP + 4]   = "IPv4";
+        NAMES[OTHER_IP + 8]   = "EGP";
+        NAMES[OTHER_IP + 41]  = "IPv6";
+        NAMES[OTHER_IP + 47]  = "GRE";
+        NAMES[OTHER_IP + 50]  = "ESP";
+        NAMES[OTHER_IP + 51]  = "AH";
+        NAMES[OTHER_IP + 89]  = "OSPF";
+        NAMES[OTHER_IP + 103] = "PIM";
+        NAMES[OTHER_IP + 112] = "VRRP";
+        NAMES[OTHER_IP + 115] = "L2TP";
+        NAMES[OTHER_IP + 132] = "SCTP";
+        for (int i = 0; i < COUNT; i++) if (NAMES[i] == null) NAMES[i] = NAMES[NA];
+    }
+
+    private Protocols() {}
+
+    public static String name(int id) {
+        return (id >= 0 && id < COUNT) ? NAMES[id] : NAMES[NA];
+    }
+
+    // Reverse lookup used by filters; returns -1 when the label is unknown
+    public static int idOf(String name) {
+        for (int i = 0; i < COUNT; i++) {
+            if (NAMES[i].equalsIgnoreCase(name)) return i;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,109 @@
+package com.wirecat.core_capture.detect;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Byte-level Aho-Corasick automaton, compiled to a dense DFA: every state has
+ * a transition for every byte class, so matching is one table read per input
+ * byte with no failure-link walks, whatever the number of patterns. Bytes
+ * that occur in no pattern share class 0, which keeps the table at
+ * states x (distinct pattern bytes + 1) ints, and ASCII letters are folded
+ * to lower case on the way in (patterns are given folded).
+ * <p>
+ * Transitions hold the target state already multiplied by the class count,
+ * so the inner loop is {@code s = next[s + byteClass[b]]}, with the sign bit
+ * set when the target state ends a pattern ({@link #ACCEPT}). Immutable once
+ * built and safe to share between threads; the scan state lives with the caller.
+ */
+final class AhoCorasick {
+    static final int ACCEPT = Integer.MIN_VALUE;
+
+    final int[] byteClass = new int[256];
+    final int classes;
+    final int[] next;        // (state * classes + class) -> next state * classes, | ACCEPT if it has outputs
+    final int[] outStart;    // per state, into outIds; outStart[state + 1] ends it
+    final int[] outIds;      // patterns ending at a state, own and inherited via failure links
+
+    AhoCorasick(List<byte[]> patterns) {
+        int n = 0;
+        for (byte[] p : patterns) {
+            for (byte b : p) {
+                if (byteClass[b & 0xFF] == 0) byteClass[b & 0xFF] = ++n;
+            }
+        }
+        for (int b = 'A'; b <= 'Z'; b++) byteClass[b] = byteClass[b + ('a' - 'A')];
+        classes = n + 1;
+
+        // Trie; -1 marks a missing edge until the BFS below fills it in
+        int maxStates = 1;
+        for (byte[] p : patterns) maxStates += p.length;
+        int[] trie = new int[maxStates * classes];
+        Arrays.fill(trie, -1);
+        int[][] own = new int[maxStates][];
+        int states = 1;
+        for (int id = 0; id < patterns.size(); id++) {
+            int s = 0;
+            for (byte b : patterns.get(id)) {
+                int edge = s * classes + byteClass[b & 0xFF];
+                if (trie[edge] < 0) trie[edge] = states++;
+                s = trie[edge];
+            }
+            own[s] = append(own[s], id);
+        }
+
+        // Breadth first, so a state's failure target is complete before the state itself
+        int[] fail = new int[states];
+        int[][] out = new int[states][];
+        out[0] = own[0] == null ? new int[0] : own[0];
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int c = 0; c < classes; c++) {
+            int t = trie[c];
+            if (t < 0) {
+                trie[c] = 0;
+            } else {
+                fail[t] = 0;
+                queue.add(t);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int s = queue.poll();
+            int[] inherited = out[fail[s]];
+            out[s] = own[s] == null ? inherited : concat(own[s], inherited);
+            for (int c = 0; c < classes; c++) {
+                int edge = s * classes + c;
+                int t = trie[edge];
+                int viaFail = trie[fail[s] * classes + c];
+                if (t < 0) {
+                    trie[edge] = viaFail;
+                } else {
+                    fail[t] = viaFail;
+                    queue.add(t);
+                }
+            }
+        }
+
+        next = new int[states * classes];
+        for (int i = 0; i < next.length; i++) next[i] = trie[i] * classes | (out[trie[i]].length > 0 ? ACCEPT : 0);
+        outStart = new int[states + 1];
+        for (int s = 0; s < states; s++) outStart[s + 1] = outStart[s] + out[s].length;
+        outIds = new int[outStart[states]];
+        for (int s = 0; s < states; s++) System.arraycopy(out[s], 0, outIds, outStart[s], out[s].length);
+    }
+
+    int states() { return outStart.length - 1; }
+
+    private static int[] append(int[] a, int v) {
+        if (a == null) return new int[] {v};
+        int[] r = Arrays.copyOf(a, a.length + 1);
+        r[a.length] = v;
+        return r;
+    }
+
+    private static int[] concat(int[] a, int[] b) {
+        int[] r = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, r, a.length, b.length);
+        return r;
+    }
+}
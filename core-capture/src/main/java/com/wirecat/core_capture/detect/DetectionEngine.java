@@ -0,0 +1,172 @@
+package com.wirecat.core_capture.detect;
+
+import com.wirecat.core_capture.model.PacketModel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Runs a list of {@link Detector}s over every decoded packet, on the
+ * detection stage's thread, and raises the packet's risk to the highest
+ * finding. Each rule's cost is sampled so the expensive ones can be told
+ * apart from the cheap ones. One packet in {@link #SAMPLE_EVERY} is timed
+ * into a moving average. The first {@link #WARMUP_SAMPLES} samples are
+ * skipped, so class loading and the interpreter do not count. Each sample is
+ * capped at four times the average, so a thread switch or GC pause in the
+ * middle of a call does not pass for cost.
+ * <p>
+ * Under load, when a live capture's ring is more than {@link #SHED_ABOVE}
+ * full, the costliest enabled rule is shed, one at a time, until the stage
+ * keeps up; once the ring drains below {@link #RESTORE_BELOW} the cheapest
+ * shed rule comes back. Rules cheaper than {@link #MIN_SHED_NANOS} are never
+ * shed, since dropping them would not help. Users can also turn rules off
+ * outright; both flags are read on every packet and may be set from any thread.
+ */
+public class DetectionEngine {
+    public static final int SAMPLE_EVERY = 64;
+    public static final int WARMUP_SAMPLES = 16;
+    public static final int LOAD_CHECK_EVERY = 4096;
+    public static final double SHED_ABOVE = 0.5;
+    public static final double RESTORE_BELOW = 0.1;
+    public static final long MIN_SHED_NANOS = 100;
+
+    /** A detector with its switches and cost counters. */
+    public static final class Rule {
+        private final Detector detector;
+        private volatile boolean enabled = true;
+        private volatile boolean shed;
+        private volatile long packets;
+        private volatile long findings;
+        private long samples;   // including warm-up
+        private volatile double nanosPerPacket;
+
+        Rule(Detector detector) { this.detector = detector; }
+
+        public String name()            { return detector.name(); }
+        public boolean isEnabled()      { return enabled; }
+        public boolean isShed()         { return shed; }
+        public long packets()           { return packets; }
+        public long findings()          { return findings; }
+        // Recent cost per packet, 0 before the first sample
+        public double nanosPerPacket()  { return nanosPerPacket; }
+
+        private boolean active() { return enabled && !shed; }
+    }
+
+    private final List<Rule> rules = new ArrayList<>();
+    private volatile DoubleSupplier load;
+    private volatile Consumer<String> onShed;
+    private volatile boolean resetRequested;
+    private long seen;
+
+    public DetectionEngine(List<? extends Detector> detectors) {
+        for (Detector d : detectors) rules.add(new Rule(d));
+    }
+
+    // Cheap rules first
+    public static DetectionEngine withDefaults() {
+        return new DetectionEngine(List.of(
+                new TcpFlagsDetector(),
+                new UnusualPortDetector(),
+                new ScanDetector(),
+                new SynFloodDetector(),
+                new DnsTunnelDetector(),
+                new PayloadSignatureDetector()));
+    }
+
+    // Called from the detection stage only
+    public void onPacket(PacketModel pm) {
+        if (resetRequested) {
+            resetRequested = false;
+            for (Rule r : rules) r.detector.reset();
+        }
+        boolean sample = seen % SAMPLE_EVERY == 0;
+        if (++seen % LOAD_CHECK_EVERY == 0) checkLoad();
+        for (Rule r : rules) {
+            if (!r.active()) continue;
+            Finding f;
+            if (sample) {
+                long t0 = System.nanoTime();
+                f = r.detector.inspect(pm);
+                long nanos = System.nanoTime() - t0;
+                long n = ++r.samples - WARMUP_SAMPLES;
+                if (n == 1) r.nanosPerPacket = nanos;
+                else if (n > 1) r.nanosPerPacket += (Math.min(nanos, 4 * r.nanosPerPacket) - r.nanosPerPacket) / 32;
+            } else {
+                f = r.detector.inspect(pm);
+            }
+            r.packets++;
+            if (f.risk() > 0) {
+                r.findings++;
+                pm.raiseRisk(f.risk(), f.reason());
+            }
+        }
+    }
+
+    private void checkLoad() {
+        DoubleSupplier l = load;
+        if (l == null) return;
+        double occupancy = l.getAsDouble();
+        if (occupancy > SHED_ABOVE) {
+            Rule costliest = null;
+            for (Rule r : rules) {
+                if (r.active() && r.nanosPerPacket >= MIN_SHED_NANOS
+                        && (costliest == null || r.nanosPerPacket > costliest.nanosPerPacket)) costliest = r;
+            }
+            if (costliest != null) {
+                costliest.shed = true;
+                notify(String.format("⚠ Detection falling behind (ring %.0f%% full): paused \"%s\" (%.0f ns/packet)",
+                        occupancy * 100, costliest.name(), costliest.nanosPerPacket));
+            }
+        } else if (occupancy < RESTORE_BELOW) {
+            Rule cheapest = null;
+            for (Rule r : rules) {
+                if (r.enabled && r.shed && (cheapest == null || r.nanosPerPacket < cheapest.nanosPerPacket)) cheapest = r;
+            }
+            if (cheapest != null) {
+                cheapest.shed = false;
+                notify("✔ Detection caught up: resumed \"" + cheapest.name() + "\"");
+            }
+        }
+    }
+
+    private void notify(String message) {
+        Consumer<String> c = onShed;
+        if (c != null) c.accept(message);
+    }
+
+    // Ring occupancy in [0, 1] for live capture; null turns shedding off (files are read at stage speed)
+    public void setLoad(DoubleSupplier load) {
+        this.load = load;
+        if (load == null) for (Rule r : rules) r.shed = false;
+    }
+
+    public void setOnShed(Consumer<String> onShed) { this.onShed = onShed; }
+
+    public List<Rule> rules() { return List.copyOf(rules); }
+
+    public void setEnabled(String name, boolean enabled) {
+        for (Rule r : rules) if (r.name().equals(name)) r.enabled = enabled;
+    }
+
+    // e.g. "Detection: Payload signatures 412 ns (paused) · DNS tunneling 35 ns"
+    public String summary() {
+        StringBuilder sb = new StringBuilder();
+        for (Rule r : rules) {
+            if (r.samples <= WARMUP_SAMPLES && r.active()) continue;
+            sb.append(sb.length() == 0 ? "Detection: " : " · ");
+            sb.append(String.format("%s %.0f ns", r.name(), r.nanosPerPacket));
+            if (r.findings > 0) sb.append(String.format(", %,d flagged", r.findings));
+            if (!r.enabled) sb.append(" (off)");
+            else if (r.shed) sb.append(" (paused)");
+        }
+        return sb.toString();
+    }
+
+    // Safe while a capture is running: detectors are reset before the next packet
+    public void clear() {
+        resetRequested = true;
+    }
+}
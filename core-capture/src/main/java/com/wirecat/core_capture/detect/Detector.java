@@ -0,0 +1,20 @@
+package com.wirecat.core_capture.detect;
+
+import com.wirecat.core_capture.model.PacketModel;
+
+/**
+ * A risk rule run by the {@link DetectionEngine} on every decoded packet.
+ * All calls come from the detection stage's thread, so a detector keeps
+ * whatever state it needs (per source, per flow, per domain) without locking,
+ * but that state must stay bounded: captures run for days.
+ */
+public interface Detector {
+    // Short name for settings and the cost summary
+    String name();
+
+    // Finding.NONE when the rule has nothing to say about this packet
+    Finding inspect(PacketModel pm);
+
+    // Drops all state, e.g. when the packet list is cleared
+    void reset();
+}
@@ -0,0 +1,148 @@
+package com.wirecat.core_capture.detect;
+
+import com.wirecat.core_capture.decode.FrameDecoder;
+import com.wirecat.core_capture.model.PacketModel;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * DNS tunneling heuristics on queries to port 53. Tunnels (iodine, dnscat2,
+ * malware exfiltration) encode data in the query name, which shows as:
+ * <ul>
+ *   <li>long labels or names, near the 63 and 253 byte limits;</li>
+ *   <li>random-looking subdomains, measured as Shannon entropy per character;</li>
+ *   <li>many distinct subdomains of one domain within {@link #WINDOW_SECONDS}
+ *       seconds, counted with a {@link WindowedHyperLogLog} per domain;</li>
+ *   <li>TXT or NULL queries, which carry the most data back.</li>
+ * </ul>
+ * The first three each add 3 to the risk and the query type 1; a query needs
+ * at least one of the first three to be flagged. The domain is taken to be
+ * the last two labels of the name. At most {@link #MAX_DOMAINS} domains are
+ * tracked; when that fills up the table starts over.
+ */
+public class DnsTunnelDetector implements Detector {
+    public static final int WINDOW_SECONDS = 60;
+    public static final int EPOCH_SECONDS = 10;
+    public static final int LONG_LABEL = 40;
+    public static final int LONG_NAME = 100;
+    public static final int RANDOM_MIN_LENGTH = 24;
+    public static final double RANDOM_BITS_PER_CHAR = 3.8;
+    public static final int DISTINCT_SUBDOMAINS = 100;
+    public static final int MAX_DOMAINS = 4096;
+
+    private static final int LONG = 1, RANDOM = 2, MANY = 4, DATA_TYPE = 8;
+    private static final int TYPE_NULL = 10, TYPE_TXT = 16;
+
+    private final Map<String, Domain> domains = new HashMap<>();
+    private final int[] labelStart = new int[128];
+    private final int[] counts = new int[256];
+
+    @Override
+    public String name() { return "DNS tunneling"; }
+
+    @Override
+    public Finding inspect(PacketModel pm) {
+        FrameDecoder f = pm.getFrame();
+        if (f == null || !f.isUdp() || f.dstPort() != 53 || f.payloadLength() < 17) return Finding.NONE;
+        byte[] data = pm.getRawData();
+        int dns = f.payloadOffset();
+        int end = Math.min(data.length, dns + f.payloadLength());
+        if (end - dns < 17 || (data[dns + 2] & 0x80) != 0 || ((data[dns + 4] & 0xFF) << 8 | data[dns + 5] & 0xFF) == 0) return Finding.NONE;
+
+        // Question name: length-prefixed labels; queries do not use compression
+        int labels = 0, longest = 0, i = dns + 12;
+        while (i < end && data[i] != 0) {
+            int len = data[i] & 0xFF;
+            if (len > 63 || i + 1 + len >= end || labels == labelStart.length) return Finding.NONE;
+            labelStart[labels++] = i;
+            longest = Math.max(longest, len);
+            i += 1 + len;
+        }
+        if (i + 4 >= end || labels < 3) return Finding.NONE;   // a bare domain carries no payload
+        int nameLength = i - dns - 12;
+        int qtype = (data[i + 1] & 0xFF) << 8 | data[i + 2] & 0xFF;
+
+        int baseStart = labelStart[labels - 2];
+        int signals = 0;
+        if (longest >= LONG_LABEL || nameLength >= LONG_NAME) signals |= LONG;
+        if (baseStart - (dns + 12) >= RANDOM_MIN_LENGTH && entropy(data, dns + 12, baseStart) >= RANDOM_BITS_PER_CHAR) {
+            signals |= RANDOM;
+        }
+        long epoch = Math.floorDiv(Math.floorDiv(pm.getTimestampMicros(), 1_000_000L), EPOCH_SECONDS);
+        Domain d = domain(data, baseStart, i);
+        d.subdomains.add(WindowedHyperLogLog.hash(subdomainHash(data, dns + 12, baseStart), baseStart - dns), epoch);
+        if (d.subdomains.estimate(epoch) >= DISTINCT_SUBDOMAINS) signals |= MANY;
+        if (signals == 0) return Finding.NONE;
+        if (qtype == TYPE_TXT || qtype == TYPE_NULL) signals |= DATA_TYPE;
+        return d.finding(signals);
+    }
+
+    // Bits per character over the label bytes, length prefixes excluded
+    private double entropy(byte[] data, int from, int to) {
+        int n = 0;
+        for (int i = from; i < to; i += 1 + (data[i] & 0xFF)) {
+            for (int j = i + 1, e = i + 1 + (data[i] & 0xFF); j < e; j++) {
+                counts[Character.toLowerCase(data[j] & 0xFF) & 0xFF]++;
+                n++;
+            }
+        }
+        double h = 0;
+        for (int c = 0; c < counts.length; c++) {
+            if (counts[c] == 0) continue;
+            double p = (double) counts[c] / n;
+            h -= p * Math.log(p);
+            counts[c] = 0;
+        }
+        return h / Math.log(2);
+    }
+
+    private static long subdomainHash(byte[] data, int from, int to) {
+        long h = 0xCBF29CE484222325L;
+        for (int i = from; i < to; i++) h = (h ^ Character.toLowerCase(data[i] & 0xFF)) * 0x100000001B3L;
+        return h;
+    }
+
+    private Domain domain(byte[] data, int from, int to) {
+        StringBuilder sb = new StringBuilder(to - from);
+        for (int i = from; i < to; i += 1 + (data[i] & 0xFF)) {
+            if (sb.length() > 0) sb.append('.');
+            for (int j = i + 1, e = i + 1 + (data[i] & 0xFF); j < e; j++) sb.append((char) Character.toLowerCase(data[j] & 0xFF));
+        }
+        String name = sb.toString();
+        Domain d = domains.get(name);
+        if (d == null) {
+            if (domains.size() == MAX_DOMAINS) domains.clear();
+            domains.put(name, d = new Domain(name));
+        }
+        return d;
+    }
+
+    @Override
+    public void reset() {
+        domains.clear();
+    }
+
+    private static final class Domain {
+        final String name;
+        final WindowedHyperLogLog subdomains = new WindowedHyperLogLog(6, WINDOW_SECONDS / EPOCH_SECONDS);
+        final Finding[] bySignals = new Finding[16];
+
+        Domain(String name) { this.name = name; }
+
+        Finding finding(int signals) {
+            Finding f = bySignals[signals];
+            if (f == null) {
+                StringBuilder why = new StringBuilder();
+                if ((signals & LONG) != 0) why.append(", long names");
+                if ((signals & RANDOM) != 0) why.append(", random-looking subdomains");
+                if ((signals & MANY) != 0) why.append(", ").append(DISTINCT_SUBDOMAINS).append("+ subdomains in ")
+                        .append(WINDOW_SECONDS).append(" s");
+                if ((signals & DATA_TYPE) != 0) why.append(", TXT/NULL queries");
+                double risk = 3 * Integer.bitCount(signals & (LONG | RANDOM | MANY)) + ((signals & DATA_TYPE) != 0 ? 1 : 0);
+                f = bySignals[signals] = new Finding(risk, "Possible DNS tunnel via " + name + ": " + why.substring(2));
+            }
+            return f;
+        }
+    }
+}
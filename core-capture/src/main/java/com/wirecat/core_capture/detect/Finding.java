@@ -0,0 +1,11 @@
+package com.wirecat.core_capture.detect;
+
+/**
+ * What a {@link Detector} concluded about one packet: a risk on the 0–10
+ * scale the table and inspector show, and a short reason a person can check.
+ * Detectors hand out the same instance while their conclusion is unchanged,
+ * which keeps the number of distinct reason strings small.
+ */
+public record Finding(double risk, String reason) {
+    public static final Finding NONE = new Finding(0, null);
+}
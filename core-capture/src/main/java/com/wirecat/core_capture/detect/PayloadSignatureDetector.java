@@ -0,0 +1,56 @@
+package com.wirecat.core_capture.detect;
+
+import com.wirecat.core_capture.decode.FrameDecoder;
+import com.wirecat.core_capture.detect.SignatureSet.Tag;
+import com.wirecat.core_capture.model.PacketModel;
+
+import java.util.List;
+
+/**
+ * Scores packets whose payload carries a risky tag: Log4Shell lookups, path
+ * traversal, shell and SQL injection, cleartext credentials and so on (see
+ * {@link Signatures}). The payload itself is matched once, in the decode
+ * workers, by the set's Aho-Corasick automaton; this rule only reads the
+ * resulting tag mask, so it costs a few nanoseconds however many signatures
+ * there are. Signatures split across segments are missed, since matching
+ * looks at packets, not streams.
+ */
+public class PayloadSignatureDetector implements Detector {
+    private final Finding[] byBit = new Finding[64];
+    private final long risky;
+
+    public PayloadSignatureDetector() {
+        this(Signatures.DEFAULT);
+    }
+
+    public PayloadSignatureDetector(SignatureSet signatures) {
+        List<Tag> tags = signatures.tags();
+        long mask = 0;
+        for (int bit = 0; bit < tags.size(); bit++) {
+            Tag t = tags.get(bit);
+            if (t.risk() <= 0) continue;
+            byBit[bit] = new Finding(t.risk(), "Payload signature: " + t.description() + " (" + t.name() + ")");
+            mask |= 1L << bit;
+        }
+        risky = mask;
+    }
+
+    @Override
+    public String name() { return "Payload signatures"; }
+
+    @Override
+    public Finding inspect(PacketModel pm) {
+        FrameDecoder f = pm.getFrame();
+        if (f == null) return Finding.NONE;
+        long hits = f.payloadTags() & risky;
+        Finding best = Finding.NONE;
+        for (; hits != 0; hits &= hits - 1) {
+            Finding candidate = byBit[Long.numberOfTrailingZeros(hits)];
+            if (candidate.risk() > best.risk()) best = candidate;
+        }
+        return best;
+    }
+
+    @Override
+    public void reset() { }
+}
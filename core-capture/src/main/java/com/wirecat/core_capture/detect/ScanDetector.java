@@ -0,0 +1,180 @@
+package com.wirecat.core_capture.detect;
+
+import com.wirecat.core_capture.decode.FrameDecoder;
+import com.wirecat.core_capture.model.PacketModel;
+
+import java.util.Arrays;
+
+/**
+ * Flags port scans and host sweeps. For every source it keeps two
+ * {@link WindowedHyperLogLog}s over the last {@link #WINDOW_SECONDS} seconds
+ * of capture time: distinct destination ports and distinct destination hosts
+ * it tried to open. Only packets that start something count (TCP SYN without
+ * ACK, ICMP echo requests, UDP towards a lower port), so servers answering
+ * many clients do not look like scanners.
+ * <p>
+ * Once either count passes its threshold every packet from that source gets
+ * a risk score, 5 at the threshold and 10 at twice the threshold, with a
+ * reason naming the count, so a score can be traced back to what was seen.
+ * State is about 1 KB per active source, for at most {@link #MAX_SOURCES}
+ * sources. When the table fills, sources idle for the whole window go first,
+ * then those that tried the fewest distinct targets.
+ */
+public class ScanDetector implements Detector {
+    public static final int WINDOW_SECONDS = 60;
+    public static final int EPOCH_SECONDS = 10;
+    public static final int PORT_SCAN_PORTS = 100;
+    public static final int HOST_SWEEP_HOSTS = 100;
+    public static final int MAX_SOURCES = 1 << 14;
+    private static final int PRECISION = 6;
+    private static final int SLOTS = WINDOW_SECONDS / EPOCH_SECONDS;
+
+    private long[] keys = new long[2 * 2 * MAX_SOURCES];
+    private Source[] sources = new Source[2 * MAX_SOURCES];
+    private final int mask = sources.length - 1;
+    private int size;
+
+    @Override
+    public String name() { return "Port scans and host sweeps"; }
+
+    @Override
+    public Finding inspect(PacketModel pm) {
+        FrameDecoder f = pm.getFrame();
+        if (f == null || f.ipVersion() == 0 || !f.hasAddresses()) return Finding.NONE;
+        long epoch = Math.floorDiv(Math.floorDiv(pm.getTimestampMicros(), 1_000_000L), EPOCH_SECONDS);
+        long hi = f.addrHi(f.srcAddrOffset()), lo = f.addrLo(f.srcAddrOffset());
+
+        Source s = initiates(f) ? source(hi, lo, epoch) : find(hi, lo);
+        if (s == null) return Finding.NONE;
+        s.lastEpoch = Math.max(s.lastEpoch, epoch);
+        if (initiates(f)) {
+            long dstHi = f.addrHi(f.dstAddrOffset()), dstLo = f.addrLo(f.dstAddrOffset());
+            boolean grew = s.hosts.add(WindowedHyperLogLog.hash(dstHi, dstLo), epoch);
+            int port = f.isTcp() || f.isUdp() ? f.dstPort() : -1;
+            if (port >= 0) grew |= s.ports.add(WindowedHyperLogLog.hash(f.ipProtocol(), port), epoch);
+            if (grew) s.scoredEpoch = Long.MIN_VALUE;
+        }
+        if (s.scoredEpoch != epoch) score(s, epoch, f);
+        return s.finding;
+    }
+
+    private static boolean initiates(FrameDecoder f) {
+        if (f.isTcp()) return f.hasFlag(FrameDecoder.TCP_SYN) && !f.hasFlag(FrameDecoder.TCP_ACK);
+        if (f.isUdp()) return f.dstPort() < f.srcPort();
+        if (f.ipProtocol() == FrameDecoder.IPPROTO_ICMP) return f.icmpType() == 8;
+        if (f.ipProtocol() == FrameDecoder.IPPROTO_ICMPV6) return f.icmpType() == 128;
+        return false;
+    }
+
+    // Re-estimates when a sketch grew or the window moved on; reasons are rounded so few distinct strings exist
+    private void score(Source s, long epoch, FrameDecoder f) {
+        s.scoredEpoch = epoch;
+        double ports = s.ports.estimate(epoch) / PORT_SCAN_PORTS;
+        double hosts = s.hosts.estimate(epoch) / HOST_SWEEP_HOSTS;
+        double r = Math.max(ports, hosts);
+        if (r < 1) {
+            s.finding = Finding.NONE;
+            return;
+        }
+        double risk = Math.round(Math.min(10, 5 + 5 * Math.log(r) / Math.log(2)) * 10) / 10.0;
+        long count = Math.round(r * (ports >= hosts ? PORT_SCAN_PORTS : HOST_SWEEP_HOSTS) / 10.0) * 10;
+        String reason = ports >= hosts
+                ? String.format("Port scan: ~%d destination ports from %s in %d s (threshold %d)",
+                        count, f.srcAddressString(), WINDOW_SECONDS, PORT_SCAN_PORTS)
+                : String.format("Host sweep: ~%d destination hosts from %s in %d s (threshold %d)",
+                        count, f.srcAddressString(), WINDOW_SECONDS, HOST_SWEEP_HOSTS);
+        if (s.finding.reason() == null || !s.finding.reason().equals(reason) || s.finding.risk() != risk) {
+            s.finding = new Finding(risk, reason);
+        }
+    }
+
+    @Override
+    public void reset() {
+        Arrays.fill(sources, null);
+        size = 0;
+    }
+
+    public int size() { return size; }
+
+    // ---- Source table: open addressing on the 128-bit address ----
+
+    private Source find(long hi, long lo) {
+        int i = index(hi, lo);
+        while (sources[i] != null) {
+            if (keys[2 * i] == hi && keys[2 * i + 1] == lo) return sources[i];
+            i = (i + 1) & mask;
+        }
+        return null;
+    }
+
+    private Source source(long hi, long lo, long epoch) {
+        Source s = find(hi, lo);
+        if (s != null) return s;
+        if (size == MAX_SOURCES) evict(epoch);
+        int i = index(hi, lo);
+        while (sources[i] != null) i = (i + 1) & mask;
+        keys[2 * i] = hi;
+        keys[2 * i + 1] = lo;
+        sources[i] = s = new Source();
+        size++;
+        return s;
+    }
+
+    // Keeps sources seen inside the window. If that is still most of the table, keeps the
+    // half that tried the most distinct targets, the more recently active first on a tie,
+    // so a burst of new one-packet sources cannot push a scanner out.
+    private void evict(long epoch) {
+        long[] oldKeys = keys;
+        Source[] old = sources;
+        long cutoff = epoch - SLOTS;
+        int live = 0;
+        for (Source s : old) if (s != null && s.lastEpoch > cutoff) live++;
+        long[] rank = null;
+        long least = Long.MIN_VALUE;
+        int tiesLeft = 0;
+        if (live > MAX_SOURCES * 3 / 4) {
+            int keep = MAX_SOURCES / 2;
+            rank = new long[old.length];
+            long[] sorted = new long[live];
+            int n = 0;
+            for (int j = 0; j < old.length; j++) {
+                Source s = old[j];
+                if (s == null || s.lastEpoch <= cutoff) continue;
+                long targets = Math.round(Math.max(s.ports.estimate(epoch), s.hosts.estimate(epoch)));
+                rank[j] = Math.min(targets, 1 << 20) << 8 | Math.min(s.lastEpoch - cutoff, 255);
+                sorted[n++] = rank[j];
+            }
+            Arrays.sort(sorted);
+            least = sorted[live - keep];
+            for (int k = live - keep; k < live && sorted[k] == least; k++) tiesLeft++;
+        }
+        keys = new long[oldKeys.length];
+        sources = new Source[old.length];
+        size = 0;
+        for (int j = 0; j < old.length; j++) {
+            if (old[j] == null || old[j].lastEpoch <= cutoff) continue;
+            if (rank != null) {
+                if (rank[j] < least) continue;
+                if (rank[j] == least && tiesLeft-- <= 0) continue;
+            }
+            int i = index(oldKeys[2 * j], oldKeys[2 * j + 1]);
+            while (sources[i] != null) i = (i + 1) & mask;
+            keys[2 * i] = oldKeys[2 * j];
+            keys[2 * i + 1] = oldKeys[2 * j + 1];
+            sources[i] = old[j];
+            size++;
+        }
+    }
+
+    private int index(long hi, long lo) {
+        return (int) WindowedHyperLogLog.hash(hi, lo) & mask;
+    }
+
+    private static final class Source {
+        final WindowedHyperLogLog ports = new WindowedHyperLogLog(PRECISION, SLOTS);
+        final WindowedHyperLogLog hosts = new WindowedHyperLogLog(PRECISION, SLOTS);
+        long lastEpoch = Long.MIN_VALUE;
+        long scoredEpoch = Long.MIN_VALUE;
+        Finding finding = Finding.NONE;
+    }
+}
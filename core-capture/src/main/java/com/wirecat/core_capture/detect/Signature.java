@@ -0,0 +1,97 @@
+package com.wirecat.core_capture.detect;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * One byte pattern that sets a tag on the packets whose payload contains it.
+ * Built from text ({@link #text}) or hex with {@code ??} wildcards
+ * ({@link #hex}), optionally pinned to a payload offset ({@link #at}) and
+ * matched ignoring ASCII case ({@link #ignoreCase}). Immutable.
+ */
+public final class Signature {
+    final String tag;
+    final byte[] bytes;
+    final boolean[] wildcard;
+    final int offset;          // required start in the payload, -1 for anywhere
+    final boolean ignoreCase;
+
+    private Signature(String tag, byte[] bytes, boolean[] wildcard, int offset, boolean ignoreCase) {
+        this.tag = tag;
+        this.bytes = bytes;
+        this.wildcard = wildcard;
+        this.offset = offset;
+        this.ignoreCase = ignoreCase;
+    }
+
+    // Literal text, one byte per character (ISO-8859-1)
+    public static Signature text(String tag, String text) {
+        if (text.isEmpty()) throw new IllegalArgumentException("empty signature for tag " + tag);
+        byte[] b = text.getBytes(StandardCharsets.ISO_8859_1);
+        return new Signature(tag, b, new boolean[b.length], -1, false);
+    }
+
+    // Space-separated hex bytes, "??" for any byte, e.g. "16 03 ?? ?? ?? 01"
+    public static Signature hex(String tag, String hex) {
+        String[] parts = hex.trim().split("\\s+");
+        byte[] b = new byte[parts.length];
+        boolean[] any = new boolean[parts.length];
+        boolean literal = false;
+        for (int i = 0; i < parts.length; i++) {
+            if (parts[i].equals("??")) {
+                any[i] = true;
+                continue;
+            }
+            try {
+                b[i] = (byte) Integer.parseInt(parts[i], 16);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("bad hex byte '" + parts[i] + "' in signature for tag " + tag);
+            }
+            literal = true;
+        }
+        if (!literal) throw new IllegalArgumentException("signature for tag " + tag + " has no literal bytes");
+        return new Signature(tag, b, any, -1, false);
+    }
+
+    // Only matches when the pattern starts exactly 'offset' bytes into the payload
+    public Signature at(int offset) {
+        return new Signature(tag, bytes, wildcard, offset, ignoreCase);
+    }
+
+    public Signature ignoreCase() {
+        return new Signature(tag, bytes, wildcard, offset, true);
+    }
+
+    public String tag() { return tag; }
+
+    // Longest run without wildcards, as [start, end); the automaton looks for it and the rest is verified
+    int[] anchor() {
+        int bestStart = 0, bestLength = 0;
+        for (int i = 0; i < bytes.length; ) {
+            if (wildcard[i]) {
+                i++;
+                continue;
+            }
+            int j = i;
+            while (j < bytes.length && !wildcard[j]) j++;
+            if (j - i > bestLength) {
+                bestStart = i;
+                bestLength = j - i;
+            }
+            i = j;
+        }
+        return new int[] {bestStart, bestStart + bestLength};
+    }
+
+    // The anchor folded to lower case, as the automaton sees input
+    byte[] foldedAnchor() {
+        int[] a = anchor();
+        byte[] r = Arrays.copyOfRange(bytes, a[0], a[1]);
+        for (int i = 0; i < r.length; i++) r[i] = (byte) fold(r[i] & 0xFF);
+        return r;
+    }
+
+    static int fold(int b) {
+        return b >= 'A' && b <= 'Z' ? b + ('a' - 'A') : b;
+    }
+}
@@ -0,0 +1,147 @@
+package com.wirecat.core_capture.detect;
+
+import com.wirecat.core_capture.decode.FrameDecoder;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A set of {@link Signature}s compiled once into an {@link AhoCorasick}
+ * automaton, matched against raw payload bytes in a single pass with no
+ * decoding to strings. Each signature names a {@link Tag}; a packet's tags
+ * are a 64-bit mask, so at most 64 tags, while any number of signatures
+ * (thousands of IOC strings, say) may share one.
+ * <p>
+ * The automaton indexes each signature's longest literal run; a hit there is
+ * then checked against the whole pattern, its wildcards, its case rule and
+ * its offset, which only costs anything on the rare bytes that hit.
+ * Signatures pinned to an offset (protocol headers, mostly) stay out of the
+ * automaton and are compared in place, once per payload.
+ * Immutable and thread-safe, so the decode workers share one instance.
+ */
+public final class SignatureSet {
+    /** A packet label; 'risk' above 0 makes the payload signature rule score it. */
+    public record Tag(String name, double risk, String description) {}
+
+    private final List<Tag> tags;
+    private final Map<String, Integer> bits = new HashMap<>();
+    private final AhoCorasick automaton;
+    private final Signature[] signatures;   // floating, indexed by automaton pattern id
+    private final int[] anchorStart;
+    private final int[] anchorLength;
+    private final long[] tagBit;
+    private final Signature[] pinned;
+    private final long[] pinnedBit;
+
+    public SignatureSet(List<Tag> tags, List<Signature> signatures) {
+        if (tags.size() > 64) throw new IllegalArgumentException("at most 64 tags, got " + tags.size());
+        this.tags = List.copyOf(tags);
+        for (int i = 0; i < tags.size(); i++) {
+            if (bits.put(tags.get(i).name(), i) != null) {
+                throw new IllegalArgumentException("duplicate tag " + tags.get(i).name());
+            }
+        }
+        List<Signature> floating = new ArrayList<>(), atOffset = new ArrayList<>();
+        for (Signature s : signatures) {
+            if (!bits.containsKey(s.tag)) throw new IllegalArgumentException("signature for unknown tag " + s.tag);
+            (s.offset >= 0 ? atOffset : floating).add(s);
+        }
+        this.pinned = atOffset.toArray(new Signature[0]);
+        this.pinnedBit = new long[pinned.length];
+        for (int i = 0; i < pinned.length; i++) pinnedBit[i] = 1L << bits.get(pinned[i].tag);
+
+        this.signatures = floating.toArray(new Signature[0]);
+        this.anchorStart = new int[this.signatures.length];
+        this.anchorLength = new int[this.signatures.length];
+        this.tagBit = new long[this.signatures.length];
+        List<byte[]> anchors = new ArrayList<>(this.signatures.length);
+        for (int i = 0; i < this.signatures.length; i++) {
+            Signature s = this.signatures[i];
+            tagBit[i] = 1L << bits.get(s.tag);
+            int[] a = s.anchor();
+            anchorStart[i] = a[0];
+            anchorLength[i] = a[1] - a[0];
+            anchors.add(s.foldedAnchor());
+        }
+        this.automaton = new AhoCorasick(anchors);
+    }
+
+    // Tags of the frame's payload; 0 when it has none
+    public long match(FrameDecoder f) {
+        int len = f.payloadLength();
+        if (len <= 0) return 0;
+        if (f.hasArray()) {
+            int from = f.arrayOffset() + f.payloadOffset();
+            return match(f.array(), from, Math.min(f.array().length, from + len));
+        }
+        byte[] copy = new byte[len];   // direct buffers only, e.g. an off-heap store
+        f.copyPayload(0, copy, 0, len);
+        return match(copy, 0, len);
+    }
+
+    // Tags found in data[from, to)
+    public long match(byte[] data, int from, int to) {
+        final int[] next = automaton.next, byteClass = automaton.byteClass;
+        final int[] outStart = automaton.outStart;
+        final int classes = automaton.classes;
+        long found = 0;
+        for (int i = 0; i < pinned.length; i++) {
+            if ((found & pinnedBit[i]) == 0 && matchesAt(pinned[i], data, from, to, from + pinned[i].offset)) {
+                found |= pinnedBit[i];
+            }
+        }
+        if (signatures.length == 0) return found;
+        int s = 0;
+        for (int i = from; i < to; i++) {
+            s = next[s + byteClass[data[i] & 0xFF]];
+            if (s >= 0) continue;
+            s &= ~AhoCorasick.ACCEPT;
+            int state = s / classes;
+            for (int o = outStart[state], end = outStart[state + 1]; o < end; o++) {
+                int id = automaton.outIds[o];
+                if ((found & tagBit[id]) == 0
+                        && matchesAt(signatures[id], data, from, to, i + 1 - anchorLength[id] - anchorStart[id])) {
+                    found |= tagBit[id];
+                }
+            }
+        }
+        return found;
+    }
+
+    // Whole pattern, wildcards and case rule, starting at data[start]
+    private static boolean matchesAt(Signature s, byte[] data, int from, int to, int start) {
+        if (start < from || start + s.bytes.length > to) return false;
+        if (s.offset >= 0 && start - from != s.offset) return false;
+        for (int k = 0; k < s.bytes.length; k++) {
+            if (s.wildcard[k]) continue;
+            int b = data[start + k] & 0xFF, p = s.bytes[k] & 0xFF;
+            if (b != p && !(s.ignoreCase && Signature.fold(b) == Signature.fold(p))) return false;
+        }
+        return true;
+    }
+
+    public List<Tag> tags() { return tags; }
+
+    // Bit number of a tag, -1 if the set has no such tag
+    public int bit(String name) {
+        Integer bit = bits.get(name);
+        return bit == null ? -1 : bit;
+    }
+
+    // Comma-separated tag names, e.g. "http.request, ioc.log4shell"
+    public String names(long mask) {
+        StringBuilder sb = new StringBuilder();
+        for (long m = mask; m != 0; m &= m - 1) {
+            int bit = Long.numberOfTrailingZeros(m);
+            if (bit >= tags.size()) continue;
+            if (sb.length() > 0) sb.append(", ");
+            sb.append(tags.get(bit).name());
+        }
+        return sb.toString();
+    }
+
+    public int size()   { return signatures.length + pinned.length; }
+    public int states() { return automaton.states(); }
+}
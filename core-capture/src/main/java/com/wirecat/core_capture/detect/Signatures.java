@@ -0,0 +1,87 @@
+package com.wirecat.core_capture.detect;
+
+import com.wirecat.core_capture.detect.SignatureSet.Tag;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The built-in signature set: application protocols recognized by their
+ * first bytes whatever the port, cleartext credentials, and indicators of
+ * attack. Tags with a risk feed {@link PayloadSignatureDetector}; all of them
+ * can be filtered on ({@code tag == tls.client_hello}).
+ */
+public final class Signatures {
+    public static final String HTTP_REQUEST = "http.request";
+    public static final String HTTP_RESPONSE = "http.response";
+
+    public static final SignatureSet DEFAULT = new SignatureSet(tags(), signatures());
+
+    private Signatures() { }
+
+    private static List<Tag> tags() {
+        return List.of(
+                new Tag(HTTP_REQUEST, 0, "HTTP request"),
+                new Tag(HTTP_RESPONSE, 0, "HTTP response"),
+                new Tag("tls.client_hello", 0, "TLS ClientHello"),
+                new Tag("tls.server_hello", 0, "TLS ServerHello"),
+                new Tag("ssh.banner", 0, "SSH version banner"),
+                new Tag("smtp.command", 0, "SMTP greeting"),
+                new Tag("bittorrent", 0, "BitTorrent handshake"),
+                new Tag("auth.basic", 3, "HTTP Basic credentials in cleartext"),
+                new Tag("auth.cleartext", 3, "cleartext password command"),
+                new Tag("ioc.log4shell", 9, "Log4Shell JNDI lookup"),
+                new Tag("ioc.eicar", 8, "EICAR antivirus test file"),
+                new Tag("ioc.sensitive_file", 6, "request for a system credentials file"),
+                new Tag("ioc.path_traversal", 5, "path traversal"),
+                new Tag("ioc.shell", 5, "shell invocation"),
+                new Tag("ioc.powershell", 6, "encoded PowerShell command"),
+                new Tag("ioc.sql_injection", 6, "SQL injection"),
+                new Tag("ioc.xss", 4, "script injection"),
+                new Tag("ioc.download", 4, "download-and-run attempt"));
+    }
+
+    private static List<Signature> signatures() {
+        List<Signature> s = new ArrayList<>();
+        for (String verb : List.of("GET", "POST", "PUT", "DELETE", "HEAD", "OPTIONS", "PATCH", "CONNECT", "TRACE")) {
+            s.add(Signature.text(HTTP_REQUEST, verb + " ").at(0));
+        }
+        s.add(Signature.text(HTTP_RESPONSE, "HTTP/1.").at(0));
+        // Handshake record, then the handshake type five bytes in
+        s.add(Signature.hex("tls.client_hello", "16 03 ?? ?? ?? 01").at(0));
+        s.add(Signature.hex("tls.server_hello", "16 03 ?? ?? ?? 02").at(0));
+        s.add(Signature.text("ssh.banner", "SSH-").at(0));
+        s.add(Signature.text("smtp.command", "EHLO ").at(0).ignoreCase());
+        s.add(Signature.text("smtp.command", "HELO ").at(0).ignoreCase());
+        s.add(Signature.hex("bittorrent", "13 42 69 74 54 6f 72 72 65 6e 74").at(0));   // "\x13BitTorrent"
+
+        s.add(Signature.text("auth.basic", "Authorization: Basic ").ignoreCase());
+        s.add(Signature.text("auth.cleartext", "PASS ").at(0));
+        s.add(Signature.text("auth.cleartext", "AUTH PLAIN ").at(0).ignoreCase());
+
+        s.add(Signature.text("ioc.log4shell", "${jndi:").ignoreCase());
+        s.add(Signature.text("ioc.eicar", "X5O!P%@AP[4\\PZX54(P^)7CC)7}$EICAR"));
+        s.add(Signature.text("ioc.sensitive_file", "/etc/passwd"));
+        s.add(Signature.text("ioc.sensitive_file", "/etc/shadow"));
+        s.add(Signature.text("ioc.sensitive_file", "\\windows\\system32\\config\\sam").ignoreCase());
+        s.add(Signature.text("ioc.path_traversal", "../../"));
+        s.add(Signature.text("ioc.path_traversal", "..\\..\\"));
+        s.add(Signature.text("ioc.path_traversal", "..%2f..%2f").ignoreCase());
+        s.add(Signature.text("ioc.shell", "cmd.exe /c").ignoreCase());
+        s.add(Signature.text("ioc.shell", "/bin/sh -c"));
+        s.add(Signature.text("ioc.shell", "/bin/bash -i"));
+        s.add(Signature.text("ioc.powershell", "powershell -e").ignoreCase());
+        s.add(Signature.text("ioc.powershell", "powershell.exe -enc").ignoreCase());
+        s.add(Signature.text("ioc.sql_injection", "union select").ignoreCase());
+        s.add(Signature.text("ioc.sql_injection", "' or '1'='1").ignoreCase());
+        s.add(Signature.text("ioc.sql_injection", "' or 1=1--").ignoreCase());
+        // Script tags only where they are injected: a bare "<script" is on every HTML page
+        s.add(Signature.text("ioc.xss", "%3Cscript").ignoreCase());
+        s.add(Signature.text("ioc.xss", "=<script").ignoreCase());
+        s.add(Signature.text("ioc.xss", "\"><script").ignoreCase());
+        s.add(Signature.text("ioc.xss", "javascript:alert(").ignoreCase());
+        s.add(Signature.text("ioc.download", "wget http").ignoreCase());
+        s.add(Signature.text("ioc.download", "curl http").ignoreCase());
+        return s;
+    }
+}
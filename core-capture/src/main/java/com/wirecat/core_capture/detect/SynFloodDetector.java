@@ -0,0 +1,109 @@
+package com.wirecat.core_capture.detect;
+
+import com.wirecat.core_capture.decode.FrameDecoder;
+import com.wirecat.core_capture.model.PacketModel;
+
+import java.util.Arrays;
+
+/**
+ * SYN floods: a destination service receiving at least {@link #SYNS_PER_SECOND}
+ * connection attempts a second of which fewer than half are answered with a
+ * SYN-ACK. Counts are kept per (destination address, port) for the current
+ * and the previous second of capture time, in a fixed table of
+ * {@link #BUCKETS} entries with two candidate slots per key; a busy target
+ * keeps its slot, and a key finding both slots busy in the current second is
+ * simply not counted. Memory is fixed whatever the number of services.
+ */
+public class SynFloodDetector implements Detector {
+    public static final int SYNS_PER_SECOND = 200;
+    public static final int BUCKETS = 4096;
+    private static final long NONE = Long.MIN_VALUE;
+
+    private final long[] hi = new long[BUCKETS];
+    private final long[] lo = new long[BUCKETS];
+    private final int[] port = new int[BUCKETS];
+    private final long[] second = new long[BUCKETS];
+    private final int[] syns = new int[BUCKETS];
+    private final int[] synAcks = new int[BUCKETS];
+    private final int[] prevSyns = new int[BUCKETS];
+    private final int[] prevSynAcks = new int[BUCKETS];
+    private final Finding[] finding = new Finding[BUCKETS];
+
+    public SynFloodDetector() {
+        reset();
+    }
+
+    @Override
+    public String name() { return "SYN floods"; }
+
+    @Override
+    public Finding inspect(PacketModel pm) {
+        FrameDecoder f = pm.getFrame();
+        if (f == null || !f.isTcp() || !f.hasFlag(FrameDecoder.TCP_SYN)) return Finding.NONE;
+        long sec = Math.floorDiv(pm.getTimestampMicros(), 1_000_000L);
+        if (f.hasFlag(FrameDecoder.TCP_ACK)) {
+            // The server's answer counts for its own address and port
+            int b = bucket(f.addrHi(f.srcAddrOffset()), f.addrLo(f.srcAddrOffset()), f.srcPort(), sec);
+            if (b >= 0) synAcks[b]++;
+            return Finding.NONE;
+        }
+        long dstHi = f.addrHi(f.dstAddrOffset()), dstLo = f.addrLo(f.dstAddrOffset());
+        int b = bucket(dstHi, dstLo, f.dstPort(), sec);
+        if (b < 0) return Finding.NONE;
+        syns[b]++;
+        int rate = Math.max(syns[b], prevSyns[b]);
+        if (rate < SYNS_PER_SECOND) return Finding.NONE;
+        int total = syns[b] + prevSyns[b];
+        double answered = (double) (synAcks[b] + prevSynAcks[b]) / total;
+        if (answered >= 0.5) return Finding.NONE;
+        return finding(b, rate, answered, f);
+    }
+
+    // Rounded so the same few reasons are reused while a flood lasts
+    private Finding finding(int b, int rate, double answered, FrameDecoder f) {
+        double risk = Math.round(Math.min(10, 6 + 2 * Math.log((double) rate / SYNS_PER_SECOND) / Math.log(2)) * 10) / 10.0;
+        String reason = String.format("SYN flood: ~%d SYNs/s to %s:%d, %d%% answered",
+                Math.round(rate / 100.0) * 100, f.dstAddressString(), f.dstPort(), Math.round(answered * 10) * 10);
+        Finding last = finding[b];
+        if (last == null || last.risk() != risk || !last.reason().equals(reason)) finding[b] = last = new Finding(risk, reason);
+        return last;
+    }
+
+    // Slot for the key in this second, rolling its counters forward; -1 if both candidates are taken
+    private int bucket(long keyHi, long keyLo, int keyPort, long sec) {
+        int h = (int) WindowedHyperLogLog.hash(keyHi, keyLo ^ keyPort) & (BUCKETS - 1);
+        int free = -1;
+        for (int i = 0; i < 2; i++) {
+            int b = h ^ i;
+            if (port[b] == keyPort && hi[b] == keyHi && lo[b] == keyLo) {
+                roll(b, sec);
+                return b;
+            }
+            if (free < 0 && (port[b] < 0 || second[b] < sec - 1)) free = b;
+        }
+        if (free < 0) return -1;
+        hi[free] = keyHi;
+        lo[free] = keyLo;
+        port[free] = keyPort;
+        second[free] = sec;
+        syns[free] = synAcks[free] = prevSyns[free] = prevSynAcks[free] = 0;
+        finding[free] = null;
+        return free;
+    }
+
+    private void roll(int b, long sec) {
+        if (sec <= second[b]) return;   // same second, or a late packet
+        boolean adjacent = sec == second[b] + 1;
+        prevSyns[b] = adjacent ? syns[b] : 0;
+        prevSynAcks[b] = adjacent ? synAcks[b] : 0;
+        syns[b] = synAcks[b] = 0;
+        second[b] = sec;
+    }
+
+    @Override
+    public void reset() {
+        Arrays.fill(port, -1);
+        Arrays.fill(second, NONE);
+        Arrays.fill(finding, null);
+    }
+}
@@ -0,0 +1,41 @@
+package com.wirecat.core_capture.detect;
+
+import com.wirecat.core_capture.decode.FrameDecoder;
+import com.wirecat.core_capture.model.PacketModel;
+
+/**
+ * TCP flag combinations no normal stack sends: NULL, XMAS, SYN+FIN, SYN+RST
+ * and a bare FIN. Scanners (nmap -sN/-sX/-sF) use them to slip past
+ * stateless filters and fingerprint hosts. Stateless; one look at the flags.
+ */
+public class TcpFlagsDetector implements Detector {
+    private static final int ALL = FrameDecoder.TCP_FIN | FrameDecoder.TCP_SYN | FrameDecoder.TCP_RST
+            | FrameDecoder.TCP_PSH | FrameDecoder.TCP_ACK | FrameDecoder.TCP_URG;
+    private static final int XMAS = FrameDecoder.TCP_FIN | FrameDecoder.TCP_PSH | FrameDecoder.TCP_URG;
+
+    private static final Finding NULL_SCAN = new Finding(6, "TCP NULL packet (no flags set): stealth scan");
+    private static final Finding XMAS_SCAN = new Finding(6, "TCP XMAS packet (FIN+PSH+URG): stealth scan");
+    private static final Finding SYN_FIN = new Finding(7, "TCP SYN+FIN: invalid flag combination");
+    private static final Finding SYN_RST = new Finding(6, "TCP SYN+RST: invalid flag combination");
+    private static final Finding FIN_SCAN = new Finding(5, "TCP FIN without ACK: stealth scan");
+
+    @Override
+    public String name() { return "TCP flag anomalies"; }
+
+    @Override
+    public Finding inspect(PacketModel pm) {
+        FrameDecoder f = pm.getFrame();
+        if (f == null || !f.isTcp()) return Finding.NONE;
+        int flags = f.tcpFlags() & ALL;
+        if (flags == 0) return NULL_SCAN;
+        if ((flags & XMAS) == XMAS && (flags & FrameDecoder.TCP_ACK) == 0) return XMAS_SCAN;
+        boolean syn = (flags & FrameDecoder.TCP_SYN) != 0;
+        if (syn && (flags & FrameDecoder.TCP_FIN) != 0) return SYN_FIN;
+        if (syn && (flags & FrameDecoder.TCP_RST) != 0) return SYN_RST;
+        if (flags == FrameDecoder.TCP_FIN) return FIN_SCAN;
+        return Finding.NONE;
+    }
+
+    @Override
+    public void reset() { }
+}
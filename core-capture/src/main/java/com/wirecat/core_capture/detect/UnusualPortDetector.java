@@ -0,0 +1,55 @@
+package com.wirecat.core_capture.detect;
+
+import com.wirecat.core_capture.decode.FrameDecoder;
+import com.wirecat.core_capture.model.PacketModel;
+
+/**
+ * Connections to ports tied to backdoors, botnets and remote access that
+ * rarely belong on a normal network: telnet, Metasploit's default listener,
+ * IRC, ADB, old trojans. Only the opening packet is flagged (TCP SYN without
+ * ACK, or UDP towards the lower port) so one long session does not flood the
+ * table. A 64K-entry lookup table; no other state.
+ */
+public class UnusualPortDetector implements Detector {
+    private final Finding[] byPort = new Finding[65536];
+
+    public UnusualPortDetector() {
+        port(23, 3, "Telnet (cleartext remote login)");
+        port(2323, 4, "alternate Telnet, common IoT botnet target");
+        port(135, 3, "MS RPC endpoint mapper");
+        port(445, 3, "SMB");
+        port(3389, 3, "RDP");
+        port(5900, 3, "VNC");
+        port(1080, 3, "SOCKS proxy");
+        port(9001, 3, "Tor relay");
+        port(6667, 5, "IRC, a classic botnet channel");
+        port(5555, 5, "Android Debug Bridge");
+        port(4444, 6, "Metasploit default listener");
+        port(1337, 6, "common backdoor port");
+        port(31337, 6, "Back Orifice / common backdoor port");
+        port(12345, 6, "NetBus trojan");
+        port(27374, 6, "SubSeven trojan");
+    }
+
+    private void port(int port, double risk, String what) {
+        byPort[port] = new Finding(risk, "Connection to port " + port + ": " + what);
+    }
+
+    @Override
+    public String name() { return "Unusual ports"; }
+
+    @Override
+    public Finding inspect(PacketModel pm) {
+        FrameDecoder f = pm.getFrame();
+        if (f == null) return Finding.NONE;
+        boolean opens = f.isTcp()
+                ? f.hasFlag(FrameDecoder.TCP_SYN) && !f.hasFlag(FrameDecoder.TCP_ACK)
+                : f.isUdp() && f.dstPort() < f.srcPort();
+        if (!opens) return Finding.NONE;
+        Finding finding = byPort[f.dstPort()];
+        return finding != null ? finding : Finding.NONE;
+    }
+
+    @Override
+    public void reset() { }
+}
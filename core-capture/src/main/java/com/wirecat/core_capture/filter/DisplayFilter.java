@@ -0,0 +1,502 @@
+package com.wirecat.core_capture.filter;
+
+import com.wirecat.core_capture.decode.FrameDecoder;
+import com.wirecat.core_capture.detect.Signatures;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Wireshark-style display filter, e.g.
+ * {@code ip.src == 10.0.0.0/8 && tcp.port in {80 443} && frame.len > 1000}.
+ * <p>
+ * An expression is compiled once into a flat program over a single boolean
+ * register: each comparison is a leaf whose operands sit in primitive arrays,
+ * and {@code &&}, {@code ||} and {@code !} become conditional jumps and a flip,
+ * so evaluation walks an int array with no stack, no boxing and no lambdas.
+ * Leaves read fields straight from a {@link FrameDecoder}, so a packet is
+ * tested without building any strings.
+ * <p>
+ * Supported: comparisons ({@code == != < <= > >=} and {@code eq ne lt le gt ge}),
+ * bit tests ({@code tcp.flags & 0x12}), sets with ranges ({@code tcp.port in {80 8000..8100}}),
+ * CIDR prefixes for IPv4/IPv6 addresses, MAC addresses, payload signature tags
+ * ({@code tag == http.request}, {@code tag in {ioc.log4shell ioc.shell}}, or
+ * bare {@code tag} for any), bare protocol or field names as presence tests,
+ * {@code and or not} and parentheses. Comparisons on
+ * absent fields are false; {@code !=} on a pair field such as {@code ip.addr}
+ * means neither side equals. A compiled filter is immutable and thread-safe.
+ */
+public final class DisplayFilter {
+    // Instructions: low 2 bits opcode, the rest a leaf index or jump target
+    private static final int LEAF = 0, IF_FALSE = 1, IF_TRUE = 2, NOT = 3;
+
+    // Leaf operators; addresses get their own two so compare() needs no kind check
+    private static final int EXISTS = 0, EQ = 1, NE = 2, LT = 3, LE = 4, GT = 5, GE = 6, BITS = 7, IN = 8,
+            ADDR_EQ = 9, ADDR_NE = 10, NO_BITS = 11;
+
+    private final String expression;
+    private final int[] code;
+
+    // One entry per leaf
+    private final int[] ops;
+    private final int[] layers;
+    private final int[] srcRegs;
+    private final int[] dstRegs;   // -1 unless the field is a pair
+    private final int[] shifts;
+    private final long[] masks;
+    private final long[] adds;
+    private final long[] lo;       // operand, MAC, or low address bits (already masked)
+    private final long[] hi;       // high address bits
+    private final long[] loMask;
+    private final long[] hiMask;
+    private final long[][] ranges; // IN: inclusive [from, to] pairs
+
+    private DisplayFilter(String expression, Compiler c) {
+        this.expression = expression;
+        this.code = c.code.stream().mapToInt(Integer::intValue).toArray();
+        int n = c.leafFields.size();
+        this.ops = Arrays.copyOf(c.ops, n);
+        this.lo = Arrays.copyOf(c.lo, n);
+        this.hi = Arrays.copyOf(c.hi, n);
+        this.loMask = Arrays.copyOf(c.loMask, n);
+        this.hiMask = Arrays.copyOf(c.hiMask, n);
+        this.ranges = Arrays.copyOf(c.ranges, n);
+        this.layers = new int[n];
+        this.srcRegs = new int[n];
+        this.dstRegs = new int[n];
+        this.shifts = new int[n];
+        this.masks = new long[n];
+        this.adds = new long[n];
+        for (int i = 0; i < n; i++) {
+            FilterField field = c.leafFields.get(i);
+            layers[i] = field.layer;
+            srcRegs[i] = field.srcReg;
+            dstRegs[i] = field.dstReg;
+            shifts[i] = field.shift;
+            masks[i] = field.mask;
+            adds[i] = field.add;
+        }
+    }
+
+    // Compiles an expression; blank means "match everything".
+    // Throws IllegalArgumentException with the position of the first error.
+    public static DisplayFilter compile(String expression) {
+        String text = expression == null ? "" : expression.trim();
+        Compiler c = new Compiler(text);
+        if (!text.isEmpty()) c.compile();
+        return new DisplayFilter(text, c);
+    }
+
+    public String expression() { return expression; }
+
+    public boolean matchesAll() { return code.length == 0; }
+
+    public boolean test(FrameDecoder f) {
+        final int[] code = this.code;
+        boolean acc = true;
+        int pc = 0;
+        while (pc < code.length) {
+            int ins = code[pc++];
+            int arg = ins >>> 2;
+            switch (ins & 3) {
+                case IF_FALSE -> { if (!acc) pc = arg; }
+                case IF_TRUE -> { if (acc) pc = arg; }
+                case NOT -> acc = !acc;
+                default -> {
+                    int op = ops[arg];
+                    if (!FilterField.present(layers[arg], f)) {
+                        acc = false;
+                    } else if (op == EXISTS) {
+                        acc = true;
+                    } else {
+                        acc = compare(arg, op, srcRegs[arg], f);
+                        int dstReg = dstRegs[arg];
+                        // Pair fields: any side matches, except != which needs both sides to differ
+                        if (dstReg >= 0 && acc == (op == NE || op == ADDR_NE)) acc = compare(arg, op, dstReg, f);
+                    }
+                }
+            }
+        }
+        return acc;
+    }
+
+    private boolean compare(int i, int op, int reg, FrameDecoder f) {
+        long v = ((FilterField.read(reg, f) >>> shifts[i]) & masks[i]) + adds[i];
+        long a = lo[i];
+        return switch (op) {
+            case EQ -> v == a;
+            case NE -> v != a;
+            case LT -> v < a;
+            case LE -> v <= a;
+            case GT -> v > a;
+            case GE -> v >= a;
+            case BITS -> (v & a) != 0;
+            case NO_BITS -> (v & a) == 0;
+            case IN -> inRanges(ranges[i], v);
+            case ADDR_EQ -> (v & loMask[i]) == a && (FilterField.readHigh(reg, f) & hiMask[i]) == hi[i];
+            default -> (v & loMask[i]) != a || (FilterField.readHigh(reg, f) & hiMask[i]) != hi[i];
+        };
+    }
+
+    private static boolean inRanges(long[] r, long v) {
+        for (int k = 0; k < r.length; k += 2) {
+            if (v >= r[k] && v <= r[k + 1]) return true;
+        }
+        return false;
+    }
+
+    @Override public String toString() { return expression; }
+
+    // --- Compiler: recursive descent that emits the program as it parses
+
+    private static final class Compiler {
+        private final String text;
+        private int pos;
+        private String token;      // current token, null at end
+        private int tokenStart;
+        private int valueStart;    // start of the last value read by word()
+
+        final List<Integer> code = new ArrayList<>();
+        final List<FilterField> leafFields = new ArrayList<>();
+        int[] ops = new int[8];
+        long[] lo = new long[8], hi = new long[8], loMask = new long[8], hiMask = new long[8];
+        long[][] ranges = new long[8][];
+
+        Compiler(String text) {
+            this.text = text;
+            advance();
+        }
+
+        void compile() {
+            orExpr();
+            if (token != null) throw error("unexpected '" + token + "'");
+        }
+
+        // or := and ( ("||" | "or") and )*
+        private void orExpr() {
+            andExpr();
+            List<Integer> exits = new ArrayList<>();
+            while (accept("||") || accept("or")) {
+                exits.add(emit(IF_TRUE, 0));
+                andExpr();
+            }
+            for (int at : exits) patch(at, code.size());
+        }
+
+        // and := unary ( ("&&" | "and") unary )*
+        private void andExpr() {
+            unary();
+            List<Integer> exits = new ArrayList<>();
+            while (accept("&&") || accept("and")) {
+                exits.add(emit(IF_FALSE, 0));
+                unary();
+            }
+            for (int at : exits) patch(at, code.size());
+        }
+
+        private void unary() {
+            if (accept("!") || accept("not")) {
+                unary();
+                emit(NOT, 0);
+            } else if (accept("(")) {
+                orExpr();
+                expect(")");
+            } else {
+                comparison();
+            }
+        }
+
+        private void comparison() {
+            if (token == null) throw error("expected a field");
+            FilterField field = FilterField.byName(token.toLowerCase());
+            if (field == null) throw error("unknown field '" + token + "'");
+            advance();
+
+            int op = operator();
+            if (op == EXISTS) {
+                leaf(field, EXISTS, 0, 0, 0, 0, null);
+                return;
+            }
+            if (field.kind == FilterField.Kind.PROTOCOL) {
+                throw error("'" + field.label + "' is a protocol and can only be tested for presence");
+            }
+            if (field.kind == FilterField.Kind.TAG) {
+                tag(field, op);
+                return;
+            }
+            if (op == IN) {
+                set(field);
+                return;
+            }
+            if (field.kind != FilterField.Kind.NUMBER && op != EQ && op != NE) {
+                throw error("'" + field.label + "' only supports == and !=");
+            }
+            value(field, op);
+        }
+
+        private int operator() {
+            if (token == null) return EXISTS;
+            int op = switch (token) {
+                case "==", "eq" -> EQ;
+                case "!=", "ne" -> NE;
+                case "<", "lt" -> LT;
+                case "<=", "le" -> LE;
+                case ">", "gt" -> GT;
+                case ">=", "ge" -> GE;
+                case "&" -> BITS;
+                case "in" -> IN;
+                default -> EXISTS;
+            };
+            if (op != EXISTS) advance();
+            return op;
+        }
+
+        // Numeric sets become one range leaf; address sets become an OR of equality leaves
+        private void set(FilterField field) {
+            expect("{");
+            if (field.kind == FilterField.Kind.NUMBER) {
+                long[] r = new long[8];
+                int n = 0;
+                while (!accept("}")) {
+                    if (n == r.length) r = Arrays.copyOf(r, n * 2);
+                    String word = word();
+                    int dots = word.indexOf("..");
+                    r[n] = number(dots < 0 ? word : word.substring(0, dots));
+                    r[n + 1] = dots < 0 ? r[n] : number(word.substring(dots + 2));
+                    if (r[n + 1] < r[n]) throw valueError("empty range '" + word + "'");
+                    n += 2;
+                    accept(",");
+                }
+                if (n == 0) throw error("empty set");
+                leaf(field, IN, 0, 0, 0, 0, Arrays.copyOf(r, n));
+                return;
+            }
+            List<Integer> exits = new ArrayList<>();
+            boolean first = true;
+            while (!accept("}")) {
+                if (!first) exits.add(emit(IF_TRUE, 0));
+                value(field, EQ);
+                first = false;
+                accept(",");
+            }
+            if (first) throw error("empty set");
+            for (int at : exits) patch(at, code.size());
+        }
+
+        // Tag names resolve to bits of the payload tag mask; a set is one leaf over their union
+        private void tag(FilterField field, int op) {
+            if (op != EQ && op != NE && op != IN) throw error("'" + field.label + "' only supports ==, != and in");
+            long mask = 0;
+            if (op == IN) {
+                expect("{");
+                while (!accept("}")) {
+                    mask |= tagBit(word());
+                    accept(",");
+                }
+                if (mask == 0) throw error("empty set");
+            } else {
+                mask = tagBit(word());
+            }
+            leaf(field, op == NE ? NO_BITS : BITS, mask, 0, 0, 0, null);
+        }
+
+        private long tagBit(String name) {
+            int bit = Signatures.DEFAULT.bit(name.toLowerCase());
+            if (bit < 0) throw valueError("unknown tag '" + name + "'");
+            return 1L << bit;
+        }
+
+        private void value(FilterField field, int op) {
+            String word = word();
+            switch (field.kind) {
+                case NUMBER -> leaf(field, op, number(word), 0, -1, 0, null);
+                case MAC -> leaf(field, op, mac(word), 0, -1, 0, null);
+                default -> address(field, op, word);
+            }
+        }
+
+        // a.b.c.d[/n] or IPv6[/n], as the same 128-bit form FrameDecoder.addrHi/addrLo use
+        private void address(FilterField field, int op, String word) {
+            int slash = word.indexOf('/');
+            String addr = slash < 0 ? word : word.substring(0, slash);
+            long[] v = addr.indexOf(':') >= 0 ? ipv6(addr) : ipv4(addr);
+            boolean v4 = addr.indexOf(':') < 0;
+            int max = v4 ? 32 : 128;
+            int prefix = max;
+            if (slash >= 0) {
+                try {
+                    prefix = Integer.parseInt(word.substring(slash + 1));
+                } catch (NumberFormatException e) {
+                    prefix = -1;
+                }
+                if (prefix < 0 || prefix > max) throw valueError("bad prefix length in '" + word + "'");
+            }
+            if (v4 != (field.layer == FilterField.Layer.IP)) {
+                throw valueError("'" + word + "' is not a valid " + (v4 ? "IPv6" : "IPv4") + " address");
+            }
+            int bits = v4 ? prefix + 96 : prefix;
+            long hiMask = bits >= 64 ? -1L : bits == 0 ? 0 : -1L << (64 - bits);
+            long loMask = bits <= 64 ? 0 : bits == 128 ? -1L : -1L << (128 - bits);
+            leaf(field, op == EQ ? ADDR_EQ : ADDR_NE, v[1] & loMask, v[0] & hiMask, loMask, hiMask, null);
+        }
+
+        private long[] ipv4(String s) {
+            String[] parts = s.split("\\.", -1);
+            if (parts.length != 4) throw valueError("bad IPv4 address '" + s + "'");
+            long v = 0;
+            for (String p : parts) {
+                int b = octet(p, 10, s);
+                if (b > 255) throw valueError("bad IPv4 address '" + s + "'");
+                v = v << 8 | b;
+            }
+            return new long[] {0, 0xFFFF_0000_0000L | v};
+        }
+
+        private long[] ipv6(String s) {
+            int gap = s.indexOf("::");
+            if (gap >= 0 && s.indexOf("::", gap + 1) >= 0) throw valueError("bad IPv6 address '" + s + "'");
+            String[] head = gap < 0 ? s.split(":", -1) : split(s.substring(0, gap));
+            String[] tail = gap < 0 ? new String[0] : split(s.substring(gap + 2));
+            if (head.length + tail.length > (gap < 0 ? 8 : 7) || gap < 0 && head.length != 8) {
+                throw valueError("bad IPv6 address '" + s + "'");
+            }
+            int[] groups = new int[8];
+            for (int i = 0; i < head.length; i++) groups[i] = group(head[i], s);
+            for (int i = 0; i < tail.length; i++) groups[8 - tail.length + i] = group(tail[i], s);
+            long h = 0, l = 0;
+            for (int i = 0; i < 4; i++) h = h << 16 | groups[i];
+            for (int i = 4; i < 8; i++) l = l << 16 | groups[i];
+            return new long[] {h, l};
+        }
+
+        private static String[] split(String s) {
+            return s.isEmpty() ? new String[0] : s.split(":", -1);
+        }
+
+        private int group(String g, String whole) {
+            if (g.isEmpty() || g.length() > 4) throw valueError("bad IPv6 address '" + whole + "'");
+            return octet(g, 16, whole);
+        }
+
+        private long mac(String s) {
+            String[] parts = s.split("[:\\-.]", -1);
+            if (parts.length != 6) throw valueError("bad MAC address '" + s + "'");
+            long v = 0;
+            for (String p : parts) {
+                if (p.isEmpty() || p.length() > 2) throw valueError("bad MAC address '" + s + "'");
+                v = v << 8 | octet(p, 16, s);
+            }
+            return v;
+        }
+
+        private int octet(String p, int radix, String whole) {
+            try {
+                return Integer.parseInt(p, radix);
+            } catch (NumberFormatException e) {
+                throw valueError("bad address '" + whole + "'");
+            }
+        }
+
+        private long number(String s) {
+            try {
+                if (s.startsWith("0x") || s.startsWith("0X")) return Long.parseLong(s.substring(2), 16);
+                return Long.parseLong(s);
+            } catch (NumberFormatException e) {
+                throw valueError("expected a number, got '" + s + "'");
+            }
+        }
+
+        private void leaf(FilterField field, int op, long lo, long hi, long loMask, long hiMask, long[] ranges) {
+            int i = leafFields.size();
+            if (i == ops.length) {
+                int n = i * 2;
+                ops = Arrays.copyOf(ops, n);
+                this.lo = Arrays.copyOf(this.lo, n);
+                this.hi = Arrays.copyOf(this.hi, n);
+                this.loMask = Arrays.copyOf(this.loMask, n);
+                this.hiMask = Arrays.copyOf(this.hiMask, n);
+                this.ranges = Arrays.copyOf(this.ranges, n);
+            }
+            leafFields.add(field);
+            ops[i] = op;
+            this.lo[i] = lo;
+            this.hi[i] = hi;
+            this.loMask[i] = loMask;
+            this.hiMask[i] = hiMask;
+            this.ranges[i] = ranges;
+            emit(LEAF, i);
+        }
+
+        private int emit(int opcode, int arg) {
+            code.add(arg << 2 | opcode);
+            return code.size() - 1;
+        }
+
+        private void patch(int at, int target) {
+            code.set(at, target << 2 | (code.get(at) & 3));
+        }
+
+        // --- Tokens: words ([A-Za-z0-9_.:/-]+) and operator symbols
+
+        private String word() {
+            if (token == null || !isWordChar(token.charAt(0))) throw error("expected a value");
+            String w = token;
+            valueStart = tokenStart;
+            advance();
+            return w;
+        }
+
+        private boolean accept(String t) {
+            if (t.equals(token) || token != null && Character.isLetter(t.charAt(0)) && t.equalsIgnoreCase(token)) {
+                advance();
+                return true;
+            }
+            return false;
+        }
+
+        private void expect(String t) {
+            if (!accept(t)) throw error("expected '" + t + "'");
+        }
+
+        private void advance() {
+            while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) pos++;
+            tokenStart = pos;
+            if (pos >= text.length()) {
+                token = null;
+                return;
+            }
+            char c = text.charAt(pos);
+            if (isWordChar(c)) {
+                int end = pos;
+                while (end < text.length() && isWordChar(text.charAt(end))) end++;
+                token = text.substring(pos, end);
+                pos = end;
+                return;
+            }
+            String two = pos + 1 < text.length() ? text.substring(pos, pos + 2) : "";
+            if (two.equals("==") || two.equals("!=") || two.equals("<=") || two.equals(">=")
+                    || two.equals("&&") || two.equals("||")) {
+                token = two;
+                pos += 2;
+            } else if ("!<>&(){},".indexOf(c) >= 0) {
+                token = String.valueOf(c);
+                pos++;
+            } else {
+                throw error("unexpected character '" + c + "'");
+            }
+        }
+
+        private static boolean isWordChar(char c) {
+            return Character.isLetterOrDigit(c) || c == '.' || c == ':' || c == '/' || c == '_' || c == '-';
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " at position " + (tokenStart + 1));
+        }
+
+        private IllegalArgumentException valueError(String message) {
+            return new IllegalArgumentException(message + " at position " + (valueStart + 1));
+        }
+    }
+}
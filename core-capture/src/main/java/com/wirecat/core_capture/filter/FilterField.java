@@ -0,0 +1,184 @@
+package com.wirecat.core_capture.filter;
+
+import com.wirecat.core_capture.decode.FrameDecoder;
+import com.wirecat.core_capture.decode.Protocols;
+
+/**
+ * Fields a display filter can name, with Wireshark's names. Each field is
+ * data rather than code: the layer that must be present, the decoder
+ * "register" it reads (two for pair fields such as tcp.port, which stand for
+ * both sides of the packet) and a shift/mask/add applied to the raw value,
+ * so flag bits and derived lengths need no field-specific branches. The
+ * register and layer readers are small int switches the JIT inlines.
+ */
+enum FilterField {
+    // Protocols; on their own they test presence
+    FRAME("frame", Layer.FRAME),
+    ETH("eth", Layer.ETH),
+    VLAN("vlan", Layer.VLAN),
+    ARP("arp", Layer.ARP),
+    IP("ip", Layer.IP),
+    IPV6("ipv6", Layer.IPV6),
+    TCP("tcp", Layer.TCP),
+    UDP("udp", Layer.UDP),
+    ICMP("icmp", Layer.ICMP),
+    ICMPV6("icmpv6", Layer.ICMPV6),
+    HTTP("http", Layer.HTTP),
+    TLS("tls", Layer.TLS),
+
+    FRAME_LEN("frame.len", Kind.NUMBER, Layer.FRAME, Reg.LENGTH),
+
+    // Payload signature tags; "tag" alone means any tag
+    TAG("tag", Kind.TAG, Layer.TAGGED, Reg.TAGS),
+
+    ETH_SRC("eth.src", Kind.MAC, Layer.ETH, Reg.SRC_MAC),
+    ETH_DST("eth.dst", Kind.MAC, Layer.ETH, Reg.DST_MAC),
+    ETH_ADDR("eth.addr", Kind.MAC, Layer.ETH, Reg.SRC_MAC, Reg.DST_MAC),
+    ETH_TYPE("eth.type", Kind.NUMBER, Layer.ETH, Reg.ETHER_TYPE),
+    VLAN_ID("vlan.id", Kind.NUMBER, Layer.VLAN, Reg.VLAN_ID),
+
+    IP_SRC("ip.src", Kind.ADDRESS, Layer.IP, Reg.SRC_ADDR),
+    IP_DST("ip.dst", Kind.ADDRESS, Layer.IP, Reg.DST_ADDR),
+    IP_ADDR("ip.addr", Kind.ADDRESS, Layer.IP, Reg.SRC_ADDR, Reg.DST_ADDR),
+    IP_PROTO("ip.proto", Kind.NUMBER, Layer.IP, Reg.IP_PROTOCOL),
+    IP_TTL("ip.ttl", Kind.NUMBER, Layer.IP, Reg.TTL),
+
+    IPV6_SRC("ipv6.src", Kind.ADDRESS, Layer.IPV6, Reg.SRC_ADDR),
+    IPV6_DST("ipv6.dst", Kind.ADDRESS, Layer.IPV6, Reg.DST_ADDR),
+    IPV6_ADDR("ipv6.addr", Kind.ADDRESS, Layer.IPV6, Reg.SRC_ADDR, Reg.DST_ADDR),
+    IPV6_NXT("ipv6.nxt", Kind.NUMBER, Layer.IPV6, Reg.IP_PROTOCOL),
+    IPV6_HLIM("ipv6.hlim", Kind.NUMBER, Layer.IPV6, Reg.TTL),
+
+    TCP_SRCPORT("tcp.srcport", Kind.NUMBER, Layer.TCP, Reg.SRC_PORT),
+    TCP_DSTPORT("tcp.dstport", Kind.NUMBER, Layer.TCP, Reg.DST_PORT),
+    TCP_PORT("tcp.port", Kind.NUMBER, Layer.TCP, Reg.SRC_PORT, Reg.DST_PORT),
+    TCP_FLAGS("tcp.flags", Kind.NUMBER, Layer.TCP, Reg.TCP_FLAGS),
+    TCP_FLAGS_FIN("tcp.flags.fin", Layer.TCP, Reg.TCP_FLAGS, 0, 1, 0),
+    TCP_FLAGS_SYN("tcp.flags.syn", Layer.TCP, Reg.TCP_FLAGS, 1, 1, 0),
+    TCP_FLAGS_RESET("tcp.flags.reset", Layer.TCP, Reg.TCP_FLAGS, 2, 1, 0),
+    TCP_FLAGS_PUSH("tcp.flags.push", Layer.TCP, Reg.TCP_FLAGS, 3, 1, 0),
+    TCP_FLAGS_ACK("tcp.flags.ack", Layer.TCP, Reg.TCP_FLAGS, 4, 1, 0),
+    TCP_FLAGS_URG("tcp.flags.urg", Layer.TCP, Reg.TCP_FLAGS, 5, 1, 0),
+    TCP_SEQ("tcp.seq_raw", Kind.NUMBER, Layer.TCP, Reg.TCP_SEQ),
+    TCP_ACK("tcp.ack_raw", Kind.NUMBER, Layer.TCP, Reg.TCP_ACK),
+    TCP_WINDOW("tcp.window_size_value", Kind.NUMBER, Layer.TCP, Reg.TCP_WINDOW),
+    TCP_LEN("tcp.len", Kind.NUMBER, Layer.TCP, Reg.PAYLOAD_LENGTH),
+
+    UDP_SRCPORT("udp.srcport", Kind.NUMBER, Layer.UDP, Reg.SRC_PORT),
+    UDP_DSTPORT("udp.dstport", Kind.NUMBER, Layer.UDP, Reg.DST_PORT),
+    UDP_PORT("udp.port", Kind.NUMBER, Layer.UDP, Reg.SRC_PORT, Reg.DST_PORT),
+    UDP_LENGTH("udp.length", Layer.UDP, Reg.PAYLOAD_LENGTH, 0, -1, 8),
+
+    ICMP_TYPE("icmp.type", Kind.NUMBER, Layer.ICMP, Reg.ICMP_TYPE),
+    ICMP_CODE("icmp.code", Kind.NUMBER, Layer.ICMP, Reg.ICMP_CODE),
+    ICMPV6_TYPE("icmpv6.type", Kind.NUMBER, Layer.ICMPV6, Reg.ICMP_TYPE),
+    ICMPV6_CODE("icmpv6.code", Kind.NUMBER, Layer.ICMPV6, Reg.ICMP_CODE);
+
+    enum Kind { PROTOCOL, NUMBER, ADDRESS, MAC, TAG }
+
+    // Layers a field depends on
+    static final class Layer {
+        static final int FRAME = 0, ETH = 1, VLAN = 2, ARP = 3, IP = 4, IPV6 = 5,
+                TCP = 6, UDP = 7, ICMP = 8, ICMPV6 = 9, HTTP = 10, TLS = 11, TAGGED = 12;
+    }
+
+    // Decoder values a field can read; addresses read their low 64 bits here
+    static final class Reg {
+        static final int NONE = -1, LENGTH = 0, SRC_MAC = 1, DST_MAC = 2, ETHER_TYPE = 3, VLAN_ID = 4,
+                SRC_ADDR = 5, DST_ADDR = 6, IP_PROTOCOL = 7, TTL = 8, SRC_PORT = 9, DST_PORT = 10,
+                TCP_FLAGS = 11, TCP_SEQ = 12, TCP_ACK = 13, TCP_WINDOW = 14, PAYLOAD_LENGTH = 15,
+                ICMP_TYPE = 16, ICMP_CODE = 17, TAGS = 18;
+    }
+
+    private static final FilterField[] VALUES = values();
+
+    final String label;
+    final Kind kind;
+    final int layer;
+    final int srcReg;
+    final int dstReg;    // second side of a pair field, NONE otherwise
+    final int shift;
+    final long mask;
+    final long add;
+
+    FilterField(String label, int layer) {
+        this(label, Kind.PROTOCOL, layer, Reg.NONE, Reg.NONE, 0, -1, 0);
+    }
+
+    FilterField(String label, Kind kind, int layer, int reg) {
+        this(label, kind, layer, reg, Reg.NONE, 0, -1, 0);
+    }
+
+    FilterField(String label, Kind kind, int layer, int srcReg, int dstReg) {
+        this(label, kind, layer, srcReg, dstReg, 0, -1, 0);
+    }
+
+    FilterField(String label, int layer, int reg, int shift, long mask, long add) {
+        this(label, Kind.NUMBER, layer, reg, Reg.NONE, shift, mask, add);
+    }
+
+    FilterField(String label, Kind kind, int layer, int srcReg, int dstReg, int shift, long mask, long add) {
+        this.label = label;
+        this.kind = kind;
+        this.layer = layer;
+        this.srcReg = srcReg;
+        this.dstReg = dstReg;
+        this.shift = shift;
+        this.mask = mask;
+        this.add = add;
+    }
+
+    static FilterField byName(String name) {
+        for (FilterField f : VALUES) {
+            if (f.label.equals(name)) return f;
+        }
+        return null;
+    }
+
+    static boolean present(int layer, FrameDecoder f) {
+        return switch (layer) {
+            case Layer.FRAME -> true;
+            case Layer.ETH -> f.isEthernet();
+            case Layer.VLAN -> f.vlanId() >= 0;
+            case Layer.ARP -> f.isArp();
+            case Layer.IP -> f.ipVersion() == 4;
+            case Layer.IPV6 -> f.ipVersion() == 6;
+            case Layer.TCP -> f.isTcp();
+            case Layer.UDP -> f.isUdp();
+            case Layer.ICMP -> f.ipProtocol() == FrameDecoder.IPPROTO_ICMP && f.icmpType() >= 0;
+            case Layer.ICMPV6 -> f.ipProtocol() == FrameDecoder.IPPROTO_ICMPV6 && f.icmpType() >= 0;
+            case Layer.HTTP -> f.protocolId() == Protocols.HTTP;
+            case Layer.TLS -> f.protocolId() == Protocols.HTTPS;
+            default -> f.payloadTags() != 0;
+        };
+    }
+
+    static long read(int reg, FrameDecoder f) {
+        return switch (reg) {
+            case Reg.LENGTH -> f.length();
+            case Reg.SRC_MAC -> f.srcMac();
+            case Reg.DST_MAC -> f.dstMac();
+            case Reg.ETHER_TYPE -> f.etherType();
+            case Reg.VLAN_ID -> f.vlanId();
+            case Reg.SRC_ADDR -> f.addrLo(f.srcAddrOffset());
+            case Reg.DST_ADDR -> f.addrLo(f.dstAddrOffset());
+            case Reg.IP_PROTOCOL -> f.ipProtocol();
+            case Reg.TTL -> f.ttl();
+            case Reg.SRC_PORT -> f.srcPort();
+            case Reg.DST_PORT -> f.dstPort();
+            case Reg.TCP_FLAGS -> f.tcpFlags();
+            case Reg.TCP_SEQ -> f.tcpSeq();
+            case Reg.TCP_ACK -> f.tcpAck();
+            case Reg.TCP_WINDOW -> f.tcpWindow();
+            case Reg.PAYLOAD_LENGTH -> f.payloadLength();
+            case Reg.ICMP_TYPE -> f.icmpType();
+            case Reg.ICMP_CODE -> f.icmpCode();
+            default -> f.payloadTags();
+        };
+    }
+
+    // High 64 bits of an address register (0 for IPv4, which is kept in mapped form)
+    static long readHigh(int reg, FrameDecoder f) {
+        return f.addrHi(reg == Reg.SRC_ADDR ? f.srcAddrOffset() : f.dstAddrOffset());
+    }
+}
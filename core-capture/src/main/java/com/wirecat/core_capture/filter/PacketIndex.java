@@ -0,0 +1,81 @@
+package com.wirecat.core_capture.filter;
+
+import com.wirecat.core_capture.decode.Protocols;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.function.IntPredicate;
+
+/**
+ * Inverted indexes over the packet table, updated as rows are appended: rows
+ * per protocol id, per port and per address id (either side of the packet).
+ * Protocol chips and IP/port searches resolve to unions of a few postings
+ * instead of a scan over every row.
+ * <p>
+ * Keys are small dense ints (protocol ids, ports, dictionary ids), so the
+ * postings live in plain arrays indexed by key. Single-threaded, like the
+ * column store that owns it.
+ */
+public final class PacketIndex {
+    private final Posting[] protocols = new Posting[Protocols.COUNT];
+    private final Posting[] ports = new Posting[65537];   // port + 1; -1 is "no port"
+    private Posting[] addresses = new Posting[256];
+
+    public void add(int row, int protocolId, int srcAddr, int dstAddr, int srcPort, int dstPort) {
+        posting(protocols, protocolId).add(row);
+        posting(ports, srcPort + 1).add(row);
+        posting(ports, dstPort + 1).add(row);
+        int max = Math.max(srcAddr, dstAddr);
+        if (max >= addresses.length) addresses = Arrays.copyOf(addresses, Math.max(max + 1, addresses.length * 2));
+        posting(addresses, srcAddr).add(row);
+        posting(addresses, dstAddr).add(row);
+    }
+
+    private static Posting posting(Posting[] table, int key) {
+        Posting p = table[key];
+        if (p == null) table[key] = p = new Posting();
+        return p;
+    }
+
+    public void clear() {
+        Arrays.fill(protocols, null);
+        Arrays.fill(ports, null);
+        addresses = new Posting[256];
+    }
+
+    // Rows whose protocol id is selected
+    public BitSet protocols(boolean[] selected) {
+        return union(protocols, 0, Protocols.COUNT, id -> selected[id]);
+    }
+
+    // Rows with a matching port on either side
+    public BitSet ports(IntPredicate portMatches) {
+        return union(ports, 0, ports.length, key -> portMatches.test(key - 1));
+    }
+
+    // Rows with a matching address id on either side
+    public BitSet addresses(IntPredicate idMatches) {
+        return union(addresses, 0, addresses.length, idMatches);
+    }
+
+    // Rows with this address id on either side; empty for an id no row has
+    public BitSet address(int id) {
+        if (id < 0 || id >= addresses.length) return new BitSet();
+        return union(addresses, id, id + 1, key -> true);
+    }
+
+    // Rows with this port on either side (-1 for none); empty outside that range
+    public BitSet port(int port) {
+        if (port < -1 || port > 65535) return new BitSet();
+        return union(ports, port + 1, port + 2, key -> true);
+    }
+
+    private static BitSet union(Posting[] table, int from, int to, IntPredicate keys) {
+        BitSet out = new BitSet();
+        for (int key = from; key < to; key++) {
+            Posting p = table[key];
+            if (p != null && keys.test(key)) p.orInto(out);
+        }
+        return out;
+    }
+}
@@ -0,0 +1,48 @@
+package com.wirecat.core_capture.filter;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Rows carrying one index key. Rows are only ever appended in increasing
+ * order, so a rare key is kept as a sorted int array; once the key is common
+ * enough that a bitmap is smaller (one row in 32 or more) it switches to a
+ * BitSet, the same trade-off roaring bitmaps make per container.
+ */
+final class Posting {
+    private static final int MIN_DENSE = 4096;
+
+    private int[] rows = new int[4];
+    private BitSet bits;   // non-null once dense
+    private int count;
+    private int last = -1;
+
+    void add(int row) {
+        if (row == last) return;   // key on both sides of the same row
+        last = row;
+        count++;
+        if (bits != null) {
+            bits.set(row);
+            return;
+        }
+        if (count > rows.length) {
+            if (count >= MIN_DENSE && (long) count * 32 >= row) {
+                bits = new BitSet(row + 1);
+                for (int i = 0; i < count - 1; i++) bits.set(rows[i]);
+                bits.set(row);
+                rows = null;
+                return;
+            }
+            rows = Arrays.copyOf(rows, rows.length * 2);
+        }
+        rows[count - 1] = row;
+    }
+
+    void orInto(BitSet out) {
+        if (bits != null) {
+            out.or(bits);
+        } else {
+            for (int i = 0; i < count; i++) out.set(rows[i]);
+        }
+    }
+}
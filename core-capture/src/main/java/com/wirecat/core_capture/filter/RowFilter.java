@@ -0,0 +1,23 @@
+package com.wirecat.core_capture.filter;
+
+import java.util.BitSet;
+import java.util.function.IntFunction;
+import java.util.function.IntPredicate;
+
+/**
+ * Row filter that can also answer from the {@link PacketIndex}: instead of
+ * testing every row, a rebuild starts from the candidate rows the index
+ * returns and only tests those. New rows arriving later are still tested one
+ * by one, so an active filter never triggers a rescan.
+ */
+public interface RowFilter extends IntPredicate {
+    // Superset of the matching rows below rowCount; a fresh set the caller may modify
+    BitSet candidates(int rowCount);
+
+    static RowFilter of(IntPredicate test, IntFunction<BitSet> candidates) {
+        return new RowFilter() {
+            @Override public boolean test(int row) { return test.test(row); }
+            @Override public BitSet candidates(int rowCount) { return candidates.apply(rowCount); }
+        };
+    }
+}
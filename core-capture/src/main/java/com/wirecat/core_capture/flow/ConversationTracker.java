@@ -0,0 +1,272 @@
+package com.wirecat.core_capture.flow;
+
+import com.wirecat.core_capture.decode.FrameDecoder;
+import com.wirecat.core_capture.model.Conversation;
+import com.wirecat.core_capture.model.PacketModel;
+import com.wirecat.core_capture.pipeline.Partitioner;
+import com.wirecat.core_capture.pipeline.StageHandler;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+
+/**
+ * Conversation table split into shards by flow hash. Each shard is owned by
+ * one pipeline worker, which is its only writer, so the tables are primitive
+ * {@link FlowTable}s probed with a reused {@link FlowKey} and need no locking.
+ * Both directions of a 5-tuple count towards the same conversation. Counters are updated in place; new and changed
+ * conversations are queued (each at most once until drained) so the UI only
+ * touches rows that actually moved.
+ * <p>
+ * With digests on ({@link #setDigests}) every conversation also carries a
+ * {@link FlowDigest}. When a flow ends (TCP close or reset, {@link #IDLE_MICROS}
+ * of capture time without a packet, or {@link #endAll}) it is handed to the
+ * flow-end listener, if one is set, once.
+ * An ended flow stays in its shard for {@link #GRACE_MICROS} more, so late
+ * packets still count towards it, and is then dropped; the table holds the
+ * flows that are live, not every flow ever seen. A new SYN on an ended flow's
+ * 5-tuple starts a new conversation instead.
+ * <p>
+ * With digests on or a stream listener set, each shard also runs a
+ * {@link TcpStreamReassembler} on its own worker, which fills the digests' TCP
+ * prefixes before passing the bytes on, so everything one worker learns about
+ * a flow (counters and reassembled bytes) has a single writer.
+ */
+public class ConversationTracker {
+    // Routes a frame to the shard that owns its flow; both directions of a
+    // 5-tuple hash alike, so they always land on the same worker
+    public static final Partitioner BY_FLOW =
+            (slot, sequence, shards) -> Math.floorMod(slot.flowHash, shards);
+
+    private final Shard[] shards;
+    private final Queue<Conversation> created = new ConcurrentLinkedQueue<>();
+    private final Queue<Conversation> changed = new ConcurrentLinkedQueue<>();
+    private volatile int generation;  // bumped by clear(); shards reset themselves lazily
+    private volatile Consumer<Conversation> onFlowEnd;
+    private boolean digests;
+    private TcpStreamReassembler.StreamListener streamListener;
+
+    public static final long IDLE_MICROS = 60_000_000L;
+    public static final long GRACE_MICROS = 30_000_000L;
+
+    public ConversationTracker() {
+        this(1);
+    }
+
+    public ConversationTracker(int shardCount) {
+        shards = new Shard[Math.max(1, shardCount)];
+        for (int i = 0; i < shards.length; i++) shards[i] = new Shard();
+    }
+
+    public int shardCount() { return shards.length; }
+
+    // Called on the shard's worker (so from several threads) with each flow as it ends; null for none
+    public void setOnFlowEnd(Consumer<Conversation> listener) { onFlowEnd = listener; }
+
+    // Gives new flows a digest, for AI summaries; only while no capture is running
+    public void setDigests(boolean on) {
+        digests = on;
+        resetStreams();
+    }
+
+    /**
+     * Reassembled TCP bytes, delivered on the shard workers; null for none.
+     * Only while no capture is running: each shard gets a fresh reassembler
+     * with its share of the memory budget.
+     */
+    public void setStreamListener(TcpStreamReassembler.StreamListener listener) {
+        streamListener = listener;
+        resetStreams();
+    }
+
+    private void resetStreams() {
+        for (Shard s : shards) {
+            s.streams = !digests && streamListener == null ? null : new TcpStreamReassembler(
+                    new StreamTap(s, digests, streamListener),
+                    TcpStreamReassembler.DEFAULT_MAX_FLOW_BUFFER,
+                    TcpStreamReassembler.DEFAULT_MAX_TOTAL_BUFFER / shards.length,
+                    TcpStreamReassembler.DEFAULT_IDLE_TIMEOUT_MICROS);
+        }
+    }
+
+    // Handler for the worker that owns the given shard
+    public StageHandler shardHandler(int shard) {
+        return (slot, sequence, endOfBatch) -> onPacket(shard, slot.model);
+    }
+
+    // Called from the shard's own worker only
+    public void onPacket(int shard, PacketModel pm) {
+        Shard s = shards[shard];
+        int gen = generation;
+        if (s.generation != gen) {
+            if (s.streams != null) s.streams.closeAll();
+            s.table.clear();
+            s.size = 0;
+            s.lastSweepMicros = Long.MIN_VALUE / 2;
+            s.generation = gen;
+        }
+
+        long now = pm.getTimestampMicros();
+        if (Math.abs(now - s.lastSweepMicros) > IDLE_MICROS / 8) {   // capture time; a file may jump back
+            s.lastSweepMicros = now;
+            sweep(s, now);
+        }
+
+        FrameDecoder f = pm.getFrame();
+        FlowKey key = s.key.set(f);
+        Flow flow = s.table.get(key);
+        if (flow != null && flow.ended && f.isTcp()
+                && (f.tcpFlags() & (FrameDecoder.TCP_SYN | FrameDecoder.TCP_ACK)) == FrameDecoder.TCP_SYN) {
+            flow = null;   // a new connection on the same 5-tuple (port reuse, retried connect)
+        }
+        if (flow == null) {
+            Conversation conv = new Conversation(
+                    pm.getSrc(), pm.getSrcPort(),
+                    pm.getDst(), pm.getDstPort(), pm.getProto(),
+                    pm.getTimestampMs(), pm.getLen(),
+                    pm.getSrcMac(), pm.getDstMac());
+            flow = new Flow(conv, key.isForward(), digests ? new FlowDigest() : null);
+            flow.lastMicros = now;
+            if (flow.digest != null) {
+                conv.setDigest(flow.digest);
+                flow.digest.onPacket(pm.getFrame(), now, pm.getLen(), true);
+            }
+            s.table.put(key, flow);
+            s.size = s.table.size();
+            created.add(conv);
+        } else {
+            Conversation conv = flow.conversation;
+            boolean fromSrc = key.isForward() == flow.srcIsA;
+            conv.addPacket(pm.getLen(), pm.getTimestampMs(), fromSrc);
+            if (flow.digest != null) flow.digest.onPacket(pm.getFrame(), now, pm.getLen(), fromSrc);
+            flow.lastMicros = Math.max(flow.lastMicros, now);
+            if (conv.markDirty()) changed.add(conv);
+        }
+        // Before a FIN or reset ends the flow, so its digest already has this segment's bytes
+        if (s.streams != null) s.streams.onSegment(f, now);
+        if (f.isTcp() && (f.tcpFlags() & (FrameDecoder.TCP_FIN | FrameDecoder.TCP_RST)) != 0) {
+            if ((f.tcpFlags() & FrameDecoder.TCP_RST) != 0) flow.closing = 3;
+            else flow.closing |= key.isForward() == flow.srcIsA ? 1 : 2;
+            if (!flow.ended && flow.closing == 3) end(flow, now);
+        }
+    }
+
+    // Ends flows that went quiet and drops those that ended more than the grace period ago
+    private void sweep(Shard s, long now) {
+        s.table.removeIf(flow -> {
+            if (!flow.ended && now - flow.lastMicros > IDLE_MICROS) end(flow, now);
+            return flow.ended && now - Math.max(flow.endedMicros, flow.lastMicros) > GRACE_MICROS;
+        });
+        s.size = s.table.size();
+    }
+
+    private void end(Flow flow, long now) {
+        flow.ended = true;
+        flow.endedMicros = now;
+        Consumer<Conversation> listener = onFlowEnd;
+        if (listener != null) listener.accept(flow.conversation);
+    }
+
+    // Flushes the reassemblers and ends every open flow, e.g. at the end of a file; only
+    // once the shard workers have stopped
+    public void endAll() {
+        int gen = generation;
+        for (Shard s : shards) {
+            if (s.streams != null) s.streams.closeAll();
+            if (s.generation != gen) continue;
+            s.table.forEach((k, flow) -> {
+                if (!flow.ended) end(flow, flow.lastMicros);
+            });
+        }
+    }
+
+    // Queues a conversation for the UI's next drain after something other than a packet changed it
+    public void touch(Conversation conv) {
+        if (conv.markDirty()) changed.add(conv);
+    }
+
+    public boolean hasPending() {
+        return !created.isEmpty() || !changed.isEmpty();
+    }
+
+    // Hands new and changed conversations to the UI thread, coalesced since the last call
+    public void drain(Consumer<Conversation> onCreated, Consumer<Conversation> onChanged) {
+        Conversation c;
+        while ((c = created.poll()) != null) onCreated.accept(c);
+        while ((c = changed.poll()) != null) {
+            c.clearDirty();
+            onChanged.accept(c);
+        }
+    }
+
+    public int size() {
+        int gen = generation;
+        int n = 0;
+        for (Shard s : shards) if (s.generation == gen) n += s.size;
+        return n;
+    }
+
+    // Safe while a capture is running: shards drop their tables on their next frame
+    public void clear() {
+        generation++;
+        created.clear();
+        changed.clear();
+    }
+
+    private static final class Flow {
+        final Conversation conversation;
+        final boolean srcIsA;
+        final FlowDigest digest;   // null with digests off
+        long lastMicros;      // capture time of the newest packet
+        long endedMicros;
+        int closing;          // FIN seen from src (1) and dst (2); 3 after both or a reset
+        boolean ended;
+
+        Flow(Conversation conversation, boolean srcIsA, FlowDigest digest) {
+            this.conversation = conversation;
+            this.srcIsA = srcIsA;
+            this.digest = digest;
+        }
+    }
+
+    private static final class Shard {
+        final FlowTable<Flow> table = new FlowTable<>(4096);
+        final FlowKey key = new FlowKey();
+        TcpStreamReassembler streams;   // null unless digests or someone else want stream data
+        long lastSweepMicros = Long.MIN_VALUE / 2;
+        volatile int size;
+        volatile int generation;
+    }
+
+    // Copies the start of each reassembled stream into its flow's digest, then passes everything on
+    private static final class StreamTap implements TcpStreamReassembler.StreamListener {
+        private final Shard shard;
+        private final boolean digests;
+        private final TcpStreamReassembler.StreamListener next;   // may be null
+
+        StreamTap(Shard shard, boolean digests, TcpStreamReassembler.StreamListener next) {
+            this.shard = shard;
+            this.digests = digests;
+            this.next = next;
+        }
+
+        @Override
+        public void onData(FlowKey key, boolean fromClient, long streamOffset, byte[] data, int off, int len) {
+            if (digests && streamOffset < FlowDigest.PREFIX_BYTES) {
+                Flow flow = shard.table.get(key);
+                if (flow != null && flow.digest != null) flow.digest.onStream(fromClient, streamOffset, data, off, len);
+            }
+            if (next != null) next.onData(key, fromClient, streamOffset, data, off, len);
+        }
+
+        @Override
+        public void onGap(FlowKey key, boolean fromClient, long streamOffset, long missing) {
+            if (next != null) next.onGap(key, fromClient, streamOffset, missing);
+        }
+
+        @Override
+        public void onClose(FlowKey key, TcpStreamReassembler.CloseReason reason) {
+            if (next != null) next.onClose(key, reason);
+        }
+    }
+}
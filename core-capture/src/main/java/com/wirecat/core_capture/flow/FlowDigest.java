@@ -0,0 +1,174 @@
+package com.wirecat.core_capture.flow;
+
+import com.wirecat.core_capture.decode.FrameDecoder;
+import com.wirecat.core_capture.decode.Protocols;
+import com.wirecat.core_capture.detect.Signatures;
+import com.wirecat.core_capture.util.PromptText;
+
+/**
+ * What the AI model is told about a whole conversation, gathered as its
+ * packets go by: per direction the packet and byte counts, a histogram of
+ * frame sizes and the first {@link #PREFIX_BYTES} bytes of payload; for the
+ * flow its duration, longest silence, TCP handshake and close, the most
+ * specific protocol seen and the union of payload signature tags. TCP
+ * prefixes come from the shard's {@link TcpStreamReassembler} ({@link #onStream}),
+ * per client and server, so reordering and retransmission are already dealt
+ * with; other flows keep their first datagram with a payload. About 500
+ * bytes whatever the flow's length.
+ * <p>
+ * Written only by the conversation shard that owns the flow. {@link #describe}
+ * renders it in {@link PromptText}'s wording, so flows of the same kind give
+ * the same text and share a cached answer; called from another thread it
+ * reads a snapshot that may be a packet behind.
+ */
+public final class FlowDigest {
+    public static final int PREFIX_BYTES = 64;
+    private static final int SIZE_BUCKETS = 17;   // frame length by power of two, 64 KB and up last
+
+    private int protocolId;
+    private int ipProtocol, ipVersion;
+    private long initiatorHi, initiatorLo, responderHi, responderLo;
+    private int initiatorPort, responderPort;
+    private boolean hasAddresses;
+
+    private long firstMicros, lastMicros, maxGapMicros;
+    private final long[] packets = new long[2];    // [0] from the initiator, [1] from the responder
+    private final long[] bytes = new long[2];
+    private final int[][] sizes = new int[2][SIZE_BUCKETS];
+    // TCP: [0] from the client, [1] from the server; otherwise as above
+    private final byte[][] prefix = new byte[2][PREFIX_BYTES];
+    private final long[] prefixFilled = new long[2];   // bit i set once prefix byte i is known
+    private int syns, synAcks, resets, finFrom;    // finFrom: bit per direction
+    private long tags;
+    private boolean claimed;
+
+    // The first packet seen decides who is the initiator
+    public void onPacket(FrameDecoder f, long timestampMicros, int length, boolean fromInitiator) {
+        int d = fromInitiator ? 0 : 1;
+        if (packets[0] + packets[1] == 0) {
+            start(f, timestampMicros, fromInitiator);
+        } else {
+            maxGapMicros = Math.max(maxGapMicros, timestampMicros - lastMicros);
+            lastMicros = Math.max(lastMicros, timestampMicros);
+        }
+        packets[d]++;
+        bytes[d] += length;
+        sizes[d][Math.min(SIZE_BUCKETS - 1, 31 - Integer.numberOfLeadingZeros(Math.max(1, length)))]++;
+        tags |= f.payloadTags();
+        if (isGeneric(protocolId)) protocolId = f.protocolId();
+
+        int len = f.payloadLength();
+        if (f.isTcp()) {
+            int flags = f.tcpFlags();
+            boolean syn = (flags & FrameDecoder.TCP_SYN) != 0, ack = (flags & FrameDecoder.TCP_ACK) != 0;
+            if (syn && ack) synAcks++;
+            else if (syn) syns++;
+            if ((flags & FrameDecoder.TCP_RST) != 0) resets++;
+            if ((flags & FrameDecoder.TCP_FIN) != 0) finFrom |= 1 << d;
+        } else if (len > 0 && prefixFilled[d] == 0) {
+            // Datagrams: the first one with a payload
+            int n = Math.min(len, PREFIX_BYTES);
+            f.copyPayload(0, prefix[d], 0, n);
+            prefixFilled[d] = n == 64 ? -1L : (1L << n) - 1;
+        }
+    }
+
+    // Reassembled TCP bytes at the given stream offset, from the shard's reassembler
+    public void onStream(boolean fromClient, long streamOffset, byte[] data, int off, int len) {
+        if (streamOffset >= PREFIX_BYTES) return;
+        int d = fromClient ? 0 : 1;
+        int at = (int) streamOffset;
+        int n = Math.min(len, PREFIX_BYTES - at);
+        System.arraycopy(data, off, prefix[d], at, n);
+        prefixFilled[d] |= (n == 64 ? -1L : (1L << n) - 1) << at;
+    }
+
+    private void start(FrameDecoder f, long timestampMicros, boolean fromInitiator) {
+        firstMicros = lastMicros = timestampMicros;
+        protocolId = f.protocolId();
+        ipProtocol = f.ipProtocol();
+        ipVersion = f.ipVersion();
+        hasAddresses = f.hasAddresses();
+        if (hasAddresses) {
+            int a = fromInitiator ? f.srcAddrOffset() : f.dstAddrOffset();
+            int b = fromInitiator ? f.dstAddrOffset() : f.srcAddrOffset();
+            initiatorHi = f.addrHi(a);
+            initiatorLo = f.addrLo(a);
+            responderHi = f.addrHi(b);
+            responderLo = f.addrLo(b);
+        }
+        initiatorPort = fromInitiator ? f.srcPort() : f.dstPort();
+        responderPort = fromInitiator ? f.dstPort() : f.srcPort();
+    }
+
+    private static boolean isGeneric(int protocolId) {
+        return protocolId == Protocols.TCP || protocolId == Protocols.UDP || protocolId == Protocols.TCPV6
+                || protocolId == Protocols.UDPV6 || protocolId == Protocols.OTHER_IP;
+    }
+
+    // True for the first caller only, so each flow is summarized at most once
+    public synchronized boolean claim() {
+        if (claimed) return false;
+        claimed = true;
+        return true;
+    }
+
+    public synchronized boolean isClaimed() { return claimed; }
+
+    public String describe() {
+        StringBuilder sb = new StringBuilder();
+        String transport = PromptText.transport(ipProtocol, ipVersion);
+        String name = Protocols.name(protocolId);
+        sb.append("Flow: ");
+        if (transport.isEmpty()) sb.append(name);
+        else if (isGeneric(protocolId) || name.startsWith(transport)) sb.append(transport);
+        else sb.append(name).append(" over ").append(transport);
+        if (ipVersion != 0) sb.append("/IPv").append(ipVersion);
+        sb.append('\n');
+        if (hasAddresses) {
+            sb.append("Initiator: ").append(PromptText.role(initiatorHi, initiatorLo))
+              .append(", responder: ").append(PromptText.role(responderHi, responderLo)).append('\n');
+        }
+        if (ipProtocol == FrameDecoder.IPPROTO_TCP || ipProtocol == FrameDecoder.IPPROTO_UDP) {
+            sb.append("Ports: ").append(PromptText.port(initiatorPort, responderPort)).append(" → ")
+              .append(PromptText.port(responderPort, initiatorPort)).append('\n');
+        }
+        sb.append("Duration: ").append(PromptText.duration(lastMicros - firstMicros))
+          .append(", longest silence ").append(PromptText.duration(maxGapMicros)).append('\n');
+        for (int d = 0; d < 2; d++) {
+            String side = d == 0 ? "initiator" : "responder";
+            sb.append("From ").append(side).append(": ").append(PromptText.range(packets[d], "packets"))
+              .append(", ").append(PromptText.range(bytes[d], "bytes"));
+            if (packets[d] > 0) sb.append(", frames mostly ").append(commonSize(d));
+            sb.append('\n');
+        }
+        if (ipProtocol == FrameDecoder.IPPROTO_TCP) sb.append("TCP: ").append(tcpSummary()).append('\n');
+        if (tags != 0) sb.append("Signature tags: ").append(Signatures.DEFAULT.names(tags)).append('\n');
+        boolean tcp = ipProtocol == FrameDecoder.IPPROTO_TCP;
+        for (int d = 0; d < 2; d++) {
+            int n = Long.numberOfTrailingZeros(~prefixFilled[d]);   // contiguous bytes from the start
+            if (n == 0) continue;
+            String side = tcp ? (d == 0 ? "client" : "server") : (d == 0 ? "initiator" : "responder");
+            sb.append("First bytes from ").append(side).append(": ")
+              .append(PromptText.payload(prefix[d], 0, n)).append('\n');
+        }
+        return sb.toString();
+    }
+
+    private String commonSize(int d) {
+        int best = 0;
+        for (int b = 1; b < SIZE_BUCKETS; b++) if (sizes[d][b] > sizes[d][best]) best = b;
+        long share = Math.round(100.0 * sizes[d][best] / Math.max(1, packets[d]));
+        String range = best == SIZE_BUCKETS - 1 ? (1 << best) + "+ bytes" : PromptText.range(1L << best, "bytes");
+        return range + " (" + share + "%)";
+    }
+
+    private String tcpSummary() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(syns > 0 ? "SYN" : "no SYN").append(synAcks > 0 ? ", SYN-ACK" : ", no SYN-ACK");
+        if (syns > 1) sb.append(", SYN retried");
+        sb.append(resets > 0 ? ", reset" : finFrom == 3 ? ", closed by FIN from both sides"
+                : finFrom != 0 ? ", FIN from one side only" : ", no close seen");
+        return sb.toString();
+    }
+}
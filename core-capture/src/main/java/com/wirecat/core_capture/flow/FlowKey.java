@@ -0,0 +1,113 @@
+package com.wirecat.core_capture.flow;
+
+import com.wirecat.core_capture.decode.FrameDecoder;
+
+/**
+ * Bidirectional flow identity packed into five longs: both endpoint addresses
+ * as 128-bit values (IPv4 in its IPv4-mapped IPv6 form), and one word holding
+ * both ports, the EtherType and the IP protocol number. Endpoints are stored
+ * in canonical order (lower address/port first) so A→B and B→A produce the
+ * same key; {@link #isForward()} records which way the current frame went.
+ * <p>
+ * Instances are mutable and meant to be reused per thread, so filling a key
+ * from a decoded frame and probing a {@link FlowTable} allocates nothing.
+ */
+public final class FlowKey {
+    public static final int WORDS = 5;
+
+    private long aHi, aLo, bHi, bLo, meta;
+    private boolean forward;
+    private int hash;
+
+    // Fills the key from a decoded frame; frames without addresses collapse
+    // to one key per EtherType
+    public FlowKey set(FrameDecoder d) {
+        long sHi = 0, sLo = 0, dHi = 0, dLo = 0;
+        int sPort = Math.max(0, d.srcPort());
+        int dPort = Math.max(0, d.dstPort());
+        if (d.hasAddresses()) {
+            sHi = d.addrHi(d.srcAddrOffset());
+            sLo = d.addrLo(d.srcAddrOffset());
+            dHi = d.addrHi(d.dstAddrOffset());
+            dLo = d.addrLo(d.dstAddrOffset());
+        }
+        int proto = Math.max(0, d.ipProtocol()) & 0xFF;
+        int etherType = Math.max(0, d.etherType()) & 0xFFFF;
+        return set(sHi, sLo, sPort, dHi, dLo, dPort, etherType, proto);
+    }
+
+    public FlowKey set(long srcHi, long srcLo, int srcPort, long dstHi, long dstLo, int dstPort,
+                       int etherType, int ipProtocol) {
+        int c = Long.compareUnsigned(srcHi, dstHi);
+        if (c == 0) c = Long.compareUnsigned(srcLo, dstLo);
+        if (c == 0) c = Integer.compare(srcPort, dstPort);
+        forward = c <= 0;
+        int aPort, bPort;
+        if (forward) {
+            aHi = srcHi; aLo = srcLo; aPort = srcPort;
+            bHi = dstHi; bLo = dstLo; bPort = dstPort;
+        } else {
+            aHi = dstHi; aLo = dstLo; aPort = dstPort;
+            bHi = srcHi; bLo = srcLo; bPort = srcPort;
+        }
+        meta = (long) (aPort & 0xFFFF) << 48 | (long) (bPort & 0xFFFF) << 32
+                | (long) etherType << 16 | ipProtocol;
+        hash = mix(aHi, aLo, bHi, bLo, meta);
+        return this;
+    }
+
+    // True when the frame went from endpoint A (the canonical lower one) to B
+    public boolean isForward()  { return forward; }
+    public int portA()          { return (int) (meta >>> 48); }
+    public int portB()          { return (int) (meta >>> 32) & 0xFFFF; }
+    public int etherType()      { return (int) (meta >>> 16) & 0xFFFF; }
+    public int ipProtocol()     { return (int) meta & 0xFF; }
+    public long addrAHi()       { return aHi; }
+    public long addrALo()       { return aLo; }
+    public long addrBHi()       { return bHi; }
+    public long addrBLo()       { return bLo; }
+    public boolean isIpV4() {
+        return aHi == 0 && bHi == 0 && (aLo >>> 32) == 0xFFFF && (bLo >>> 32) == 0xFFFF;
+    }
+
+    // Independent copy, for keys that outlive the scratch instance
+    public FlowKey copy() {
+        FlowKey k = new FlowKey();
+        k.aHi = aHi; k.aLo = aLo; k.bHi = bHi; k.bLo = bLo; k.meta = meta;
+        k.forward = forward;
+        k.hash = hash;
+        return k;
+    }
+
+    // --- Packed form used by FlowTable (and heavy-hitter keys)
+
+    public void writeTo(long[] words, int base) {
+        words[base] = aHi;
+        words[base + 1] = aLo;
+        words[base + 2] = bHi;
+        words[base + 3] = bLo;
+        words[base + 4] = meta;
+    }
+
+    boolean matches(long[] words, int base) {
+        return words[base + 4] == meta && words[base + 1] == aLo && words[base + 3] == bLo
+                && words[base] == aHi && words[base + 2] == bHi;
+    }
+
+    static int mix(long aHi, long aLo, long bHi, long bLo, long meta) {
+        long h = aHi * 0x9E3779B97F4A7C15L;
+        h = (h ^ aLo) * 0xC2B2AE3D27D4EB4FL;
+        h = (h ^ bHi) * 0x9E3779B97F4A7C15L;
+        h = (h ^ bLo) * 0xC2B2AE3D27D4EB4FL;
+        h = (h ^ meta) * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    @Override public int hashCode() { return hash; }
+
+    @Override public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof FlowKey k)) return false;
+        return meta == k.meta && aLo == k.aLo && bLo == k.bLo && aHi == k.aHi && bHi == k.bHi;
+    }
+}
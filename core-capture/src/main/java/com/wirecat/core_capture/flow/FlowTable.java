@@ -0,0 +1,167 @@
+package com.wirecat.core_capture.flow;
+
+import java.util.Arrays;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+
+/**
+ * Open-addressing hash table keyed by {@link FlowKey}. Keys are stored
+ * unboxed, five longs per slot in one flat array, with cached hashes and
+ * values in parallel arrays; lookups use linear probing and removals use
+ * backward-shift deletion, so there are no tombstones and no allocation
+ * outside of resizing. Not thread-safe: give each writer thread its own table.
+ */
+public final class FlowTable<V> {
+    private static final int MAX_CAPACITY = 1 << 28;
+
+    private long[] keys;
+    private int[] hashes;
+    private Object[] values;
+    private int mask;
+    private int size;
+    private int resizeAt;
+
+    public FlowTable() {
+        this(1024);
+    }
+
+    public FlowTable(int expectedFlows) {
+        allocate(Integer.highestOneBit(Math.max(16, expectedFlows * 2) - 1) << 1);
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity * FlowKey.WORDS];
+        hashes = new int[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+        resizeAt = (int) (capacity * 0.7f);
+    }
+
+    public int size() { return size; }
+    public boolean isEmpty() { return size == 0; }
+
+    @SuppressWarnings("unchecked")
+    public V get(FlowKey key) {
+        int i = find(key);
+        return i < 0 ? null : (V) values[i];
+    }
+
+    // Inserts or replaces; returns the previous value
+    @SuppressWarnings("unchecked")
+    public V put(FlowKey key, V value) {
+        if (value == null) throw new IllegalArgumentException("Null flow value");
+        int h = key.hashCode();
+        int i = index(h);
+        while (values[i] != null) {
+            if (hashes[i] == h && key.matches(keys, i * FlowKey.WORDS)) {
+                V old = (V) values[i];
+                values[i] = value;
+                return old;
+            }
+            i = (i + 1) & mask;
+        }
+        if (size >= mask) throw new IllegalStateException("Flow table full (" + size + " flows)");
+        key.writeTo(keys, i * FlowKey.WORDS);
+        hashes[i] = h;
+        values[i] = value;
+        if (++size > resizeAt) grow();
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V remove(FlowKey key) {
+        int i = find(key);
+        if (i < 0) return null;
+        V old = (V) values[i];
+        removeAt(i);
+        return old;
+    }
+
+    // Removes every entry the predicate accepts, e.g. to expire idle flows
+    @SuppressWarnings("unchecked")
+    public int removeIf(Predicate<V> predicate) {
+        int removed = 0;
+        for (int i = 0; i <= mask; ) {
+            if (values[i] != null && predicate.test((V) values[i])) {
+                removeAt(i);   // may shift a later entry into slot i; re-check it
+                removed++;
+            } else {
+                i++;
+            }
+        }
+        return removed;
+    }
+
+    @SuppressWarnings("unchecked")
+    public void forEach(BiConsumer<FlowKey, V> action) {
+        FlowKey k = new FlowKey();
+        for (int i = 0; i <= mask; i++) {
+            if (values[i] == null) continue;
+            int b = i * FlowKey.WORDS;
+            k.set(keys[b], keys[b + 1], (int) (keys[b + 4] >>> 48),
+                  keys[b + 2], keys[b + 3], (int) (keys[b + 4] >>> 32) & 0xFFFF,
+                  (int) (keys[b + 4] >>> 16) & 0xFFFF, (int) keys[b + 4] & 0xFF);
+            action.accept(k, (V) values[i]);
+        }
+    }
+
+    public void clear() {
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    private int find(FlowKey key) {
+        int h = key.hashCode();
+        int i = index(h);
+        while (values[i] != null) {
+            if (hashes[i] == h && key.matches(keys, i * FlowKey.WORDS)) return i;
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+
+    // Fibonacci hashing on the top bits, so tables inside one flow shard
+    // (whose hashes share their low bits) still spread evenly
+    private int index(int h) {
+        return (int) ((h * 0x9E3779B97F4A7C15L) >>> (64 - Integer.numberOfTrailingZeros(mask + 1)));
+    }
+
+    private void removeAt(int i) {
+        values[i] = null;
+        size--;
+        int j = i;
+        while (true) {
+            j = (j + 1) & mask;
+            if (values[j] == null) return;
+            int home = index(hashes[j]);
+            // Move j back into the hole unless its home lies cyclically in (i, j]
+            boolean stays = i <= j ? (i < home && home <= j) : (i < home || home <= j);
+            if (stays) continue;
+            System.arraycopy(keys, j * FlowKey.WORDS, keys, i * FlowKey.WORDS, FlowKey.WORDS);
+            hashes[i] = hashes[j];
+            values[i] = values[j];
+            values[j] = null;
+            i = j;
+        }
+    }
+
+    private void grow() {
+        int capacity = mask + 1;
+        if (capacity >= MAX_CAPACITY) {
+            resizeAt = Integer.MAX_VALUE;
+            return;
+        }
+        long[] oldKeys = keys;
+        int[] oldHashes = hashes;
+        Object[] oldValues = values;
+        allocate(capacity << 1);
+        for (int s = 0; s < oldValues.length; s++) {
+            if (oldValues[s] == null) continue;
+            int i = index(oldHashes[s]);
+            while (values[i] != null) i = (i + 1) & mask;
+            System.arraycopy(oldKeys, s * FlowKey.WORDS, keys, i * FlowKey.WORDS, FlowKey.WORDS);
+            hashes[i] = oldHashes[s];
+            values[i] = oldValues[s];
+        }
+    }
+}
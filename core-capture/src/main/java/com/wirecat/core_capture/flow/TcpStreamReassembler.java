@@ -0,0 +1,257 @@
+package com.wirecat.core_capture.flow;
+
+import com.wirecat.core_capture.decode.FrameDecoder;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Reassembles TCP byte streams for both directions of every connection.
+ * Sequence numbers are tracked per direction relative to the ISN (or to the
+ * first segment seen, for connections picked up mid-stream), retransmitted
+ * and overlapping bytes are dropped, and segments that arrive early wait in a
+ * bounded per-flow buffer until the hole before them is filled. Contiguous
+ * bytes go to a {@link StreamListener} as soon as they are in order.
+ * <p>
+ * Memory is capped per flow and across all flows: when a buffer overflows the
+ * hole is declared lost ({@link StreamListener#onGap}) and delivery resumes
+ * after it. Flows are evicted on RST, after FIN in both directions, or once
+ * idle for longer than the timeout (in capture time). Not thread-safe: run
+ * one instance per flow shard.
+ */
+public class TcpStreamReassembler {
+    public enum CloseReason { FIN, RST, IDLE, SHUTDOWN }
+
+    public interface StreamListener {
+        // In-order bytes at the given stream offset; the array is reused after the call returns
+        void onData(FlowKey flow, boolean fromClient, long streamOffset, byte[] data, int off, int len);
+        default void onGap(FlowKey flow, boolean fromClient, long streamOffset, long missing) {}
+        default void onClose(FlowKey flow, CloseReason reason) {}
+    }
+
+    public static final int DEFAULT_MAX_FLOW_BUFFER = 256 * 1024;
+    public static final long DEFAULT_MAX_TOTAL_BUFFER = 64L << 20;
+    public static final long DEFAULT_IDLE_TIMEOUT_MICROS = 120_000_000L;
+
+    private static final long SEQ_MASK = 0xFFFF_FFFFL;
+
+    private final StreamListener listener;
+    private final int maxFlowBuffer;
+    private final long maxTotalBuffer;
+    private final long idleTimeoutMicros;
+    private final FlowTable<Stream> streams = new FlowTable<>(4096);
+    private final FlowKey scratch = new FlowKey();
+    private byte[] chunk = new byte[2048];
+    private long bufferedBytes;
+    private long lastSweepMicros;
+
+    // Written by the owning thread, read for display
+    private volatile long deliveredBytes;
+    private volatile long duplicateBytes;
+    private volatile long gapBytes;
+    private volatile long closedFlows;
+
+    public TcpStreamReassembler(StreamListener listener) {
+        this(listener, DEFAULT_MAX_FLOW_BUFFER, DEFAULT_MAX_TOTAL_BUFFER, DEFAULT_IDLE_TIMEOUT_MICROS);
+    }
+
+    public TcpStreamReassembler(StreamListener listener, int maxFlowBuffer, long maxTotalBuffer,
+                                long idleTimeoutMicros) {
+        this.listener = listener;
+        this.maxFlowBuffer = maxFlowBuffer;
+        this.maxTotalBuffer = maxTotalBuffer;
+        this.idleTimeoutMicros = idleTimeoutMicros;
+    }
+
+    public void onSegment(FrameDecoder d, long timestampMicros) {
+        if (!d.isTcp()) return;
+        if (timestampMicros - lastSweepMicros > idleTimeoutMicros / 8) {
+            expireIdle(timestampMicros);
+            lastSweepMicros = timestampMicros;
+        }
+
+        int flags = d.tcpFlags();
+        boolean syn = (flags & FrameDecoder.TCP_SYN) != 0;
+        FlowKey key = scratch.set(d);
+        Stream s = streams.get(key);
+        if (s == null) {
+            // Only a SYN or data opens a stream: the last ACK of a closed one, or a
+            // reset, would otherwise leave an empty stream until the idle timeout
+            if ((flags & FrameDecoder.TCP_RST) != 0 || (!syn && d.payloadLength() == 0)) return;
+            // The SYN sender is the client; a lone SYN-ACK comes from the server,
+            // and mid-stream pickups treat the first sender as the client
+            boolean senderIsClient = !(syn && (flags & FrameDecoder.TCP_ACK) != 0);
+            s = new Stream(key.copy(), key.isForward() == senderIsClient);
+            streams.put(key, s);
+        }
+        s.lastSeenMicros = timestampMicros;
+        boolean fromClient = key.isForward() == s.clientIsA;
+        Direction dir = fromClient ? s.toServer : s.toClient;
+
+        if ((flags & FrameDecoder.TCP_RST) != 0) {
+            close(s, CloseReason.RST);
+            streams.remove(s.key);
+            return;
+        }
+
+        long seq = d.tcpSeq();
+        if (syn) seq = (seq + 1) & SEQ_MASK;   // SYN occupies one sequence number
+        if (!dir.started) {
+            dir.started = true;
+            dir.base = seq;
+        }
+        // Signed 32-bit distance from the next expected byte handles wraparound
+        long offset = dir.next + (int) (seq - ((dir.base + dir.next) & SEQ_MASK));
+        int len = d.payloadLength();
+        if (len > 0) accept(s, dir, fromClient, d, offset, len);
+        if ((flags & FrameDecoder.TCP_FIN) != 0 && dir.finAt < 0) dir.finAt = offset + len;
+
+        if (s.toServer.finished() && s.toClient.finished()) {
+            close(s, CloseReason.FIN);
+            streams.remove(s.key);
+        }
+    }
+
+    private void accept(Stream s, Direction dir, boolean fromClient, FrameDecoder d, long offset, int len) {
+        long end = offset + len;
+        if (end <= dir.next) {
+            duplicateBytes += len;
+            return;
+        }
+        if (offset > dir.next + maxFlowBuffer) {
+            // Too far ahead to buffer: whatever lies before it is lost
+            while (dir.pendingBytes > 0) skipGap(s, dir, fromClient);
+            if (offset > dir.next) gap(s, dir, fromClient, offset - dir.next);
+        }
+        if (offset <= dir.next) {
+            int skip = (int) (dir.next - offset);
+            duplicateBytes += skip;
+            deliver(s, dir, fromClient, d, skip, len - skip);
+            drainPending(s, dir, fromClient);
+            return;
+        }
+
+        // Out of order: keep a copy until the hole before it is filled
+        if (dir.pending == null) dir.pending = new TreeMap<>();
+        byte[] held = dir.pending.get(offset);
+        if (held != null && held.length >= len) {
+            duplicateBytes += len;
+            return;
+        }
+        byte[] copy = new byte[len];
+        d.copyPayload(0, copy, 0, len);
+        dir.pending.put(offset, copy);
+        hold(dir, len - (held != null ? held.length : 0));
+
+        while (dir.pendingBytes > maxFlowBuffer || (bufferedBytes > maxTotalBuffer && dir.pendingBytes > 0)) {
+            skipGap(s, dir, fromClient);
+        }
+    }
+
+    // Hands on buffered segments that have become contiguous
+    private void drainPending(Stream s, Direction dir, boolean fromClient) {
+        if (dir.pending == null) return;
+        Map.Entry<Long, byte[]> e;
+        while ((e = dir.pending.firstEntry()) != null && e.getKey() <= dir.next) {
+            dir.pending.pollFirstEntry();
+            byte[] b = e.getValue();
+            hold(dir, -b.length);
+            long end = e.getKey() + b.length;
+            if (end <= dir.next) {
+                duplicateBytes += b.length;
+                continue;
+            }
+            int skip = (int) (dir.next - e.getKey());
+            duplicateBytes += skip;
+            emit(s, fromClient, dir.next, b, skip, b.length - skip);
+            dir.next = end;
+        }
+    }
+
+    // Gives up on the hole before the earliest buffered segment
+    private void skipGap(Stream s, Direction dir, boolean fromClient) {
+        long first = dir.pending.firstKey();
+        if (first > dir.next) gap(s, dir, fromClient, first - dir.next);
+        drainPending(s, dir, fromClient);
+    }
+
+    private void gap(Stream s, Direction dir, boolean fromClient, long missing) {
+        gapBytes += missing;
+        listener.onGap(s.key, fromClient, dir.next, missing);
+        dir.next += missing;
+    }
+
+    private void deliver(Stream s, Direction dir, boolean fromClient, FrameDecoder d, int from, int len) {
+        if (chunk.length < len) chunk = new byte[Math.max(len, chunk.length * 2)];
+        d.copyPayload(from, chunk, 0, len);
+        emit(s, fromClient, dir.next, chunk, 0, len);
+        dir.next += len;
+    }
+
+    private void emit(Stream s, boolean fromClient, long offset, byte[] data, int off, int len) {
+        deliveredBytes += len;
+        listener.onData(s.key, fromClient, offset, data, off, len);
+    }
+
+    private void hold(Direction dir, int bytes) {
+        dir.pendingBytes += bytes;
+        bufferedBytes += bytes;
+    }
+
+    // Flushes what is buffered (declaring holes lost) and reports the close;
+    // the caller removes the flow from the table
+    private void close(Stream s, CloseReason reason) {
+        while (s.toServer.pendingBytes > 0) skipGap(s, s.toServer, true);
+        while (s.toClient.pendingBytes > 0) skipGap(s, s.toClient, false);
+        closedFlows++;
+        listener.onClose(s.key, reason);
+    }
+
+    // Evicts flows with no traffic for longer than the idle timeout
+    public void expireIdle(long nowMicros) {
+        streams.removeIf(s -> {
+            if (nowMicros - s.lastSeenMicros <= idleTimeoutMicros) return false;
+            close(s, CloseReason.IDLE);
+            return true;
+        });
+    }
+
+    // Flushes and closes every open flow, e.g. when capture stops
+    public void closeAll() {
+        streams.removeIf(s -> {
+            close(s, CloseReason.SHUTDOWN);
+            return true;
+        });
+    }
+
+    public int activeFlows()      { return streams.size(); }
+    public long bufferedBytes()   { return bufferedBytes; }
+    public long deliveredBytes()  { return deliveredBytes; }
+    public long duplicateBytes()  { return duplicateBytes; }
+    public long gapBytes()        { return gapBytes; }
+    public long closedFlows()     { return closedFlows; }
+
+    private static final class Stream {
+        final FlowKey key;
+        final boolean clientIsA;
+        final Direction toServer = new Direction();
+        final Direction toClient = new Direction();
+        long lastSeenMicros;
+
+        Stream(FlowKey key, boolean clientIsA) {
+            this.key = key;
+            this.clientIsA = clientIsA;
+        }
+    }
+
+    private static final class Direction {
+        boolean started;
+        long base;                       // sequence number of stream offset 0
+        long next;                       // next stream offset expected in order
+        long finAt = -1;                 // stream offset of the FIN, once seen
+        TreeMap<Long, byte[]> pending;   // early segments by stream offset
+        int pendingBytes;
+
+        boolean finished() { return finAt >= 0 && next >= finAt; }
+    }
+}
@@ -0,0 +1,267 @@
+package com.wirecat.core_capture.io;
+
+import com.wirecat.core_capture.decode.FrameDecoder;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads classic pcap and pcapng files through memory-mapped windows of the
+ * file. Record headers are parsed in place and each frame is handed to the
+ * caller as a slice of the mapping, so nothing is copied or allocated per
+ * record. Files larger than one window are remapped as the walk advances.
+ */
+public final class PcapFileReader implements Closeable {
+    @FunctionalInterface
+    public interface RecordHandler {
+        // Frame bytes are buffer[offset, offset + length); valid only during the call.
+        // Return false to stop reading.
+        boolean onRecord(ByteBuffer buffer, int offset, int length, long timestampMicros, int linkType);
+    }
+
+    private static final long WINDOW = 1L << 30;
+    private static final int MAX_RECORD = 1 << 24;
+
+    // pcap magics, as read big-endian
+    private static final int MAGIC_MICROS         = 0xA1B2C3D4;
+    private static final int MAGIC_MICROS_SWAPPED = 0xD4C3B2A1;
+    private static final int MAGIC_NANOS          = 0xA1B23C4D;
+    private static final int MAGIC_NANOS_SWAPPED  = 0x4D3CB2A1;
+
+    // pcapng block types
+    private static final int NG_SECTION_HEADER  = 0x0A0D0D0A;
+    private static final int NG_INTERFACE       = 0x00000001;
+    private static final int NG_PACKET_OBSOLETE = 0x00000002;
+    private static final int NG_SIMPLE_PACKET   = 0x00000003;
+    private static final int NG_ENHANCED_PACKET = 0x00000006;
+    private static final int NG_BYTE_ORDER      = 0x1A2B3C4D;
+
+    private final FileChannel channel;
+    private final long size;
+    private final boolean pcapng;
+    private ByteOrder order = ByteOrder.BIG_ENDIAN;
+    private boolean nanos;
+    private int linkType = FrameDecoder.LINKTYPE_ETHERNET;
+
+    private MappedByteBuffer window;
+    private long windowStart;
+    private long windowEnd;
+    private volatile long position;
+
+    // pcapng interfaces of the current section: link type and timestamp units per second
+    private final List<Integer> ngLinkTypes = new ArrayList<>();
+    private final List<Long> ngUnits = new ArrayList<>();
+
+    private PcapFileReader(FileChannel channel) throws IOException {
+        this.channel = channel;
+        this.size = channel.size();
+        if (size < 24 || ensure(0, 24) < 0) throw new IOException("Not a capture file (too short)");
+        int magic = window.order(ByteOrder.BIG_ENDIAN).getInt(0);
+        switch (magic) {
+            case MAGIC_MICROS, MAGIC_NANOS -> order = ByteOrder.BIG_ENDIAN;
+            case MAGIC_MICROS_SWAPPED, MAGIC_NANOS_SWAPPED -> order = ByteOrder.LITTLE_ENDIAN;
+            case NG_SECTION_HEADER -> { }
+            default -> throw new IOException(String.format("Unknown capture format (magic %08X)", magic));
+        }
+        pcapng = magic == NG_SECTION_HEADER;
+        if (pcapng) {
+            readSectionOrder(0);
+            scanFirstInterface();
+        } else {
+            nanos = magic == MAGIC_NANOS || magic == MAGIC_NANOS_SWAPPED;
+            window.order(order);
+            linkType = window.getInt(20) & 0x0FFF_FFFF;
+        }
+    }
+
+    public static PcapFileReader open(Path path) throws IOException {
+        FileChannel ch = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            return new PcapFileReader(ch);
+        } catch (IOException | RuntimeException e) {
+            ch.close();
+            throw e;
+        }
+    }
+
+    public boolean isPcapng() { return pcapng; }
+    public int linkType()     { return linkType; }   // of the first interface
+    public long size()        { return size; }
+    public long position()    { return position; }   // bytes consumed, for progress
+
+    // Walks every record in file order; returns the number handed to the handler
+    public long read(RecordHandler handler) throws IOException {
+        return pcapng ? readPcapng(handler) : readPcap(handler);
+    }
+
+    private long readPcap(RecordHandler handler) throws IOException {
+        long count = 0;
+        long pos = 24;
+        while (pos + 16 <= size) {
+            int o = ensure(pos, 16);
+            if (o < 0) break;
+            long sec = window.getInt(o) & 0xFFFF_FFFFL;
+            long frac = window.getInt(o + 4) & 0xFFFF_FFFFL;
+            int captured = window.getInt(o + 8);
+            if (captured < 0 || captured > MAX_RECORD) throw new IOException("Corrupt record header at byte " + pos);
+            o = ensure(pos, 16 + captured);
+            if (o < 0) break;   // truncated last record
+            long ts = sec * 1_000_000 + (nanos ? frac / 1000 : frac);
+            position = pos;
+            if (!handler.onRecord(window, o + 16, captured, ts, linkType)) return count + 1;
+            count++;
+            pos += 16 + captured;
+        }
+        position = size;
+        return count;
+    }
+
+    private long readPcapng(RecordHandler handler) throws IOException {
+        long count = 0;
+        long pos = 0;
+        while (pos + 12 <= size) {
+            int o = ensure(pos, 12);
+            if (o < 0) break;
+            int type = window.getInt(o);
+            if (type == NG_SECTION_HEADER) {
+                readSectionOrder(pos);
+                o = ensure(pos, 12);
+                ngLinkTypes.clear();
+                ngUnits.clear();
+            }
+            int blockLen = window.getInt(o + 4);
+            if (blockLen < minBlockLength(type) || (blockLen & 3) != 0) {
+                throw new IOException("Corrupt pcapng block at byte " + pos);
+            }
+            o = ensure(pos, blockLen);
+            if (o < 0) break;
+            position = pos;
+
+            switch (type) {
+                case NG_INTERFACE -> addInterface(o, blockLen);
+                case NG_ENHANCED_PACKET, NG_PACKET_OBSOLETE -> {
+                    int iface = type == NG_ENHANCED_PACKET ? window.getInt(o + 8) : window.getShort(o + 8) & 0xFFFF;
+                    long raw = (window.getInt(o + 12) & 0xFFFF_FFFFL) << 32 | (window.getInt(o + 16) & 0xFFFF_FFFFL);
+                    int captured = Math.min(window.getInt(o + 20), blockLen - 32);
+                    if (captured < 0) throw new IOException("Corrupt packet block at byte " + pos);
+                    if (!handler.onRecord(window, o + 28, captured, toMicros(iface, raw), interfaceLinkType(iface))) {
+                        return count + 1;
+                    }
+                    count++;
+                }
+                case NG_SIMPLE_PACKET -> {
+                    // No timestamp; the original length may exceed what was captured
+                    int captured = Math.min(window.getInt(o + 8), blockLen - 16);
+                    if (captured < 0) throw new IOException("Corrupt packet block at byte " + pos);
+                    if (!handler.onRecord(window, o + 12, captured, 0, interfaceLinkType(0))) return count + 1;
+                    count++;
+                }
+                default -> { }  // statistics, name resolution, custom blocks
+            }
+            pos += blockLen;
+        }
+        position = size;
+        return count;
+    }
+
+    // Link type of the first interface, so the store and exports use it
+    private void scanFirstInterface() throws IOException {
+        long pos = 0;
+        while (pos + 12 <= size) {
+            int o = ensure(pos, 12);
+            if (o < 0) return;
+            int type = window.getInt(o);
+            int blockLen = window.getInt(o + 4);
+            if (blockLen < minBlockLength(type)) return;
+            if (type == NG_INTERFACE) {
+                linkType = window.getShort(o + 8) & 0xFFFF;
+                return;
+            }
+            if (type == NG_ENHANCED_PACKET || type == NG_SIMPLE_PACKET) return;
+            pos += blockLen;
+        }
+    }
+
+    // Header, fixed fields and trailer of each block type, so those fields lie inside the block
+    private static int minBlockLength(int type) {
+        return switch (type) {
+            case NG_SECTION_HEADER -> 28;
+            case NG_INTERFACE -> 20;
+            case NG_ENHANCED_PACKET, NG_PACKET_OBSOLETE -> 32;
+            case NG_SIMPLE_PACKET -> 16;
+            default -> 12;
+        };
+    }
+
+    private void readSectionOrder(long pos) throws IOException {
+        int o = ensure(pos, 12);
+        if (o < 0) throw new IOException("Truncated pcapng section header");
+        int bom = window.order(ByteOrder.BIG_ENDIAN).getInt(o + 8);
+        order = bom == NG_BYTE_ORDER ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+        window.order(order);
+    }
+
+    private void addInterface(int o, int blockLen) {
+        int lt = window.getShort(o + 8) & 0xFFFF;
+        long units = 1_000_000;  // default resolution is microseconds
+        int p = o + 16;
+        int end = o + blockLen - 4;
+        while (p + 4 <= end) {
+            int code = window.getShort(p) & 0xFFFF;
+            int len = window.getShort(p + 2) & 0xFFFF;
+            if (code == 0) break;
+            if (code == 9 && len >= 1) {   // if_tsresol
+                int v = window.get(p + 4) & 0xFF;
+                units = (v & 0x80) != 0 ? 1L << Math.min(62, v & 0x7F) : pow10(v);
+            }
+            p += 4 + ((len + 3) & ~3);
+        }
+        ngLinkTypes.add(lt);
+        ngUnits.add(units);
+    }
+
+    private int interfaceLinkType(int iface) {
+        return iface >= 0 && iface < ngLinkTypes.size() ? ngLinkTypes.get(iface) : linkType;
+    }
+
+    private long toMicros(int iface, long raw) {
+        long units = iface >= 0 && iface < ngUnits.size() ? ngUnits.get(iface) : 1_000_000;
+        if (units == 1_000_000) return raw;
+        if (units > 1_000_000 && units % 1_000_000 == 0) return raw / (units / 1_000_000);
+        return (long) (raw * (1_000_000.0 / units));
+    }
+
+    private static long pow10(int v) {
+        long r = 1;
+        for (int i = 0; i < Math.min(v, 18); i++) r *= 10;
+        return r;
+    }
+
+    // Makes [pos, pos + need) addressable in the current window and returns its
+    // offset there, or -1 if the file ends first
+    private int ensure(long pos, int need) throws IOException {
+        if (pos + need > size) return -1;
+        if (window == null || pos < windowStart || pos + need > windowEnd) {
+            long len = Math.min(Math.max(WINDOW, need), size - pos);
+            window = channel.map(FileChannel.MapMode.READ_ONLY, pos, len);
+            window.order(order);
+            windowStart = pos;
+            windowEnd = pos + len;
+        }
+        return (int) (pos - windowStart);
+    }
+
+    @Override
+    public void close() throws IOException {
+        window = null;
+        channel.close();
+    }
+}
@@ -0,0 +1,76 @@
+package com.wirecat.core_capture.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Appends frames to a classic (microsecond, little-endian) pcap file through
+ * one direct buffer, so each frame costs a memory copy and the disk sees large
+ * sequential writes. Not thread-safe.
+ */
+public final class PcapFileWriter implements Closeable {
+    public static final int HEADER_BYTES = 24;
+    public static final int RECORD_HEADER_BYTES = 16;
+    private static final int BUFFER_BYTES = 1 << 20;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+    private final int snapLen;
+    private long bytes;
+    private long packets;
+
+    public PcapFileWriter(Path path, int linkType, int snapLen) throws IOException {
+        this.path = path;
+        this.snapLen = snapLen;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE);
+        buffer.putInt(0xA1B2C3D4).putShort((short) 2).putShort((short) 4)
+              .putInt(0).putInt(0).putInt(snapLen).putInt(linkType);
+        bytes = HEADER_BYTES;
+    }
+
+    public void write(byte[] frame, int off, int len, long timestampMicros) throws IOException {
+        int captured = Math.min(len, snapLen);
+        if (buffer.remaining() < RECORD_HEADER_BYTES + captured) flush();
+        buffer.putInt((int) (timestampMicros / 1_000_000))
+              .putInt((int) (timestampMicros % 1_000_000))
+              .putInt(captured)
+              .putInt(len);
+        if (buffer.remaining() >= captured) {
+            buffer.put(frame, off, captured);
+        } else {
+            // Larger than the buffer: write it straight through
+            flush();
+            ByteBuffer direct = ByteBuffer.wrap(frame, off, captured);
+            while (direct.hasRemaining()) channel.write(direct);
+        }
+        bytes += RECORD_HEADER_BYTES + captured;
+        packets++;
+    }
+
+    public void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) channel.write(buffer);
+        buffer.clear();
+    }
+
+    public boolean hasBufferedData() { return buffer.position() > 0; }
+    public Path path()               { return path; }
+    public long bytes()              { return bytes; }    // including what is still buffered
+    public long packets()            { return packets; }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.wirecat.core_capture.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Continuous write-through of captured frames to a ring of pcap files, in the
+ * manner of {@code dumpcap -b filesize:..,duration:..,files:..}. A new file is
+ * started when the current one would exceed the size limit or spans more than
+ * the duration (in capture time); beyond the file limit the oldest is deleted.
+ * <p>
+ * One pipeline stage writes; {@link #exportTo} may run concurrently and
+ * concatenates the ring into a single pcap with channel-to-channel transfers.
+ */
+public final class RotatingPcapWriter implements Closeable {
+    private static final DateTimeFormatter STAMP =
+            DateTimeFormatter.ofPattern("yyyyMMddHHmmss").withZone(ZoneId.systemDefault());
+    private static final long FLUSH_INTERVAL_NANOS = 250_000_000L;
+
+    private final Path directory;
+    private final String prefix;
+    private final int linkType;
+    private final int snapLen;
+    private final long maxFileBytes;     // 0 = unlimited
+    private final long maxFileMicros;    // 0 = unlimited
+    private final int maxFiles;          // 0 = keep all
+    private final Deque<Path> files = new ArrayDeque<>();
+
+    private PcapFileWriter current;
+    private long currentStartMicros;
+    private int fileIndex;
+    private long lastFlushNanos;
+    private long totalPackets;
+
+    public RotatingPcapWriter(Path directory, String prefix, int linkType, int snapLen,
+                              long maxFileBytes, long maxFileMicros, int maxFiles) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.prefix = prefix;
+        this.linkType = linkType;
+        this.snapLen = snapLen;
+        this.maxFileBytes = maxFileBytes;
+        this.maxFileMicros = maxFileMicros;
+        this.maxFiles = maxFiles;
+    }
+
+    public synchronized void write(byte[] frame, int off, int len, long timestampMicros) throws IOException {
+        if (current == null || needsRotation(Math.min(len, snapLen), timestampMicros)) rotate(timestampMicros);
+        current.write(frame, off, len, timestampMicros);
+        totalPackets++;
+    }
+
+    private boolean needsRotation(int captured, long timestampMicros) {
+        if (current.packets() == 0) return false;
+        if (maxFileBytes > 0 && current.bytes() + PcapFileWriter.RECORD_HEADER_BYTES + captured > maxFileBytes) return true;
+        return maxFileMicros > 0 && timestampMicros - currentStartMicros >= maxFileMicros;
+    }
+
+    private void rotate(long timestampMicros) throws IOException {
+        if (current != null) current.close();
+        Path next = directory.resolve(String.format("%s_%05d_%s.pcap",
+                prefix, ++fileIndex, STAMP.format(Instant.ofEpochMilli(timestampMicros / 1000))));
+        current = new PcapFileWriter(next, linkType, snapLen);
+        currentStartMicros = timestampMicros;
+        files.addLast(next);
+        while (maxFiles > 0 && files.size() > maxFiles) Files.deleteIfExists(files.removeFirst());
+    }
+
+    // Called by the writer at the end of each batch, so a quiet link still reaches disk
+    public synchronized void flushIfDue() throws IOException {
+        long now = System.nanoTime();
+        if (current != null && current.hasBufferedData() && now - lastFlushNanos >= FLUSH_INTERVAL_NANOS) {
+            current.flush();
+            lastFlushNanos = now;
+        }
+    }
+
+    public synchronized List<Path> files()  { return new ArrayList<>(files); }
+    public synchronized long totalPackets() { return totalPackets; }
+
+    // Writes everything still in the ring to one pcap file; returns the number of files merged
+    public int exportTo(Path target) throws IOException {
+        List<FileChannel> sources = new ArrayList<>();
+        List<Long> sizes = new ArrayList<>();
+        try {
+            // Open under the lock so rotation cannot delete a file before we hold it
+            synchronized (this) {
+                if (current != null) current.flush();
+                for (Path p : files) {
+                    FileChannel ch = FileChannel.open(p, StandardOpenOption.READ);
+                    sources.add(ch);
+                    sizes.add(ch.size());
+                }
+            }
+            try (FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                for (int i = 0; i < sources.size(); i++) {
+                    // Every file repeats the global header; keep only the first
+                    long pos = i == 0 ? 0 : PcapFileWriter.HEADER_BYTES;
+                    long end = sizes.get(i);
+                    while (pos < end) pos += sources.get(i).transferTo(pos, end - pos, out);
+                }
+            }
+            return sources.size();
+        } finally {
+            for (FileChannel ch : sources) ch.close();
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (current != null) {
+            current.close();
+            current = null;
+        }
+    }
+}
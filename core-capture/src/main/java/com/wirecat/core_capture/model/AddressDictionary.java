@@ -0,0 +1,99 @@
+package com.wirecat.core_capture.model;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Dictionary encoding for addresses: each distinct 128-bit value (IPv4, IPv6
+ * or MAC) gets a small int id, and its display string is built once. Packet
+ * columns store the ids, so a capture with millions of rows keeps only as
+ * many address strings as there are distinct hosts. Single-threaded.
+ */
+public final class AddressDictionary {
+    public static final int NONE = 0;   // frames without this kind of address
+
+    private long[] keys = new long[2 * 1024];
+    private int[] slots = new int[1024];   // id + 1 per hash slot, 0 = empty
+    private int mask = 1023;
+
+    private long[] his = new long[256];
+    private long[] los = new long[256];
+    private String[] names = new String[256];
+    private int count;
+    private final Map<String, Integer> byName = new HashMap<>();
+
+    public AddressDictionary() {
+        clear();
+    }
+
+    // Id of an address already seen, or -1
+    public int find(long hi, long lo) {
+        int i = index(hi, lo);
+        int s;
+        while ((s = slots[i]) != 0) {
+            if (keys[2 * i] == hi && keys[2 * i + 1] == lo) return s - 1;
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+
+    // Registers a new address with its display name; returns its id
+    public int add(long hi, long lo, String name) {
+        int existing = find(hi, lo);
+        if (existing >= 0) return existing;
+        if (count == names.length) {
+            his = Arrays.copyOf(his, count * 2);
+            los = Arrays.copyOf(los, count * 2);
+            names = Arrays.copyOf(names, count * 2);
+        }
+        int id = count++;
+        his[id] = hi;
+        los[id] = lo;
+        names[id] = name;
+        byName.putIfAbsent(name, id);
+        insert(hi, lo, id);
+        if (count * 2 > mask) rehash();
+        return id;
+    }
+
+    public String name(int id)      { return names[id]; }
+    public long hi(int id)          { return his[id]; }
+    public long lo(int id)          { return los[id]; }
+    public int size()               { return count; }
+
+    // Id for a display string, e.g. an address typed into a filter; -1 if unknown
+    public int idOf(String name) {
+        Integer id = byName.get(name);
+        return id != null ? id : -1;
+    }
+
+    public void clear() {
+        Arrays.fill(slots, 0);
+        Arrays.fill(names, null);
+        byName.clear();
+        count = 0;
+        add(Long.MIN_VALUE, Long.MIN_VALUE, "—");   // NONE
+    }
+
+    private void insert(long hi, long lo, int id) {
+        int i = index(hi, lo);
+        while (slots[i] != 0) i = (i + 1) & mask;
+        keys[2 * i] = hi;
+        keys[2 * i + 1] = lo;
+        slots[i] = id + 1;
+    }
+
+    private void rehash() {
+        int capacity = (mask + 1) * 2;
+        keys = new long[2 * capacity];
+        slots = new int[capacity];
+        mask = capacity - 1;
+        for (int id = 0; id < count; id++) insert(his[id], los[id], id);
+    }
+
+    private int index(long hi, long lo) {
+        long h = (hi * 0x9E3779B97F4A7C15L ^ lo) * 0xC2B2AE3D27D4EB4FL;
+        return (int) (h ^ (h >>> 29)) & mask;
+    }
+}
@@ -1,5 +1,7 @@
 package com.wirecat.core_capture.model;
 
+import com.wirecat.core_capture.util.HexDump;
+
 public class CapturedPacket {
     private final int number;
     private final String timestamp;       // human‑readable time string
@@ -13,9 +15,11 @@ public class CapturedPacket {
     private final int sourcePort;
     private final int destinationPort;
     private final int length;
-    private final String hexDump;
-    private final String asciiDump;
+    private final byte[] rawData;         // dumps are rendered from this on demand
     private final double riskScore;
+    private String riskReason;            // null unless a detector raised the score
+    private String tags;                  // payload signature tags, null if none
+    private String aiExplanation;         // null until asked for
     private final PacketDetail detail;    // parsed per‑layer detail
 
     public CapturedPacket(int number,
@@ -30,8 +34,7 @@ public class CapturedPacket {
                           int sourcePort,
                           int destinationPort,
                           int length,
-                          String hexDump,
-                          String asciiDump,
+                          byte[] rawData,
                           double riskScore,
                           PacketDetail detail) {
         this.number = number;
@@ -46,8 +49,7 @@ public class CapturedPacket {
         this.sourcePort = sourcePort;
         this.destinationPort = destinationPort;
         this.length = length;
-        this.hexDump = hexDump;
-        this.asciiDump = asciiDump;
+        this.rawData = rawData;
         this.riskScore = riskScore;
         this.detail = detail;
     }
@@ -64,9 +66,16 @@ public class CapturedPacket {
     public int getSourcePort()       { return sourcePort; }
     public int getDestinationPort()  { return destinationPort; }
     public int getLength()           { return length; }
-    public String getHexDump()       { return hexDump; }
-    public String getAsciiDump()     { return asciiDump; }
+    public byte[] getRawData()       { return rawData; }
+    public String getHexDump()       { return HexDump.hex(rawData); }
+    public String getAsciiDump()     { return HexDump.ascii(rawData); }
     public double getRiskScore()     { return riskScore; }
+    public String getRiskReason()    { return riskReason; }
+    public void setRiskReason(String reason) { this.riskReason = reason; }
+    public String getTags()          { return tags; }
+    public void setTags(String tags) { this.tags = tags; }
+    public String getAiExplanation() { return aiExplanation; }
+    public void setAiExplanation(String text) { this.aiExplanation = text; }
 
     // Millis timestamp for Δ Time
     public long getTimestampMs()     { return timestampMs; }
@@ -78,14 +87,14 @@ public class CapturedPacket {
     return String.format(
         "Packet #%d\nProtocol: %s\nTimestamp: %s\n"
         + "Source: %s:%d (%s)\nDestination: %s:%d (%s)\n"
-        + "Size: %d bytes\nRisk Score: %.1f\n"
+        + "Size: %d bytes\nRisk Score: %.1f\nTags: %s\n"
         + "Hex Start: %s...\nASCII Start: %s...",
         number, protocol, timestamp,
         sourceIP, sourcePort, sourceMAC,
         destinationIP, destinationPort, destinationMAC,
-        length, riskScore,
-        hexDump.substring(0, Math.min(50, hexDump.length())),
-        asciiDump.substring(0, Math.min(50, asciiDump.length()))
+        length, riskScore, tags != null ? tags : "none",
+        HexDump.hex(rawData, 0, 17),
+        HexDump.ascii(rawData, 0, 50)
     );
 }
 }
@@ -1,5 +1,8 @@
 package com.wirecat.core_capture.model;
 
+import com.wirecat.core_capture.flow.FlowDigest;
+
+// Bidirectional: src is whichever endpoint sent the first packet seen
 public class Conversation {
     private final String srcIP;
     private final int srcPort;
@@ -10,10 +13,16 @@ public class Conversation {
     private final String srcMAC;
     private final String dstMAC;
 
-    private long firstTimestamp;
-    private long lastTimestamp;
-    private int packetCount;
-    private long totalBytes;
+    // Written by the conversation stage, read by the UI thread
+    private volatile long firstTimestamp;
+    private volatile long lastTimestamp;
+    private volatile int packetCount;
+    private volatile long totalBytes;
+    private volatile int replyPackets;   // dst → src
+    private volatile long replyBytes;
+    private volatile boolean dirty;
+    private volatile FlowDigest digest;     // set by the tracker that owns the flow
+    private volatile String aiSummary;      // null until the model has answered
 
     public Conversation(
             String srcIP, int srcPort, String dstIP, int dstPort, String proto,
@@ -32,11 +41,33 @@ public class Conversation {
     }
 
     public void addPacket(int len, long timestamp) {
-        packetCount++;
-        totalBytes += len;
+        addPacket(len, timestamp, true);
+    }
+
+    public void addPacket(int len, long timestamp, boolean fromSrc) {
+        packetCount = packetCount + 1;
+        totalBytes = totalBytes + len;
+        if (!fromSrc) {
+            replyPackets = replyPackets + 1;
+            replyBytes = replyBytes + len;
+        }
         lastTimestamp = timestamp;
     }
 
+    // Change tracking for coalesced UI refresh: markDirty returns true only on
+    // the first change since the UI last drained this conversation
+    public boolean markDirty() {
+        if (dirty) return false;
+        dirty = true;
+        return true;
+    }
+    public void clearDirty() { dirty = false; }
+
+    public FlowDigest getDigest() { return digest; }
+    public void setDigest(FlowDigest digest) { this.digest = digest; }
+    public String getAiSummary() { return aiSummary; }
+    public void setAiSummary(String summary) { this.aiSummary = summary; }
+
     public String getProto() { return proto; }
     public String getSrcIP() { return srcIP; }
     public int getSrcPort() { return srcPort; }
@@ -46,6 +77,10 @@ public class Conversation {
     public long getLastTimestamp() { return lastTimestamp; }
     public int getPacketCount() { return packetCount; }
     public long getTotalBytes() { return totalBytes; }
+    public int getReplyPackets() { return replyPackets; }
+    public long getReplyBytes() { return replyBytes; }
+    public int getRequestPackets() { return packetCount - replyPackets; }
+    public long getRequestBytes() { return totalBytes - replyBytes; }
 
     // MAC getters
     public String getSrcMAC() { return srcMAC; }
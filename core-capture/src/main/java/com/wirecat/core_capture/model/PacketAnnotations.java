@@ -0,0 +1,83 @@
+package com.wirecat.core_capture.model;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.LongConsumer;
+import java.util.function.UnaryOperator;
+
+/**
+ * What is learned about a packet after it was published: an AI explanation,
+ * extra tags, a raised risk. Kept beside the packet list, keyed by the
+ * packet's {@link com.wirecat.core_capture.store.PacketStore} sequence, so
+ * enrichment is one hash update and never rewrites or searches the list;
+ * views look rows up here when they draw them. Most packets never get an
+ * annotation, so only annotated ones take space.
+ * <p>
+ * Sequences are unique for the life of one store: they keep counting across
+ * captures and clears, unlike packet numbers, but a replacement store starts
+ * again at zero. Whoever replaces the store must clear this table and drop
+ * answers that were asked for about the old one.
+ * <p>
+ * Thread-safe. Subscribers are told the sequence after each change (or
+ * {@link #ALL} after a clear) on the thread that made it, and should hand
+ * the work to their own thread.
+ */
+public final class PacketAnnotations {
+    public static final long ALL = -1;
+
+    /** One packet's annotations; immutable, replaced on every change. */
+    public record Annotation(String aiExplanation, long tags, float risk, String riskReason) {
+        public static final Annotation NONE = new Annotation(null, 0, 0f, null);
+    }
+
+    private final Map<Long, Annotation> bySeq = new ConcurrentHashMap<>();
+    private final List<LongConsumer> subscribers = new CopyOnWriteArrayList<>();
+
+    public Annotation get(long seq) {
+        return bySeq.getOrDefault(seq, Annotation.NONE);
+    }
+
+    public void setAiExplanation(long seq, String text) {
+        update(seq, a -> new Annotation(text, a.tags(), a.risk(), a.riskReason()));
+    }
+
+    // Signature tag bits (see Signatures) on top of those found in the payload
+    public void addTags(long seq, long tags) {
+        update(seq, a -> (a.tags() | tags) == a.tags() ? a : new Annotation(a.aiExplanation(), a.tags() | tags, a.risk(), a.riskReason()));
+    }
+
+    // Keeps the highest risk seen, like PacketModel.raiseRisk
+    public void raiseRisk(long seq, double risk, String reason) {
+        update(seq, a -> risk <= a.risk() ? a : new Annotation(a.aiExplanation(), a.tags(), (float) risk, reason));
+    }
+
+    private void update(long seq, UnaryOperator<Annotation> change) {
+        boolean[] changed = new boolean[1];
+        bySeq.compute(seq, (k, a) -> {
+            Annotation old = a == null ? Annotation.NONE : a;
+            Annotation now = change.apply(old);
+            changed[0] = now != old;
+            return now == Annotation.NONE ? null : now;
+        });
+        if (changed[0]) notify(seq);
+    }
+
+    public int size() { return bySeq.size(); }
+
+    public void clear() {
+        bySeq.clear();
+        notify(ALL);
+    }
+
+    // Returns the call that unsubscribes
+    public Runnable subscribe(LongConsumer onChange) {
+        subscribers.add(onChange);
+        return () -> subscribers.remove(onChange);
+    }
+
+    private void notify(long seq) {
+        for (LongConsumer s : subscribers) s.accept(seq);
+    }
+}
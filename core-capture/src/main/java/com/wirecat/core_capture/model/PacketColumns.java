@@ -0,0 +1,204 @@
+package com.wirecat.core_capture.model;
+
+import com.wirecat.core_capture.decode.FrameDecoder;
+import com.wirecat.core_capture.decode.Protocols;
+import com.wirecat.core_capture.filter.PacketIndex;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Column store of the packet list shown in the table: one primitive array per
+ * field, addresses dictionary-encoded, rows addressed by index. Columns grow
+ * in fixed 64K-row blocks, so appending never copies existing rows and a
+ * row costs about 60 bytes regardless of how many are kept.
+ * <p>
+ * Strings (time, addresses, protocol names) are only built for the rows a
+ * view actually asks for. Written and read on one thread (the FX thread).
+ * Each append also updates a {@link PacketIndex} so filters can start from
+ * the matching rows instead of scanning.
+ */
+public final class PacketColumns {
+    private static final int BLOCK_BITS = 16;
+    private static final int BLOCK = 1 << BLOCK_BITS;
+    private static final int MASK = BLOCK - 1;
+    private static final DateTimeFormatter TIME_FORMAT =
+            DateTimeFormatter.ofPattern("HH:mm:ss.SSS").withZone(ZoneId.systemDefault());
+
+    private final AddressDictionary addresses = new AddressDictionary();
+    private final AddressDictionary macs = new AddressDictionary();
+    private final PacketIndex index = new PacketIndex();
+
+    private int[][] number = new int[16][];
+    private long[][] time = new long[16][];
+    private long[][] storeSeq = new long[16][];
+    private int[][] srcAddr = new int[16][];
+    private int[][] dstAddr = new int[16][];
+    private int[][] srcMac = new int[16][];
+    private int[][] dstMac = new int[16][];
+    private int[][] srcPort = new int[16][];
+    private int[][] dstPort = new int[16][];
+    private int[][] length = new int[16][];
+    private short[][] protocol = new short[16][];
+    private float[][] risk = new float[16][];
+    private int[][] riskReason = new int[16][];
+    private final List<String> reasons = new ArrayList<>(List.of(""));   // id 0 = no reason
+    private final Map<String, Integer> reasonIds = new HashMap<>();
+    private int size;
+
+    // Appends one decoded packet and returns its row
+    public int append(PacketModel pm) {
+        int row = size;
+        int b = row >>> BLOCK_BITS;
+        if (b == number.length) growIndex();
+        if (number[b] == null) allocateBlock(b);
+        int i = row & MASK;
+
+        FrameDecoder f = pm.getFrame();
+        number[b][i] = pm.getId();
+        time[b][i] = pm.getTimestampMicros();
+        storeSeq[b][i] = pm.getStoreSequence();
+        if (f.hasAddresses()) {
+            srcAddr[b][i] = intern(addresses, f.addrHi(f.srcAddrOffset()), f.addrLo(f.srcAddrOffset()), pm, true);
+            dstAddr[b][i] = intern(addresses, f.addrHi(f.dstAddrOffset()), f.addrLo(f.dstAddrOffset()), pm, false);
+        } else {
+            srcAddr[b][i] = dstAddr[b][i] = AddressDictionary.NONE;
+        }
+        srcMac[b][i] = internMac(f.srcMac());
+        dstMac[b][i] = internMac(f.dstMac());
+        srcPort[b][i] = pm.getSrcPort();
+        dstPort[b][i] = pm.getDstPort();
+        length[b][i] = pm.getLen();
+        protocol[b][i] = (short) pm.getProtocolId();
+        risk[b][i] = (float) pm.getRiskScore();
+        riskReason[b][i] = reasonId(pm.getRiskReason());
+        index.add(row, protocol[b][i], srcAddr[b][i], dstAddr[b][i], srcPort[b][i], dstPort[b][i]);
+        size = row + 1;
+        return row;
+    }
+
+    // Address strings are only formatted the first time a host is seen
+    private static int intern(AddressDictionary dict, long hi, long lo, PacketModel pm, boolean src) {
+        int id = dict.find(hi, lo);
+        return id >= 0 ? id : dict.add(hi, lo, src ? pm.getSrc() : pm.getDst());
+    }
+
+    // Detectors reuse one reason string while their finding is unchanged, so there are few
+    private int reasonId(String reason) {
+        if (reason == null) return 0;
+        Integer id = reasonIds.get(reason);
+        if (id == null) {
+            id = reasons.size();
+            reasons.add(reason);
+            reasonIds.put(reason, id);
+        }
+        return id;
+    }
+
+    private int internMac(long mac) {
+        if (mac < 0) return AddressDictionary.NONE;
+        int id = macs.find(0, mac);
+        return id >= 0 ? id : macs.add(0, mac, FrameDecoder.formatMac(mac));
+    }
+
+    private void growIndex() {
+        int n = number.length * 2;
+        number = Arrays.copyOf(number, n);
+        time = Arrays.copyOf(time, n);
+        storeSeq = Arrays.copyOf(storeSeq, n);
+        srcAddr = Arrays.copyOf(srcAddr, n);
+        dstAddr = Arrays.copyOf(dstAddr, n);
+        srcMac = Arrays.copyOf(srcMac, n);
+        dstMac = Arrays.copyOf(dstMac, n);
+        srcPort = Arrays.copyOf(srcPort, n);
+        dstPort = Arrays.copyOf(dstPort, n);
+        length = Arrays.copyOf(length, n);
+        protocol = Arrays.copyOf(protocol, n);
+        risk = Arrays.copyOf(risk, n);
+        riskReason = Arrays.copyOf(riskReason, n);
+    }
+
+    private void allocateBlock(int b) {
+        number[b] = new int[BLOCK];
+        time[b] = new long[BLOCK];
+        storeSeq[b] = new long[BLOCK];
+        srcAddr[b] = new int[BLOCK];
+        dstAddr[b] = new int[BLOCK];
+        srcMac[b] = new int[BLOCK];
+        dstMac[b] = new int[BLOCK];
+        srcPort[b] = new int[BLOCK];
+        dstPort[b] = new int[BLOCK];
+        length[b] = new int[BLOCK];
+        protocol[b] = new short[BLOCK];
+        risk[b] = new float[BLOCK];
+        riskReason[b] = new int[BLOCK];
+    }
+
+    public int size() { return size; }
+
+    // Keeps the first block allocated; the dictionaries start over
+    public void clear() {
+        for (int b = 1; b < number.length; b++) {
+            number[b] = null; time[b] = null; storeSeq[b] = null;
+            srcAddr[b] = null; dstAddr[b] = null; srcMac[b] = null; dstMac[b] = null;
+            srcPort[b] = null; dstPort[b] = null; length[b] = null; protocol[b] = null; risk[b] = null;
+            riskReason[b] = null;
+        }
+        reasons.subList(1, reasons.size()).clear();
+        reasonIds.clear();
+        addresses.clear();
+        macs.clear();
+        index.clear();
+        size = 0;
+    }
+
+    // --- Primitive columns
+    public int number(int row)           { return number[row >>> BLOCK_BITS][row & MASK]; }
+    public long timestampMicros(int row) { return time[row >>> BLOCK_BITS][row & MASK]; }
+    public long storeSequence(int row)   { return storeSeq[row >>> BLOCK_BITS][row & MASK]; }
+    public int srcAddressId(int row)     { return srcAddr[row >>> BLOCK_BITS][row & MASK]; }
+    public int dstAddressId(int row)     { return dstAddr[row >>> BLOCK_BITS][row & MASK]; }
+    public int srcMacId(int row)         { return srcMac[row >>> BLOCK_BITS][row & MASK]; }
+    public int dstMacId(int row)         { return dstMac[row >>> BLOCK_BITS][row & MASK]; }
+    public int srcPort(int row)          { return srcPort[row >>> BLOCK_BITS][row & MASK]; }
+    public int dstPort(int row)          { return dstPort[row >>> BLOCK_BITS][row & MASK]; }
+    public int length(int row)           { return length[row >>> BLOCK_BITS][row & MASK]; }
+    public int protocolId(int row)       { return protocol[row >>> BLOCK_BITS][row & MASK]; }
+    public float risk(int row)           { return risk[row >>> BLOCK_BITS][row & MASK]; }
+    public int riskReasonId(int row)     { return riskReason[row >>> BLOCK_BITS][row & MASK]; }
+
+    public AddressDictionary addresses() { return addresses; }
+    public AddressDictionary macs()      { return macs; }
+    public PacketIndex index()           { return index; }
+
+    // --- Materialized for display
+    public String time(int row)       { return TIME_FORMAT.format(Instant.ofEpochMilli(timestampMicros(row) / 1000)); }
+    public String srcAddress(int row) { return addresses.name(srcAddressId(row)); }
+    public String dstAddress(int row) { return addresses.name(dstAddressId(row)); }
+    public String srcMac(int row)     { return macs.name(srcMacId(row)); }
+    public String dstMac(int row)     { return macs.name(dstMacId(row)); }
+    public String protocol(int row)   { return Protocols.name(protocolId(row)); }
+    public String riskReason(int row) { int id = riskReasonId(row); return id == 0 ? null : reasons.get(id); }
+
+    // Milliseconds since the previous row, as the old Δ Time column showed
+    public long deltaMillis(int row) {
+        return row == 0 ? 0 : timestampMicros(row) / 1000 - timestampMicros(row - 1) / 1000;
+    }
+
+    // First row whose timestamp is at or after the given time (rows are in capture order)
+    public int firstRowAtOrAfter(long timestampMicros) {
+        int lo = 0, hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (timestampMicros(mid) < timestampMicros) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+}
@@ -0,0 +1,148 @@
+package com.wirecat.core_capture.pipeline;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.IntFunction;
+
+/**
+ * Staged capture pipeline in the style of the LMAX Disruptor. The producer (the
+ * libpcap callback or a file reader) only copies frames into the ring; every
+ * stage runs on its own thread behind a sequence barrier on the stages it
+ * depends on, so slow downstream work never blocks the producer. When the ring
+ * is full a live producer drops the frame and counts it instead of waiting.
+ */
+public class CapturePipeline {
+    public static final int DEFAULT_RING_SIZE = 16384;
+
+    private final FrameRing ring;
+    private final WaitStrategy waitStrategy;
+    private final List<StageRunner> stages = new ArrayList<>();
+    private final Map<StageRunner, Boolean> hasDownstream = new IdentityHashMap<>();
+    private final List<Thread> threads = new ArrayList<>();
+    private volatile long published;
+    private volatile long dropped;
+
+    public CapturePipeline(int ringSize, WaitStrategy waitStrategy) {
+        this.ring = new FrameRing(ringSize);
+        this.waitStrategy = waitStrategy;
+    }
+
+    // Adds a stage that sees each frame after all 'after' stages (or straight
+    // from the producer when none are given)
+    public StageRunner addStage(String name, StageHandler handler, StageRunner... after) {
+        StageRunner runner = new StageRunner(name, ring, barrierAfter(after), handler);
+        stages.add(runner);
+        return runner;
+    }
+
+    // Adds a pool of workers that split frames round-robin by sequence. The
+    // handler is shared, so it must keep its per-frame state in the slot.
+    // Depending on the returned array waits for all workers, which restores
+    // capture order for downstream stages.
+    public StageRunner[] addParallelStage(String name, int workers, StageHandler handler, StageRunner... after) {
+        return addParallelStage(name, workers, Partitioner.ROUND_ROBIN, i -> handler, after);
+    }
+
+    // Pool variant where the partitioner picks the worker (e.g. by flow hash, so
+    // each worker owns a disjoint shard) and every worker has its own handler
+    public StageRunner[] addParallelStage(String name, int workers, Partitioner partitioner,
+                                          IntFunction<StageHandler> handlers, StageRunner... after) {
+        SequenceBarrier barrier = barrierAfter(after);
+        StageRunner[] pool = new StageRunner[workers];
+        for (int i = 0; i < workers; i++) {
+            pool[i] = new StageRunner(name + "-" + i, ring, barrier, handlers.apply(i), partitioner, i, workers);
+            stages.add(pool[i]);
+        }
+        return pool;
+    }
+
+    private SequenceBarrier barrierAfter(StageRunner[] after) {
+        if (!threads.isEmpty()) throw new IllegalStateException("Pipeline already started");
+        if (after.length == 0) return new SequenceBarrier(new Sequence[] { ring.cursor() }, waitStrategy);
+        Sequence[] deps = new Sequence[after.length];
+        for (int i = 0; i < after.length; i++) {
+            deps[i] = after[i].sequence();
+            hasDownstream.put(after[i], Boolean.TRUE);
+        }
+        return new SequenceBarrier(deps, waitStrategy);
+    }
+
+    public void start() {
+        // The producer may only wrap onto slots released by the last stage of every branch
+        List<Sequence> terminal = new ArrayList<>();
+        for (StageRunner s : stages) {
+            if (!hasDownstream.containsKey(s)) terminal.add(s.sequence());
+        }
+        ring.setGating(terminal.toArray(new Sequence[0]));
+        for (StageRunner s : stages) {
+            Thread t = new Thread(s, "WireCat-" + s.name());
+            t.setDaemon(true);
+            threads.add(t);
+            t.start();
+        }
+    }
+
+    // --- Producer side (single thread)
+
+    // Copies the frame into the next slot; returns false and counts a drop if the ring is full
+    public boolean tryPublish(byte[] frame, int off, int len, long timestampMicros, int id, int linkType) {
+        long seq = ring.tryNext();
+        if (seq < 0) {
+            dropped = dropped + 1;
+            return false;
+        }
+        ring.get(seq).fill(frame, off, len, timestampMicros, id, linkType);
+        ring.publish(seq);
+        published = published + 1;
+        return true;
+    }
+
+    // Like tryPublish, but waits for space; for offline sources that can be paced
+    public void publish(byte[] frame, int off, int len, long timestampMicros, int id, int linkType) {
+        int counter = 0;
+        long seq;
+        while ((seq = ring.tryNext()) < 0) counter = waitStrategy.idle(counter);
+        ring.get(seq).fill(frame, off, len, timestampMicros, id, linkType);
+        ring.publish(seq);
+        published = published + 1;
+    }
+
+    // Blocking publish straight from a (possibly memory-mapped) buffer
+    public void publish(ByteBuffer frame, int off, int len, long timestampMicros, int id, int linkType) {
+        int counter = 0;
+        long seq;
+        while ((seq = ring.tryNext()) < 0) counter = waitStrategy.idle(counter);
+        ring.get(seq).fill(frame, off, len, timestampMicros, id, linkType);
+        ring.publish(seq);
+        published = published + 1;
+    }
+
+    // Lets in-flight frames drain (up to the timeout), then stops every stage and waits
+    // for its thread. Often called from an interrupted capture thread, so the interrupt
+    // is held back until the stages are gone (park and join would return at once).
+    public void stop(long timeoutMillis) {
+        boolean interrupted = Thread.interrupted();
+        long deadline = System.nanoTime() + timeoutMillis * 1_000_000;
+        while (ring.backlog() > 0 && System.nanoTime() < deadline) {
+            LockSupport.parkNanos(1_000_000);
+        }
+        for (StageRunner s : stages) s.halt();
+        for (Thread t : threads) {
+            while (t.isAlive()) {
+                try { t.join(); }
+                catch (InterruptedException e) { interrupted = true; }
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+
+    public List<StageRunner> stages() { return List.copyOf(stages); }
+    public long published()           { return published; }
+    public long dropped()             { return dropped; }
+    public long backlog()             { return ring.backlog(); }
+    public int ringSize()             { return ring.size(); }
+}
@@ -0,0 +1,57 @@
+package com.wirecat.core_capture.pipeline;
+
+/**
+ * Single-producer ring of pre-allocated {@link FrameSlot}s. The producer claims
+ * a sequence, fills the slot and publishes it by advancing the cursor; it can
+ * only wrap onto slots that every terminal stage has finished with.
+ */
+public final class FrameRing {
+    private final FrameSlot[] slots;
+    private final int mask;
+    private final Sequence cursor = new Sequence();
+    private volatile Sequence[] gating = new Sequence[0];
+
+    // Producer-local state
+    private long nextSequence = Sequence.INITIAL;
+    private long cachedGating = Sequence.INITIAL;
+
+    public FrameRing(int size) {
+        if (Integer.bitCount(size) != 1) throw new IllegalArgumentException("Ring size must be a power of two");
+        this.slots = new FrameSlot[size];
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++) slots[i] = new FrameSlot();
+    }
+
+    // Claims the next sequence, or returns -1 when the slowest stage is a full lap behind
+    long tryNext() {
+        long next = nextSequence + 1;
+        long wrapPoint = next - slots.length;
+        if (wrapPoint > cachedGating) {
+            long min = Sequence.minimum(gating, cursor.get());
+            cachedGating = min;
+            if (wrapPoint > min) return -1;
+        }
+        nextSequence = next;
+        return next;
+    }
+
+    void publish(long sequence) {
+        cursor.set(sequence);
+    }
+
+    void setGating(Sequence[] sequences) {
+        this.gating = sequences;
+    }
+
+    public FrameSlot get(long sequence) {
+        return slots[(int) sequence & mask];
+    }
+
+    public Sequence cursor() { return cursor; }
+    public int size()        { return slots.length; }
+
+    // Frames published but not yet released by every terminal stage
+    public long backlog() {
+        return cursor.get() - Sequence.minimum(gating, cursor.get());
+    }
+}
@@ -0,0 +1,53 @@
+package com.wirecat.core_capture.pipeline;
+
+import com.wirecat.core_capture.decode.FrameDecoder;
+import com.wirecat.core_capture.model.PacketModel;
+
+import java.nio.ByteBuffer;
+
+/**
+ * One pre-allocated entry of the frame ring. The producer copies the raw frame
+ * in; stages read it and attach their results in place, so nothing is
+ * allocated per frame on the capture thread.
+ */
+public final class FrameSlot {
+    private static final int INITIAL_BUFFER = 2048;
+
+    byte[] data = new byte[INITIAL_BUFFER];
+    int length;
+    long timestampMicros;
+    int id;
+    int linkType;
+
+    // Written by the decode stage, read by everything downstream of it
+    public final FrameDecoder decoded = new FrameDecoder();
+    public PacketModel model;
+    public int flowHash;
+    public long storeSequence;
+
+    void fill(byte[] frame, int off, int len, long timestampMicros, int id, int linkType) {
+        if (data.length < len) data = new byte[Math.max(len, data.length * 2)];
+        System.arraycopy(frame, off, data, 0, len);
+        this.length = len;
+        this.timestampMicros = timestampMicros;
+        this.id = id;
+        this.linkType = linkType;
+        this.model = null;
+    }
+
+    void fill(ByteBuffer frame, int off, int len, long timestampMicros, int id, int linkType) {
+        if (data.length < len) data = new byte[Math.max(len, data.length * 2)];
+        frame.get(off, data, 0, len);
+        this.length = len;
+        this.timestampMicros = timestampMicros;
+        this.id = id;
+        this.linkType = linkType;
+        this.model = null;
+    }
+
+    public byte[] data()           { return data; }
+    public int length()            { return length; }
+    public long timestampMicros()  { return timestampMicros; }
+    public int id()                { return id; }
+    public int linkType()          { return linkType; }
+}
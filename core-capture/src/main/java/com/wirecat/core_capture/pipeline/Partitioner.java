@@ -0,0 +1,12 @@
+package com.wirecat.core_capture.pipeline;
+
+/**
+ * Chooses which worker of a parallel stage handles a frame. Must return a
+ * value in [0, workers) and be a pure function of the slot and sequence.
+ */
+@FunctionalInterface
+public interface Partitioner {
+    Partitioner ROUND_ROBIN = (slot, sequence, workers) -> (int) (sequence % workers);
+
+    int partition(FrameSlot slot, long sequence, int workers);
+}
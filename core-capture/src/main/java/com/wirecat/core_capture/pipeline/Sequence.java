@@ -0,0 +1,26 @@
+package com.wirecat.core_capture.pipeline;
+
+/**
+ * Monotonic sequence counter owned by one pipeline stage (or the producer) and
+ * read by the stages that depend on it. Padded so two hot counters do not
+ * share a cache line.
+ */
+public class Sequence {
+    public static final long INITIAL = -1L;
+
+    @SuppressWarnings("unused") private long p1, p2, p3, p4, p5, p6, p7;
+    private volatile long value;
+    @SuppressWarnings("unused") private long q1, q2, q3, q4, q5, q6, q7;
+
+    public Sequence() { this(INITIAL); }
+    public Sequence(long initial) { this.value = initial; }
+
+    public long get() { return value; }
+    public void set(long v) { value = v; }
+
+    public static long minimum(Sequence[] sequences, long fallback) {
+        long min = Long.MAX_VALUE;
+        for (Sequence s : sequences) min = Math.min(min, s.get());
+        return sequences.length == 0 ? fallback : min;
+    }
+}
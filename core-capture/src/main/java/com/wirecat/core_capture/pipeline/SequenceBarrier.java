@@ -0,0 +1,29 @@
+package com.wirecat.core_capture.pipeline;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * Lets a stage wait until all of its upstream dependencies have processed a
+ * given sequence.
+ */
+final class SequenceBarrier {
+    private final Sequence[] dependencies;
+    private final WaitStrategy waitStrategy;
+
+    SequenceBarrier(Sequence[] dependencies, WaitStrategy waitStrategy) {
+        this.dependencies = dependencies;
+        this.waitStrategy = waitStrategy;
+    }
+
+    // Returns the highest sequence available to consume, which may be below
+    // 'sequence' only if 'running' turned false while waiting
+    long waitFor(long sequence, BooleanSupplier running) {
+        int counter = 0;
+        long available;
+        while ((available = Sequence.minimum(dependencies, Long.MAX_VALUE)) < sequence) {
+            if (!running.getAsBoolean()) return available;
+            counter = waitStrategy.idle(counter);
+        }
+        return available;
+    }
+}
@@ -0,0 +1,11 @@
+package com.wirecat.core_capture.pipeline;
+
+/**
+ * Work done by one pipeline stage for each frame, in ring order.
+ * {@code endOfBatch} is true for the last frame currently available, which is
+ * the place to flush anything batched per wake-up.
+ */
+@FunctionalInterface
+public interface StageHandler {
+    void onFrame(FrameSlot slot, long sequence, boolean endOfBatch);
+}
@@ -0,0 +1,78 @@
+package com.wirecat.core_capture.pipeline;
+
+/**
+ * Consumer thread body for one stage: waits on its barrier, runs the handler
+ * over every newly available slot in order, then advances its own sequence so
+ * downstream stages (and the producer) can move on.
+ * <p>
+ * A runner can also be one worker of a partitioned pool: it then handles only
+ * the frames its {@link Partitioner} assigns to it but still advances past the
+ * others, so a downstream barrier on the whole pool sees every frame up to the
+ * slowest worker finished, in capture order.
+ */
+public final class StageRunner implements Runnable {
+    private final String name;
+    private final FrameRing ring;
+    private final SequenceBarrier barrier;
+    private final StageHandler handler;
+    private final Partitioner partitioner;
+    private final int partition;
+    private final int partitions;
+    private final Sequence sequence = new Sequence();
+    private volatile boolean running = true;
+    private volatile long processed;
+    private volatile long busyNanos;
+    private long errors;
+
+    StageRunner(String name, FrameRing ring, SequenceBarrier barrier, StageHandler handler) {
+        this(name, ring, barrier, handler, Partitioner.ROUND_ROBIN, 0, 1);
+    }
+
+    StageRunner(String name, FrameRing ring, SequenceBarrier barrier, StageHandler handler,
+                Partitioner partitioner, int partition, int partitions) {
+        this.name = name;
+        this.ring = ring;
+        this.barrier = barrier;
+        this.handler = handler;
+        this.partitioner = partitioner;
+        this.partition = partition;
+        this.partitions = partitions;
+    }
+
+    @Override
+    public void run() {
+        long next = sequence.get() + 1;
+        while (running) {
+            long available = barrier.waitFor(next, () -> running);
+            if (available < next) continue;
+            long start = System.nanoTime();
+            long handled = 0;
+            for (; next <= available; next++) {
+                FrameSlot slot = ring.get(next);
+                if (partitions > 1 && partitioner.partition(slot, next, partitions) != partition) continue;
+                try {
+                    handler.onFrame(slot, next, next == available);
+                } catch (Exception e) {
+                    // A failing frame must not stall the ring
+                    if (errors++ < 10) System.err.println("[Pipeline] " + name + " failed on frame " + next + ": " + e);
+                }
+                handled++;
+            }
+            processed = processed + handled;
+            busyNanos = busyNanos + (System.nanoTime() - start);
+            sequence.set(available);
+        }
+    }
+
+    void halt() { running = false; }
+
+    public String name()        { return name; }
+    public Sequence sequence()  { return sequence; }
+    public long processed()     { return processed; }
+
+    // Frames per second while this runner had work, i.e. its standalone capacity
+    public double throughput() {
+        long busy = busyNanos;
+        return busy == 0 ? 0 : processed * 1e9 / busy;
+    }
+}
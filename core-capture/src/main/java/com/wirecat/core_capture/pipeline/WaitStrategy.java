@@ -0,0 +1,36 @@
+package com.wirecat.core_capture.pipeline;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * How an idle stage waits for its upstream to publish more frames. Trades
+ * wake-up latency against CPU burned while the link is quiet.
+ */
+public enum WaitStrategy {
+    // Lowest latency, one core per stage pinned at 100%
+    BUSY_SPIN {
+        @Override int idle(int counter) {
+            Thread.onSpinWait();
+            return counter + 1;
+        }
+    },
+    // Spins briefly, then yields the core to other runnable threads
+    YIELDING {
+        @Override int idle(int counter) {
+            if (counter < 100) Thread.onSpinWait();
+            else Thread.yield();
+            return counter + 1;
+        }
+    },
+    // Spin, yield, then park; near-zero CPU when idle (default)
+    SLEEPING {
+        @Override int idle(int counter) {
+            if (counter < 100) Thread.onSpinWait();
+            else if (counter < 200) Thread.yield();
+            else LockSupport.parkNanos(100_000);
+            return counter + 1;
+        }
+    };
+
+    abstract int idle(int counter);
+}
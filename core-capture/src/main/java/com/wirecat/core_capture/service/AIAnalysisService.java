@@ -1,34 +1,319 @@
 package com.wirecat.core_capture.service;
 
+import com.wirecat.core_capture.decode.FrameDecoder;
+import com.wirecat.core_capture.decode.Protocols;
+import com.wirecat.core_capture.detect.Signatures;
 import com.wirecat.core_capture.model.PacketModel;
+import com.wirecat.core_capture.util.PromptText;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
 import java.util.concurrent.*;
-import java.util.function.Consumer; // Add this import
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
+/**
+ * Model explanations of packets and flows, asked for one at a time by the
+ * user rather than for every captured packet. Each item is a normalized
+ * description: roles instead of addresses, the service port, flags, a size
+ * bucket, signature tags and a cleaned-up first payload line. Its SHA-256 is
+ * the cache key, so traffic that looks the same is explained once and then
+ * answered from the cache, and asking again while an answer is on its way
+ * joins that request.
+ * <p>
+ * Items wait in a bounded queue; when it is full the oldest is dropped (or
+ * the new one refused, see {@link OverflowPolicy}). A single dispatcher thread
+ * takes a token from a {@link TokenBucket}, gathers up to {@code batchSize}
+ * queued items into one prompt, and splits the reply back per item, so a
+ * burst of requests costs a few model calls instead of one each. Calls are
+ * asynchronous; with {@link #IN_FLIGHT_BATCHES} awaiting replies the
+ * dispatcher stops taking items, so a slow or throttled model backs up into
+ * the bounded queue rather than into threads.
+ */
 public class AIAnalysisService {
-    private final ExecutorService executor = Executors.newFixedThreadPool(3);
-    
-    public void analyzeAsync(PacketModel packet, Consumer<PacketModel> callback) {
-        executor.submit(() -> {
-            try {
-                // Call static method correctly
-                String explanation = GeminiClient.analyzePacket(packet.toString());
-                packet.setAiExplanation(explanation);
-                callback.accept(packet);
-            } catch (Exception e) {
-                packet.setAiExplanation("Analysis failed: " + e.getMessage());
-                callback.accept(packet);
+    public static final int DEFAULT_QUEUE_CAPACITY = 64;
+    public static final int DEFAULT_BATCH_SIZE = 8;
+    public static final double DEFAULT_REQUESTS_PER_MINUTE = 10;
+    public static final int DEFAULT_BURST = 3;
+    public static final int CACHE_ENTRIES = 1024;
+    public static final int IN_FLIGHT_BATCHES = 2;
+    private static final long LINGER_NANOS = TimeUnit.MILLISECONDS.toNanos(200);
+    private static final int TOKENS_PER_ITEM = 300;
+    private static final int MAX_OUTPUT_TOKENS = 2048;
+
+    public enum OverflowPolicy { DROP_OLDEST, REJECT_NEW }
+
+    /** The model call: a prompt in, the reply text out. Must not block. */
+    @FunctionalInterface
+    public interface Backend {
+        CompletableFuture<String> complete(String prompt, int maxOutputTokens);
+    }
+
+    private final Backend backend;
+    private final BlockingQueue<Pending> queue;
+    private final OverflowPolicy policy;
+    private final TokenBucket bucket;
+    private final int batchSize;
+    private final Semaphore inFlight = new Semaphore(IN_FLIGHT_BATCHES);
+    private final Map<String, Pending> pending = new HashMap<>();
+    private final Map<String, String> cache = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override protected boolean removeEldestEntry(Map.Entry<String, String> e) { return size() > CACHE_ENTRIES; }
+    };
+    private Thread dispatcher;
+    private volatile boolean stopped;
+
+    // Guarded by this
+    private long asked, cacheHits, joined, dropped, calls, failed;
+
+    public AIAnalysisService() {
+        this(GeminiClient::generateAsync, DEFAULT_QUEUE_CAPACITY, OverflowPolicy.DROP_OLDEST,
+                DEFAULT_REQUESTS_PER_MINUTE, DEFAULT_BURST, DEFAULT_BATCH_SIZE);
+    }
+
+    public AIAnalysisService(Backend backend, int queueCapacity, OverflowPolicy policy,
+                             double requestsPerMinute, int burst, int batchSize) {
+        this.backend = backend;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        this.policy = policy;
+        this.bucket = new TokenBucket(requestsPerMinute, burst);
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    // Explanation of one packet; completes on whichever thread delivers the reply
+    public CompletableFuture<String> analyze(PacketModel pm) {
+        return analyze(describe(pm));
+    }
+
+    // Explanation of any item described in normalized text, e.g. a flow
+    public CompletableFuture<String> analyze(String description) {
+        String key = key(description);
+        synchronized (this) {
+            if (stopped) return CompletableFuture.failedFuture(new RejectedExecutionException("AI analysis stopped"));
+            asked++;
+            String hit = cache.get(key);
+            if (hit != null) {
+                cacheHits++;
+                return CompletableFuture.completedFuture(hit);
             }
-        });
+            Pending p = pending.get(key);
+            if (p != null) {
+                joined++;
+                return p.result;
+            }
+            p = new Pending(key, description);
+            if (!queue.offer(p)) {
+                dropped++;
+                if (policy == OverflowPolicy.REJECT_NEW) {
+                    return CompletableFuture.failedFuture(new RejectedExecutionException("AI queue full"));
+                }
+                Pending oldest = queue.poll();
+                if (oldest != null) {
+                    pending.remove(oldest.key);
+                    oldest.result.completeExceptionally(new RejectedExecutionException("Dropped: AI queue full"));
+                }
+                queue.offer(p);
+            }
+            pending.put(key, p);
+            if (dispatcher == null) {
+                dispatcher = new Thread(this::dispatch, "WireCat-AI");
+                dispatcher.setDaemon(true);
+                dispatcher.start();
+            }
+            return p.result;
+        }
+    }
+
+    public synchronized String summary() {
+        if (asked == 0) return "";
+        return String.format("AI: %,d asked, %,d cached, %,d joined, %,d dropped, %,d calls, %,d failed",
+                asked, cacheHits, joined, dropped, calls, failed);
     }
+
+    public synchronized int queued() { return queue.size(); }
+
+    // Fails whatever is still queued; later requests are refused
     public void shutdown() {
-        executor.shutdown();
+        List<Pending> left = new ArrayList<>();
+        Thread t;
+        synchronized (this) {
+            stopped = true;
+            queue.drainTo(left);
+            pending.clear();
+            t = dispatcher;
+        }
+        for (Pending p : left) p.result.completeExceptionally(new CancellationException("AI analysis stopped"));
+        if (t != null) t.interrupt();
+    }
+
+    // ---- Dispatcher ----
+
+    private void dispatch() {
+        List<Pending> batch = new ArrayList<>(batchSize);
+        while (!stopped) {
+            try {
+                inFlight.acquire();
+                batch.add(queue.take());
+                // Items arriving while the bucket is empty ride along in the same call
+                bucket.acquire();
+                long deadline = System.nanoTime() + LINGER_NANOS;
+                queue.drainTo(batch, batchSize - batch.size());
+                while (batch.size() < batchSize) {
+                    Pending p = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (p == null) break;
+                    batch.add(p);
+                    queue.drainTo(batch, batchSize - batch.size());
+                }
+                send(batch);
+            } catch (InterruptedException e) {
+                for (Pending p : batch) p.result.completeExceptionally(new CancellationException("AI analysis stopped"));
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void send(List<Pending> batch) {
+        List<Pending> items = List.copyOf(batch);
+        int n = items.size();
+        synchronized (this) { calls++; }
+        CompletableFuture<String> reply;
         try {
-            if (!executor.awaitTermination(3, TimeUnit.SECONDS)) {
-                executor.shutdownNow();
+            reply = backend.complete(prompt(items), Math.min(MAX_OUTPUT_TOKENS, TOKENS_PER_ITEM * n));
+        } catch (RuntimeException e) {
+            reply = CompletableFuture.failedFuture(e);
+        }
+        reply.whenComplete((text, error) -> {
+            inFlight.release();
+            if (error != null) {
+                finish(items, null, error instanceof CompletionException && error.getCause() != null ? error.getCause() : error);
+            } else {
+                finish(items, n == 1 ? new String[] { text.trim() } : split(text, n), null);
             }
-        } catch (InterruptedException e) {
-            executor.shutdownNow();
+        });
+    }
+
+    // Successful answers are cached; failures and items the model skipped are not
+    private void finish(List<Pending> batch, String[] answers, Throwable error) {
+        synchronized (this) {
+            for (int i = 0; i < batch.size(); i++) {
+                Pending p = batch.get(i);
+                pending.remove(p.key, p);
+                if (answers != null && answers[i] != null) cache.put(p.key, answers[i]);
+                else failed++;
+            }
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            Pending p = batch.get(i);
+            if (answers != null && answers[i] != null) p.result.complete(answers[i]);
+            else if (error != null) p.result.completeExceptionally(error);
+            else p.result.completeExceptionally(new IllegalStateException("No answer for this item in the model's reply"));
+        }
+    }
+
+    static String prompt(List<Pending> batch) {
+        if (batch.size() == 1) {
+            return "Explain this network traffic to a network administrator in simple terms:\n" + batch.get(0).description;
+        }
+        StringBuilder sb = new StringBuilder();
+        sb.append("Explain each of the following ").append(batch.size())
+          .append(" network packets or flows to a network administrator in simple terms. ")
+          .append("Answer each one under its own heading \"### Item k\" (k = 1 to ").append(batch.size())
+          .append("), in order, with nothing before the first heading.\n");
+        for (int i = 0; i < batch.size(); i++) {
+            sb.append("\n### Item ").append(i + 1).append('\n').append(batch.get(i).description).append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static final Pattern ITEM_HEADING =
+            Pattern.compile("(?im)^[ \\t]*#{1,6}[ \\t]*\\**[ \\t]*Item[ \\t]+(\\d+)\\b.*$");
+
+    // The reply's "### Item k" sections; null where an item has none
+    static String[] split(String reply, int n) {
+        String[] answers = new String[n];
+        Matcher m = ITEM_HEADING.matcher(reply);
+        int item = -1, start = 0;
+        while (m.find()) {
+            if (item >= 0) answers[item] = section(reply, start, m.start());
+            int k = Integer.parseInt(m.group(1)) - 1;
+            item = k >= 0 && k < n && answers[k] == null ? k : -1;
+            start = m.end();
+        }
+        if (item >= 0) answers[item] = section(reply, start, reply.length());
+        return answers;
+    }
+
+    private static String section(String reply, int from, int to) {
+        String s = reply.substring(from, to).trim();
+        return s.isEmpty() ? null : s;
+    }
+
+    // ---- Normalized descriptions ----
+
+    /**
+     * What is sent for a packet, and so what it is cached under: nothing
+     * that differs between two packets of the same kind of traffic (addresses,
+     * client ports, sequence numbers, exact sizes, timestamps).
+     */
+    public static String describe(PacketModel pm) {
+        FrameDecoder f = pm.getFrame();
+        StringBuilder sb = new StringBuilder();
+        sb.append("Protocol: ").append(Protocols.name(f.protocolId()));
+        String transport = PromptText.transport(f.ipProtocol(), f.ipVersion());
+        if (!transport.isEmpty()) sb.append(" over ").append(transport);
+        if (f.ipVersion() != 0) sb.append("/IPv").append(f.ipVersion());
+        sb.append('\n');
+        if (f.hasAddresses()) {
+            int src = f.srcAddrOffset(), dst = f.dstAddrOffset();
+            sb.append("Hosts: ").append(PromptText.role(f.addrHi(src), f.addrLo(src))).append(" → ")
+              .append(PromptText.role(f.addrHi(dst), f.addrLo(dst))).append('\n');
+        }
+        if (f.isTcp() || f.isUdp()) {
+            sb.append("Ports: ").append(PromptText.port(f.srcPort(), f.dstPort())).append(" → ")
+              .append(PromptText.port(f.dstPort(), f.srcPort())).append('\n');
+        }
+        if (f.isTcp()) sb.append("TCP flags: ").append(PromptText.flags(f.tcpFlags())).append('\n');
+        if (f.ipProtocol() == FrameDecoder.IPPROTO_ICMP || f.ipProtocol() == FrameDecoder.IPPROTO_ICMPV6) {
+            sb.append("ICMP type ").append(f.icmpType()).append(" code ").append(f.icmpCode()).append('\n');
+        }
+        sb.append("Frame size: ").append(PromptText.range(pm.getLen(), "bytes")).append('\n');
+        if (f.payloadLength() > 0) {
+            byte[] head = new byte[Math.min(f.payloadLength(), 256)];
+            f.copyPayload(0, head, 0, head.length);
+            sb.append("Payload: ").append(PromptText.payload(head, 0, head.length)).append('\n');
+        }
+        long tags = f.payloadTags();
+        if (tags != 0) sb.append("Signature tags: ").append(Signatures.DEFAULT.names(tags)).append('\n');
+        if (pm.getRiskScore() > 0 && pm.getRiskReason() != null) {
+            sb.append("Detector: risk ").append(Math.round(pm.getRiskScore())).append("/10, ")
+              .append(ADDRESS.matcher(pm.getRiskReason()).replaceAll("a host")).append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static final Pattern ADDRESS = Pattern.compile(
+            "\\b\\d{1,3}(\\.\\d{1,3}){3}\\b|\\b[0-9a-fA-F]{0,4}(:[0-9a-fA-F]{0,4}){2,7}\\b");
+
+    static String key(String description) {
+        try {
+            byte[] d = MessageDigest.getInstance("SHA-256").digest(description.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(d);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);   // every JRE has SHA-256
+        }
+    }
+
+    static final class Pending {
+        final String key;
+        final String description;
+        final CompletableFuture<String> result = new CompletableFuture<>();
+
+        Pending(String key, String description) {
+            this.key = key;
+            this.description = description;
         }
     }
-}
\ No newline at end of file
+}
@@ -1,12 +1,32 @@
 package com.wirecat.core_capture.service;
 
+import com.wirecat.core_capture.bpf.BpfFilter;
+import com.wirecat.core_capture.detect.DetectionEngine;
+import com.wirecat.core_capture.flow.ConversationTracker;
+import com.wirecat.core_capture.flow.FlowDigest;
+import com.wirecat.core_capture.flow.TcpStreamReassembler;
+import com.wirecat.core_capture.io.PcapFileReader;
+import com.wirecat.core_capture.io.PcapFileWriter;
+import com.wirecat.core_capture.io.RotatingPcapWriter;
+import com.wirecat.core_capture.model.Conversation;
+import com.wirecat.core_capture.model.PacketAnnotations;
 import com.wirecat.core_capture.model.PacketModel;
+import com.wirecat.core_capture.pipeline.CapturePipeline;
+import com.wirecat.core_capture.pipeline.StageRunner;
+import com.wirecat.core_capture.pipeline.WaitStrategy;
+import com.wirecat.core_capture.stats.HeavyHitters;
+import com.wirecat.core_capture.stats.TrafficStats;
+import com.wirecat.core_capture.store.PacketStore;
 import org.pcap4j.core.*;
-import org.pcap4j.packet.namednumber.DataLinkType;
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.sql.Timestamp;
-import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.LinkedTransferQueue;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
@@ -15,9 +35,39 @@ import java.util.function.Consumer;
 public class CaptureService {
     private PcapHandle handle;
     private Thread captureThread;
+    private volatile CapturePipeline pipeline;
     private final LinkedTransferQueue<PacketModel> queue = new LinkedTransferQueue<>();
-    private final CopyOnWriteArrayList<PacketModel> capturedPackets = new CopyOnWriteArrayList<>();
+    private final AtomicInteger queued = new AtomicInteger();   // queue.size() walks the whole list
+    private volatile ConversationTracker conversations = new ConversationTracker(defaultFlowShards());
+    private final TrafficStats trafficStats = new TrafficStats();
+    private final HeavyHitters heavyHitters = new HeavyHitters();
+    private final DetectionEngine detection = DetectionEngine.withDefaults();
     private final AIAnalysisService aiService = new AIAnalysisService();
+    private final PacketAnnotations annotations = new PacketAnnotations();
+    private PacketStore store;
+    private int storeBudgetBytes = PacketStore.DEFAULT_BUDGET_BYTES;
+    private boolean storeOffHeap = false;
+    private PacketStore.OverflowPolicy storePolicy = PacketStore.OverflowPolicy.DROP_OLDEST;
+    private int ringSize = CapturePipeline.DEFAULT_RING_SIZE;
+    private WaitStrategy waitStrategy = WaitStrategy.SLEEPING;
+    private int decodeWorkers = defaultDecodeWorkers();
+    private int flowShards = defaultFlowShards();
+    private volatile boolean storeFull;
+    private volatile boolean flowSummaries;
+    private volatile boolean queueForUi = true;
+    private volatile Consumer<Conversation> flowEndListener;
+
+    // Write-through to a ring of pcap files; off while the directory is null
+    private Path writeThroughDir;
+    private long rotateBytes;
+    private long rotateMicros;
+    private int rotateFiles;
+    private volatile RotatingPcapWriter diskWriter;
+    private volatile boolean writeFailed;
+
+    public CaptureService() {
+        detection.setOnShed(this::emitStatus);
+    }
 
     private Consumer<String> statusConsumer;
     public void onStatus(Consumer<String> c) { statusConsumer = c; }
@@ -26,62 +76,204 @@ public class CaptureService {
     private Consumer<PacketModel> packetListener;
     public void setOnPacketCaptured(Consumer<PacketModel> listener) { packetListener = listener; }
 
+    // Reassembled TCP payload; called from the conversation workers (one per flow
+    // shard), so the listener must be thread-safe. Takes effect on the next capture.
+    private TcpStreamReassembler.StreamListener streamListener;
+    public void setOnStreamData(TcpStreamReassembler.StreamListener listener) { streamListener = listener; }
+
     public LinkedTransferQueue<PacketModel> queue() { return queue; }
-    public List<PacketModel> getCapturedPackets() { return List.copyOf(capturedPackets); }
+
+    // Moves up to max published packets into the UI's batch; returns how many
+    public int drainQueue(Collection<? super PacketModel> into, int max) {
+        int n = queue.drainTo(into, max);
+        queued.addAndGet(-n);
+        return n;
+    }
+
+    // Packets published but not yet drained by the UI
+    public int queueDepth() { return Math.max(0, queued.get()); }
+
+    private void clearQueue() {
+        queue.clear();
+        queued.set(0);
+    }
+    public ConversationTracker conversations() { return conversations; }
+    public TrafficStats trafficStats() { return trafficStats; }
+    public HeavyHitters heavyHitters() { return heavyHitters; }
+    public DetectionEngine detection() { return detection; }
+    // Opt-in model explanations of packets and flows; outlives captures
+    public AIAnalysisService ai() { return aiService; }
+    // Late enrichment of retained packets, by store sequence
+    public PacketAnnotations annotations() { return annotations; }
+    public CapturePipeline pipeline() { return pipeline; }
+
+    // Memory budget for retained frames; takes effect on the next capture
+    public synchronized void setStoreBudget(int budgetMb, boolean offHeap, PacketStore.OverflowPolicy policy) {
+        this.storeBudgetBytes = (int) Math.min(Integer.MAX_VALUE, budgetMb * 1024L * 1024L);
+        this.storeOffHeap = offHeap;
+        this.storePolicy = policy;
+        this.store = null;
+        annotations.clear();   // a new store numbers its sequences from zero again
+    }
+
+    // Streams every frame to <directory>/wirecat_NNNNN_<time>.pcap, starting a new file
+    // after maxFileMb or maxFileSeconds (0 = no limit) and keeping the newest ringFiles
+    // (0 = all); pass a null directory to turn it off. Takes effect on the next capture.
+    public synchronized void setWriteThrough(Path directory, int maxFileMb, int maxFileSeconds, int ringFiles) {
+        this.writeThroughDir = directory;
+        this.rotateBytes = maxFileMb * 1024L * 1024L;
+        this.rotateMicros = maxFileSeconds * 1_000_000L;
+        this.rotateFiles = ringFiles;
+    }
+
+    // Asks the AI service once about each flow as it closes or goes idle; flows only keep
+    // the digest a summary needs while this is on. Next capture.
+    public void setFlowSummaries(boolean on) { flowSummaries = on; }
+
+    // Each conversation as it closes or goes idle, and the rest when the capture stops;
+    // called from the conversation workers, so it must be thread-safe. Next capture.
+    public void setOnFlowEnd(Consumer<Conversation> listener) { flowEndListener = listener; }
+
+    // Without a table to drain it (headless), published packets must not pile up in
+    // the UI queue; the listener and the packet store still see them
+    public void setQueueForUi(boolean on) { queueForUi = on; }
+
+    // Ring size (power of two), stage idle strategy, decode parallelism and
+    // conversation shards; next capture
+    public void setPipelineOptions(int ringSize, WaitStrategy waitStrategy, int decodeWorkers, int flowShards) {
+        this.ringSize = ringSize;
+        this.waitStrategy = waitStrategy;
+        this.decodeWorkers = Math.max(1, decodeWorkers);
+        this.flowShards = Math.max(1, flowShards);
+    }
+
+    // Half the cores, leaving the rest for capture, the other stages and the UI
+    private static int defaultDecodeWorkers() {
+        return Math.max(1, Math.min(8, Runtime.getRuntime().availableProcessors() / 2));
+    }
+
+    // Flow tracking is lighter than decoding; a quarter of the cores is plenty
+    private static int defaultFlowShards() {
+        return Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 4));
+    }
+
+    // Per-stage frame counts and standalone throughput, e.g. "Decode-0 1,024,000 (2100.0k/s)",
+    // then the detection rules' cost and the AI requests
+    public String pipelineSummary() {
+        CapturePipeline p = pipeline;
+        if (p == null) return "";
+        StringBuilder sb = new StringBuilder();
+        for (StageRunner s : p.stages()) {
+            if (sb.length() > 0) sb.append(" · ");
+            sb.append(String.format("%s %,d (%.1fk/s)", s.name(), s.processed(), s.throughput() / 1000));
+        }
+        String rules = detection.summary();
+        if (!rules.isEmpty()) sb.append(" — ").append(rules);
+        String ai = aiService.summary();
+        if (!ai.isEmpty()) sb.append(" — ").append(ai);
+        return sb.toString();
+    }
+
+    // Asks the AI service about a packet; a retained one gets the answer as an annotation
+    public CompletableFuture<String> explain(PacketModel pm) {
+        long seq = pm.getStoreSequence();
+        PacketStore owner = getPacketStore();
+        CompletableFuture<String> answer = aiService.analyze(pm);
+        // A store replaced meanwhile numbers from zero again, so the sequence would name another
+        // packet; the lock keeps setStoreBudget from slipping in between the check and the update
+        if (seq >= 0) answer.thenAccept(text -> {
+            synchronized (this) {
+                if (store == owner) annotations.setAiExplanation(seq, text);
+            }
+        });
+        return answer;
+    }
+
+    // Asks the AI service about a whole flow from its digest; the answer is kept on the conversation
+    public CompletableFuture<String> summarize(Conversation conv) {
+        String known = conv.getAiSummary();
+        FlowDigest digest = conv.getDigest();
+        if (known != null) return CompletableFuture.completedFuture(known);
+        if (digest == null) return CompletableFuture.failedFuture(new IllegalStateException(
+                "No digest for this flow; turn on flow summaries in Settings and capture again"));
+        digest.claim();   // so the flow's end does not ask again
+        return ask(conv, digest);
+    }
+
+    private CompletableFuture<String> ask(Conversation conv, FlowDigest digest) {
+        ConversationTracker tracker = conversations;
+        CompletableFuture<String> answer = aiService.analyze(digest.describe());
+        answer.thenAccept(text -> {
+            conv.setAiSummary(text);
+            tracker.touch(conv);
+        });
+        return answer;
+    }
+
+    public synchronized PacketStore getPacketStore() {
+        if (store == null) {
+            // Slot count assumes an average retained frame of ~128 bytes
+            store = new PacketStore(Math.max(1024, storeBudgetBytes / 128), storeBudgetBytes, storeOffHeap, storePolicy);
+        }
+        return store;
+    }
 
     public void startCapture(String ifaceName, String bpfFilter, int limit) {
         stopCapture(); // Ensure any previous capture is stopped
-        queue.clear(); // Clear the queue so UI gets only new packets
+        clearQueue(); // Clear the queue so UI gets only new packets
         try {
             PcapNetworkInterface device = Pcaps.findAllDevs().stream()
                 .filter(d -> d.getName().equals(ifaceName))
                 .findFirst()
                 .orElseThrow(() -> new IllegalArgumentException("Interface not found"));
 
-            handle = device.openLive(65536, PcapNetworkInterface.PromiscuousMode.PROMISCUOUS, 50);
-            
+            // This run's own handle: a later capture replaces the field, not what this run closes
+            PcapHandle h = device.openLive(65536, PcapNetworkInterface.PromiscuousMode.PROMISCUOUS, 50);
+            handle = h;
+
             if (bpfFilter != null && !bpfFilter.isBlank()) {
-                handle.setFilter(bpfFilter, BpfProgram.BpfCompileMode.OPTIMIZE);
+                h.setFilter(bpfFilter, BpfProgram.BpfCompileMode.OPTIMIZE);
             }
 
+            PacketStore packetStore = getPacketStore();
+            int linkType = h.getDlt().value();
+            packetStore.setLinkType(linkType);
+            CapturePipeline p = startPipeline(packetStore);
+            RotatingPcapWriter writer = diskWriter;
+            // Live frames are dropped when the ring fills, so costly rules give way first
+            detection.setLoad(() -> (double) p.backlog() / p.ringSize());
+
             captureThread = new Thread(() -> {
                 emitStatus("▶ Capturing on " + ifaceName);
                 AtomicInteger counter = new AtomicInteger();
 
-                PacketListener listener = rawPkt -> {
+                // The libpcap callback only copies the frame into the ring; everything
+                // else happens on the pipeline's stage threads
+                RawPacketListener listener = rawBytes -> {
                     int idx = counter.incrementAndGet();
-                    PacketModel pm = PacketModel.fromRaw(rawPkt, idx);
-                    
-                    // Store packet immediately
-                    capturedPackets.add(pm);
-                    queue.offer(pm);
-                    if (packetListener != null) packetListener.accept(pm);
-
-                    // Initiate AI analysis
-                    aiService.analyzeAsync(pm, analyzedPm -> {
-                        // Fixed replacement logic
-                        for (int i = 0; i < capturedPackets.size(); i++) {
-                            if (capturedPackets.get(i).getId() == analyzedPm.getId()) {
-                                capturedPackets.set(i, analyzedPm);
-                                break;
-                            }
-                        }
-                        if (packetListener != null) packetListener.accept(analyzedPm);
-                    });
+                    p.tryPublish(rawBytes, 0, rawBytes.length, captureTimeMicros(h), idx, linkType);
 
-                    if (limit > 0 && idx >= limit) {
-                        try { handle.breakLoop(); } 
+                    if (storeFull || (limit > 0 && idx >= limit)) {
+                        try { h.breakLoop(); }
                         catch (NotOpenException ignored) {}
                     }
                 };
 
                 try {
-                    handle.loop(-1, listener);
+                    h.loop(-1, listener);
                 } catch (Exception e) {
                     emitStatus("❌ Capture error: " + e.getMessage());
                 } finally {
-                    if (handle.isOpen()) handle.close();
-                    emitStatus("■ Capture stopped");
+                    if (h.isOpen()) h.close();
+                    p.stop(1000);   // joins the stage threads before the flows are flushed
+                    conversations.endAll();
+                    closeWriter(writer);
+                    if (storeFull) {
+                        emitStatus("⏸ Packet store full (" + (packetStore.budgetBytes() >> 20) + " MB), capture stopped");
+                    } else {
+                        emitStatus("■ Capture stopped" + (p.dropped() > 0 ? " (" + p.dropped() + " dropped)" : "")
+                                + " — " + pipelineSummary());
+                    }
                 }
             }, "WireCat-Capture-Thread");
 
@@ -93,38 +285,273 @@ public class CaptureService {
         }
     }
 
-    public void stopCapture() {
+    // Offline analysis: feeds a pcap/pcapng file through the same pipeline as live
+    // capture, as fast as the stages keep up
+    public void openFile(File file) {
+        openFile(file, null);
+    }
+
+    // As above, keeping only records that pass a capture (BPF) filter, evaluated in
+    // Java since libpcap only filters live handles here
+    public void openFile(File file, String bpfFilter) {
+        stopCapture();
+        clearQueue();
+        PcapFileReader reader;
         try {
-            if (handle != null && handle.isOpen()) {
-                handle.breakLoop();
-                handle.close();
+            reader = PcapFileReader.open(file.toPath());
+        } catch (IOException e) {
+            emitStatus("❌ Cannot open " + file.getName() + ": " + e.getMessage());
+            return;
+        }
+        BpfFilter[] filter = new BpfFilter[1];   // for the link type of the last record
+        Map<Integer, BpfFilter> byLinkType = new HashMap<>();
+        if (bpfFilter != null && !bpfFilter.isBlank()) {
+            try {
+                filter[0] = BpfFilter.compile(bpfFilter, reader.linkType());
+            } catch (IllegalArgumentException e) {
+                try {
+                    reader.close();
+                } catch (IOException ignored) { }
+                emitStatus("❌ Invalid filter: " + e.getMessage());
+                return;
             }
-            aiService.shutdown();
+            byLinkType.put(reader.linkType(), filter[0]);
+        }
+        PacketStore packetStore = getPacketStore();
+        packetStore.setLinkType(reader.linkType());
+        // A file waits for the stages rather than dropping, so every rule runs
+        detection.setLoad(null);
+        CapturePipeline p = startPipeline(packetStore);
+        RotatingPcapWriter writer = diskWriter;
+
+        captureThread = new Thread(() -> {
+            emitStatus("📂 Reading " + file.getName());
+            AtomicInteger counter = new AtomicInteger();
+            AtomicInteger records = new AtomicInteger();
+            long started = System.nanoTime();
+            try (reader) {
+                reader.read((buf, off, len, tsMicros, linkType) -> {
+                    if (storeFull || Thread.currentThread().isInterrupted()) return false;
+                    records.incrementAndGet();
+                    BpfFilter f = filter[0];
+                    if (f != null) {
+                        if (f.linkType() != linkType) {
+                            f = filter[0] = byLinkType.computeIfAbsent(linkType, lt -> filterFor(bpfFilter, lt));
+                        }
+                        if (!f.matches(buf, off, len)) return true;
+                    }
+                    p.publish(buf, off, len, tsMicros, counter.incrementAndGet(), linkType);
+                    return true;
+                });
+            } catch (IOException e) {
+                emitStatus("❌ Read error: " + e.getMessage());
+            } finally {
+                p.stop(5000);
+                conversations.endAll();
+                closeWriter(writer);
+                double secs = Math.max(1e-9, (System.nanoTime() - started) / 1e9);
+                String filtered = bpfFilter == null || bpfFilter.isBlank() ? ""
+                        : String.format(" (%,d of %,d matched \"%s\")", counter.get(), records.get(), bpfFilter.trim());
+                emitStatus(String.format("■ Loaded %,d packets from %s%s in %.1f s (%,.0f pkt/s)%s — %s",
+                        counter.get(), file.getName(), filtered, secs, records.get() / secs,
+                        storeFull ? ", packet store full" : "", pipelineSummary()));
+            }
+        }, "WireCat-File-Reader");
+
+        captureThread.setDaemon(true);
+        captureThread.start();
+    }
+
+    private CapturePipeline startPipeline(PacketStore packetStore) {
+        storeFull = false;
+        writeFailed = false;
+        if (conversations.shardCount() != flowShards) conversations = new ConversationTracker(flowShards);
+        // Claiming the digest first means a flow already summarized by hand is not asked about again
+        boolean summaries = flowSummaries;
+        Consumer<Conversation> records = flowEndListener;
+        conversations.setDigests(summaries);
+        conversations.setOnFlowEnd(!summaries && records == null ? null : conv -> {
+            if (summaries && conv.getDigest().claim()) ask(conv, conv.getDigest());
+            if (records != null) records.accept(conv);
+        });
+        RotatingPcapWriter writer = null;
+        synchronized (this) {
+            if (writeThroughDir != null) {
+                try {
+                    writer = new RotatingPcapWriter(writeThroughDir, "wirecat", packetStore.linkType(), 65536,
+                            rotateBytes, rotateMicros, rotateFiles);
+                } catch (IOException e) {
+                    emitStatus("❌ Write-through disabled: " + e.getMessage());
+                }
+            }
+        }
+        diskWriter = writer;
+        CapturePipeline p = buildPipeline(packetStore, conversations, writer);
+        p.start();
+        pipeline = p;
+        return p;
+    }
+
+    // decode x N ─┬─ conversations x M ─┐
+    //             ├─ statistics ────────┼─ publish
+    //             ├─ heavy hitters ─────┤
+    //             └─ detection ─────────┤
+    // store ────────────────────────────┘
+    // (disk writer)
+    private CapturePipeline buildPipeline(PacketStore packetStore, ConversationTracker flows, RotatingPcapWriter writer) {
+        CapturePipeline p = new CapturePipeline(ringSize, waitStrategy);
+
+        // Decoding only touches its own slot, so frames fan out across workers;
+        // stages behind the pool still see them in capture order
+        StageRunner[] decode = p.addParallelStage("Decode", decodeWorkers, (slot, seq, endOfBatch) -> {
+            slot.decoded.decode(slot.data(), 0, slot.length(), slot.linkType());
+            slot.decoded.payloadTags();   // signature matching, here so it runs in parallel; the copy keeps the result
+            slot.flowHash = slot.decoded.flowHash();
+            byte[] frame = Arrays.copyOf(slot.data(), slot.length());
+            slot.model = PacketModel.fromRaw(frame, slot.timestampMicros(), slot.id(), slot.decoded);
+        });
+        StageRunner storeStage = p.addStage("Store", (slot, seq, endOfBatch) -> {
+            slot.storeSequence = packetStore.append(slot.id(), slot.timestampMicros(), slot.data(), 0, slot.length());
+            if (slot.storeSequence < 0 && packetStore.policy() == PacketStore.OverflowPolicy.STOP_ON_FULL) {
+                storeFull = true;
+            }
+        });
+        // Write-through runs beside the store, straight off the ring
+        if (writer != null) {
+            p.addStage("Writer", (slot, seq, endOfBatch) -> {
+                if (writeFailed) return;
+                try {
+                    writer.write(slot.data(), 0, slot.length(), slot.timestampMicros());
+                    if (endOfBatch) writer.flushIfDue();
+                } catch (IOException e) {
+                    writeFailed = true;
+                    emitStatus("❌ Write-through stopped: " + e.getMessage());
+                }
+            });
+        }
+        // Each conversation worker owns the flows that hash to it, and reassembles their
+        // TCP streams for the digests or when someone listens for stream data
+        flows.setStreamListener(streamListener);
+        StageRunner[] conversationStage = p.addParallelStage("Conversations", flows.shardCount(),
+                ConversationTracker.BY_FLOW, flows::shardHandler, decode);
+        StageRunner statsStage = p.addStage("Statistics",
+                (slot, seq, endOfBatch) -> trafficStats.onPacket(slot.model), decode);
+        StageRunner heavyHitterStage = p.addStage("Heavy hitters",
+                (slot, seq, endOfBatch) -> heavyHitters.onPacket(slot.model), decode);
+        // Raises the packet's risk before publish hands it to the table
+        StageRunner detectionStage = p.addStage("Detection",
+                (slot, seq, endOfBatch) -> detection.onPacket(slot.model), decode);
+        p.addStage("Publish", (slot, seq, endOfBatch) -> {
+            PacketModel pm = slot.model;
+            slot.model = null;
+            pm.setStoreSequence(slot.storeSequence);
+            if (queueForUi) {
+                queue.offer(pm);
+                queued.incrementAndGet();
+            }
+            if (packetListener != null) packetListener.accept(pm);
+        }, concat(conversationStage, storeStage, statsStage, heavyHitterStage, detectionStage));
+        return p;
+    }
+
+    private static StageRunner[] concat(StageRunner[] pool, StageRunner... more) {
+        StageRunner[] all = Arrays.copyOf(pool, pool.length + more.length);
+        System.arraycopy(more, 0, all, pool.length, more.length);
+        return all;
+    }
+
+    // Waits up to millis (0 = no limit) for the running capture or file to finish and
+    // its stages to drain; true once nothing is running
+    public boolean awaitCapture(long millis) throws InterruptedException {
+        Thread t = captureThread;
+        if (t == null) return true;
+        t.join(millis);
+        return !t.isAlive();
+    }
+
+    // Returns once the run has finished: its stages share the tracker, statistics, detectors,
+    // store and queue with the next run, which must not start while they still write
+    public void stopCapture() {
+        PcapHandle h = handle;
+        Thread t = captureThread;
+        try {
+            if (h != null && h.isOpen()) h.breakLoop();
         } catch (Exception e) {
             emitStatus("❌ Stop error: " + e.getMessage());
         }
-        if (captureThread != null) {
-            captureThread.interrupt();
+        if (t == null || t == Thread.currentThread()) return;
+        t.interrupt();
+        try {
+            t.join(2000);
+            if (t.isAlive() && h != null && h.isOpen()) h.close();   // loop not woken by breakLoop
+            t.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            emitStatus("❌ Stop error: " + e.getMessage());
         }
     }
 
+    // Exports the write-through files when there are any (no re-encoding, just a
+    // concatenation), otherwise whatever the packet store still retains
     public void save(File outFile) {
-        try (PcapHandle dead = Pcaps.openDead(DataLinkType.EN10MB, 65536);
-             PcapDumper dumper = dead.dumpOpen(outFile.getAbsolutePath())) {
-            
-            for (PacketModel pm : capturedPackets) {
-                dumper.dump(pm.getRaw(), new Timestamp(pm.getTimestampMs()));
+        RotatingPcapWriter writer = diskWriter;
+        try {
+            if (writer != null && !writer.files().isEmpty()) {
+                int files = writer.exportTo(outFile.toPath());
+                emitStatus("💾 Saved " + files + " capture file(s) to " + outFile.getAbsolutePath());
+                return;
+            }
+            PacketStore packetStore = getPacketStore();
+            try (PcapFileWriter out = new PcapFileWriter(outFile.toPath(), packetStore.linkType(), 65536)) {
+                for (long seq = packetStore.firstSequence(); seq < packetStore.endSequence(); seq++) {
+                    long ts = packetStore.getTimestampMicros(seq);
+                    byte[] frame = packetStore.copyFrame(seq);
+                    if (frame == null) continue; // evicted while saving
+                    out.write(frame, 0, frame.length, ts);
+                }
             }
             emitStatus("💾 Saved to " + outFile.getAbsolutePath());
-            
+
         } catch (Exception e) {
             emitStatus("❌ Save failed: " + e.getMessage());
         }
     }
 
+    // A pcapng interface with another link type gets the filter recompiled for it, or
+    // drops everything if the filter has no meaning there (e.g. "ether host" on raw IP)
+    private static BpfFilter filterFor(String expression, int linkType) {
+        try {
+            return BpfFilter.compile(expression, linkType);
+        } catch (IllegalArgumentException e) {
+            return BpfFilter.rejectAll(linkType);
+        }
+    }
+
+    private void closeWriter(RotatingPcapWriter writer) {
+        if (writer == null) return;
+        try {
+            writer.close();
+        } catch (IOException e) {
+            emitStatus("❌ Write-through close failed: " + e.getMessage());
+        }
+    }
+
+    // Capture time of the frame currently being delivered by handle.loop
+    private static long captureTimeMicros(PcapHandle h) {
+        Timestamp ts = h.getTimestamp();
+        if (ts == null) return System.currentTimeMillis() * 1000;
+        return (ts.getTime() / 1000) * 1_000_000 + ts.getNanos() / 1000;
+    }
+
     public void clearPackets() {
-        capturedPackets.clear();
-        queue.clear();
+        getPacketStore().clear();
+        conversations.clear();
+        trafficStats.clear();
+        heavyHitters.clear();
+        detection.clear();
+        annotations.clear();
+        clearQueue();
         emitStatus("🧹 Packets cleared");
     }
-}
\ No newline at end of file
+}
@@ -1,25 +1,73 @@
 package com.wirecat.core_capture.service;
 
+import java.io.IOException;
 import java.net.URI;
 import java.net.http.*;
 import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.concurrent.*;
 import com.google.gson.*;
 import io.github.cdimascio.dotenv.Dotenv;
 
 
-
+// Asynchronous throughout: no thread waits on the network. Requests share one
+// HTTP/2 connection; at most MAX_IN_FLIGHT are outstanding and the rest wait their
+// turn without holding a thread. 429s, 5xx and I/O errors are retried with jittered
+// exponential backoff, honouring Retry-After.
 public class GeminiClient {
-    private static final Dotenv dotenv = Dotenv.configure().load();
+    public static final int MAX_IN_FLIGHT = 4;
+    public static final int MAX_ATTEMPTS = 4;
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+    private static final long BACKOFF_BASE_MS = 500;
+    private static final long BACKOFF_CAP_MS = 20_000;
+    private static final long RETRY_AFTER_CAP_MS = 60_000;
+
+    // .env first, then the environment; GEMINI_ENDPOINT can point at a local stub server
+    private static final Dotenv dotenv = Dotenv.configure().ignoreIfMissing().load();
     private static final String API_KEY = dotenv.get("GEMINI_API_KEY");
+    private static final String ENDPOINT = dotenv.get("GEMINI_ENDPOINT",
+            "https://generativelanguage.googleapis.com/v1beta/models/gemini-2.0-flash:generateContent");
+    // Its own two daemon threads for I/O and callbacks, rather than the common pool
     private static final HttpClient HTTP = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_2)
             .connectTimeout(Duration.ofSeconds(10))
+            .executor(Executors.newFixedThreadPool(2, r -> {
+                Thread t = new Thread(r, "WireCat-HTTP");
+                t.setDaemon(true);
+                return t;
+            }))
             .build();
     private static final Gson gson = new Gson();
 
+    // Requests waiting for a slot; guarded by itself, as is inFlight
+    private static final ArrayDeque<Runnable> waiting = new ArrayDeque<>();
+    private static int inFlight;
+
+    // Blocking convenience for one-off use; the service uses generateAsync
     public static String analyzePacket(String packetData) throws Exception {
-        String prompt = "Explain this network packet in simple terms: " + packetData;
-        String modelEndpoint = "https://generativelanguage.googleapis.com/v1beta/models/gemini-2.0-flash:generateContent";
+        try {
+            return generateAsync("Explain this network packet in simple terms: " + packetData, 500).get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception cause ? cause : e;
+        }
+    }
+
+    // The prompt as given; completes with the reply's text on an HTTP client thread
+    public static CompletableFuture<String> generateAsync(String prompt, int maxOutputTokens) {
+        HttpRequest request = request(prompt, maxOutputTokens);
+        CompletableFuture<String> result = new CompletableFuture<>();
+        whenSlotFree(() -> {
+            if (result.isDone()) {   // cancelled while it waited
+                release();
+                return;
+            }
+            result.whenComplete((text, error) -> release());
+            attempt(request, 1, result);
+        });
+        return result;
+    }
 
+    private static HttpRequest request(String prompt, int maxOutputTokens) {
         JsonObject requestBody = new JsonObject();
         JsonArray contents = new JsonArray();
         JsonObject content = new JsonObject();
@@ -32,16 +80,95 @@ public class GeminiClient {
 
         // Add generation parameters
         JsonObject generationConfig = new JsonObject();
-        generationConfig.addProperty("maxOutputTokens", 500);
+        generationConfig.addProperty("maxOutputTokens", maxOutputTokens);
         requestBody.add("generationConfig", generationConfig);
 
-        HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create(modelEndpoint + "?key=" + API_KEY))
+        return HttpRequest.newBuilder()
+                .uri(URI.create(ENDPOINT + "?key=" + API_KEY))
+                .timeout(REQUEST_TIMEOUT)
                 .header("Content-Type", "application/json")
                 .POST(HttpRequest.BodyPublishers.ofString(requestBody.toString()))
                 .build();
+    }
+
+    private static void attempt(HttpRequest request, int attempt, CompletableFuture<String> result) {
+        HTTP.sendAsync(request, HttpResponse.BodyHandlers.ofString()).whenComplete((response, error) -> {
+            if (result.isDone()) return;
+            long delay;
+            if (error != null) {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                if (!(cause instanceof IOException) || attempt >= MAX_ATTEMPTS) {   // timeouts are IOExceptions too
+                    result.completeExceptionally(cause);
+                    return;
+                }
+                delay = backoff(attempt, -1);
+            } else if (retryable(response.statusCode()) && attempt < MAX_ATTEMPTS) {
+                delay = backoff(attempt, retryAfterMillis(response));
+            } else {
+                try {
+                    result.complete(handleResponse(response));
+                } catch (Exception e) {
+                    result.completeExceptionally(e);
+                }
+                return;
+            }
+            // The delay runs on CompletableFuture's scheduler thread, which only re-sends
+            CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS, Runnable::run)
+                    .execute(() -> attempt(request, attempt + 1, result));
+        });
+    }
+
+    private static boolean retryable(int status) {
+        return status == 429 || status >= 500 && status <= 599;
+    }
+
+    // Half the exponential step plus a random part of the other half, so clients that failed
+    // together do not retry together; never sooner than the server asked
+    private static long backoff(int attempt, long retryAfterMillis) {
+        long step = Math.min(BACKOFF_CAP_MS, BACKOFF_BASE_MS << (attempt - 1));
+        long delay = step / 2 + ThreadLocalRandom.current().nextLong(step / 2 + 1);
+        return Math.max(delay, Math.min(RETRY_AFTER_CAP_MS, retryAfterMillis));
+    }
+
+    // Retry-After in seconds; the HTTP-date form is rare for APIs and treated as absent
+    private static long retryAfterMillis(HttpResponse<?> response) {
+        try {
+            return response.headers().firstValue("Retry-After").map(v -> Long.parseLong(v.trim()) * 1000).orElse(-1L);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static void whenSlotFree(Runnable task) {
+        synchronized (waiting) {
+            if (inFlight >= MAX_IN_FLIGHT) {
+                waiting.add(task);
+                return;
+            }
+            inFlight++;
+        }
+        task.run();
+    }
+
+    // A finished request hands its slot straight to the next waiting one
+    private static void release() {
+        Runnable next;
+        synchronized (waiting) {
+            next = waiting.poll();
+            if (next == null) {
+                inFlight--;
+                return;
+            }
+        }
+        next.run();
+    }
+
+    public static int inFlight() {
+        synchronized (waiting) { return inFlight; }
+    }
 
-        return handleResponse(HTTP.send(request, HttpResponse.BodyHandlers.ofString()));
+    public static int waiting() {
+        synchronized (waiting) { return waiting.size(); }
     }
 
     private static String handleResponse(HttpResponse<String> response) throws Exception {
@@ -54,7 +181,7 @@ public class GeminiClient {
                     .get(0).getAsJsonObject()
                     .get("text").getAsString();
         } else {
-            throw new RuntimeException("API Error: " + response.body());
+            throw new RuntimeException("API Error " + response.statusCode() + ": " + response.body());
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,55 @@
+package com.wirecat.core_capture.service;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket: refills at a steady rate up to {@code burst} tokens, and each
+ * request spends one. Keeps the model API under its quota however fast
+ * requests come in; a quiet spell earns at most a short burst. Thread-safe.
+ */
+final class TokenBucket {
+    private final double perNano;
+    private final double burst;
+    private double tokens;
+    private long refilledAt = System.nanoTime();
+
+    TokenBucket(double perMinute, int burst) {
+        this.perNano = perMinute / TimeUnit.MINUTES.toNanos(1);
+        this.burst = Math.max(1, burst);
+        this.tokens = this.burst;
+    }
+
+    synchronized boolean tryAcquire() {
+        refill();
+        if (tokens < 1) return false;
+        tokens--;
+        return true;
+    }
+
+    // Blocks until a token is free, then spends it
+    void acquire() throws InterruptedException {
+        while (true) {
+            long wait;
+            synchronized (this) {
+                refill();
+                if (tokens >= 1) {
+                    tokens--;
+                    return;
+                }
+                wait = (long) Math.ceil((1 - tokens) / perNano);
+            }
+            TimeUnit.NANOSECONDS.sleep(Math.max(1_000_000L, wait));
+        }
+    }
+
+    synchronized double available() {
+        refill();
+        return tokens;
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(burst, tokens + (now - refilledAt) * perNano);
+        refilledAt = now;
+    }
+}
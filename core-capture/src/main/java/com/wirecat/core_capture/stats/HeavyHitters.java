@@ -0,0 +1,215 @@
+package com.wirecat.core_capture.stats;
+
+import com.wirecat.core_capture.decode.FrameDecoder;
+import com.wirecat.core_capture.flow.FlowKey;
+import com.wirecat.core_capture.model.PacketModel;
+
+import java.util.*;
+
+/**
+ * Top talkers in fixed memory: {@link SpaceSaving} summaries of sources,
+ * destinations, ports and flows, each ranked once by packets and once by
+ * bytes. One set of summaries covers the whole capture; another is kept per
+ * {@link #EPOCH_SECONDS}-second epoch of capture time in a ring of
+ * {@link #EPOCHS}, and a windowed query merges the epochs it spans. Memory is
+ * the same after a minute or a day, however many hosts pass by.
+ * <p>
+ * Fed by its own pipeline stage. Counts are estimates: each result carries
+ * the most it may be over by. Updates and queries synchronize on this
+ * object; the lock is uncontended except while a query copies a result out.
+ */
+public class HeavyHitters {
+    // Counters per summary. A key is certain to be tracked once it has more than 1/capacity of
+    // the traffic; the epochs, which see less traffic, get fewer. About 5 MB in all.
+    public static final int CAPACITY = 1024;
+    public static final int EPOCH_CAPACITY = 256;
+    public static final int EPOCH_SECONDS = 10;
+    public static final int EPOCHS = 36;         // windows up to six minutes
+
+    public enum Dimension {
+        SOURCE(2), DESTINATION(2), PORT(1), FLOW(FlowKey.WORDS);
+        final int width;
+        Dimension(int width) { this.width = width; }
+    }
+
+    public enum Metric { PACKETS, BYTES }
+
+    /** One ranked key; packets and bytes may each be over by up to their own error. */
+    public record Talker(String label, long packets, long bytes, long packetError, long byteError) {}
+
+    private static final int SUMMARIES = Dimension.values().length * 2;
+    private static final long NONE = Long.MIN_VALUE;
+
+    private final SpaceSaving[] total = summaries(CAPACITY);
+    private final SpaceSaving[][] epochs = new SpaceSaving[EPOCHS][];
+    private final long[] epochNumber = new long[EPOCHS];
+    private long latestSecond = NONE;
+
+    private final long[] address = new long[2];
+    private final long[] port = new long[1];
+    private final FlowKey flowKey = new FlowKey();
+    private final long[] flow = new long[FlowKey.WORDS];
+
+    public HeavyHitters() {
+        for (int i = 0; i < EPOCHS; i++) epochs[i] = summaries(EPOCH_CAPACITY);
+        Arrays.fill(epochNumber, NONE);
+    }
+
+    private static SpaceSaving[] summaries(int capacity) {
+        SpaceSaving[] s = new SpaceSaving[SUMMARIES];
+        for (Dimension d : Dimension.values()) {
+            s[index(d, Metric.PACKETS)] = new SpaceSaving(capacity, d.width, false);
+            s[index(d, Metric.BYTES)] = new SpaceSaving(capacity, d.width, true);
+        }
+        return s;
+    }
+
+    private static int index(Dimension d, Metric m) { return d.ordinal() * 2 + m.ordinal(); }
+
+    // Called from the heavy-hitter stage only
+    public synchronized void onPacket(PacketModel pm) {
+        FrameDecoder f = pm.getFrame();
+        if (f == null || !f.hasAddresses()) return;
+        long sec = Math.floorDiv(pm.getTimestampMicros(), 1_000_000L);
+        long epoch = Math.floorDiv(sec, EPOCH_SECONDS);
+        int e = Math.floorMod(epoch, EPOCHS);
+        SpaceSaving[] current = null;
+        if (epochNumber[e] != epoch && (latestSecond == NONE || epoch > Math.floorDiv(latestSecond, EPOCH_SECONDS))) {
+            for (SpaceSaving s : epochs[e]) s.clear();
+            epochNumber[e] = epoch;
+        }
+        if (epochNumber[e] == epoch) current = epochs[e];   // else older than the ring: totals only
+        latestSecond = latestSecond == NONE ? sec : Math.max(latestSecond, sec);
+        int len = pm.getLen();
+
+        int src = f.srcAddrOffset(), dst = f.dstAddrOffset();
+        address[0] = f.addrHi(src);
+        address[1] = f.addrLo(src);
+        offer(current, Dimension.SOURCE, address, hash(address[0], address[1]), len);
+        address[0] = f.addrHi(dst);
+        address[1] = f.addrLo(dst);
+        offer(current, Dimension.DESTINATION, address, hash(address[0], address[1]), len);
+
+        if (f.isTcp() || f.isUdp()) {
+            // The service side: the lower port, the usual guess when the handshake was not seen
+            int service = Math.min(f.srcPort(), f.dstPort());
+            port[0] = (long) f.ipProtocol() << 16 | service;
+            offer(current, Dimension.PORT, port, hash(0, port[0]), len);
+        }
+
+        flowKey.set(f).writeTo(flow, 0);
+        offer(current, Dimension.FLOW, flow, flowKey.hashCode(), len);
+    }
+
+    private void offer(SpaceSaving[] epoch, Dimension d, long[] key, int hash, int len) {
+        int p = index(d, Metric.PACKETS), b = index(d, Metric.BYTES);
+        total[p].offer(key, hash, len);
+        total[b].offer(key, hash, len);
+        if (epoch != null) {
+            epoch[p].offer(key, hash, len);
+            epoch[b].offer(key, hash, len);
+        }
+    }
+
+    private static int hash(long hi, long lo) {
+        long h = (hi * 0x9E3779B97F4A7C15L) ^ lo;
+        h *= 0xC2B2AE3D27D4EB4FL;
+        return (int) (h ^ (h >>> 29));
+    }
+
+    // Capture-time second of the newest packet, Long.MIN_VALUE before the first
+    public synchronized long latestSecond() { return latestSecond; }
+
+    /**
+     * The n heaviest keys, heaviest first. A window of 0 or less means the
+     * whole capture; otherwise every epoch overlapping the 'windowSeconds'
+     * seconds up to 'nowSecond' is merged (so windows are rounded out to
+     * epochs, and capped at the ring). A key missing from some full epoch
+     * may have been counted there as much as that epoch's minimum, which is
+     * added to its error on the ranking metric.
+     */
+    public synchronized List<Talker> top(Dimension d, Metric m, int n, int windowSeconds, long nowSecond) {
+        int i = index(d, m);
+        if (windowSeconds <= 0) return ranked(List.of(total[i]), d, m, n);
+        long last = Math.floorDiv(nowSecond, EPOCH_SECONDS);
+        long first = Math.max(last - EPOCHS + 1, Math.floorDiv(nowSecond - windowSeconds + 1, EPOCH_SECONDS));
+        List<SpaceSaving> spanned = new ArrayList<>();
+        for (long epoch = first; epoch <= last; epoch++) {
+            int e = Math.floorMod(epoch, EPOCHS);
+            if (epochNumber[e] == epoch) spanned.add(epochs[e][i]);
+        }
+        return ranked(spanned, d, m, n);
+    }
+
+    private static List<Talker> ranked(List<SpaceSaving> parts, Dimension d, Metric m, int n) {
+        Map<Key, long[]> merged = new HashMap<>();   // packets, bytes, their errors, bit set of parts seen
+        for (int p = 0; p < parts.size(); p++) {
+            SpaceSaving s = parts.get(p);
+            for (int c = 0; c < s.size(); c++) {
+                long[] words = new long[d.width];
+                for (int w = 0; w < d.width; w++) words[w] = s.key(c, w);
+                long[] sum = merged.computeIfAbsent(new Key(words), k -> new long[5]);
+                sum[0] += s.packets(c);
+                sum[1] += s.bytes(c);
+                sum[2] += s.packetError(c);
+                sum[3] += s.byteError(c);
+                sum[4] |= 1L << p;
+            }
+        }
+        int rank = m == Metric.BYTES ? 1 : 0;
+        for (int p = 0; p < parts.size(); p++) {
+            SpaceSaving s = parts.get(p);
+            if (!s.isFull()) continue;
+            long unseen = s.minimum();   // bounds the ranking metric only
+            for (long[] sum : merged.values()) if ((sum[4] & 1L << p) == 0) sum[2 + rank] += unseen;
+        }
+        List<Map.Entry<Key, long[]>> entries = new ArrayList<>(merged.entrySet());
+        entries.sort((a, b) -> Long.compare(b.getValue()[rank], a.getValue()[rank]));
+        List<Talker> top = new ArrayList<>(Math.min(n, entries.size()));
+        for (Map.Entry<Key, long[]> en : entries.subList(0, Math.min(n, entries.size()))) {
+            long[] sum = en.getValue();
+            top.add(new Talker(label(d, en.getKey().words), sum[0], sum[1], sum[2], sum[3]));
+        }
+        return top;
+    }
+
+    public synchronized void clear() {
+        for (SpaceSaving s : total) s.clear();
+        for (SpaceSaving[] epoch : epochs) for (SpaceSaving s : epoch) s.clear();
+        Arrays.fill(epochNumber, NONE);
+        latestSecond = NONE;
+    }
+
+    private record Key(long[] words) {
+        @Override public boolean equals(Object o) { return o instanceof Key k && Arrays.equals(words, k.words); }
+        @Override public int hashCode() { return Arrays.hashCode(words); }
+    }
+
+    // ---- Labels, built only for the keys a query returns ----
+
+    private static String label(Dimension d, long[] w) {
+        return switch (d) {
+            case SOURCE, DESTINATION -> FrameDecoder.formatAddress(w[0], w[1]);
+            case PORT -> protocol((int) (w[0] >>> 16)) + " " + (w[0] & 0xFFFF);
+            case FLOW -> {
+                int portA = (int) (w[4] >>> 48), portB = (int) (w[4] >>> 32) & 0xFFFF;
+                int etherType = (int) (w[4] >>> 16) & 0xFFFF;
+                String proto = etherType == FrameDecoder.ETHERTYPE_ARP ? "ARP" : protocol((int) w[4] & 0xFF);
+                String a = FrameDecoder.formatAddress(w[0], w[1]), b = FrameDecoder.formatAddress(w[2], w[3]);
+                yield portA == 0 && portB == 0
+                        ? a + " ↔ " + b + " " + proto
+                        : a + ":" + portA + " ↔ " + b + ":" + portB + " " + proto;
+            }
+        };
+    }
+
+    private static String protocol(int ipProtocol) {
+        return switch (ipProtocol) {
+            case FrameDecoder.IPPROTO_TCP -> "TCP";
+            case FrameDecoder.IPPROTO_UDP -> "UDP";
+            case FrameDecoder.IPPROTO_ICMP -> "ICMP";
+            case FrameDecoder.IPPROTO_ICMPV6 -> "ICMPv6";
+            default -> "IP " + ipProtocol;
+        };
+    }
+}
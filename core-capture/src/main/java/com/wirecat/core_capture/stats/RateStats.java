@@ -0,0 +1,199 @@
+package com.wirecat.core_capture.stats;
+
+import com.wirecat.core_capture.decode.Protocols;
+
+import java.util.Arrays;
+
+/**
+ * Per-second counters for the last {@link #SECONDS} seconds of capture time,
+ * kept in a ring indexed by the second, so a rate over any window up to a
+ * minute is a sum of at most 60 buckets no matter how many packets arrived.
+ * Each bucket holds packets, bytes, packets per protocol, packets and bytes
+ * per direction, and log-scale histograms of frame size and inter-arrival
+ * gap, from which window percentiles are read.
+ * <p>
+ * Same threading as {@link TrafficStats}: a single writer (the statistics
+ * stage), readers on the FX thread. The ring is four seconds longer than the
+ * longest window, so the bucket the writer is recycling is never one a reader
+ * close to the present is summing.
+ */
+public class RateStats {
+    public static final int SECONDS = 64;
+    public static final int MAX_WINDOW = 60;
+
+    public static final int DIR_OTHER = 0;   // both ends local, both remote, or not IP
+    public static final int DIR_IN    = 1;   // remote to local
+    public static final int DIR_OUT   = 2;   // local to remote
+    public static final int DIRECTIONS = 3;
+
+    // Log-linear bins: 8 per power of two, exact below 16, so any value is within 1/16 of its bin's midpoint
+    static final int SIZE_BINS = bin(0xFFFF) + 1;
+    static final int GAP_BINS = bin(1L << 36) + 1;   // ~19 h in µs; longer gaps share the last bin
+
+    private static final int MASK = SECONDS - 1;
+    private static final long NONE = Long.MIN_VALUE;
+
+    private final long[] second = new long[SECONDS];
+    private final long[] packets = new long[SECONDS];
+    private final long[] bytes = new long[SECONDS];
+    private final long[] protocolPackets = new long[SECONDS * Protocols.COUNT];
+    private final long[] directionPackets = new long[SECONDS * DIRECTIONS];
+    private final long[] directionBytes = new long[SECONDS * DIRECTIONS];
+    private final int[] sizeBins = new int[SECONDS * SIZE_BINS];
+    private final int[] gapBins = new int[SECONDS * GAP_BINS];
+
+    private long firstSecond = NONE;
+    private long previousMicros = NONE;
+    private volatile long latestSecond = NONE;
+
+    public RateStats() {
+        Arrays.fill(second, NONE);
+    }
+
+    // Called from the statistics stage only
+    public void onPacket(long timestampMicros, int length, int protocolId, int direction) {
+        long sec = Math.floorDiv(timestampMicros, 1_000_000L);
+        long latest = latestSecond;
+        if (firstSecond == NONE) firstSecond = sec;
+        if (latest == NONE || sec > latest) {
+            advance(latest, sec);
+            latest = sec;
+        } else if (latest - sec >= SECONDS) {
+            return;   // older than the ring; still in the running totals
+        }
+        int b = (int) (sec & MASK);
+        packets[b]++;
+        bytes[b] += length;
+        protocolPackets[b * Protocols.COUNT + protocolId]++;
+        directionPackets[b * DIRECTIONS + direction]++;
+        directionBytes[b * DIRECTIONS + direction] += length;
+        sizeBins[b * SIZE_BINS + Math.min(bin(length), SIZE_BINS - 1)]++;
+        if (previousMicros != NONE && timestampMicros >= previousMicros) {
+            gapBins[b * GAP_BINS + Math.min(bin(timestampMicros - previousMicros), GAP_BINS - 1)]++;
+        }
+        previousMicros = timestampMicros;
+        latestSecond = latest;   // publishes the bucket
+    }
+
+    // Recycles the buckets of every second after 'from' up to 'to'
+    private void advance(long from, long to) {
+        long start = from == NONE ? to - MASK : Math.max(from + 1, to - MASK);
+        for (long s = start; s <= to; s++) {
+            int b = (int) (s & MASK);
+            packets[b] = 0;
+            bytes[b] = 0;
+            Arrays.fill(protocolPackets, b * Protocols.COUNT, (b + 1) * Protocols.COUNT, 0);
+            Arrays.fill(directionPackets, b * DIRECTIONS, (b + 1) * DIRECTIONS, 0);
+            Arrays.fill(directionBytes, b * DIRECTIONS, (b + 1) * DIRECTIONS, 0);
+            Arrays.fill(sizeBins, b * SIZE_BINS, (b + 1) * SIZE_BINS, 0);
+            Arrays.fill(gapBins, b * GAP_BINS, (b + 1) * GAP_BINS, 0);
+            second[b] = s;
+        }
+    }
+
+    // Capture-time second of the newest packet, Long.MIN_VALUE before the first
+    public long latestSecond() { return latestSecond; }
+
+    /**
+     * Totals over the 'seconds' (1..60) seconds ending with 'nowSecond'. A
+     * window that reaches back before the first packet is shortened to the
+     * time actually captured, so the first seconds of a capture do not read
+     * low. Pass {@link #latestSecond()} for files, the wall clock for live
+     * captures so that rates fall to zero when traffic stops.
+     */
+    public Window window(int seconds, long nowSecond) {
+        seconds = Math.max(1, Math.min(MAX_WINDOW, seconds));
+        Window w = new Window();
+        long latest = latestSecond;   // read first: everything up to it is visible
+        if (latest == NONE) return w;
+        long first = Math.max(firstSecond, nowSecond - seconds + 1);
+        w.seconds = (int) Math.max(1, Math.min(seconds, nowSecond - first + 1));
+        for (long s = first; s <= nowSecond; s++) {
+            int b = (int) (s & MASK);
+            if (second[b] != s) continue;
+            w.packets += packets[b];
+            w.bytes += bytes[b];
+            for (int i = 0; i < Protocols.COUNT; i++) w.protocolPackets[i] += protocolPackets[b * Protocols.COUNT + i];
+            for (int d = 0; d < DIRECTIONS; d++) {
+                w.directionPackets[d] += directionPackets[b * DIRECTIONS + d];
+                w.directionBytes[d] += directionBytes[b * DIRECTIONS + d];
+            }
+            for (int i = 0; i < SIZE_BINS; i++) w.sizeBins[i] += sizeBins[b * SIZE_BINS + i];
+            for (int i = 0; i < GAP_BINS; i++) w.gapBins[i] += gapBins[b * GAP_BINS + i];
+        }
+        return w;
+    }
+
+    // Packets in each of the 'seconds' seconds ending with 'nowSecond', oldest first
+    public long[] packetsPerSecond(int seconds, long nowSecond) {
+        seconds = Math.max(1, Math.min(MAX_WINDOW, seconds));
+        long[] series = new long[seconds];
+        if (latestSecond == NONE) return series;
+        for (int i = 0; i < seconds; i++) {
+            long s = nowSecond - seconds + 1 + i;
+            int b = (int) (s & MASK);
+            if (second[b] == s) series[i] = packets[b];
+        }
+        return series;
+    }
+
+    public void clear() {
+        latestSecond = NONE;
+        firstSecond = NONE;
+        previousMicros = NONE;
+        Arrays.fill(second, NONE);
+    }
+
+    /** Sums over one window; percentiles are bin midpoints. */
+    public static final class Window {
+        private int seconds = 1;
+        private long packets, bytes;
+        private final long[] protocolPackets = new long[Protocols.COUNT];
+        private final long[] directionPackets = new long[DIRECTIONS];
+        private final long[] directionBytes = new long[DIRECTIONS];
+        private final long[] sizeBins = new long[SIZE_BINS];
+        private final long[] gapBins = new long[GAP_BINS];
+
+        private Window() { }
+
+        public int seconds()       { return seconds; }
+        public long packets()      { return packets; }
+        public long bytes()        { return bytes; }
+        public double packetsPerSecond() { return (double) packets / seconds; }
+        public double bitsPerSecond()    { return bytes * 8.0 / seconds; }
+        public long protocolPackets(int protocolId) { return protocolPackets[protocolId]; }
+        public long directionPackets(int direction) { return directionPackets[direction]; }
+        public long directionBytes(int direction)   { return directionBytes[direction]; }
+
+        // q in [0, 1]; 0 for an empty window
+        public long frameSizePercentile(double q)       { return percentile(sizeBins, q); }
+        public long interArrivalPercentileMicros(double q) { return percentile(gapBins, q); }
+
+        private static long percentile(long[] bins, double q) {
+            long total = 0;
+            for (long c : bins) total += c;
+            if (total == 0) return 0;
+            long rank = Math.max(1, (long) Math.ceil(q * total));
+            long seen = 0;
+            for (int i = 0; i < bins.length; i++) {
+                seen += bins[i];
+                if (seen >= rank) return midpoint(i);
+            }
+            return midpoint(bins.length - 1);
+        }
+    }
+
+    static int bin(long v) {
+        if (v < 16) return (int) Math.max(0, v);
+        int e = 63 - Long.numberOfLeadingZeros(v);   // >= 4
+        return (e - 2) * 8 + (int) ((v >>> (e - 3)) & 7);
+    }
+
+    static long midpoint(int bin) {
+        if (bin < 16) return bin;
+        int e = bin / 8 + 2;
+        int sub = bin % 8;
+        long low = (8L + sub) << (e - 3);
+        return low + (1L << (e - 3)) / 2;
+    }
+}
@@ -0,0 +1,172 @@
+package com.wirecat.core_capture.stats;
+
+import java.util.Arrays;
+
+/**
+ * Space-Saving summary (Metwally et al.): at most {@code capacity} counters,
+ * each a key of a fixed number of longs with packet and byte counts. A key
+ * that is not tracked takes over the counter with the smallest count and
+ * inherits it, recording it as the counter's error, so every key whose true
+ * count exceeds total/capacity is guaranteed to be tracked and no count is
+ * ever too high by more than its error. Both counts are inherited, so each
+ * has its own error.
+ * <p>
+ * Counters are ranked by packets or by bytes and kept in a min-heap on that
+ * metric, so finding the one to evict is O(1) and an update is O(log k); an
+ * open-addressed table maps keys to counters. Single-threaded.
+ */
+final class SpaceSaving {
+    private final int capacity;
+    private final int width;
+    private final boolean byBytes;
+
+    private final long[] keys;      // width longs per counter
+    private final int[] hashes;
+    private final long[] packets;
+    private final long[] bytes;
+    private final long[] packetError;
+    private final long[] byteError;
+    private final int[] heap;       // heap position -> counter
+    private final int[] position;   // counter -> heap position
+    private final int[] table;      // counter + 1 per slot, 0 = empty
+    private final int mask;
+    private int size;
+    private long totalPackets, totalBytes;
+
+    SpaceSaving(int capacity, int width, boolean byBytes) {
+        this.capacity = capacity;
+        this.width = width;
+        this.byBytes = byBytes;
+        keys = new long[capacity * width];
+        hashes = new int[capacity];
+        packets = new long[capacity];
+        bytes = new long[capacity];
+        packetError = new long[capacity];
+        byteError = new long[capacity];
+        heap = new int[capacity];
+        position = new int[capacity];
+        table = new int[Integer.highestOneBit(capacity * 2 - 1) * 2];
+        mask = table.length - 1;
+    }
+
+    // 'key' holds 'width' longs; it is copied
+    void offer(long[] key, int hash, int length) {
+        totalPackets++;
+        totalBytes += length;
+        int slot = find(key, hash);
+        int c;
+        if (slot >= 0) {
+            c = table[slot] - 1;
+            packets[c]++;
+            bytes[c] += length;
+        } else if (size < capacity) {
+            c = size++;
+            setKey(c, key, hash);
+            packets[c] = 1;
+            bytes[c] = length;
+            packetError[c] = 0;
+            byteError[c] = 0;
+            heap[c] = c;
+            position[c] = c;
+            siftUp(c);
+            return;
+        } else {
+            c = heap[0];
+            unlink(c);
+            packetError[c] = packets[c];
+            byteError[c] = bytes[c];
+            setKey(c, key, hash);
+            packets[c]++;
+            bytes[c] += length;
+        }
+        siftDown(position[c]);
+    }
+
+    void clear() {
+        Arrays.fill(table, 0);
+        size = 0;
+        totalPackets = 0;
+        totalBytes = 0;
+    }
+
+    int size()               { return size; }
+    boolean isFull()         { return size == capacity; }
+    boolean rankedByBytes()  { return byBytes; }
+    long totalPackets()      { return totalPackets; }
+    long totalBytes()        { return totalBytes; }
+    long packets(int c)      { return packets[c]; }
+    long bytes(int c)        { return bytes[c]; }
+    long packetError(int c)  { return packetError[c]; }
+    long byteError(int c)    { return byteError[c]; }
+    long key(int c, int w)   { return keys[c * width + w]; }
+
+    // Smallest ranked count; any key not tracked has a true count no higher than this
+    long minimum() { return size == 0 ? 0 : rank(heap[0]); }
+
+    private long rank(int c) { return byBytes ? bytes[c] : packets[c]; }
+
+    private void setKey(int c, long[] key, int hash) {
+        System.arraycopy(key, 0, keys, c * width, width);
+        hashes[c] = hash;
+        int i = hash & mask;
+        while (table[i] != 0) i = (i + 1) & mask;
+        table[i] = c + 1;
+    }
+
+    private int find(long[] key, int hash) {
+        int i = hash & mask;
+        int s;
+        while ((s = table[i]) != 0) {
+            int c = s - 1;
+            if (hashes[c] == hash && Arrays.equals(keys, c * width, c * width + width, key, 0, width)) return i;
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+
+    // Linear-probing delete: shift later entries of the cluster back into the hole
+    private void unlink(int c) {
+        int i = hashes[c] & mask;
+        while (table[i] != c + 1) i = (i + 1) & mask;
+        int hole = i;
+        for (int j = (hole + 1) & mask; table[j] != 0; j = (j + 1) & mask) {
+            int home = hashes[table[j] - 1] & mask;
+            if (((j - home) & mask) >= ((j - hole) & mask)) {
+                table[hole] = table[j];
+                hole = j;
+            }
+        }
+        table[hole] = 0;
+    }
+
+    private void siftUp(int i) {
+        int c = heap[i];
+        long r = rank(c);
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (rank(heap[parent]) <= r) break;
+            move(heap[parent], i);
+            i = parent;
+        }
+        move(c, i);
+    }
+
+    private void siftDown(int i) {
+        int c = heap[i];
+        long r = rank(c);
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) break;
+            if (child + 1 < size && rank(heap[child + 1]) < rank(heap[child])) child++;
+            if (rank(heap[child]) >= r) break;
+            move(heap[child], i);
+            i = child;
+        }
+        move(c, i);
+    }
+
+    private void move(int c, int i) {
+        heap[i] = c;
+        position[c] = i;
+    }
+}
@@ -0,0 +1,67 @@
+package com.wirecat.core_capture.stats;
+
+import com.wirecat.core_capture.decode.FrameDecoder;
+import com.wirecat.core_capture.decode.Protocols;
+import com.wirecat.core_capture.model.PacketModel;
+
+import java.util.Arrays;
+
+/**
+ * Running packet/byte counters fed by the statistics pipeline stage. There is a
+ * single writer; readers on other threads see a slightly stale but consistent
+ * view because the per-protocol array is published through the volatile total.
+ * Windowed rates and percentiles are kept alongside in {@link #rates()}.
+ */
+public class TrafficStats {
+    private final long[] protocolPackets = new long[Protocols.COUNT];
+    private volatile long packets;
+    private volatile long bytes;
+    private final RateStats rates = new RateStats();
+
+    // Called from the statistics stage only
+    public void onPacket(PacketModel pm) {
+        rates.onPacket(pm.getTimestampMicros(), pm.getLen(), pm.getProtocolId(), direction(pm.getFrame()));
+        protocolPackets[pm.getProtocolId()]++;
+        bytes = bytes + pm.getLen();
+        packets = packets + 1;
+    }
+
+    public long packets() { return packets; }
+    public long bytes()   { return bytes; }
+    public RateStats rates() { return rates; }
+
+    // Packet count per protocol id; read 'packets' first for a consistent view
+    public long protocolPackets(int protocolId) {
+        return protocolPackets[protocolId];
+    }
+
+    public void clear() {
+        rates.clear();
+        Arrays.fill(protocolPackets, 0);
+        bytes = 0;
+        packets = 0;
+    }
+
+    // Inbound/outbound relative to private, loopback and link-local address space
+    static int direction(FrameDecoder f) {
+        if (f == null || f.ipVersion() == 0 || !f.hasAddresses()) return RateStats.DIR_OTHER;
+        boolean srcLocal = isLocal(f.addrHi(f.srcAddrOffset()), f.addrLo(f.srcAddrOffset()));
+        boolean dstLocal = isLocal(f.addrHi(f.dstAddrOffset()), f.addrLo(f.dstAddrOffset()));
+        if (srcLocal == dstLocal) return RateStats.DIR_OTHER;
+        return srcLocal ? RateStats.DIR_OUT : RateStats.DIR_IN;
+    }
+
+    // Addresses in FrameDecoder's 128-bit form (IPv4-mapped for IPv4)
+    public static boolean isLocal(long hi, long lo) {
+        if (hi == 0 && (lo >>> 32) == 0xFFFF) {
+            int v4 = (int) lo;
+            return (v4 >>> 24) == 10 || (v4 >>> 24) == 127
+                    || (v4 >>> 20) == 0xAC1 || (v4 >>> 16) == 0xC0A8   // 172.16/12, 192.168/16
+                    || (v4 >>> 16) == 0xA9FE                           // 169.254/16
+                    || (v4 >>> 22) == (100 << 2 | 1);                  // 100.64/10
+        }
+        if (hi == 0 && lo == 1) return true;                           // ::1
+        int top = (int) (hi >>> 48);
+        return (top & 0xFE00) == 0xFC00 || (top & 0xFFC0) == 0xFE80;   // fc00::/7, fe80::/10
+    }
+}
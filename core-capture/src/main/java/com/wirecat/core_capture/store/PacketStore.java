@@ -0,0 +1,197 @@
+package com.wirecat.core_capture.store;
+
+import com.wirecat.core_capture.bpf.BpfFilter;
+import com.wirecat.core_capture.decode.FrameDecoder;
+import com.wirecat.core_capture.model.PacketModel;
+
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+
+/**
+ * Bounded store of captured frames. Frame bytes live in one pre-allocated arena
+ * (heap or direct) used as a circular log, and per-packet metadata lives in
+ * parallel primitive arrays indexed by sequence number, so append and indexed
+ * read are O(1) and memory use never exceeds the configured budget.
+ * <p>
+ * A single thread appends; any thread may read. Readers validate against the
+ * oldest retained sequence after copying, so a frame evicted mid-read is
+ * reported as missing instead of returned torn.
+ */
+public class PacketStore {
+    public enum OverflowPolicy { DROP_OLDEST, STOP_ON_FULL }
+
+    public static final int DEFAULT_BUDGET_BYTES = 128 << 20;
+
+    private final int capacity;
+    private final int mask;
+    private final ByteBuffer arena;
+    private final int arenaSize;
+    private final OverflowPolicy policy;
+    private volatile int linkType = FrameDecoder.LINKTYPE_ETHERNET;
+
+    private final int[] ids;
+    private final long[] timestamps;
+    private final int[] offsets;
+    private final int[] lengths;
+
+    private volatile long head;  // next sequence to be written
+    private volatile long tail;  // oldest sequence still retained
+    private int writePos;
+    private volatile long rejected;
+
+    public PacketStore() {
+        this(DEFAULT_BUDGET_BYTES / 128, DEFAULT_BUDGET_BYTES, false, OverflowPolicy.DROP_OLDEST);
+    }
+
+    public PacketStore(int maxPackets, int maxBytes, boolean offHeap, OverflowPolicy policy) {
+        if (maxPackets <= 0 || maxBytes <= 0) throw new IllegalArgumentException("Store budget must be positive");
+        this.capacity = Integer.highestOneBit(Math.min(maxPackets, 1 << 30) * 2 - 1);
+        this.mask = capacity - 1;
+        this.arenaSize = maxBytes;
+        this.arena = offHeap ? ByteBuffer.allocateDirect(maxBytes) : ByteBuffer.allocate(maxBytes);
+        this.policy = policy;
+        this.ids = new int[capacity];
+        this.timestamps = new long[capacity];
+        this.offsets = new int[capacity];
+        this.lengths = new int[capacity];
+    }
+
+    // --- Writer side
+
+    // Returns the frame's sequence, or -1 when it was not stored (STOP_ON_FULL and out of budget)
+    public synchronized long append(int id, long timestampMicros, byte[] frame, int off, int len) {
+        int need = Math.max(len, 1);
+        if (need > arenaSize) {
+            rejected++;
+            return -1;
+        }
+        while (head - tail >= capacity || !reserve(need)) {
+            if (policy == OverflowPolicy.STOP_ON_FULL || head == tail) {
+                rejected++;
+                return -1;
+            }
+            tail = tail + 1; // evict oldest before its bytes can be overwritten
+        }
+        VarHandle.releaseFence(); // eviction must be visible before the overwrite
+        int slot = (int) head & mask;
+        arena.put(writePos, frame, off, len);
+        ids[slot] = id;
+        timestamps[slot] = timestampMicros;
+        offsets[slot] = writePos;
+        lengths[slot] = len;
+        writePos += need;
+        long seq = head;
+        head = seq + 1; // publish
+        return seq;
+    }
+
+    // Moves writePos to a free region of at least 'need' bytes, if there is one
+    private boolean reserve(int need) {
+        if (head == tail) {
+            writePos = 0;
+            return true;
+        }
+        int readPos = offsets[(int) tail & mask];
+        if (writePos > readPos) {
+            if (writePos + need <= arenaSize) return true;
+            if (need < readPos) {
+                writePos = 0;
+                return true;
+            }
+            return false;
+        }
+        return writePos + need < readPos;
+    }
+
+    public synchronized void clear() {
+        tail = head;
+        writePos = 0;
+    }
+
+    public void setLinkType(int linkType) { this.linkType = linkType; }
+
+    // --- Reader side
+
+    public long firstSequence() { return tail; }
+    public long endSequence()   { return head; }
+    public long size()          { return head - tail; }
+    public int capacity()       { return capacity; }
+    public int budgetBytes()    { return arenaSize; }
+    public long rejected()      { return rejected; }
+    public int linkType()       { return linkType; }
+    public OverflowPolicy policy() { return policy; }
+
+    public boolean contains(long seq) {
+        return seq >= tail && seq < head;
+    }
+
+    // Copies the frame out of the arena; null if it has been evicted
+    public byte[] copyFrame(long seq) {
+        if (!contains(seq)) return null;
+        int slot = (int) seq & mask;
+        int off = offsets[slot];
+        int len = lengths[slot];
+        if (off + len > arenaSize) return null; // slot rewritten under us
+        byte[] out = new byte[len];
+        arena.get(off, out, 0, len);
+        return valid(seq) ? out : null;
+    }
+
+    // Decodes a stored frame in place over the arena, without copying it. The
+    // decoder reads the arena directly, so it is only meaningful while
+    // contains(seq) still holds; false if the frame has been evicted.
+    public boolean decode(long seq, FrameDecoder into) {
+        if (!contains(seq)) return false;
+        int slot = (int) seq & mask;
+        int off = offsets[slot];
+        int len = lengths[slot];
+        if (off + len > arenaSize) return false;
+        into.decode(arena, off, len, linkType);
+        return valid(seq);
+    }
+
+    // Runs a capture (BPF) filter over a stored frame in place, compiled for this
+    // store's link type; false if the frame has been evicted.
+    public boolean matches(long seq, BpfFilter filter) {
+        if (!contains(seq)) return false;
+        int slot = (int) seq & mask;
+        int off = offsets[slot];
+        int len = lengths[slot];
+        if (off + len > arenaSize) return false;
+        boolean hit = filter.matches(arena, off, len);
+        return hit && valid(seq);
+    }
+
+    public int getId(long seq) {
+        int id = ids[(int) seq & mask];
+        return valid(seq) ? id : -1;
+    }
+
+    public long getTimestampMicros(long seq) {
+        long ts = timestamps[(int) seq & mask];
+        return valid(seq) ? ts : -1;
+    }
+
+    public int getLength(long seq) {
+        int len = lengths[(int) seq & mask];
+        return valid(seq) ? len : -1;
+    }
+
+    // Re-decodes a stored frame into a model on demand; null if evicted
+    public PacketModel get(long seq) {
+        int slot = (int) seq & mask;
+        int id = ids[slot];
+        long ts = timestamps[slot];
+        byte[] frame = copyFrame(seq);
+        if (frame == null) return null;
+        FrameDecoder decoder = new FrameDecoder();
+        decoder.decode(frame, 0, frame.length, linkType);
+        return PacketModel.fromRaw(frame, ts, id, decoder);
+    }
+
+    // Loads before this point must not be reordered past the eviction check
+    private boolean valid(long seq) {
+        VarHandle.acquireFence();
+        return seq >= tail && seq < head;
+    }
+}
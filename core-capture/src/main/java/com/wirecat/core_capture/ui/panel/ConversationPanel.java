@@ -12,7 +12,8 @@ import java.util.function.Consumer;
 
 public class ConversationPanel extends VBox {
 
-    public ConversationPanel(ObservableList<Conversation> convList, Consumer<Conversation> onSelect) {
+    public ConversationPanel(ObservableList<Conversation> convList, Consumer<Conversation> onSelect,
+                             Consumer<Conversation> onSummarize) {
         getStyleClass().add("conversation-panel");
         setPadding(new Insets(4, 4, 4, 4));
         setSpacing(2);
@@ -44,7 +45,34 @@ public class ConversationPanel extends VBox {
         pktCol.setCellValueFactory(c -> new SimpleIntegerProperty(c.getValue().getPacketCount()));
         pktCol.setPrefWidth(40);
 
-        table.getColumns().addAll(srcMacCol, dstMacCol, pktCol);
+        // --- Packets answered by the destination
+        TableColumn<Conversation, Number> replyCol = new TableColumn<>("←");
+        replyCol.setCellValueFactory(c -> new SimpleIntegerProperty(c.getValue().getReplyPackets()));
+        replyCol.setPrefWidth(40);
+
+        // --- AI summary of the whole flow: first line here, all of it on hover
+        TableColumn<Conversation, String> aiCol = new TableColumn<>("AI");
+        aiCol.setCellValueFactory(c -> new SimpleStringProperty(c.getValue().getAiSummary()));
+        aiCol.setCellFactory(col -> new TableCell<>() {
+            @Override
+            protected void updateItem(String summary, boolean empty) {
+                super.updateItem(summary, empty);
+                setText(empty || summary == null ? null : InspectorPanel.summaryLine(summary));
+                setTooltip(empty || summary == null ? null : new Tooltip(summary));
+            }
+        });
+        aiCol.setPrefWidth(160);
+
+        table.getColumns().addAll(srcMacCol, dstMacCol, pktCol, replyCol, aiCol);
+
+        ContextMenu menu = new ContextMenu();
+        MenuItem summarize = new MenuItem("Summarize with AI");
+        summarize.setOnAction(e -> {
+            Conversation sel = table.getSelectionModel().getSelectedItem();
+            if (sel != null) onSummarize.accept(sel);
+        });
+        menu.getItems().add(summarize);
+        table.setContextMenu(menu);
 
         // --- FIX: this wires the callback so clicking a conversation filters the main table ---
         table.getSelectionModel().selectedItemProperty().addListener((obs, oldV, sel) -> onSelect.accept(sel));
@@ -1,6 +1,7 @@
 package com.wirecat.core_capture.ui.panel;
 
 import com.wirecat.core_capture.model.CapturedPacket;
+import com.wirecat.core_capture.util.HexDump;
 import javafx.geometry.Insets;
 import javafx.scene.Node;
 import javafx.scene.control.*;
@@ -79,10 +80,21 @@ public class InspectorPanel extends VBox {
         addField("Source MAC", packet.getSourceMAC());
         addField("Dest MAC", packet.getDestinationMAC());
         addField("Packet Size", String.valueOf(packet.getLength()));
-        // Risk badge also as field? (optional)
+        if (packet.getRiskReason() != null) addField("Risk", packet.getRiskReason());
+        if (packet.getTags() != null) addField("Tags", packet.getTags());
+        if (packet.getAiExplanation() != null) addField("AI", summaryLine(packet.getAiExplanation()));
 
-        // Hex dump format
-        hexArea.setText(formatHexDump(packet.getHexDump()));
+        // Hex dump format, rendered straight from the frame bytes
+        hexArea.setText(HexDump.format(packet.getRawData()));
+    }
+
+    // First line of the model's markdown answer; Ask AI shows all of it
+    static String summaryLine(String markdown) {
+        for (String line : markdown.split("\n")) {
+            String text = line.replaceAll("^[#*>\\s-]+|\\**$", "").trim();
+            if (!text.isEmpty()) return text;
+        }
+        return "";
     }
 
     private void addField(String name, String value) {
@@ -107,35 +119,6 @@ public class InspectorPanel extends VBox {
         };
     }
 
-    private String formatHexDump(String hexDump) {
-        // Split bytes into lines of 16, with offset and ASCII
-        String[] bytes = hexDump.replaceAll("[^0-9A-Fa-f ]", "").split(" +");
-        StringBuilder out = new StringBuilder();
-        int offset = 0;
-        for (int i = 0; i < bytes.length; i += 16) {
-            out.append(String.format("%04X: ", offset));
-            for (int j = 0; j < 16; j++) {
-                if (i + j < bytes.length)
-                    out.append(bytes[i + j].length() == 1 ? "0" : "").append(bytes[i + j]).append(" ");
-                else
-                    out.append("   ");
-            }
-            out.append(" |");
-            for (int j = 0; j < 16; j++) {
-                if (i + j < bytes.length) {
-                    int val = Integer.parseInt(bytes[i + j], 16);
-                    char c = (val >= 32 && val < 127) ? (char) val : '.';
-                    out.append(c);
-                } else {
-                    out.append(" ");
-                }
-            }
-            out.append("|\n");
-            offset += 16;
-        }
-        return out.toString();
-    }
-
     private void copyAll() {
         StringBuilder sb = new StringBuilder();
         for (Node n : detailsGrid.getChildren()) {
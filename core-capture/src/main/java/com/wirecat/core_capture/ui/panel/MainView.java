@@ -1,15 +1,25 @@
 package com.wirecat.core_capture.ui.panel;
+import com.wirecat.core_capture.bpf.BpfFilter;
+import com.wirecat.core_capture.decode.FrameDecoder;
+import com.wirecat.core_capture.decode.Protocols;
+import com.wirecat.core_capture.filter.PacketIndex;
+import com.wirecat.core_capture.filter.RowFilter;
+import com.wirecat.core_capture.model.AddressDictionary;
 import com.wirecat.core_capture.model.Conversation;
-import com.wirecat.core_capture.model.ConversationKey;
-import java.util.concurrent.ConcurrentHashMap;
+import com.wirecat.core_capture.model.PacketColumns;
+import com.wirecat.core_capture.stats.RateStats;
+import com.wirecat.core_capture.stats.TrafficStats;
 import com.wirecat.core_capture.model.CapturedPacket;
+import com.wirecat.core_capture.model.PacketAnnotations;
 import com.wirecat.core_capture.model.PacketModel;
+import com.wirecat.core_capture.detect.Signatures;
 import com.wirecat.core_capture.service.CaptureService;
-import com.wirecat.core_capture.service.GeminiClient;
+import com.wirecat.core_capture.store.PacketStore;
 import javafx.application.Platform;
+import javafx.beans.property.SimpleStringProperty;
+import javafx.beans.property.StringProperty;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
-import javafx.collections.transformation.FilteredList;
 import javafx.geometry.Insets;
 import javafx.geometry.Orientation;
 import javafx.scene.Scene;
@@ -18,31 +28,39 @@ import javafx.scene.control.*;
 import javafx.scene.layout.*;
 import javafx.stage.FileChooser;
 import javafx.stage.Stage;
-import javafx.beans.binding.Bindings;
 import java.io.*;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.function.IntPredicate;
 import com.sandec.mdfx.MarkdownView;
 import javafx.scene.input.ClipboardContent;
 import javafx.scene.input.Clipboard;
 import javafx.geometry.Pos;
 
 public class MainView {
-    private final ObservableList<CapturedPacket> packets = FXCollections.observableArrayList();
-    private final FilteredList<CapturedPacket> filteredPackets = new FilteredList<>(packets, p -> true);
+    private final PacketColumns packetColumns = new PacketColumns();
+    private final FrameDecoder rowDecoder = new FrameDecoder();
+    private final PacketRowList packetRows = new PacketRowList(packetColumns);
     private final CaptureService svc;
     private final String interfaceName;
     private final String bpfFilter;
     private final int packetLimit;
+    private File captureFile;   // set when analyzing a file instead of capturing live
 
-    private final Map<ConversationKey, Conversation> conversationMap = new ConcurrentHashMap<>();
     private final ObservableList<Conversation> conversationList = FXCollections.observableArrayList();
+    private final Map<Conversation, Integer> conversationRows = new IdentityHashMap<>();
+    private final Map<String, XYChart.Data<String, Number>> protoBars = new HashMap<>();
 
     private final XYChart.Series<String, Number> protoSeries = newSeries("Protocols");
     private final XYChart.Series<Number, Number> timeSeries = newSeries("Packets/sec");
+    private final StringProperty rateText = new SimpleStringProperty("Rate: 0 pkts/s");
 
-    private ScheduledExecutorService scheduler;
+    private PulsePublisher publisher;
     private TablePanel tablePanel;
+    private InspectorPanel inspectorPanel;
+    private volatile long inspectedSeq = -1;   // store sequence of the packet in the inspector
+    private TopTalkersPanel topTalkersPanel;
+    private long talkersRefreshedAt = Long.MIN_VALUE;
 
     public MainView(CaptureService svc, String interfaceName, String bpfFilter, int packetLimit) {
         this.svc = svc;
@@ -51,13 +69,30 @@ public class MainView {
         this.packetLimit = packetLimit;
     }
 
+    public MainView(CaptureService svc, File captureFile) {
+        this(svc, captureFile, null);
+    }
+
+    // File analysis; a non-blank capture filter keeps only the records that pass it
+    public MainView(CaptureService svc, File captureFile, String bpfFilter) {
+        this(svc, null, bpfFilter, 0);
+        this.captureFile = captureFile;
+    }
+
 
     public void show(Stage stage) {
         List<String> protoList = List.of("TCP", "UDP", "ICMP", "ARP", "HTTP", "HTTPS");
         LineChart<Number, Number> spark = createSparkline();
 
-        InspectorPanel inspectorPanel = new InspectorPanel();
-        this.tablePanel = new TablePanel(filteredPackets, inspectorPanel::showPacket);
+        this.inspectorPanel = new InspectorPanel();
+        this.tablePanel = new TablePanel(packetRows, this::inspect);
+        // Only the inspected packet shows annotations outside the table, so that is all a change redraws
+        svc.annotations().subscribe(seq -> {
+            if (seq == inspectedSeq || seq == PacketAnnotations.ALL) Platform.runLater(() -> inspect(tablePanel.getSelectedRow()));
+        });
+        this.publisher = new PulsePublisher(svc, this::appendRows, this::refreshSummaries);
+        tablePanel.setFrameSource(this::frameAt);
+        tablePanel.setCaptureFilterCompiler(this::captureFilter);
 
         TopBarPanel topBar = new TopBarPanel(
                 protoList,
@@ -67,11 +102,17 @@ public class MainView {
                 this::showAIAnalysisDialog
         );
 
+        this.topTalkersPanel = new TopTalkersPanel(svc.heavyHitters());
         RightPanel rightPanel = new RightPanel(
                 conversationList,
                 this::onConversationSelected,
-                packets,
+                this::summarizeConversation,
+                topTalkersPanel,
+                packetRows,
                 protoSeries,
+                spark,
+                rateText,
+                publisher,
                 stage
         );
 
@@ -83,6 +124,7 @@ public class MainView {
                 this::startCapture,
                 this::stopCapture
         );
+        sidebar.getOpenPcapBtn().setOnAction(e -> openPcap(stage));
         sidebar.getExportPcapBtn().setOnAction(e -> savePcap(stage));
         sidebar.getExportCsvBtn().setOnAction(e -> saveCsv(stage));
         sidebar.getClearBtn().setOnAction(e -> clearAllPackets());
@@ -108,7 +150,7 @@ public class MainView {
         stage.setScene(scene);
         stage.setTitle("WireCat");
         stage.setOnCloseRequest(e -> {
-            if (scheduler != null) scheduler.shutdownNow();
+            if (publisher != null) publisher.stop();
             svc.stopCapture();
         });
         stage.show();
@@ -117,63 +159,131 @@ public class MainView {
         startCapture();
     }
 
+    // The answer lands on the conversation, whose row the next refresh redraws
+    private void summarizeConversation(Conversation conv) {
+        svc.summarize(conv).exceptionally(ex -> {
+            Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+            Platform.runLater(() -> new Alert(Alert.AlertType.ERROR, "AI summary failed: " + cause.getMessage()).show());
+            return null;
+        });
+    }
+
     private void onConversationSelected(Conversation conv) {
         if (conv == null) {
-            filteredPackets.setPredicate(p -> true); // Show all
+            packetRows.setFilter("conversation", null); // Show all
             return;
         }
-        filteredPackets.setPredicate(p ->
-                p.getSourceIP().equals(conv.getSrcIP()) &&
-                        p.getSourcePort() == conv.getSrcPort() &&
-                        p.getDestinationIP().equals(conv.getDstIP()) &&
-                        p.getDestinationPort() == conv.getDstPort() &&
-                        p.getProtocol().equals(conv.getProto())
-        );
+        // Conversations are bidirectional; show both sides of the exchange. The flow
+        // may have addresses no table row has yet (sampled out, still in the backlog,
+        // or cleared), so ids stay -1 until a row brings them into the dictionary.
+        AddressDictionary addrs = packetColumns.addresses();
+        String aIp = conv.getSrcIP(), bIp = conv.getDstIP();
+        int[] ids = {addrs.idOf(aIp), addrs.idOf(bIp)};
+        int aPort = conv.getSrcPort(), bPort = conv.getDstPort();
+        PacketColumns c = packetColumns;
+        packetRows.setFilter("conversation", RowFilter.of(row -> {
+            if (ids[0] < 0) ids[0] = addrs.idOf(aIp);
+            if (ids[1] < 0) ids[1] = addrs.idOf(bIp);
+            int a = ids[0], b = ids[1];
+            if (a < 0 || b < 0) return false;
+            int src = c.srcAddressId(row), dst = c.dstAddressId(row);
+            int sp = c.srcPort(row), dp = c.dstPort(row);
+            return (src == a && sp == aPort && dst == b && dp == bPort)
+                    || (src == b && sp == bPort && dst == a && dp == aPort);
+        }, n -> {
+            if (ids[0] < 0 || ids[1] < 0) return new BitSet();
+            PacketIndex index = c.index();
+            BitSet rows = index.address(ids[0]);
+            rows.and(index.address(ids[1]));
+            rows.and(index.port(aPort));
+            rows.and(index.port(bPort));
+            return rows;
+        }));
     }
 
+    // Full packet for the inspector and AI, re-decoded from the packet store;
+    // null if nothing is selected or the frame has been evicted
+    private CapturedPacket packetAt(Integer row) {
+        PacketModel pm = modelAt(row);
+        if (pm == null) return null;
+        PacketAnnotations.Annotation note = svc.annotations().get(pm.getStoreSequence());
+        CapturedPacket cp = pm.toPacket();
+        long tags = pm.getFrame().payloadTags() | note.tags();
+        if (tags != 0) cp.setTags(Signatures.DEFAULT.names(tags));
+        cp.setAiExplanation(note.aiExplanation());
+        cp.setDeltaTime(packetColumns.deltaMillis(row));
+        return cp;
+    }
+
+    private PacketModel modelAt(Integer row) {
+        if (row == null || row < 0 || row >= packetColumns.size()) return null;
+        long seq = packetColumns.storeSequence(row);
+        PacketModel pm = seq >= 0 ? svc.getPacketStore().get(seq) : null;
+        if (pm == null || pm.getId() != packetColumns.number(row)) return null;
+        pm.setStoreSequence(seq);
+        pm.raiseRisk(packetColumns.risk(row), packetColumns.riskReason(row));   // detectors ran on the live copy
+        PacketAnnotations.Annotation note = svc.annotations().get(seq);
+        pm.raiseRisk(note.risk(), note.riskReason());
+        return pm;
+    }
+
+    private void inspect(Integer row) {
+        inspectedSeq = row != null && row >= 0 && row < packetColumns.size() ? packetColumns.storeSequence(row) : -1;
+        inspectorPanel.showPacket(packetAt(row));
+    }
+
+    // Stored frame of a row decoded in place for display filters; null if evicted.
+    // Reuses one decoder, so the result is only valid until the next call.
+    private FrameDecoder frameAt(int row) {
+        long seq = packetColumns.storeSequence(row);
+        PacketStore store = svc.getPacketStore();
+        if (seq < 0 || store.getId(seq) != packetColumns.number(row)) return null;
+        return store.decode(seq, rowDecoder) ? rowDecoder : null;
+    }
+
+    // Capture (BPF) filter text as a row test over the stored raw frames, so
+    // "port 53 and not net 10.0.0.0/8" re-filters what is already loaded.
+    // Throws IllegalArgumentException if the text is not a capture filter.
+    private IntPredicate captureFilter(String text) {
+        PacketStore store = svc.getPacketStore();
+        BpfFilter filter = BpfFilter.compile(text, store.linkType());
+        return row -> {
+            long seq = packetColumns.storeSequence(row);
+            return seq >= 0 && store.getId(seq) == packetColumns.number(row) && store.matches(seq, filter);
+        };
+    }
 
     private void startCapture() {
-        svc.startCapture(interfaceName, bpfFilter, packetLimit);
-        scheduler = Executors.newSingleThreadScheduledExecutor();
-        scheduler.scheduleAtFixedRate(this::drainAndRender, 0, 100, TimeUnit.MILLISECONDS);
-    }
-
-    private void drainAndRender() {
-        List<PacketModel> batch = new ArrayList<>();
-        svc.queue().drainTo(batch);
-        if (batch.isEmpty()) return;
-        Platform.runLater(() -> {
-            for (PacketModel pm : batch) {
-                CapturedPacket cp = pm.toPacket();
-                if (!packets.isEmpty()) {
-                    long dt = cp.getTimestampMs() - packets.get(packets.size() - 1).getTimestampMs();
-                    cp.setDeltaTime(dt);
-                }
-                packets.add(cp);
-                updateStats(cp);
-                // --- Conversation/session tracking ---
-                ConversationKey key = new ConversationKey(cp.getSourceIP(), cp.getSourcePort(),
-                        cp.getDestinationIP(), cp.getDestinationPort(), cp.getProtocol());
-                Conversation conv = conversationMap.get(key);
-                if (conv == null) {
-                    conv = new Conversation(
-                            cp.getSourceIP(), cp.getSourcePort(),
-                            cp.getDestinationIP(), cp.getDestinationPort(), cp.getProtocol(),
-                            cp.getTimestampMs(), cp.getLength(),
-                            cp.getSourceMAC(), cp.getDestinationMAC()   // <-- add these two!
-                    );
-                    conversationMap.put(key, conv);
-                    conversationList.add(conv);
-                } else {
-                    conv.addPacket(cp.getLength(), cp.getTimestampMs());
-                    // To trigger update in TableView, remove and add again
-                    conversationList.remove(conv);
-                    conversationList.add(conv);
-                }
+        if (captureFile != null) svc.openFile(captureFile, bpfFilter);
+        else svc.startCapture(interfaceName, bpfFilter, packetLimit);
+        publisher.start();   // keeps running after a stop, so whatever is queued still shows
+    }
 
-            }
-            tablePanel.scrollToBottom();
-        });
+    // One pulse's packets, already cut to the frame budget: a single row-list change
+    private void appendRows(List<PacketModel> batch) {
+        // Only primitives are kept per packet; frames stay in the packet store
+        for (PacketModel pm : batch) packetColumns.append(pm);
+        packetRows.refresh();
+        tablePanel.scrollToBottom();
+    }
+
+    // Conversations and protocol counts are maintained by pipeline stages;
+    // only pick up what changed since the last refresh
+    private void refreshSummaries() {
+        if (svc.conversations().hasPending()) {
+            svc.conversations().drain(
+                    conv -> {
+                        conversationRows.put(conv, conversationList.size());
+                        conversationList.add(conv);
+                    },
+                    conv -> {
+                        Integer row = conversationRows.get(conv);
+                        if (row != null) conversationList.set(row, conv);
+                    });
+        }
+        updateStats();
+        updateRates();
+        updateTopTalkers();
     }
 
     // ---- UI PANELS ----
@@ -196,7 +306,7 @@ public class MainView {
 
         Label totalLabel = new Label();
         totalLabel.getStyleClass().add("total-label");
-        totalLabel.textProperty().bind(Bindings.size(packets).asString("Total: %d"));
+        totalLabel.textProperty().bind(packetRows.totalProperty().asString("Total: %d"));
 
         VBox right = new VBox(20, new Label("Statistics"), chart, totalLabel);
         right.setPadding(new Insets(15));
@@ -221,6 +331,15 @@ public class MainView {
     }
 
     // ---- Save Features ----
+    private void openPcap(Stage s) {
+        FileChooser fc = new FileChooser();
+        fc.getExtensionFilters().add(new FileChooser.ExtensionFilter("Capture files", "*.pcap", "*.pcapng", "*.cap"));
+        File f = fc.showOpenDialog(s);
+        if (f == null) return;
+        clearAllPackets();
+        captureFile = f;
+        startCapture();
+    }
     private void savePcap(Stage s) {
         FileChooser fc = new FileChooser();
         fc.getExtensionFilters().add(new FileChooser.ExtensionFilter("PCAP", "*.pcap"));
@@ -234,13 +353,14 @@ public class MainView {
         if (f == null) return;
         try (BufferedWriter w = new BufferedWriter(new FileWriter(f))) {
             w.write("No,Time,ΔTime,SrcMAC,DstMAC,SrcIP,DstIP,Proto,SrcPort,DstPort,Len,Risk\n");
-            for (CapturedPacket p : packets) {
+            PacketColumns c = packetColumns;
+            for (int row = 0; row < c.size(); row++) {
                 w.write(String.format("%d,%s,%d,%s,%s,%s,%s,%s,%d,%d,%d,%.2f\n",
-                        p.getNumber(), p.getTimestamp(), p.getDeltaTime(),
-                        p.getSourceMAC(), p.getDestinationMAC(),
-                        p.getSourceIP(), p.getDestinationIP(),
-                        p.getProtocol(), p.getSourcePort(), p.getDestinationPort(),
-                        p.getLength(), p.getRiskScore()));
+                        c.number(row), c.time(row), c.deltaMillis(row),
+                        c.srcMac(row), c.dstMac(row),
+                        c.srcAddress(row), c.dstAddress(row),
+                        c.protocol(row), c.srcPort(row), c.dstPort(row),
+                        c.length(row), c.risk(row)));
             }
         } catch (Exception ex) {
             Platform.runLater(() ->
@@ -250,15 +370,93 @@ public class MainView {
     }
 
     // ---- Stats ----
-    private void updateStats(CapturedPacket p) {
-        for (XYChart.Data<String, Number> d : protoSeries.getData()) {
-            if (d.getXValue().equals(p.getProtocol())) {
-                d.setYValue(d.getYValue().intValue() + 1);
-                return;
+    private void updateStats() {
+        TrafficStats stats = svc.trafficStats();
+        if (stats.packets() == 0) return;
+        for (int id = 0; id < Protocols.COUNT; id++) {
+            long count = stats.protocolPackets(id);
+            if (count == 0) continue;
+            String proto = Protocols.name(id);
+            XYChart.Data<String, Number> bar = protoBars.get(proto);
+            if (bar == null) {
+                bar = new XYChart.Data<>(proto, count);
+                protoBars.put(proto, bar);
+                protoSeries.getData().add(bar);
+            } else if (bar.getYValue().longValue() != count) {
+                bar.setYValue(count);
             }
         }
-        protoSeries.getData().add(new XYChart.Data<>(p.getProtocol(), 1));
     }
+
+    // Windows end at the last complete wall-clock second while capturing live, so rates fall
+    // to zero when traffic stops; a file is measured in its own time, up to its newest packet
+    private void updateRates() {
+        RateStats rates = svc.trafficStats().rates();
+        long latest = rates.latestSecond();
+        if (latest == Long.MIN_VALUE) {
+            rateText.set("Rate: 0 pkts/s");
+            return;
+        }
+        long now = nowSecond(latest);
+
+        RateStats.Window w1 = rates.window(1, now), w10 = rates.window(10, now), w60 = rates.window(60, now);
+        rateText.set(String.format(
+                "Rate (1s / 10s / 60s):%n  %s / %s / %s pkts/s%n  %s / %s / %s%n"
+                        + "In / Out (10s): %s / %s pkts/s%n"
+                        + "Size p50/p90/p99: %,d / %,d / %,d B%n"
+                        + "Gap p50/p90/p99: %s / %s / %s",
+                rate(w1.packetsPerSecond()), rate(w10.packetsPerSecond()), rate(w60.packetsPerSecond()),
+                bits(w1.bitsPerSecond()), bits(w10.bitsPerSecond()), bits(w60.bitsPerSecond()),
+                rate(w10.directionPackets(RateStats.DIR_IN) / (double) w10.seconds()),
+                rate(w10.directionPackets(RateStats.DIR_OUT) / (double) w10.seconds()),
+                w10.frameSizePercentile(0.5), w10.frameSizePercentile(0.9), w10.frameSizePercentile(0.99),
+                micros(w10.interArrivalPercentileMicros(0.5)), micros(w10.interArrivalPercentileMicros(0.9)),
+                micros(w10.interArrivalPercentileMicros(0.99))));
+
+        // Sparkline: one point per second for the last minute, x relative to now
+        long[] series = rates.packetsPerSecond(RateStats.MAX_WINDOW, now);
+        ObservableList<XYChart.Data<Number, Number>> points = timeSeries.getData();
+        if (points.size() != series.length) {
+            points.clear();
+            for (int i = 0; i < series.length; i++) points.add(new XYChart.Data<>(i - series.length + 1, series[i]));
+        } else {
+            for (int i = 0; i < series.length; i++) {
+                XYChart.Data<Number, Number> point = points.get(i);
+                if (point.getYValue().longValue() != series[i]) point.setYValue(series[i]);
+            }
+        }
+    }
+
+    // Merging the sketches costs a few milliseconds, so the ranking moves once a second
+    private void updateTopTalkers() {
+        long latest = svc.heavyHitters().latestSecond();
+        long wall = System.currentTimeMillis() / 1000;
+        if (wall == talkersRefreshedAt) return;
+        talkersRefreshedAt = wall;
+        topTalkersPanel.refresh(latest == Long.MIN_VALUE ? latest : nowSecond(latest));
+    }
+
+    private long nowSecond(long latest) {
+        return captureFile != null ? latest : Math.max(latest, System.currentTimeMillis() / 1000 - 1);
+    }
+
+    private static String rate(double perSecond) {
+        return perSecond >= 100 ? String.format("%,.0f", perSecond) : String.format("%.1f", perSecond);
+    }
+
+    private static String bits(double bitsPerSecond) {
+        if (bitsPerSecond >= 1e9) return String.format("%.1f Gbit/s", bitsPerSecond / 1e9);
+        if (bitsPerSecond >= 1e6) return String.format("%.1f Mbit/s", bitsPerSecond / 1e6);
+        if (bitsPerSecond >= 1e3) return String.format("%.1f kbit/s", bitsPerSecond / 1e3);
+        return String.format("%.0f bit/s", bitsPerSecond);
+    }
+
+    private static String micros(long us) {
+        if (us >= 1_000_000) return String.format("%.1f s", us / 1e6);
+        if (us >= 1_000) return String.format("%.1f ms", us / 1e3);
+        return us + " µs";
+    }
+
     private <X, Y> XYChart.Series<X, Y> newSeries(String name) {
         XYChart.Series<X, Y> s = new XYChart.Series<>();
         s.setName(name);
@@ -267,7 +465,7 @@ public class MainView {
 
     // ---- Ask AI Feature ----
     private void showAIAnalysisDialog() {
-        CapturedPacket sel = tablePanel.getTableView().getSelectionModel().getSelectedItem();
+        PacketModel sel = modelAt(tablePanel.getSelectedRow());
         if (sel == null) return;
 
         Dialog<Void> dialog = new Dialog<>();
@@ -323,21 +521,11 @@ public class MainView {
 
         dialog.show();
 
-        // Begin async AI analysis
-        String analysisPrompt = String.format(
-                "Analyze this network packet and explain it to a network administrator:\n" +
-                        "Protocol: %s\nSource: %s:%d\nDestination: %s:%d\n" +
-                        "Size: %d bytes\nRisk Score: %.1f\nHex Start: %s",
-                sel.getProtocol(),
-                sel.getSourceIP(), sel.getSourcePort(),
-                sel.getDestinationIP(), sel.getDestinationPort(),
-                sel.getLength(), sel.getRiskScore(),
-                sel.getHexDump().substring(0, Math.min(50, sel.getHexDump().length()))
-        );
-
-        CompletableFuture.supplyAsync(() -> {
-            try { return GeminiClient.analyzePacket(analysisPrompt); }
-            catch (Exception ex) { return "❌ Analysis failed: " + ex.getMessage(); }
+        // Queued, batched and rate-limited by the AI service; similar packets share a cached answer,
+        // and the inspector picks it up as an annotation
+        svc.explain(sel).exceptionally(ex -> {
+            Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+            return "❌ Analysis failed: " + cause.getMessage();
         }).thenAccept(summary -> Platform.runLater(() -> {
             contentBox.getChildren().clear();
             MarkdownView mdView = new MarkdownView(summary);
@@ -371,19 +559,21 @@ public class MainView {
 
     // Clears all UI and backend packet/conversation state
     private void clearAllPackets() {
-        packets.clear();
+        packetColumns.clear();
+        packetRows.clear();
         conversationList.clear();
-        conversationMap.clear();
+        conversationRows.clear();
+        protoBars.clear();
         protoSeries.getData().clear();
         timeSeries.getData().clear();
         svc.clearPackets();
+        rateText.set("Rate: 0 pkts/s");
+        talkersRefreshedAt = Long.MIN_VALUE;
+        topTalkersPanel.refresh(Long.MIN_VALUE);
+        publisher.resetSkipped();
     }
 
     private void stopCapture() {
-        if (scheduler != null) {
-            scheduler.shutdownNow();
-            scheduler = null;
-        }
         svc.stopCapture();
     }
 }
@@ -1,8 +1,8 @@
 package com.wirecat.core_capture.ui.panel;
 
-import com.wirecat.core_capture.service.AIAnalysisService;
 import com.wirecat.core_capture.service.CaptureService;
 import com.wirecat.core_capture.model.PacketModel;
+import com.wirecat.core_capture.model.PacketAnnotations;
 import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
@@ -15,12 +15,17 @@ import javafx.scene.layout.BorderPane;
 import javafx.stage.Stage;
 import javafx.beans.property.SimpleStringProperty;
 
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 @SuppressWarnings("unused")
 public class PacketAnalysisView {
     private final TableView<PacketModel> packetTable = new TableView<>();
     private final ObservableList<PacketModel> packetData = FXCollections.observableArrayList();
     private final CaptureService captureService = new CaptureService();
-    private final AIAnalysisService aiService = new AIAnalysisService();
+    private final Set<Long> asked = new HashSet<>();                        // FX thread only
+    private final AtomicBoolean refreshPosted = new AtomicBoolean();
 
     public void show(Stage stage) {
         setupTable();
@@ -41,9 +46,23 @@ public class PacketAnalysisView {
         dstCol.setCellValueFactory(cell -> new SimpleStringProperty(cell.getValue().getDst()));
         TableColumn<PacketModel, String> protoCol = new TableColumn<>("Protocol");
         protoCol.setCellValueFactory(cell -> new SimpleStringProperty(cell.getValue().getProto()));
+        TableColumn<PacketModel, String> aiCol = new TableColumn<>("AI");
+        aiCol.setCellValueFactory(cell -> new SimpleStringProperty(aiText(cell.getValue())));
+        aiCol.setPrefWidth(400);
 
-        packetTable.getColumns().addAll(srcCol, dstCol, protoCol);
+        packetTable.getColumns().addAll(srcCol, dstCol, protoCol, aiCol);
         packetTable.setItems(packetData);
+        // Analysis is opt-in: only the packets the user selects are sent
+        packetTable.getSelectionModel().selectedItemProperty().addListener((obs, old, packet) -> {
+            if (packet != null && asked.add(packet.getStoreSequence())) analyze(packet);
+        });
+        // Answers land in the annotation table; one refresh per burst of them redraws the visible rows
+        captureService.annotations().subscribe(seq -> {
+            if (refreshPosted.compareAndSet(false, true)) Platform.runLater(() -> {
+                refreshPosted.set(false);
+                packetTable.refresh();
+            });
+        });
     }
 
     private void setupToolbar(Stage stage) {
@@ -58,15 +77,24 @@ public class PacketAnalysisView {
 
     private void startCapture() {
         packetData.clear();
-        captureService.setOnPacketCaptured(packet -> {
-            aiService.analyzeAsync(packet, updated -> {
-                Platform.runLater(() -> {
-                    int index = packetData.indexOf(updated);
-                    if (index >= 0) packetData.set(index, updated);
-                    else packetData.add(updated);
-                });
+        captureService.setOnPacketCaptured(packet -> Platform.runLater(() -> packetData.add(packet)));
+        captureService.startCapture("eth0", "", 50);
+    }
+
+    private void analyze(PacketModel packet) {
+        packetTable.refresh();   // shows "Analyzing..."
+        captureService.explain(packet).exceptionally(ex -> {
+            Platform.runLater(() -> {   // selecting it again retries
+                asked.remove(packet.getStoreSequence());
+                packetTable.refresh();
             });
+            return null;
         });
-        captureService.startCapture("eth0", "", 50);
+    }
+
+    private String aiText(PacketModel packet) {
+        String text = captureService.annotations().get(packet.getStoreSequence()).aiExplanation();
+        if (text != null) return text;
+        return asked.contains(packet.getStoreSequence()) ? "Analyzing..." : "";
     }
 }
@@ -0,0 +1,157 @@
+package com.wirecat.core_capture.ui.panel;
+
+import com.wirecat.core_capture.filter.RowFilter;
+import com.wirecat.core_capture.model.PacketColumns;
+import javafx.beans.property.ReadOnlyIntegerProperty;
+import javafx.beans.property.ReadOnlyIntegerWrapper;
+import javafx.collections.ObservableListBase;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntPredicate;
+
+/**
+ * Virtual list of row indexes into {@link PacketColumns}, used as the items of
+ * the packet TableView. Nothing is stored per row: with no filter the list is
+ * just [0, size), and a filtered view is one int array of matching rows. The
+ * table only asks for the rows it shows, so cells exist for visible rows only.
+ * <p>
+ * Filters are named and combined with AND, so the toolbar filter and the
+ * conversation selection no longer overwrite each other. A rebuild intersects
+ * the index candidates of every {@link RowFilter} and tests only those rows;
+ * rows appended afterwards are tested against the active filters alone.
+ */
+public class PacketRowList extends ObservableListBase<Integer> {
+    private final PacketColumns columns;
+    private final Map<String, IntPredicate> filters = new LinkedHashMap<>();
+    private final ReadOnlyIntegerWrapper total = new ReadOnlyIntegerWrapper();
+    private IntPredicate combined;   // null = show everything
+    private int[] view;              // matching rows when filtered
+    private int size;
+
+    public PacketRowList(PacketColumns columns) {
+        this.columns = columns;
+    }
+
+    public PacketColumns columns() { return columns; }
+
+    // Rows captured, regardless of filters
+    public ReadOnlyIntegerProperty totalProperty() { return total.getReadOnlyProperty(); }
+
+    // Row index behind a list position, without boxing
+    public int rowAt(int index) {
+        return combined == null ? index : view[index];
+    }
+
+    // Position of a row in the current view, or -1 if filtered out
+    public int indexOfRow(int row) {
+        if (combined == null) return row < size ? row : -1;
+        int i = Arrays.binarySearch(view, 0, size, row);
+        return i >= 0 ? i : -1;
+    }
+
+    @Override public Integer get(int index) {
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException(index);
+        return rowAt(index);
+    }
+
+    @Override public int size() { return size; }
+
+    // Picks up rows appended to the columns since the last call; one change event
+    public void refresh() {
+        int from = total.get();
+        int to = columns.size();
+        if (to == from) return;
+        total.set(to);
+        int oldSize = size;
+        if (combined == null) {
+            size = to;
+        } else {
+            for (int row = from; row < to; row++) {
+                if (!combined.test(row)) continue;
+                if (size == view.length) view = Arrays.copyOf(view, Math.max(1024, size * 2));
+                view[size++] = row;
+            }
+        }
+        if (size == oldSize) return;
+        beginChange();
+        nextAdd(oldSize, size);
+        endChange();
+    }
+
+    // Sets (or with null removes) one named filter and rebuilds the view
+    public void setFilter(String name, IntPredicate filter) {
+        if (filter == null) filters.remove(name);
+        else filters.put(name, filter);
+        combined = null;
+        for (IntPredicate p : filters.values()) combined = combined == null ? p : combined.and(p);
+        rebuild();
+    }
+
+    // Re-evaluates the current filters, e.g. after their inputs changed
+    public void rebuild() {
+        List<Integer> removed = snapshot();
+        int n = columns.size();
+        if (combined == null) {
+            view = null;
+            size = n;
+        } else {
+            BitSet candidates = candidates(n);
+            int[] rows = new int[Math.max(1024, Math.min(candidates == null ? n : candidates.cardinality(), 1 << 20))];
+            int count = 0;
+            int row = candidates == null ? 0 : candidates.nextSetBit(0);
+            while (row >= 0 && row < n) {
+                if (combined.test(row)) {
+                    if (count == rows.length) rows = Arrays.copyOf(rows, count * 2);
+                    rows[count++] = row;
+                }
+                row = candidates == null ? row + 1 : candidates.nextSetBit(row + 1);
+            }
+            view = rows;
+            size = count;
+        }
+        total.set(n);
+        fireReplaced(removed);
+    }
+
+    // Intersection of the indexed filters' candidates; null when none is indexed
+    private BitSet candidates(int n) {
+        BitSet out = null;
+        for (IntPredicate p : filters.values()) {
+            if (!(p instanceof RowFilter rf)) continue;
+            BitSet c = rf.candidates(n);
+            if (out == null) out = c;
+            else out.and(c);
+        }
+        return out;
+    }
+
+    public void clear() {
+        List<Integer> removed = snapshot();
+        if (view != null) view = new int[1024];
+        size = 0;
+        total.set(0);
+        fireReplaced(removed);
+    }
+
+    private void fireReplaced(List<Integer> removed) {
+        beginChange();
+        if (!removed.isEmpty()) nextRemove(0, removed);
+        if (size > 0) nextAdd(0, size);
+        endChange();
+    }
+
+    // Immutable view of the current rows for the removal event (no copy of the rows)
+    private List<Integer> snapshot() {
+        int n = size;
+        int[] rows = view;
+        return new AbstractList<>() {
+            @Override public Integer get(int i) { return rows == null ? i : rows[i]; }
+            @Override public int size() { return n; }
+        };
+    }
+}
@@ -0,0 +1,113 @@
+package com.wirecat.core_capture.ui.panel;
+
+import com.wirecat.core_capture.model.PacketModel;
+import com.wirecat.core_capture.service.CaptureService;
+import javafx.animation.AnimationTimer;
+import javafx.beans.property.ReadOnlyIntegerProperty;
+import javafx.beans.property.ReadOnlyIntegerWrapper;
+import javafx.beans.property.ReadOnlyLongProperty;
+import javafx.beans.property.ReadOnlyLongWrapper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Moves published packets onto the FX thread once per pulse instead of
+ * posting a runLater per timer tick. Each pulse hands the view one batch,
+ * sized so that appending it fits a frame-time budget (the cost per packet
+ * is measured as it goes), so a burst is spread over frames instead of
+ * freezing one. Nothing queues up behind a slow frame: the next pulse simply
+ * takes what is there.
+ * <p>
+ * When the backlog passes a threshold the publisher degrades to sampling:
+ * it drains packets many times faster than the table can take them and
+ * shows only every Nth, until the backlog is back under a quarter of the
+ * threshold. Skipped packets are still in the packet store, statistics and
+ * conversations, which pipeline stages maintain; only their table rows are
+ * missing. Backlog, sampling rate and skipped rows are exposed as properties.
+ */
+public class PulsePublisher extends AnimationTimer {
+    public static final long DEFAULT_BUDGET_NANOS = 6_000_000;   // leaves most of a 60 Hz frame for layout
+    public static final int DEFAULT_SAMPLING_BACKLOG = 100_000;
+    private static final long REFRESH_NANOS = 100_000_000;       // conversations and charts, as before
+    private static final int MIN_BATCH = 64, MAX_BATCH = 1 << 16;
+    private static final int MAX_DRAIN = 1 << 18;
+
+    private final CaptureService svc;
+    private final Consumer<List<PacketModel>> onBatch;
+    private final Runnable onRefresh;
+    private final long budgetNanos;
+    private final int samplingBacklog;
+
+    private final List<PacketModel> drained = new ArrayList<>();
+    private final List<PacketModel> shown = new ArrayList<>();
+    private double nanosPerPacket = 10_000;  // view's cost per shown packet; starts cautious
+    private long lastRefresh;
+
+    private final ReadOnlyIntegerWrapper backlog = new ReadOnlyIntegerWrapper();
+    private final ReadOnlyIntegerWrapper sampleEvery = new ReadOnlyIntegerWrapper(1);
+    private final ReadOnlyLongWrapper skipped = new ReadOnlyLongWrapper();
+
+    // onBatch gets each pulse's packets (one call, possibly sampled); onRefresh runs every 100 ms
+    public PulsePublisher(CaptureService svc, Consumer<List<PacketModel>> onBatch, Runnable onRefresh) {
+        this(svc, onBatch, onRefresh, DEFAULT_BUDGET_NANOS, DEFAULT_SAMPLING_BACKLOG);
+    }
+
+    public PulsePublisher(CaptureService svc, Consumer<List<PacketModel>> onBatch, Runnable onRefresh,
+                          long budgetNanos, int samplingBacklog) {
+        this.svc = svc;
+        this.onBatch = onBatch;
+        this.onRefresh = onRefresh;
+        this.budgetNanos = budgetNanos;
+        this.samplingBacklog = samplingBacklog;
+    }
+
+    // Packets published by the pipeline and not yet taken by the UI
+    public ReadOnlyIntegerProperty backlogProperty() { return backlog.getReadOnlyProperty(); }
+
+    // 1 when every packet gets a row, N when only every Nth does
+    public ReadOnlyIntegerProperty sampleEveryProperty() { return sampleEvery.getReadOnlyProperty(); }
+
+    // Packets left out of the table while sampling
+    public ReadOnlyLongProperty skippedProperty() { return skipped.getReadOnlyProperty(); }
+
+    public void resetSkipped() { skipped.set(0); }
+
+    @Override
+    public void handle(long now) {
+        long start = System.nanoTime();
+        int depth = svc.queueDepth();
+        int every = sampleEvery.get();
+        if (every == 1 && depth > samplingBacklog) {
+            every = 2;
+        } else if (every > 1 && depth < samplingBacklog / 4) {
+            every = 1;
+        }
+        if (every > 1) every = Math.max(2, Math.min(1024, depth / Math.max(1, samplingBacklog / 4)));
+
+        int batch = (int) Math.max(MIN_BATCH, Math.min(MAX_BATCH, budgetNanos / nanosPerPacket));
+        int taken = depth == 0 ? 0 : svc.drainQueue(drained, (int) Math.min(MAX_DRAIN, (long) batch * every));
+        if (taken > 0) {
+            List<PacketModel> batchList = drained;
+            if (every > 1) {
+                for (int i = 0; i < taken; i += every) shown.add(drained.get(i));
+                batchList = shown;
+                skipped.set(skipped.get() + taken - shown.size());
+            }
+            onBatch.accept(batchList);
+            // Up at once when a batch overran, down gradually when the view got cheaper
+            double cost = Math.max(50.0, (double) (System.nanoTime() - start) / batchList.size());
+            nanosPerPacket = cost > nanosPerPacket ? cost : 0.8 * nanosPerPacket + 0.2 * cost;
+            drained.clear();
+            shown.clear();
+        }
+        sampleEvery.set(every);
+        backlog.set(svc.queueDepth());
+
+        if (now - lastRefresh >= REFRESH_NANOS) {
+            lastRefresh = now;
+            onRefresh.run();
+        }
+    }
+}
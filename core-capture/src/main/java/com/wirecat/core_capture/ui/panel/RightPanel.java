@@ -1,8 +1,9 @@
 package com.wirecat.core_capture.ui.panel;
 
 import com.wirecat.core_capture.model.Conversation;
-import com.wirecat.core_capture.model.CapturedPacket;
+import javafx.beans.value.ObservableStringValue;
 import javafx.collections.ObservableList;
+import javafx.scene.chart.LineChart;
 import javafx.scene.chart.XYChart;
 import javafx.scene.control.ScrollPane;
 import javafx.scene.layout.Priority;
@@ -18,8 +19,13 @@ public class RightPanel extends VBox {
     public RightPanel(
             ObservableList<Conversation> conversationList,
             Consumer<Conversation> onConversationSelect,
-            ObservableList<CapturedPacket> packets,
+            Consumer<Conversation> onConversationSummarize,
+            TopTalkersPanel topTalkersPanel,
+            PacketRowList packets,
             XYChart.Series<String, Number> protoSeries,
+            LineChart<Number, Number> sparkline,
+            ObservableStringValue rateText,
+            PulsePublisher publisher,
             Stage stage
     ) {
         setFillWidth(true);
@@ -28,7 +34,7 @@ public class RightPanel extends VBox {
         setMinWidth(PANEL_WIDTH);
 
         // Conversation Table
-        ConversationPanel conversationPanel = new ConversationPanel(conversationList, onConversationSelect);
+        ConversationPanel conversationPanel = new ConversationPanel(conversationList, onConversationSelect, onConversationSummarize);
         conversationPanel.setMaxWidth(PANEL_WIDTH);
         conversationPanel.setPrefWidth(PANEL_WIDTH);
 
@@ -43,18 +49,20 @@ public class RightPanel extends VBox {
         convScroll.setMinWidth(PANEL_WIDTH);
 
         // Statistics Panel
-        StatisticsPanel statisticsPanel = new StatisticsPanel(packets, protoSeries, stage);
+        StatisticsPanel statisticsPanel = new StatisticsPanel(packets, protoSeries, sparkline, rateText, publisher, stage);
         statisticsPanel.setMaxWidth(PANEL_WIDTH);
         statisticsPanel.setPrefWidth(PANEL_WIDTH);
         statisticsPanel.setMinWidth(PANEL_WIDTH);
 
-        // Use SplitPane (vertical): conversations top, stats bottom
+        // Use SplitPane (vertical): conversations top, top talkers, stats bottom
         SplitPane split = new SplitPane();
         split.setOrientation(javafx.geometry.Orientation.VERTICAL);
-        split.getItems().addAll(convScroll, statisticsPanel);
+        topTalkersPanel.setMaxWidth(PANEL_WIDTH);
+        topTalkersPanel.setPrefWidth(PANEL_WIDTH);
+        split.getItems().addAll(convScroll, topTalkersPanel, statisticsPanel);
 
-        // 60% convos, 40% stats
-        split.setDividerPositions(0.6);
+        // 35% convos, 25% top talkers, 40% stats
+        split.setDividerPositions(0.35, 0.6);
         split.setMaxWidth(PANEL_WIDTH);
         split.setPrefWidth(PANEL_WIDTH);
         split.setMinWidth(PANEL_WIDTH);
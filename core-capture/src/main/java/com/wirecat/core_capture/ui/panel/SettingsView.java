@@ -1,6 +1,8 @@
 package com.wirecat.core_capture.ui.panel;
 
+import com.wirecat.core_capture.detect.DetectionEngine;
 import com.wirecat.core_capture.service.CaptureService;
+import com.wirecat.core_capture.store.PacketStore;
 import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
@@ -8,10 +10,14 @@ import javafx.geometry.*;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.scene.layout.*;
+import javafx.stage.DirectoryChooser;
+import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 import org.pcap4j.core.PcapNetworkInterface;
 import org.pcap4j.core.Pcaps;
 
+import java.io.File;
+import java.nio.file.Path;
 import java.util.List;
 import java.util.Objects;
 import java.util.stream.Collectors;
@@ -66,7 +72,7 @@ public class SettingsView {
         TextField filterField = new TextField();
         filterField.setPromptText("e.g., tcp port 80");
         filterField.setTooltip(new Tooltip("Use Berkeley Packet Filter syntax, e.g., \"ip and tcp\"."));
-        Label filterHint = new Label("Leave empty to capture all packets.");
+        Label filterHint = new Label("Leave empty to capture all packets. Also applied when opening a file.");
         filterHint.getStyleClass().add("field-hint");
 
         // --- PACKET LIMIT ---
@@ -78,11 +84,76 @@ public class SettingsView {
         HBox limitBox = new HBox(5, limitSpinner, new Label("(0 = unlimited)"));
         limitBox.setAlignment(Pos.CENTER_LEFT);
 
+        // --- MEMORY BUDGET ---
+        Label budgetLabel = new Label("Memory Budget:");
+        Spinner<Integer> budgetSpinner = new Spinner<>(16, 2047, PacketStore.DEFAULT_BUDGET_BYTES >> 20, 64);
+        budgetSpinner.setEditable(true);
+        budgetSpinner.setPrefWidth(120);
+        budgetSpinner.setTooltip(new Tooltip("Maximum memory used to retain captured frames."));
+        CheckBox stopWhenFull = new CheckBox("Stop when full");
+        stopWhenFull.setTooltip(new Tooltip("Stop capturing instead of dropping the oldest packets."));
+        HBox budgetBox = new HBox(5, budgetSpinner, new Label("MB"), stopWhenFull);
+        budgetBox.setAlignment(Pos.CENTER_LEFT);
+
+        // --- WRITE-THROUGH ---
+        Label diskLabel = new Label("Write to Disk:");
+        CheckBox writeThrough = new CheckBox();
+        writeThrough.setTooltip(new Tooltip("Stream every captured frame to pcap files as it arrives."));
+        TextField dirField = new TextField(System.getProperty("user.home") + File.separator + "wirecat-captures");
+        HBox.setHgrow(dirField, Priority.ALWAYS);
+        Button browseBtn = new Button("…");
+        browseBtn.setOnAction(evt -> {
+            DirectoryChooser dc = new DirectoryChooser();
+            File dir = dc.showDialog(stage);
+            if (dir != null) dirField.setText(dir.getAbsolutePath());
+        });
+        dirField.disableProperty().bind(writeThrough.selectedProperty().not());
+        browseBtn.disableProperty().bind(writeThrough.selectedProperty().not());
+        HBox diskBox = new HBox(5, writeThrough, dirField, browseBtn);
+        diskBox.setAlignment(Pos.CENTER_LEFT);
+
+        Label rotateLabel = new Label("Rotate Files:");
+        Spinner<Integer> rotateMb = new Spinner<>(0, 65536, 100, 50);
+        rotateMb.setEditable(true);
+        rotateMb.setPrefWidth(85);
+        rotateMb.setTooltip(new Tooltip("Start a new file after this many MB (0 = no size limit)."));
+        Spinner<Integer> rotateMin = new Spinner<>(0, 1440, 0, 5);
+        rotateMin.setEditable(true);
+        rotateMin.setPrefWidth(75);
+        rotateMin.setTooltip(new Tooltip("Start a new file after this many minutes (0 = no time limit)."));
+        Spinner<Integer> ringFiles = new Spinner<>(0, 10000, 10, 1);
+        ringFiles.setEditable(true);
+        ringFiles.setPrefWidth(75);
+        ringFiles.setTooltip(new Tooltip("Keep only the newest N files (0 = keep all)."));
+        HBox rotateBox = new HBox(5, rotateMb, new Label("MB"), rotateMin, new Label("min"), ringFiles, new Label("files"));
+        rotateBox.setAlignment(Pos.CENTER_LEFT);
+        rotateBox.disableProperty().bind(writeThrough.selectedProperty().not());
+
+        // --- DETECTION ---
+        Label detectLabel = new Label("Detectors:");
+        FlowPane detectBox = new FlowPane(8, 4);
+        for (DetectionEngine.Rule rule : captureService.detection().rules()) {
+            CheckBox box = new CheckBox(rule.name());
+            box.setSelected(rule.isEnabled());
+            box.setOnAction(e -> captureService.detection().setEnabled(rule.name(), box.isSelected()));
+            detectBox.getChildren().add(box);
+        }
+
+        // --- AI ---
+        Label aiLabel = new Label("AI Analysis:");
+        CheckBox flowSummaries = new CheckBox("Summarize each flow when it ends");
+        flowSummaries.setTooltip(new Tooltip("One request per closed or idle conversation, not per packet.\n"
+                + "Also needed to summarize a single conversation by hand."));
+        flowSummaries.setOnAction(e -> captureService.setFlowSummaries(flowSummaries.isSelected()));
+
         // --- BUTTONS ---
         Button startBtn = new Button("Start Capture");
         startBtn.setDefaultButton(true);
         startBtn.getStyleClass().add("primary-button");
 
+        Button openBtn = new Button("Open File…");
+        openBtn.setTooltip(new Tooltip("Analyze a saved pcap or pcapng file instead of capturing live."));
+
         Button cancelBtn = new Button("Cancel");
         cancelBtn.getStyleClass().add("cancel-button");
 
@@ -97,13 +168,31 @@ public class SettingsView {
                 return;
             }
             // Maybe validate filterField here, show error if invalid
+            captureService.setStoreBudget(budgetSpinner.getValue(), false,
+                    stopWhenFull.isSelected() ? PacketStore.OverflowPolicy.STOP_ON_FULL
+                                              : PacketStore.OverflowPolicy.DROP_OLDEST);
+            applyWriteThrough(writeThrough.isSelected(), dirField.getText(), rotateMb.getValue(),
+                    rotateMin.getValue(), ringFiles.getValue());
             captureService.startCapture(chosen.getName(), filterField.getText().trim(), limitSpinner.getValue());
             new MainView(captureService, chosen.getName(), filterField.getText().trim(), limitSpinner.getValue()).show(stage);
         });
 
+        openBtn.setOnAction(evt -> {
+            FileChooser fc = new FileChooser();
+            fc.getExtensionFilters().add(new FileChooser.ExtensionFilter("Capture files", "*.pcap", "*.pcapng", "*.cap"));
+            File file = fc.showOpenDialog(stage);
+            if (file == null) return;
+            captureService.setStoreBudget(budgetSpinner.getValue(), false,
+                    stopWhenFull.isSelected() ? PacketStore.OverflowPolicy.STOP_ON_FULL
+                                              : PacketStore.OverflowPolicy.DROP_OLDEST);
+            applyWriteThrough(writeThrough.isSelected(), dirField.getText(), rotateMb.getValue(),
+                    rotateMin.getValue(), ringFiles.getValue());
+            new MainView(captureService, file, filterField.getText().trim()).show(stage);
+        });
+
         cancelBtn.setOnAction(evt -> Platform.exit());
 
-        HBox buttonBar = new HBox(12, cancelBtn, startBtn);
+        HBox buttonBar = new HBox(12, cancelBtn, openBtn, startBtn);
         buttonBar.setAlignment(Pos.CENTER_RIGHT);
         buttonBar.getStyleClass().add("button-bar");
 
@@ -134,14 +223,34 @@ public class SettingsView {
         grid.add(limitLabel, 0, 3);
         grid.add(limitBox, 1, 3);
 
-        grid.add(buttonBar, 1, 4);
+        grid.add(budgetLabel, 0, 4);
+        grid.add(budgetBox, 1, 4);
+
+        grid.add(diskLabel, 0, 5);
+        grid.add(diskBox, 1, 5);
+
+        grid.add(rotateLabel, 0, 6);
+        grid.add(rotateBox, 1, 6);
+
+        grid.add(detectLabel, 0, 7);
+        grid.add(detectBox, 1, 7);
+
+        grid.add(aiLabel, 0, 8);
+        grid.add(flowSummaries, 1, 8);
+
+        grid.add(buttonBar, 1, 9);
 
         BorderPane root = new BorderPane(grid);
         root.setPadding(new Insets(14));
-        Scene scene = new Scene(root, 500, 320);
+        Scene scene = new Scene(root, 560, 545);
         scene.getStylesheets().add(Objects.requireNonNull(getClass().getResource("/css/components/settings.css")).toExternalForm());
 
         stage.setScene(scene);
         stage.show();
     }
+
+    private void applyWriteThrough(boolean enabled, String dir, int fileMb, int fileMinutes, int files) {
+        captureService.setWriteThrough(enabled && !dir.isBlank() ? Path.of(dir.trim()) : null,
+                fileMb, fileMinutes * 60, files);
+    }
 }
\ No newline at end of file
@@ -14,6 +14,7 @@ public class SidebarPanel extends VBox {
     private final Button startBtn;
     private final Button stopBtn;
     private final Button clearBtn;
+    private final Button openPcapBtn;
     private final Button exportPcapBtn;
     private final Button exportCsvBtn;
 
@@ -73,7 +74,11 @@ public class SidebarPanel extends VBox {
 
         controls.getChildren().addAll(settingsBtn, startBtn, stopBtn, clearBtn);
 
-        // --- Export Controls ---
+        // --- File Controls ---
+        openPcapBtn = new Button("📂 Open PCAP");
+        openPcapBtn.getStyleClass().addAll("sidebar-btn", "export-btn");
+        openPcapBtn.setMaxWidth(Double.MAX_VALUE);
+
         exportPcapBtn = new Button("💾 Export PCAP");
         exportPcapBtn.getStyleClass().addAll("sidebar-btn", "export-btn");
         exportPcapBtn.setMaxWidth(Double.MAX_VALUE);
@@ -82,7 +87,7 @@ public class SidebarPanel extends VBox {
         exportCsvBtn.getStyleClass().addAll("sidebar-btn", "export-btn");
         exportCsvBtn.setMaxWidth(Double.MAX_VALUE);
 
-        VBox exportBox = new VBox(7, exportPcapBtn, exportCsvBtn);
+        VBox exportBox = new VBox(7, openPcapBtn, exportPcapBtn, exportCsvBtn);
         exportBox.setPadding(new Insets(5, 0, 10, 0));
         exportBox.setFillWidth(true);
 
@@ -117,7 +122,8 @@ public class SidebarPanel extends VBox {
         updateSessionStatus("Stopped", null);
     }
 
-    // Export button accessors for MainView
+    // File button accessors for MainView
+    public Button getOpenPcapBtn() { return openPcapBtn; }
     public Button getExportPcapBtn() { return exportPcapBtn; }
     public Button getExportCsvBtn() { return exportCsvBtn; }
     public Button getClearBtn() { return clearBtn; }
@@ -1,9 +1,7 @@
 package com.wirecat.core_capture.ui.panel;
 
-import com.wirecat.core_capture.model.CapturedPacket;
 import javafx.beans.binding.Bindings;
-import javafx.collections.ListChangeListener;
-import javafx.collections.ObservableList;
+import javafx.beans.value.ObservableStringValue;
 import javafx.geometry.Insets;
 import javafx.scene.Node;
 import javafx.scene.chart.*;
@@ -11,17 +9,18 @@ import javafx.scene.control.Label;
 import javafx.scene.layout.Priority;
 import javafx.scene.layout.VBox;
 import javafx.stage.Stage;
-import java.util.*;
-import java.util.stream.Collectors;
 
 public class StatisticsPanel extends VBox {
-    private final Label totalLabel, rateLabel;
+    private final Label totalLabel, rateLabel, backlogLabel;
     private final BarChart<String, Number> chart;
     private final XYChart.Series<String, Number> protoSeries;
 
     public StatisticsPanel(
-            ObservableList<CapturedPacket> packets,
+            PacketRowList packets,
             XYChart.Series<String, Number> protoSeries,
+            LineChart<Number, Number> sparkline,
+            ObservableStringValue rateText,
+            PulsePublisher publisher,
             Stage stage
     ) {
         getStyleClass().add("stats-panel");
@@ -43,21 +42,39 @@ public class StatisticsPanel extends VBox {
         chart.setMaxHeight(Double.MAX_VALUE);
         VBox.setVgrow(chart, Priority.ALWAYS);
 
-        // --- Minimal Info Row ---
+        // --- Packets/sec over the last minute ---
+        sparkline.setMinHeight(60);
+        sparkline.setPrefHeight(80);
+        sparkline.setCreateSymbols(false);
+
+        // --- Rates and percentiles, from the per-second counters ---
         rateLabel = new Label();
         rateLabel.getStyleClass().add("stats-meta");
+        rateLabel.setWrapText(true);
+        rateLabel.textProperty().bind(rateText);
 
         // --- Packet Count Row ---
         totalLabel = new Label();
-        totalLabel.textProperty().bind(Bindings.size(packets).asString("Total: %,d"));
+        totalLabel.textProperty().bind(packets.totalProperty().asString("Total: %,d"));
         totalLabel.getStyleClass().add("total-label");
 
-        getChildren().addAll(chart, rateLabel, totalLabel);
+        // --- UI backlog: packets published but not yet in the table ---
+        backlogLabel = new Label();
+        backlogLabel.getStyleClass().add("stats-meta");
+        backlogLabel.textProperty().bind(Bindings.createStringBinding(() -> {
+            int every = publisher.sampleEveryProperty().get();
+            String text = String.format("Backlog: %,d", publisher.backlogProperty().get());
+            if (every > 1) text += String.format(" (showing 1 in %d)", every);
+            long skipped = publisher.skippedProperty().get();
+            return skipped > 0 ? text + String.format(", %,d rows skipped", skipped) : text;
+        }, publisher.backlogProperty(), publisher.sampleEveryProperty(), publisher.skippedProperty()));
+
+        getChildren().addAll(chart, sparkline, rateLabel, totalLabel, backlogLabel);
         VBox.setVgrow(chart, Priority.ALWAYS);
 
         // === Live updates ===
-        packets.addListener((ListChangeListener<CapturedPacket>) change -> updateStats(packets));
-        updateStats(packets);
+        packets.totalProperty().addListener((obs, oldCount, count) -> updateBarColors());
+        updateBarColors();
 
         // Chart bar color update
         protoSeries.getData().forEach(data ->
@@ -65,15 +82,7 @@ public class StatisticsPanel extends VBox {
         );
     }
 
-    private void updateStats(ObservableList<CapturedPacket> packets) {
-        String rate = "0";
-        if (packets.size() > 1) {
-            long now = packets.get(packets.size()-1).getTimestampMs();
-            long tenSecAgo = now - 10_000;
-            long count10 = packets.stream().filter(p -> p.getTimestampMs() >= tenSecAgo).count();
-            rate = String.valueOf(count10 / 10);
-        }
-        rateLabel.setText("Rate: " + rate + " pkts/s");
+    private void updateBarColors() {
         protoSeries.getData().forEach(this::setBarColor);
     }
 
@@ -1,53 +1,71 @@
 package com.wirecat.core_capture.ui.panel;
 
-import com.wirecat.core_capture.model.CapturedPacket;
-import javafx.collections.transformation.FilteredList;
+import com.wirecat.core_capture.decode.FrameDecoder;
+import com.wirecat.core_capture.decode.Protocols;
+import com.wirecat.core_capture.filter.DisplayFilter;
+import com.wirecat.core_capture.filter.PacketIndex;
+import com.wirecat.core_capture.filter.RowFilter;
+import com.wirecat.core_capture.model.PacketColumns;
+import javafx.beans.property.ReadOnlyObjectWrapper;
+import javafx.beans.value.ObservableValue;
 import javafx.scene.control.*;
 import javafx.scene.input.Clipboard;
 import javafx.scene.input.ClipboardContent;
 import javafx.scene.layout.VBox;
-import javafx.util.Callback;
 
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.IntPredicate;
 
 public class TablePanel extends VBox {
-    private final TableView<CapturedPacket> tableView;
-    private final FilteredList<CapturedPacket> filteredData;
+    private static final String FILTER = "toolbar";
+
+    private final TableView<Integer> tableView;
+    private final PacketRowList rows;
+    private final PacketColumns cols;
 
     private String searchText = "";
+    private IntFunction<FrameDecoder> frames;   // row -> decoded stored frame, or null
+    private Function<String, IntPredicate> captureFilters;   // capture filter text -> row test
     private final Set<String> selectedProtocols = new HashSet<>();
     private boolean autoScroll = true;
 
-    public TablePanel(FilteredList<CapturedPacket> filteredList, Consumer<CapturedPacket> onRowSelected) {
-        this.filteredData = filteredList;
+    // Rows are indexes into the column store; onRowSelected gets the row (or null)
+    public TablePanel(PacketRowList rows, Consumer<Integer> onRowSelected) {
+        this.rows = rows;
+        this.cols = rows.columns();
         this.tableView = new TableView<>();
-        this.tableView.setItems(filteredData);
+        this.tableView.setItems(rows);
         this.getStyleClass().add("table-panel");
         this.setSpacing(0);
         this.setStyle("-fx-background-color:transparent;");
 
         // Table Columns - improved headers, padding, right/left align, truncation
         tableView.getColumns().addAll(
-                col("No", "number", 48, "center"),
-                col("Time", "timestamp", 110, "center"),
-                col("Δ Time", "deltaTime", 60, "center"),
-                colWithTooltip("Src MAC", "sourceMAC", 118, "left"),
-                colWithTooltip("Dst MAC", "destinationMAC", 118, "left"),
-                colWithTooltip("Src IP", "sourceIP", 108, "left"),
-                colWithTooltip("Dst IP", "destinationIP", 108, "left"),
-                col("Proto", "protocol", 60, "center"),
-                col("Src Port", "sourcePort", 55, "right"),
-                col("Dst Port", "destinationPort", 55, "right"),
-                col("Len", "length", 44, "right"),
-                riskCol("Risk", "riskScore", 80)
+                col("No", cols::number, 48, "center"),
+                col("Time", cols::time, 110, "center"),
+                col("Δ Time", cols::deltaMillis, 60, "center"),
+                colWithTooltip("Src MAC", cols::srcMac, 118, "left"),
+                colWithTooltip("Dst MAC", cols::dstMac, 118, "left"),
+                colWithTooltip("Src IP", cols::srcAddress, 108, "left"),
+                colWithTooltip("Dst IP", cols::dstAddress, 108, "left"),
+                col("Proto", cols::protocol, 60, "center"),
+                col("Src Port", cols::srcPort, 55, "right"),
+                col("Dst Port", cols::dstPort, 55, "right"),
+                col("Len", cols::length, 44, "right"),
+                riskCol("Risk", 80)
         );
 
         tableView.setColumnResizePolicy(TableView.CONSTRAINED_RESIZE_POLICY);
         tableView.getSelectionModel().setSelectionMode(SelectionMode.SINGLE);
         tableView.setPlaceholder(new Label("No packets captured."));
         tableView.setFocusTraversable(true);
+        tableView.setFixedCellSize(24);   // lets the virtual flow skip measuring rows
 
         // Row selection highlight
         tableView.getSelectionModel().selectedItemProperty().addListener((obs, old, selected) -> {
@@ -56,7 +74,7 @@ public class TablePanel extends VBox {
 
         // Row hover highlight
         tableView.setRowFactory(tv -> {
-            TableRow<CapturedPacket> row = new TableRow<>();
+            TableRow<Integer> row = new TableRow<>();
             row.hoverProperty().addListener((obs, wasHovered, isHovered) -> {
                 row.pseudoClassStateChanged(javafx.css.PseudoClass.getPseudoClass("hover"), isHovered);
             });
@@ -79,7 +97,25 @@ public class TablePanel extends VBox {
         updatePredicate();
     }
 
-    public TableView<CapturedPacket> getTableView() { return tableView; }
+    public TableView<Integer> getTableView() { return tableView; }
+
+    // Selected row index in the column store, or -1
+    public int getSelectedRow() {
+        Integer row = tableView.getSelectionModel().getSelectedItem();
+        return row != null ? row : -1;
+    }
+
+    // Source of decoded frames for display filters; without one the search box
+    // only does IP/port substring search
+    public void setFrameSource(IntFunction<FrameDecoder> frames) {
+        this.frames = frames;
+    }
+
+    // Compiles capture (BPF) filter text into a row test over the stored frames,
+    // throwing IllegalArgumentException for anything else; tried after display filters
+    public void setCaptureFilterCompiler(Function<String, IntPredicate> compiler) {
+        this.captureFilters = compiler;
+    }
 
     // --- Filtering logic
     public void filterBySearch(String search) {
@@ -97,24 +133,95 @@ public class TablePanel extends VBox {
             tableView.scrollTo(tableView.getItems().size() - 1);
     }
 
+    // Matches are precomputed per protocol id, per distinct address and per port
+    // value, so testing a row is a few array reads; a rebuild starts from the
+    // index postings of the selected protocols and the matching addresses/ports
     private void updatePredicate() {
-        filteredData.setPredicate(p -> {
-            boolean protoMatch = selectedProtocols.isEmpty() || selectedProtocols.contains(p.getProtocol());
-            boolean searchMatch = searchText.isEmpty() ||
-                    p.getSourceIP().contains(searchText) ||
-                    p.getDestinationIP().contains(searchText) ||
-                    String.valueOf(p.getSourcePort()).contains(searchText) ||
-                    String.valueOf(p.getDestinationPort()).contains(searchText);
-            return protoMatch && searchMatch;
-        });
+        boolean[] protoOk = new boolean[Protocols.COUNT];
+        for (int id = 0; id < Protocols.COUNT; id++) {
+            protoOk[id] = selectedProtocols.isEmpty() || selectedProtocols.contains(Protocols.name(id));
+        }
+        PacketIndex index = cols.index();
+        String search = searchText;
+        DisplayFilter display = displayFilter(search);
+        if (display != null) {
+            IntFunction<FrameDecoder> source = frames;
+            rows.setFilter(FILTER, RowFilter.of(row -> {
+                if (!protoOk[cols.protocolId(row)]) return false;
+                FrameDecoder f = source.apply(row);
+                return f != null && display.test(f);
+            }, n -> index.protocols(protoOk)));
+            return;
+        }
+        IntPredicate capture = captureFilter(search);
+        if (capture != null) {
+            rows.setFilter(FILTER, RowFilter.of(row -> protoOk[cols.protocolId(row)] && capture.test(row),
+                    n -> index.protocols(protoOk)));
+            return;
+        }
+        if (search.isEmpty()) {
+            rows.setFilter(FILTER, RowFilter.of(row -> protoOk[cols.protocolId(row)],
+                    n -> index.protocols(protoOk)));
+            return;
+        }
+        boolean[] portOk = new boolean[65537];
+        for (int port = -1; port <= 65535; port++) portOk[port + 1] = String.valueOf(port).contains(search);
+        AddressMatcher addrOk = new AddressMatcher(search);
+        rows.setFilter(FILTER, RowFilter.of(row -> protoOk[cols.protocolId(row)]
+                && (addrOk.test(cols.srcAddressId(row)) || addrOk.test(cols.dstAddressId(row))
+                    || portOk[cols.srcPort(row) + 1] || portOk[cols.dstPort(row) + 1]),
+                n -> {
+                    BitSet hits = index.addresses(addrOk::test);
+                    hits.or(index.ports(port -> portOk[port + 1]));
+                    hits.and(index.protocols(protoOk));
+                    return hits;
+                }));
+    }
+
+    // Search text that parses as a display filter ("tcp.port == 443", "arp") is
+    // used as one; anything else ("10.0.", "8080") stays a substring search
+    private DisplayFilter displayFilter(String search) {
+        if (search.isEmpty() || frames == null) return null;
+        try {
+            return DisplayFilter.compile(search);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    // Then as a capture filter ("port 53", "host 10.0.0.1"); a bare address or
+    // number ("10.0.0.1", "8080") stays a substring search
+    private IntPredicate captureFilter(String search) {
+        if (search.isEmpty() || captureFilters == null) return null;
+        if (search.indexOf(' ') < 0 && !Character.isLetter(search.charAt(0))) return null;
+        try {
+            return captureFilters.apply(search);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    // Substring match on address strings, memoized per dictionary id
+    private final class AddressMatcher {
+        private final String search;
+        private byte[] memo = new byte[256];   // 0 = unknown, 1 = match, 2 = no match
+
+        AddressMatcher(String search) { this.search = search; }
+
+        boolean test(int id) {
+            if (id >= memo.length) memo = Arrays.copyOf(memo, Math.max(id + 1, memo.length * 2));
+            if (memo[id] == 0) memo[id] = (byte) (cols.addresses().name(id).contains(search) ? 1 : 2);
+            return memo[id] == 1;
+        }
     }
 
     // --- Column Factories
 
-    private <T> TableColumn<CapturedPacket, T> col(String title, String prop, int w, String align) {
-        TableColumn<CapturedPacket, T> c = new TableColumn<>(title);
-        c.setCellValueFactory(new javafx.scene.control.cell.PropertyValueFactory<>(prop));
+    private <T> TableColumn<Integer, T> col(String title, IntFunction<T> value, int w, String align) {
+        TableColumn<Integer, T> c = new TableColumn<>(title);
+        c.setCellValueFactory(cell -> cellValue(value.apply(cell.getValue())));
         c.setPrefWidth(w);
+        c.setSortable(false);   // rows stay in capture order
         c.setStyle("-fx-alignment:" +
                 switch (align) {
                     case "right" -> "CENTER-RIGHT;";
@@ -122,32 +229,49 @@ public class TablePanel extends VBox {
                     default -> "CENTER-LEFT;";
                 }
         );
-        // Text truncation and padding
+        // Text truncation and padding; the tooltip is only installed when text is cut
         c.setCellFactory(tc -> new TableCell<>() {
+            private final Tooltip tooltip = new Tooltip();
+            {
+                setStyle("-fx-padding: 0 8 0 8; -fx-font-size:13px;");
+            }
             @Override protected void updateItem(T item, boolean empty) {
                 super.updateItem(item, empty);
-                setText(empty || item == null ? "" : item.toString());
-                setTooltip(empty || item == null ? null : new Tooltip(item.toString()));
-                setStyle("-fx-padding: 0 8 0 8; -fx-font-size:13px;");
-                if (!empty && item != null && item.toString().length() > 20)
-                    setText(item.toString().substring(0, 17) + "…");
+                String text = empty || item == null ? "" : item.toString();
+                if (text.length() > 20) {
+                    setText(text.substring(0, 17) + "…");
+                    tooltip.setText(text);
+                    setTooltip(tooltip);
+                } else {
+                    setText(text);
+                    setTooltip(null);
+                }
             }
         });
         return c;
     }
 
+    private static <T> ObservableValue<T> cellValue(T value) {
+        return new ReadOnlyObjectWrapper<>(value);
+    }
+
     // Tooltip and left-align for IP/MACs
-    private <T> TableColumn<CapturedPacket, T> colWithTooltip(String title, String prop, int w, String align) {
-        return col(title, prop, w, align);
+    private <T> TableColumn<Integer, T> colWithTooltip(String title, IntFunction<T> value, int w, String align) {
+        return col(title, value, w, align);
     }
 
     // Modern color-coded risk badge
-    private TableColumn<CapturedPacket, Double> riskCol(String title, String prop, int w) {
-        TableColumn<CapturedPacket, Double> c = new TableColumn<>(title);
-        c.setCellValueFactory(new javafx.scene.control.cell.PropertyValueFactory<>(prop));
+    private TableColumn<Integer, Float> riskCol(String title, int w) {
+        TableColumn<Integer, Float> c = new TableColumn<>(title);
+        c.setCellValueFactory(cell -> cellValue(cols.risk(cell.getValue())));
         c.setPrefWidth(w);
+        c.setSortable(false);
         c.setCellFactory(tc -> new TableCell<>() {
-            @Override protected void updateItem(Double item, boolean empty) {
+            private final Label badge = new Label();
+            {
+                badge.getStyleClass().add("risk-badge");
+            }
+            @Override protected void updateItem(Float item, boolean empty) {
                 super.updateItem(item, empty);
                 if (empty || item == null) {
                     setText(null); setGraphic(null); setStyle("");
@@ -156,8 +280,7 @@ public class TablePanel extends VBox {
                     if (item < 3.0)      { label = "Low";    color = "#35e171"; }
                     else if (item < 7.0) { label = "Med";    color = "#ffd60a"; }
                     else                 { label = "High";   color = "#ff453a"; }
-                    Label badge = new Label(label + " (" + String.format("%.1f", item) + ")");
-                    badge.getStyleClass().add("risk-badge");
+                    badge.setText(label + " (" + String.format("%.1f", item) + ")");
                     setGraphic(badge); setText(null); setStyle("-fx-alignment:CENTER;");
                 }
             }
@@ -167,14 +290,14 @@ public class TablePanel extends VBox {
 
     // --- Context menu actions
     private void copySelectedRow(boolean onlyIP) {
-        CapturedPacket p = tableView.getSelectionModel().getSelectedItem();
-        if (p != null) {
-            String text = onlyIP ? p.getSourceIP() :
+        int row = getSelectedRow();
+        if (row >= 0) {
+            String text = onlyIP ? cols.srcAddress(row) :
                     String.join("\t",
-                            "" + p.getNumber(), p.getTimestamp(),
-                            p.getSourceIP() + ":" + p.getSourcePort(),
-                            p.getDestinationIP() + ":" + p.getDestinationPort(),
-                            p.getProtocol(), "" + p.getLength(), "" + p.getRiskScore()
+                            "" + cols.number(row), cols.time(row),
+                            cols.srcAddress(row) + ":" + cols.srcPort(row),
+                            cols.dstAddress(row) + ":" + cols.dstPort(row),
+                            cols.protocol(row), "" + cols.length(row), "" + cols.risk(row)
                     );
             ClipboardContent content = new ClipboardContent();
             content.putString(text);
@@ -29,8 +29,8 @@ public class TopBarPanel extends HBox {
         title.getStyleClass().add("topbar-title");
 
         searchField = new TextField();
-        searchField.setPromptText("Search IP/Port...");
-        searchField.setPrefWidth(160);
+        searchField.setPromptText("Search IP/Port or filter...");
+        searchField.setPrefWidth(200);
         searchField.setMinHeight(26);
         searchField.getStyleClass().add("topbar-search");
         searchField.textProperty().addListener((o, oldVal, newVal) -> {
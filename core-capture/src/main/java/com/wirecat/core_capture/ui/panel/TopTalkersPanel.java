@@ -0,0 +1,102 @@
+package com.wirecat.core_capture.ui.panel;
+
+import com.wirecat.core_capture.stats.HeavyHitters;
+import com.wirecat.core_capture.stats.HeavyHitters.Dimension;
+import com.wirecat.core_capture.stats.HeavyHitters.Metric;
+import com.wirecat.core_capture.stats.HeavyHitters.Talker;
+import javafx.beans.property.SimpleStringProperty;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.geometry.Insets;
+import javafx.scene.control.*;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.VBox;
+
+import java.util.List;
+
+// Heaviest sources, destinations, ports or flows over a chosen window, from the fixed-size sketches
+public class TopTalkersPanel extends VBox {
+    private static final int TOP = 20;
+    private static final List<String> WINDOWS = List.of("10 s", "1 min", "5 min", "All");
+    private static final int[] WINDOW_SECONDS = {10, 60, 300, 0};
+
+    private final HeavyHitters heavyHitters;
+    private final ObservableList<Talker> rows = FXCollections.observableArrayList();
+    private final ComboBox<String> dimension = new ComboBox<>(FXCollections.observableArrayList(
+            "Sources", "Destinations", "Ports", "Flows"));
+    private final ComboBox<String> metric = new ComboBox<>(FXCollections.observableArrayList("Bytes", "Packets"));
+    private final ComboBox<String> window = new ComboBox<>(FXCollections.observableArrayList(WINDOWS));
+    private long nowSecond = Long.MIN_VALUE;
+
+    public TopTalkersPanel(HeavyHitters heavyHitters) {
+        this.heavyHitters = heavyHitters;
+        getStyleClass().add("conversation-panel");
+        setPadding(new Insets(4, 4, 4, 4));
+        setSpacing(2);
+
+        Label title = new Label("🏆 Top talkers");
+        title.getStyleClass().add("label");
+
+        dimension.getSelectionModel().select(0);
+        metric.getSelectionModel().select(0);
+        window.getSelectionModel().select(1);
+        for (ComboBox<String> box : List.of(dimension, metric, window)) {
+            box.setStyle("-fx-font-size: 10px;");
+            box.setOnAction(e -> refresh(nowSecond));
+        }
+        HBox options = new HBox(2, dimension, metric, window);
+
+        TableView<Talker> table = new TableView<>(rows);
+        table.setFixedCellSize(21);
+        table.setStyle("-fx-font-size: 10.5px; -fx-cell-size: 20px;");
+        table.setPlaceholder(new Label("No traffic yet"));
+
+        TableColumn<Talker, String> keyCol = new TableColumn<>("Key");
+        keyCol.setCellValueFactory(c -> new SimpleStringProperty(c.getValue().label()));
+        keyCol.setPrefWidth(120);
+
+        // Counts, each with the sketch's possible overcount when there is one
+        TableColumn<Talker, String> pktCol = new TableColumn<>("#");
+        pktCol.setCellValueFactory(c -> {
+            Talker t = c.getValue();
+            return new SimpleStringProperty(t.packetError() > 0
+                    ? t.packets() + " ±" + t.packetError() : String.valueOf(t.packets()));
+        });
+        pktCol.setPrefWidth(45);
+
+        TableColumn<Talker, String> bytesCol = new TableColumn<>("Bytes");
+        bytesCol.setCellValueFactory(c -> {
+            Talker t = c.getValue();
+            String text = humanBytes(t.bytes());
+            return new SimpleStringProperty(t.byteError() > 0 ? text + " ±" + humanBytes(t.byteError()) : text);
+        });
+        bytesCol.setPrefWidth(70);
+
+        table.getColumns().addAll(keyCol, pktCol, bytesCol);
+
+        VBox.setVgrow(table, Priority.ALWAYS);
+        getChildren().addAll(title, options, table);
+        VBox.setVgrow(this, Priority.ALWAYS);
+    }
+
+    // Re-runs the query up to the given capture second; cheap enough to call once a second
+    public void refresh(long nowSecond) {
+        this.nowSecond = nowSecond;
+        if (nowSecond == Long.MIN_VALUE) {
+            rows.clear();
+            return;
+        }
+        Dimension d = Dimension.values()[Math.max(0, dimension.getSelectionModel().getSelectedIndex())];
+        Metric m = metric.getSelectionModel().getSelectedIndex() == 1 ? Metric.PACKETS : Metric.BYTES;
+        int w = WINDOW_SECONDS[Math.max(0, window.getSelectionModel().getSelectedIndex())];
+        rows.setAll(heavyHitters.top(d, m, TOP, w, nowSecond));
+    }
+
+    private static String humanBytes(long bytes) {
+        if (bytes >= 1L << 30) return String.format("%.1f G", bytes / (double) (1L << 30));
+        if (bytes >= 1L << 20) return String.format("%.1f M", bytes / (double) (1L << 20));
+        if (bytes >= 1L << 10) return String.format("%.1f K", bytes / 1024.0);
+        return String.valueOf(bytes);
+    }
+}
@@ -0,0 +1,76 @@
+package com.wirecat.core_capture.util;
+
+/**
+ * Table-driven hex/ASCII rendering of raw frame bytes. Dumps are only built
+ * when the inspector or an export asks for them, never at capture time.
+ */
+public final class HexDump {
+    private static final char[] DIGITS = "0123456789ABCDEF".toCharArray();
+    private static final char[] HI = new char[256];
+    private static final char[] LO = new char[256];
+    private static final char[] PRINTABLE = new char[256];
+
+    static {
+        for (int b = 0; b < 256; b++) {
+            HI[b] = DIGITS[b >>> 4];
+            LO[b] = DIGITS[b & 0x0F];
+            PRINTABLE[b] = (b >= 32 && b <= 126) ? (char) b : '.';
+        }
+    }
+
+    private HexDump() {}
+
+    // "AA BB CC" for the whole array
+    public static String hex(byte[] data) {
+        return hex(data, 0, data.length);
+    }
+
+    public static String hex(byte[] data, int off, int len) {
+        len = Math.max(0, Math.min(len, data.length - off));
+        if (len == 0) return "";
+        char[] out = new char[len * 3 - 1];
+        for (int i = 0, p = 0; i < len; i++) {
+            int b = data[off + i] & 0xFF;
+            if (i > 0) out[p++] = ' ';
+            out[p++] = HI[b];
+            out[p++] = LO[b];
+        }
+        return new String(out);
+    }
+
+    public static String ascii(byte[] data) {
+        return ascii(data, 0, data.length);
+    }
+
+    public static String ascii(byte[] data, int off, int len) {
+        len = Math.max(0, Math.min(len, data.length - off));
+        char[] out = new char[len];
+        for (int i = 0; i < len; i++) out[i] = PRINTABLE[data[off + i] & 0xFF];
+        return new String(out);
+    }
+
+    // Classic 16-bytes-per-line view: "0010: 45 00 ... |E.....|"
+    public static String format(byte[] data) {
+        int lines = (data.length + 15) / 16;
+        StringBuilder out = new StringBuilder(lines * 74);
+        for (int line = 0; line < lines; line++) {
+            int offset = line * 16;
+            out.append(DIGITS[(offset >>> 12) & 0xF]).append(DIGITS[(offset >>> 8) & 0xF])
+               .append(DIGITS[(offset >>> 4) & 0xF]).append(DIGITS[offset & 0xF]).append(": ");
+            for (int j = 0; j < 16; j++) {
+                if (offset + j < data.length) {
+                    int b = data[offset + j] & 0xFF;
+                    out.append(HI[b]).append(LO[b]).append(' ');
+                } else {
+                    out.append("   ");
+                }
+            }
+            out.append(" |");
+            for (int j = 0; j < 16; j++) {
+                out.append(offset + j < data.length ? PRINTABLE[data[offset + j] & 0xFF] : ' ');
+            }
+            out.append("|\n");
+        }
+        return out.toString();
+    }
+}
@@ -0,0 +1,86 @@
+package com.wirecat.core_capture.util;
+
+import com.wirecat.core_capture.decode.FrameDecoder;
+import com.wirecat.core_capture.stats.TrafficStats;
+
+import java.nio.charset.StandardCharsets;
+import java.util.StringJoiner;
+import java.util.regex.Pattern;
+
+/**
+ * Wording for traffic sent to the AI model. Everything that differs between
+ * two instances of the same kind of traffic is left out or rounded: addresses
+ * become roles, client ports become "ephemeral", counts and sizes become
+ * power-of-two ranges, digits in text are blanked. The text doubles as the
+ * cache key, so the rounding is what lets repeats be answered from the cache.
+ */
+public final class PromptText {
+    private static final Pattern DIGITS = Pattern.compile("\\d+");
+    private static final String[] FLAG_NAMES = { "FIN", "SYN", "RST", "PSH", "ACK", "URG", "ECE", "CWR" };
+    private static final int TEXT_CHARS = 80;
+
+    private PromptText() {}
+
+    // "TCP", "UDP", ... for an IP protocol number; empty for non-IP frames
+    public static String transport(int ipProtocol, int ipVersion) {
+        return switch (ipProtocol) {
+            case FrameDecoder.IPPROTO_TCP -> "TCP";
+            case FrameDecoder.IPPROTO_UDP -> "UDP";
+            case FrameDecoder.IPPROTO_ICMP -> "ICMP";
+            case FrameDecoder.IPPROTO_ICMPV6 -> "ICMPv6";
+            default -> ipVersion != 0 ? "IP protocol " + ipProtocol : "";
+        };
+    }
+
+    // An address in FrameDecoder's 128-bit form as what it is rather than who
+    public static String role(long hi, long lo) {
+        boolean v4 = hi == 0 && (lo >>> 32) == 0xFFFF;
+        if (v4 && (int) lo == -1) return "broadcast";
+        if (v4 ? ((int) lo >>> 28) == 0xE : (hi >>> 56) == 0xFF) return "multicast group";
+        return TrafficStats.isLocal(hi, lo) ? "private host" : "public host";
+    }
+
+    // Client ports carry no meaning: keep well-known ports and the lower of two high ones
+    public static String port(int port, int other) {
+        return port < 1024 || port <= other ? String.valueOf(port) : "ephemeral";
+    }
+
+    public static String flags(int tcpFlags) {
+        StringJoiner j = new StringJoiner(" ");
+        for (int i = 0; i < FLAG_NAMES.length; i++) if ((tcpFlags & 1 << i) != 0) j.add(FLAG_NAMES[i]);
+        return j.length() == 0 ? "none" : j.toString();
+    }
+
+    // 0, 1, 2–3, 4–7, ... followed by the unit
+    public static String range(long n, String unit) {
+        if (n <= 1) return n + " " + unit;
+        long low = Long.highestOneBit(n);
+        return low + "–" + (2 * low - 1) + " " + unit;
+    }
+
+    // A duration in microseconds, to the nearest power-of-two range of ms
+    public static String duration(long micros) {
+        if (micros < 1000) return "under 1 ms";
+        return range(micros / 1000, "ms");
+    }
+
+    /**
+     * The first bytes of a payload: the first line with digits blanked when it
+     * is printable text, otherwise "binary" and its first four bytes in hex.
+     */
+    public static String payload(byte[] data, int off, int len) {
+        int n = Math.min(len, 64);
+        for (int i = 0; i < n; i++) {
+            int b = data[off + i] & 0xFF;
+            if ((b < 0x20 || b > 0x7E) && b != '\r' && b != '\n' && b != '\t') {
+                return "binary, starts " + HexDump.hex(data, off, Math.min(4, len));
+            }
+        }
+        int end = off;
+        while (end < off + len && data[end] != '\r' && data[end] != '\n') end++;
+        String line = new String(data, off, end - off, StandardCharsets.ISO_8859_1).trim();
+        if (line.isEmpty()) return "text";
+        if (line.length() > TEXT_CHARS) line = line.substring(0, TEXT_CHARS) + "…";
+        return "text, first line \"" + DIGITS.matcher(line).replaceAll("#") + "\"";
+    }
+}
@@ -0,0 +1,52 @@
+package com.wirecat.core_capture;
+
+import com.wirecat.core_capture.decode.FrameDecoder;
+
+import java.nio.ByteBuffer;
+
+// Hand-built frames for tests: Ethernet + IPv4 + TCP or UDP, checksums left at zero
+public final class Frames {
+    public static final int SYN = 0x02, ACK = 0x10, FIN = 0x01, RST = 0x04, PSH = 0x08;
+
+    private Frames() { }
+
+    public static byte[] tcp(String src, int srcPort, String dst, int dstPort, long seq, int flags, byte[] payload) {
+        ByteBuffer b = ipv4(src, dst, FrameDecoder.IPPROTO_TCP, 20 + payload.length);
+        b.putShort((short) srcPort).putShort((short) dstPort).putInt((int) seq).putInt(0);
+        b.put((byte) 0x50).put((byte) flags).putShort((short) 65535).putInt(0);
+        return b.put(payload).array();
+    }
+
+    public static byte[] tcp(String src, int srcPort, String dst, int dstPort, long seq, int flags, String payload) {
+        return tcp(src, srcPort, dst, dstPort, seq, flags, payload.getBytes());
+    }
+
+    public static byte[] udp(String src, int srcPort, String dst, int dstPort, byte[] payload) {
+        ByteBuffer b = ipv4(src, dst, FrameDecoder.IPPROTO_UDP, 8 + payload.length);
+        b.putShort((short) srcPort).putShort((short) dstPort).putShort((short) (8 + payload.length)).putShort((short) 0);
+        return b.put(payload).array();
+    }
+
+    // Ethernet and IPv4 headers (TTL 64) with room for 'l4' more bytes, positioned after the IP header
+    private static ByteBuffer ipv4(String src, String dst, int protocol, int l4) {
+        ByteBuffer b = ByteBuffer.allocate(14 + 20 + l4);
+        b.put(new byte[] {0x02, 0, 0, 0, 0, 0x02, 0x02, 0, 0, 0, 0, 0x01}).putShort((short) 0x0800);
+        b.put((byte) 0x45).put((byte) 0).putShort((short) (20 + l4)).putInt(0);
+        b.put((byte) 64).put((byte) protocol).putShort((short) 0);
+        b.put(address(src)).put(address(dst));
+        return b;
+    }
+
+    private static byte[] address(String dotted) {
+        String[] parts = dotted.split("\\.");
+        byte[] out = new byte[4];
+        for (int i = 0; i < 4; i++) out[i] = (byte) Integer.parseInt(parts[i]);
+        return out;
+    }
+
+    public static FrameDecoder decode(byte[] frame) {
+        FrameDecoder d = new FrameDecoder();
+        if (!d.decode(frame)) throw new IllegalArgumentException("Frame does not decode");
+        return d;
+    }
+}
@@ -0,0 +1,124 @@
+package com.wirecat.core_capture.bpf;
+
+import com.wirecat.core_capture.Frames;
+import com.wirecat.core_capture.decode.FrameDecoder;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BpfFilterTest {
+    private static final int ETHERNET = FrameDecoder.LINKTYPE_ETHERNET;
+
+    private static final String[] EXPRESSIONS = {
+            "",
+            "tcp",
+            "udp or icmp",
+            "tcp port 443",
+            "src host 10.0.0.1 and dst port 80",
+            "net 10.0.0.0/8 and not port 22",
+            "portrange 1000-2000",
+            "tcp[tcpflags] & (tcp-syn|tcp-ack) == tcp-syn",
+            "ip[8] < 32 or len > 600",
+            "greater 100 and less 1000",
+            "host 10.0.0.1 or 10.0.0.2 or 192.168.1.7",
+            "ether src 02:00:00:00:00:01 and ip proto 17",
+            "not (tcp and (port 80 or port 8080))",
+    };
+
+    @Test
+    void jitAgreesWithInterpreter() {
+        ByteBuffer[] frames = randomFrames(new Random(7), 2000);
+        for (String expression : EXPRESSIONS) {
+            BpfProgram program = BpfCompiler.compile(expression, ETHERNET);
+            BpfJit.Step jit = BpfJit.compile(program);
+            assertNotNull(jit, expression);
+            for (ByteBuffer f : frames) {
+                int len = f.limit();
+                assertEquals(program.run(f, 0, len) != 0, jit.run(f, 0, len, 0, 0) != 0,
+                        () -> expression + " on " + Arrays.toString(Arrays.copyOf(f.array(), len)));
+            }
+        }
+    }
+
+    @Test
+    void tierSwitchKeepsResults() {
+        ByteBuffer[] frames = randomFrames(new Random(11), BpfFilter.JIT_THRESHOLD);
+        for (String expression : EXPRESSIONS) {
+            BpfFilter filter = BpfFilter.compile(expression, ETHERNET);
+            boolean[] first = new boolean[frames.length];
+            for (int i = 0; i < frames.length; i++) first[i] = filter.matches(frames[i], 0, frames[i].limit());
+            for (int i = 0; i < frames.length; i++) {
+                assertEquals(first[i], filter.matches(frames[i], 0, frames[i].limit()), expression);
+            }
+        }
+    }
+
+    @Test
+    void matchesWhatTheExpressionSays() {
+        byte[] https = Frames.tcp("10.0.0.1", 50000, "93.184.216.34", 443, 1, Frames.SYN, new byte[0]);
+        byte[] dns = Frames.udp("10.0.0.1", 50001, "10.0.0.53", 53, new byte[20]);
+
+        assertTrue(matches("tcp port 443", https));
+        assertFalse(matches("tcp port 443", dns));
+        assertTrue(matches("udp port domain", dns));
+        assertTrue(matches("src net 10.0.0.0/8 and not dst net 10.0.0.0/8", https));
+        assertFalse(matches("src net 10.0.0.0/8 and not dst net 10.0.0.0/8", dns));
+        assertTrue(matches("tcp[tcpflags] & tcp-syn != 0", https));
+        assertFalse(matches("tcp[tcpflags] & tcp-ack != 0", https));
+        assertTrue(matches("host 10.0.0.53 or 192.168.0.1", dns));
+        assertTrue(BpfFilter.compile("  ", ETHERNET).matchesAll());
+    }
+
+    @Test
+    void truncatedFrameIsRejected() {
+        byte[] https = Frames.tcp("10.0.0.1", 50000, "10.0.0.2", 443, 1, Frames.SYN, new byte[0]);
+        // Ends inside the TCP header, before the destination port
+        assertFalse(BpfFilter.compile("tcp dst port 443", ETHERNET).matches(https, 0, 14 + 20 + 3));
+    }
+
+    @Test
+    void otherLinkTypesUseTheirOwnOffsets() {
+        byte[] ethernet = Frames.tcp("10.0.0.1", 50000, "10.0.0.2", 443, 1, Frames.SYN, new byte[0]);
+        byte[] raw = Arrays.copyOfRange(ethernet, 14, ethernet.length);
+        assertTrue(BpfFilter.compile("tcp port 443 and host 10.0.0.2", FrameDecoder.LINKTYPE_RAW)
+                .matches(raw, 0, raw.length));
+        assertFalse(BpfFilter.compile("tcp port 443", FrameDecoder.LINKTYPE_RAW).matches(ethernet, 0, ethernet.length));
+    }
+
+    @Test
+    void errorsNameThePosition() {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> BpfFilter.compile("tcp port", ETHERNET));
+        assertTrue(e.getMessage().contains("position"), e.getMessage());
+        assertThrows(IllegalArgumentException.class, () -> BpfFilter.compile("tcp and or udp", ETHERNET));
+        assertThrows(IllegalArgumentException.class, () -> BpfFilter.compile("host 300.1.1.1", ETHERNET));
+        assertThrows(IllegalArgumentException.class, () -> BpfFilter.compile("(tcp", ETHERNET));
+    }
+
+    private static boolean matches(String expression, byte[] frame) {
+        return BpfFilter.compile(expression, ETHERNET).matches(frame, 0, frame.length);
+    }
+
+    // TCP and UDP frames over small address and port pools, some cut short
+    private static ByteBuffer[] randomFrames(Random random, int count) {
+        String[] hosts = {"10.0.0.1", "10.0.0.2", "192.168.1.7", "8.8.8.8"};
+        int[] ports = {22, 53, 80, 443, 1500, 8080, 50000};
+        ByteBuffer[] out = new ByteBuffer[count];
+        for (int i = 0; i < count; i++) {
+            String src = hosts[random.nextInt(hosts.length)], dst = hosts[random.nextInt(hosts.length)];
+            int sp = ports[random.nextInt(ports.length)], dp = ports[random.nextInt(ports.length)];
+            byte[] payload = new byte[random.nextInt(900)];
+            byte[] f = random.nextBoolean()
+                    ? Frames.tcp(src, sp, dst, dp, random.nextInt(), random.nextInt(256), payload)
+                    : Frames.udp(src, sp, dst, dp, payload);
+            f[22] = (byte) (1 + random.nextInt(128));   // TTL
+            int len = random.nextInt(8) == 0 ? random.nextInt(f.length) : f.length;
+            out[i] = ByteBuffer.wrap(f, 0, len);
+        }
+        return out;
+    }
+}
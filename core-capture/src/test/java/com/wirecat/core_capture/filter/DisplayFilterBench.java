@@ -0,0 +1,124 @@
+package com.wirecat.core_capture.filter;
+
+import com.wirecat.core_capture.decode.FrameDecoder;
+import com.wirecat.core_capture.model.CapturedPacket;
+import com.wirecat.core_capture.model.PacketModel;
+
+import java.util.Random;
+import java.util.function.Predicate;
+
+/**
+ * Rough per-packet cost of compiled display filters over pre-decoded frames,
+ * next to the old FilterEngine lambdas over CapturedPacket for comparison.
+ * Lives with the tests so it stays out of the application jar; run it on the
+ * test class path with an optional packet count, e.g.
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.wirecat.core_capture.filter.DisplayFilterBench -Dexec.args=1000000}.
+ */
+public class DisplayFilterBench {
+    private static final String[] EXPRESSIONS = {
+            "tcp",
+            "tcp.port == 443",
+            "ip.src == 10.0.0.0/8 && tcp.port in {80 443} && frame.len > 1000",
+            "(udp.dstport == 53 || tcp.flags.syn == 1 && tcp.flags.ack == 0) && !(ip.addr == 192.168.1.1)",
+            "eth.src == 02:00:00:00:00:07 or ip.ttl < 32",
+    };
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        Random random = new Random(42);
+        byte[][] raw = new byte[count][];
+        FrameDecoder[] frames = new FrameDecoder[count];
+        CapturedPacket[] packets = new CapturedPacket[Math.min(count, 200_000)];
+        for (int i = 0; i < count; i++) {
+            byte[] frame = randomFrame(random);
+            raw[i] = frame;
+            FrameDecoder d = new FrameDecoder();
+            d.decode(frame);
+            frames[i] = d;
+            if (i < packets.length) packets[i] = PacketModel.fromRaw(frame, 0, i, d).toPacket();
+        }
+
+        int rounds = Math.max(5, 20_000_000 / count);   // enough for the JIT to settle
+        System.out.printf("%,d frames%n", count);
+        for (String expr : EXPRESSIONS) {
+            DisplayFilter filter = DisplayFilter.compile(expr);
+            int matches = 0;
+            long best = Long.MAX_VALUE;
+            for (int round = 0; round < rounds; round++) {
+                long start = System.nanoTime();
+                matches = 0;
+                for (FrameDecoder f : frames) if (filter.test(f)) matches++;
+                best = Math.min(best, System.nanoTime() - start);
+            }
+            System.out.printf("%6.1f ns/pkt  %5.1f%% match  %s%n",
+                    (double) best / count, 100.0 * matches / count, expr);
+        }
+
+        // The lambdas need a CapturedPacket with its strings; the compiled filter reads the decoder
+        Predicate<CapturedPacket> lambdas = FilterEngine.combine(
+                FilterEngine.byIp("10.0.0.5"), FilterEngine.byPort(443));
+        DisplayFilter compiled = DisplayFilter.compile(
+                "ip.addr == 10.0.0.5 && (tcp.port == 443 || udp.port == 443)");
+        long best = Long.MAX_VALUE, bestBuild = Long.MAX_VALUE, bestCompiled = Long.MAX_VALUE;
+        int sink = 0;
+        for (int round = 0; round < rounds; round++) {
+            long start = System.nanoTime();
+            int m = 0;
+            for (CapturedPacket p : packets) if (lambdas.test(p)) m++;
+            best = Math.min(best, System.nanoTime() - start);
+            start = System.nanoTime();
+            for (int i = 0; i < 10_000; i++) {
+                sink += PacketModel.fromRaw(raw[i], 0, i, frames[i]).toPacket().getLength();
+            }
+            bestBuild = Math.min(bestBuild, System.nanoTime() - start);
+            start = System.nanoTime();
+            int n = 0;
+            for (int i = 0; i < packets.length; i++) if (compiled.test(frames[i])) n++;
+            bestCompiled = Math.min(bestCompiled, System.nanoTime() - start);
+            if (m != n) System.out.printf("mismatch: %d lambda vs %d compiled%n", m, n);
+        }
+        System.out.printf("FilterEngine lambdas %.1f ns/pkt (+%.1f ns/pkt to build the CapturedPacket) "
+                        + "vs compiled %.1f ns/pkt%n", (double) best / packets.length, bestBuild / 10_000.0,
+                (double) bestCompiled / packets.length);
+        if (sink == 0) System.out.println("(nothing built)");   // keeps the builds from being optimized away
+    }
+
+    // Ethernet + IPv4 + TCP/UDP with addresses from small pools, so filters hit now and then
+    private static byte[] randomFrame(Random random) {
+        boolean tcp = random.nextInt(4) != 0;
+        int payload = random.nextInt(1400);
+        int l4 = tcp ? 20 : 8;
+        byte[] f = new byte[14 + 20 + l4 + payload];
+        f[5] = 1;
+        f[6] = 2;
+        f[11] = (byte) random.nextInt(16);
+        f[12] = 0x08;
+        f[14] = 0x45;
+        putShort(f, 16, 20 + l4 + payload);
+        f[22] = (byte) (1 + random.nextInt(128));
+        f[23] = (byte) (tcp ? 6 : 17);
+        putInt(f, 26, random.nextBoolean() ? 0x0A00_0000 | random.nextInt(8) : 0xC0A8_0100 | random.nextInt(4));
+        putInt(f, 30, 0x0A00_0000 | random.nextInt(8));
+        int[] ports = {80, 443, 53, 8080, 22};
+        putShort(f, 34, 1024 + random.nextInt(60000));
+        putShort(f, 36, ports[random.nextInt(ports.length)]);
+        if (tcp) {
+            f[46] = 0x50;
+            f[47] = (byte) (random.nextInt(8) == 0 ? 0x02 : 0x18);
+        } else {
+            putShort(f, 38, 8 + payload);
+        }
+        return f;
+    }
+
+    private static void putShort(byte[] b, int off, int v) {
+        b[off] = (byte) (v >>> 8);
+        b[off + 1] = (byte) v;
+    }
+
+    private static void putInt(byte[] b, int off, int v) {
+        putShort(b, off, v >>> 16);
+        putShort(b, off + 2, v);
+    }
+}
@@ -0,0 +1,102 @@
+package com.wirecat.core_capture.filter;
+
+import com.wirecat.core_capture.Frames;
+import com.wirecat.core_capture.decode.FrameDecoder;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DisplayFilterTest {
+    private final FrameDecoder web = Frames.decode(Frames.tcp("10.1.2.3", 51000, "93.184.216.34", 8080,
+            1, Frames.PSH | Frames.ACK, "GET /index.html HTTP/1.1\r\nHost: example.org\r\n\r\n"));
+    private final FrameDecoder syn = Frames.decode(Frames.tcp("192.168.1.7", 40000, "10.0.0.1", 22,
+            1, Frames.SYN, new byte[0]));
+    private final FrameDecoder dns = Frames.decode(Frames.udp("10.0.0.1", 53000, "10.0.0.53", 53, new byte[1200]));
+
+    @Test
+    void addressesMatchPrefixes() {
+        assertTrue(matches("ip.src == 10.0.0.0/8", web));
+        assertFalse(matches("ip.src == 10.0.0.0/8", syn));
+        assertTrue(matches("ip.dst == 93.184.216.0/24", web));
+        assertTrue(matches("ip.addr == 10.0.0.53", dns));
+        assertFalse(matches("ip.src == 10.0.0.53", dns));
+    }
+
+    @Test
+    void notEqualOnAPairMeansNeitherSide() {
+        assertFalse(matches("ip.addr != 10.0.0.1", dns));   // the source is 10.0.0.1
+        assertTrue(matches("ip.addr != 10.9.9.9", dns));
+        assertFalse(matches("tcp.port != 22", syn));
+        assertTrue(matches("tcp.srcport != 22", syn));
+    }
+
+    @Test
+    void setsAndRanges() {
+        assertTrue(matches("tcp.port in {80 8000..8100}", web));
+        assertFalse(matches("tcp.port in {80 443}", web));
+        assertTrue(matches("udp.dstport in {53 5353}", dns));
+        assertTrue(matches("tcp.dstport in {1..1023}", syn));
+    }
+
+    @Test
+    void absentFieldsAreFalseEitherWay() {
+        assertFalse(matches("udp.port == 53", web));
+        assertFalse(matches("udp.port != 53", web));
+        assertTrue(matches("!udp", web));
+        assertTrue(matches("tcp", web));
+        assertFalse(matches("tcp", dns));
+    }
+
+    @Test
+    void flagsLengthsAndPrecedence() {
+        assertTrue(matches("tcp.flags.syn == 1 && tcp.flags.ack == 0", syn));
+        assertFalse(matches("tcp.flags.syn == 1 && tcp.flags.ack == 0", web));
+        assertTrue(matches("tcp.flags & 0x12", syn));
+        assertTrue(matches("frame.len > 1000", dns));
+        assertFalse(matches("frame.len > 1000", web));
+        // && binds tighter than ||
+        assertTrue(matches("udp || tcp && tcp.port == 1", dns));
+        assertFalse(matches("(udp || tcp) && tcp.port == 1", dns));
+        assertTrue(matches("not tcp.port == 22 and ip.ttl ge 64", web));
+    }
+
+    @Test
+    void payloadTags() {
+        assertTrue(matches("tag == http.request", web));
+        assertTrue(matches("tag", web));
+        assertFalse(matches("tag", syn));
+        assertFalse(matches("tag in {ioc.log4shell ioc.shell}", web));
+    }
+
+    @Test
+    void blankMatchesEverything() {
+        assertTrue(DisplayFilter.compile("   ").matchesAll());
+        assertTrue(DisplayFilter.compile(null).test(syn));
+    }
+
+    @Test
+    void errorsNameWhatAndWhere() {
+        assertError("nosuch.field == 1", "unknown field 'nosuch.field' at position 1");
+        assertError("tcp.port ==", "expected a value at position 12");
+        assertError("tcp.port == 80 &&", "expected a field");
+        assertError("ip.src == 10.0.0.0/33", "bad prefix length");
+        assertError("ip.src == 10.0.0.256", "bad IPv4 address");
+        assertError("eth.src == 02:00:00", "bad MAC address");
+        assertError("tcp.port in {}", "empty set");
+        assertError("tcp.port in {90..80}", "empty range");
+        assertError("tcp == 1", "can only be tested for presence");
+        assertError("tag == no.such.tag", "unknown tag");
+        assertError("(tcp", "expected ')'");
+        assertError("tcp $ udp", "unexpected character '$'");
+    }
+
+    private static boolean matches(String expression, FrameDecoder f) {
+        return DisplayFilter.compile(expression).test(f);
+    }
+
+    private static void assertError(String expression, String expected) {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> DisplayFilter.compile(expression), expression);
+        assertTrue(e.getMessage().contains(expected), () -> expression + ": " + e.getMessage());
+    }
+}
@@ -0,0 +1,165 @@
+package com.wirecat.core_capture.flow;
+
+import com.wirecat.core_capture.Frames;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.wirecat.core_capture.Frames.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class TcpStreamReassemblerTest {
+    private static final String CLIENT = "10.0.0.1", SERVER = "10.0.0.2";
+    private static final int CPORT = 40000, SPORT = 80;
+
+    private final Recorder rec = new Recorder();
+    private final TcpStreamReassembler r = new TcpStreamReassembler(rec);
+    private long now = 1_000_000;
+
+    @Test
+    void deliversInOrderPerDirection() {
+        handshake(1000, 5000);
+        fromClient(1001, ACK, "GET / HTTP/1.1\r\n\r\n");
+        fromServer(5001, ACK, "HTTP/1.1 200 OK\r\n\r\n");
+        assertEquals("GET / HTTP/1.1\r\n\r\n", rec.client());
+        assertEquals("HTTP/1.1 200 OK\r\n\r\n", rec.server());
+        assertEquals(List.of(0L), rec.clientOffsets);
+    }
+
+    @Test
+    void reordersEarlySegments() {
+        handshake(1000, 5000);
+        fromClient(1011, ACK, "klmno");
+        fromClient(1006, ACK, "fghij");
+        assertEquals("", rec.client());
+        assertEquals(10, r.bufferedBytes());
+        fromClient(1001, ACK, "abcde");
+        assertEquals("abcdefghijklmno", rec.client());
+        assertEquals(List.of(0L, 5L, 10L), rec.clientOffsets);
+        assertEquals(0, r.bufferedBytes());
+    }
+
+    @Test
+    void dropsRetransmittedAndOverlappingBytes() {
+        handshake(1000, 5000);
+        fromClient(1001, ACK, "abcde");
+        fromClient(1001, ACK, "abcde");
+        fromClient(1004, ACK, "defgh");
+        assertEquals("abcdefgh", rec.client());
+        assertEquals(7, r.duplicateBytes());
+    }
+
+    @Test
+    void followsSequenceWraparound() {
+        long isn = 0xFFFF_FFF9L;   // data starts 6 bytes before the wrap
+        handshake(isn, 5000);
+        fromClient(0, ACK, "ghijkl");   // after the wrap, first
+        fromClient(0xFFFF_FFFAL, ACK, "abcdef");
+        assertEquals("abcdefghijkl", rec.client());
+        assertEquals(0, r.gapBytes());
+    }
+
+    @Test
+    void picksUpMidStreamWithTheFirstSenderAsClient() {
+        fromServer(7000, ACK, "hello");
+        fromServer(7005, ACK, " again");
+        assertEquals("hello again", rec.client());   // nothing says otherwise, so the sender is the client
+        assertEquals(1, r.activeFlows());
+    }
+
+    @Test
+    void reportsAGapWhenTheBufferOverflows() {
+        TcpStreamReassembler small = new TcpStreamReassembler(rec, 16, 1 << 20,
+                TcpStreamReassembler.DEFAULT_IDLE_TIMEOUT_MICROS);
+        small.onSegment(decode(tcp(CLIENT, CPORT, SERVER, SPORT, 100, SYN, new byte[0])), now);
+        small.onSegment(decode(tcp(CLIENT, CPORT, SERVER, SPORT, 101, ACK, "ab")), now);
+        small.onSegment(decode(tcp(CLIENT, CPORT, SERVER, SPORT, 203, ACK, "zz")), now);   // 100 bytes missing
+        assertEquals("abzz", rec.client());
+        assertEquals(List.of(2L), rec.gapOffsets);
+        assertEquals(100, small.gapBytes());
+    }
+
+    @Test
+    void closesOnceAfterBothFinsAndTheLastAck() {
+        handshake(1000, 5000);
+        fromClient(1001, ACK, "x");
+        fromClient(1002, FIN | ACK, "");
+        fromServer(5001, FIN | ACK, "");
+        fromClient(1003, ACK, "");   // the final ACK must not open a new stream
+        assertEquals(List.of(TcpStreamReassembler.CloseReason.FIN), rec.closes);
+        assertEquals(0, r.activeFlows());
+
+        now += 2 * TcpStreamReassembler.DEFAULT_IDLE_TIMEOUT_MICROS;
+        r.onSegment(decode(tcp("10.9.9.9", 1, "10.9.9.8", 2, 1, SYN, new byte[0])), now);   // runs the idle sweep
+        assertEquals(1, r.closedFlows());
+        assertEquals(List.of(TcpStreamReassembler.CloseReason.FIN), rec.closes);
+    }
+
+    @Test
+    void resetClosesAndIsNotReopened() {
+        handshake(1000, 5000);
+        fromServer(5001, RST, "");
+        fromClient(1001, RST, "");
+        assertEquals(List.of(TcpStreamReassembler.CloseReason.RST), rec.closes);
+        assertEquals(0, r.activeFlows());
+    }
+
+    @Test
+    void closeAllFlushesOpenStreams() {
+        handshake(1000, 5000);
+        fromClient(1001, ACK, "a");
+        r.closeAll();
+        assertEquals(List.of(TcpStreamReassembler.CloseReason.SHUTDOWN), rec.closes);
+        assertEquals(0, r.activeFlows());
+    }
+
+    private void handshake(long clientIsn, long serverIsn) {
+        fromClient(clientIsn, SYN, "");
+        fromServer(serverIsn, SYN | ACK, "");
+        fromClient((clientIsn + 1) & 0xFFFF_FFFFL, ACK, "");
+    }
+
+    private void fromClient(long seq, int flags, String payload) {
+        r.onSegment(decode(tcp(CLIENT, CPORT, SERVER, SPORT, seq, flags, payload)), now += 1000);
+    }
+
+    private void fromServer(long seq, int flags, String payload) {
+        r.onSegment(decode(tcp(SERVER, SPORT, CLIENT, CPORT, seq, flags, payload)), now += 1000);
+    }
+
+    private static final class Recorder implements TcpStreamReassembler.StreamListener {
+        final ByteArrayOutputStream toServer = new ByteArrayOutputStream(), toClient = new ByteArrayOutputStream();
+        final List<Long> clientOffsets = new ArrayList<>(), gapOffsets = new ArrayList<>();
+        final List<TcpStreamReassembler.CloseReason> closes = new ArrayList<>();
+        long gapped;   // bytes declared lost from the client
+
+        @Override
+        public void onData(FlowKey flow, boolean fromClient, long streamOffset, byte[] data, int off, int len) {
+            if (fromClient) {
+                assertEquals(toServer.size() + gapped, streamOffset, "offset");
+                clientOffsets.add(streamOffset);
+                toServer.write(data, off, len);
+            } else {
+                toClient.write(data, off, len);
+            }
+        }
+
+        @Override
+        public void onGap(FlowKey flow, boolean fromClient, long streamOffset, long missing) {
+            if (fromClient) {
+                gapOffsets.add(streamOffset);
+                gapped += missing;
+            }
+        }
+
+        @Override
+        public void onClose(FlowKey flow, TcpStreamReassembler.CloseReason reason) {
+            closes.add(reason);
+        }
+
+        String client() { return toServer.toString(); }
+        String server() { return toClient.toString(); }
+    }
+}
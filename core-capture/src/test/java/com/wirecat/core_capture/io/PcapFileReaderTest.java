@@ -0,0 +1,156 @@
+package com.wirecat.core_capture.io;
+
+import com.wirecat.core_capture.decode.FrameDecoder;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PcapFileReaderTest {
+    private static final long SECOND = 1_700_000_000L;
+
+    @TempDir
+    Path dir;
+
+    private record Record(byte[] data, long timestampMicros, int linkType) {}
+
+    @Test
+    void readsClassicPcapInMicroseconds() throws IOException {
+        ByteBuffer b = le(24 + 2 * (16 + 4));
+        b.putInt(0xA1B2C3D4).putShort((short) 2).putShort((short) 4).putInt(0).putInt(0).putInt(65535).putInt(1);
+        b.putInt((int) SECOND).putInt(250).putInt(4).putInt(4).put(new byte[] {1, 2, 3, 4});
+        b.putInt((int) SECOND + 1).putInt(0).putInt(4).putInt(60).put(new byte[] {5, 6, 7, 8});
+        List<Record> records = read(write("a.pcap", b), false);
+        assertEquals(2, records.size());
+        assertEquals(SECOND * 1_000_000 + 250, records.get(0).timestampMicros());
+        assertArrayEquals(new byte[] {5, 6, 7, 8}, records.get(1).data());
+        assertEquals(FrameDecoder.LINKTYPE_ETHERNET, records.get(1).linkType());
+    }
+
+    @Test
+    void readsNanosecondPcapAndStopsAtATruncatedRecord() throws IOException {
+        ByteBuffer b = le(24 + 16 + 4 + 16 + 2);
+        b.putInt(0xA1B23C4D).putShort((short) 2).putShort((short) 4).putInt(0).putInt(0).putInt(65535).putInt(101);
+        b.putInt((int) SECOND).putInt(123_456_789).putInt(4).putInt(4).put(new byte[4]);
+        b.putInt((int) SECOND).putInt(0).putInt(100).putInt(100).put(new byte[2]);   // cut short
+        List<Record> records = read(write("n.pcap", b), false);
+        assertEquals(1, records.size());
+        assertEquals(SECOND * 1_000_000 + 123_456, records.get(0).timestampMicros());
+        assertEquals(FrameDecoder.LINKTYPE_RAW, records.get(0).linkType());
+    }
+
+    @Test
+    void pcapngAppliesEachInterfacesResolutionAndLinkType() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(sectionHeader(ByteOrder.LITTLE_ENDIAN));
+        out.write(interfaceBlock(ByteOrder.LITTLE_ENDIAN, FrameDecoder.LINKTYPE_LINUX_SLL, 9));      // nanoseconds
+        out.write(interfaceBlock(ByteOrder.LITTLE_ENDIAN, FrameDecoder.LINKTYPE_RAW, 0x80 | 10));   // 1/1024 s
+        out.write(interfaceBlock(ByteOrder.LITTLE_ENDIAN, FrameDecoder.LINKTYPE_ETHERNET, -1));      // default: micros
+        out.write(enhancedPacket(ByteOrder.LITTLE_ENDIAN, 0, SECOND * 1_000_000_000L + 1_500, new byte[] {1, 2, 3}));
+        out.write(enhancedPacket(ByteOrder.LITTLE_ENDIAN, 1, SECOND * 1024 + 512, new byte[] {4}));
+        out.write(enhancedPacket(ByteOrder.LITTLE_ENDIAN, 2, SECOND * 1_000_000 + 7, new byte[] {5, 6}));
+        Path file = dir.resolve("multi.pcapng");
+        Files.write(file, out.toByteArray());
+
+        List<Record> records = read(file, true);
+        assertEquals(3, records.size());
+        assertEquals(SECOND * 1_000_000 + 1, records.get(0).timestampMicros());
+        assertArrayEquals(new byte[] {1, 2, 3}, records.get(0).data());
+        assertEquals(FrameDecoder.LINKTYPE_LINUX_SLL, records.get(0).linkType());
+        assertEquals(SECOND * 1_000_000 + 500_000, records.get(1).timestampMicros());
+        assertEquals(FrameDecoder.LINKTYPE_RAW, records.get(1).linkType());
+        assertEquals(SECOND * 1_000_000 + 7, records.get(2).timestampMicros());
+        assertEquals(FrameDecoder.LINKTYPE_ETHERNET, records.get(2).linkType());
+        try (PcapFileReader reader = PcapFileReader.open(file)) {
+            assertEquals(FrameDecoder.LINKTYPE_LINUX_SLL, reader.linkType());
+        }
+    }
+
+    @Test
+    void readsBigEndianPcapng() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(sectionHeader(ByteOrder.BIG_ENDIAN));
+        out.write(interfaceBlock(ByteOrder.BIG_ENDIAN, FrameDecoder.LINKTYPE_ETHERNET, 6));
+        out.write(enhancedPacket(ByteOrder.BIG_ENDIAN, 0, SECOND * 1_000_000 + 42, new byte[] {9, 9}));
+        Path file = dir.resolve("be.pcapng");
+        Files.write(file, out.toByteArray());
+
+        List<Record> records = read(file, true);
+        assertEquals(1, records.size());
+        assertEquals(SECOND * 1_000_000 + 42, records.get(0).timestampMicros());
+        assertArrayEquals(new byte[] {9, 9}, records.get(0).data());
+    }
+
+    @Test
+    void shortPacketBlockIsReportedAsCorrupt() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(sectionHeader(ByteOrder.LITTLE_ENDIAN));
+        out.write(interfaceBlock(ByteOrder.LITTLE_ENDIAN, FrameDecoder.LINKTYPE_ETHERNET, -1));
+        out.write(le(16).putInt(6).putInt(16).putInt(0).putInt(16).array());   // EPB too short for its fields
+        Path file = dir.resolve("short.pcapng");
+        Files.write(file, out.toByteArray());
+
+        IOException e = assertThrows(IOException.class, () -> read(file, true));
+        assertTrue(e.getMessage().startsWith("Corrupt pcapng block"), e.getMessage());
+    }
+
+    private List<Record> read(Path file, boolean pcapng) throws IOException {
+        List<Record> records = new ArrayList<>();
+        try (PcapFileReader reader = PcapFileReader.open(file)) {
+            assertEquals(pcapng, reader.isPcapng());
+            reader.read((buffer, offset, length, ts, linkType) -> {
+                byte[] data = new byte[length];
+                buffer.get(offset, data);
+                records.add(new Record(data, ts, linkType));
+                return true;
+            });
+        }
+        return records;
+    }
+
+    private Path write(String name, ByteBuffer content) throws IOException {
+        Path file = dir.resolve(name);
+        Files.write(file, content.array());
+        return file;
+    }
+
+    private static ByteBuffer le(int size) {
+        return ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static byte[] sectionHeader(ByteOrder order) {
+        return ByteBuffer.allocate(28).order(order)
+                .putInt(0x0A0D0D0A).putInt(28).putInt(0x1A2B3C4D).putShort((short) 1).putShort((short) 0)
+                .putLong(-1).putInt(28).array();
+    }
+
+    // tsresol < 0 leaves the option out
+    private static byte[] interfaceBlock(ByteOrder order, int linkType, int tsresol) {
+        int len = tsresol < 0 ? 20 : 20 + 8 + 4;
+        ByteBuffer b = ByteBuffer.allocate(len).order(order);
+        b.putInt(1).putInt(len).putShort((short) linkType).putShort((short) 0).putInt(65535);
+        if (tsresol >= 0) {
+            b.putShort((short) 9).putShort((short) 1).put((byte) tsresol).put(new byte[3]);
+            b.putInt(0);   // opt_endofopt
+        }
+        return b.putInt(len).array();
+    }
+
+    private static byte[] enhancedPacket(ByteOrder order, int iface, long timestamp, byte[] data) {
+        int padded = (data.length + 3) & ~3;
+        int len = 32 + padded;
+        return ByteBuffer.allocate(len).order(order)
+                .putInt(6).putInt(len).putInt(iface).putInt((int) (timestamp >>> 32)).putInt((int) timestamp)
+                .putInt(data.length).putInt(data.length).put(data).put(new byte[padded - data.length])
+                .putInt(len).array();
+    }
+}